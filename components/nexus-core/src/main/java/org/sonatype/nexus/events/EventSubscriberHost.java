@@ -13,9 +13,10 @@
 package org.sonatype.nexus.events;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -23,21 +24,41 @@ import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.sonatype.nexus.events.SubscriberQueue.Envelope;
+import org.sonatype.nexus.events.SubscriberQueue.OverflowPolicy;
 import org.sonatype.nexus.threads.NexusExecutorService;
 import org.sonatype.nexus.threads.NexusThreadFactory;
 import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.UnavailableSecurityManagerException;
+import org.apache.shiro.subject.Subject;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * A default host for {@link EventSubscriber}. This is an internal Nexus component and should not be used in
  * any plugin code, and hence, is subject of change without prior notice.
+ * <p>
+ * Every {@link Asynchronous} subscriber has it's own bounded queue of events, drained by pool threads (at most
+ * "parallelism" of them per subscriber), so a burst of events or a slow subscriber does not make event posting
+ * threads (like request threads) handle the events. Following system properties (prefixed with this class name) are
+ * used, each of them can be overridden per subscriber by appending "." and the subscriber class name:
+ * <ul>
+ * <li>{@code queueSize} - capacity of subscriber queue (default 10000)</li>
+ * <li>{@code parallelism} - max count of threads delivering events to subscriber concurrently (default 4)</li>
+ * <li>{@code overflowPolicy} - what to do when queue is full, see {@link OverflowPolicy} (default CALLER_RUNS)</li>
+ * <li>{@code coalesce} - deliver only the latest of queued update events of same item (default false)</li>
+ * </ul>
+ * Queue depth, lag and handler latency of subscribers are published as metrics.
  *
  * @since 2.7.0
  */
@@ -49,25 +70,53 @@ public class EventSubscriberHost
   private final int HOST_THREAD_POOL_SIZE = SystemPropertiesHelper.getInteger(
       EventSubscriberHost.class.getName() + ".poolSize", 500);
 
+  private final int QUEUE_SIZE = SystemPropertiesHelper.getInteger(
+      EventSubscriberHost.class.getName() + ".queueSize", 10000);
+
+  private final int PARALLELISM = SystemPropertiesHelper.getInteger(
+      EventSubscriberHost.class.getName() + ".parallelism", 4);
+
+  private final String OVERFLOW_POLICY = SystemPropertiesHelper.getString(
+      EventSubscriberHost.class.getName() + ".overflowPolicy", OverflowPolicy.CALLER_RUNS.name());
+
+  private final boolean COALESCE = SystemPropertiesHelper.getBoolean(
+      EventSubscriberHost.class.getName() + ".coalesce", false);
+
   private final EventBus eventBus;
 
   private final List<Provider<EventSubscriber>> eventSubscriberProviders;
 
   private final NexusExecutorService hostThreadPool;
 
-  private final com.google.common.eventbus.AsyncEventBus asyncBus;
+  private final ConcurrentMap<Object, SubscriberQueue> subscriberQueues;
+
+  private final MetricRegistry metrics;
 
   @Inject
   public EventSubscriberHost(final EventBus eventBus, final List<Provider<EventSubscriber>> eventSubscriberProviders) {
     this.eventBus = checkNotNull(eventBus);
     this.eventSubscriberProviders = checkNotNull(eventSubscriberProviders);
 
-    // direct hand-off used! Host pool will use caller thread to execute async inspectors when pool full!
+    // direct hand-off used! Pool runs subscriber queue drain tasks, count of those is bounded by subscriber count and
+    // parallelism, in case pool is still full, subscriber queue is drained by caller thread
     final ThreadPoolExecutor target =
         new ThreadPoolExecutor(0, HOST_THREAD_POOL_SIZE, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
-            new NexusThreadFactory("esh", "Event Subscriber Host"), new CallerRunsPolicy());
+            new NexusThreadFactory("esh", "Event Subscriber Host"));
     this.hostThreadPool = NexusExecutorService.forCurrentSubject(target);
-    this.asyncBus = new com.google.common.eventbus.AsyncEventBus("esh-async", hostThreadPool);
+    this.subscriberQueues = new ConcurrentHashMap<Object, SubscriberQueue>();
+    this.metrics = SharedMetricRegistries.getOrCreate("nexus");
+    metrics.remove(MetricRegistry.name(EventSubscriberHost.class, "depth"));
+    metrics.register(MetricRegistry.name(EventSubscriberHost.class, "depth"), new Gauge<Integer>()
+    {
+      @Override
+      public Integer getValue() {
+        int depth = 0;
+        for (SubscriberQueue subscriberQueue : subscriberQueues.values()) {
+          depth += subscriberQueue.getDepth();
+        }
+        return depth;
+      }
+    });
 
     eventBus.register(this);
     log.info("Initialized");
@@ -114,7 +163,17 @@ public class EventSubscriberHost
 
   public void register(final Object object) {
     if (object instanceof Asynchronous) {
-      asyncBus.register(object);
+      final String type = object.getClass().getName();
+      final SubscriberQueue subscriberQueue = new SubscriberQueue(object, hostThreadPool,
+          getInteger("queueSize", type, QUEUE_SIZE),
+          getInteger("parallelism", type, PARALLELISM),
+          getOverflowPolicy(type),
+          getBoolean("coalesce", type, COALESCE),
+          metrics);
+      final SubscriberQueue replaced = subscriberQueues.put(object, subscriberQueue);
+      if (replaced != null) {
+        replaced.close();
+      }
     }
     else {
       eventBus.register(object);
@@ -124,7 +183,10 @@ public class EventSubscriberHost
 
   public void unregister(final Object object) {
     if (object instanceof Asynchronous) {
-      asyncBus.unregister(object);
+      final SubscriberQueue subscriberQueue = subscriberQueues.remove(object);
+      if (subscriberQueue != null) {
+        subscriberQueue.close();
+      }
     }
     else {
       eventBus.unregister(object);
@@ -137,14 +199,55 @@ public class EventSubscriberHost
    */
   @VisibleForTesting
   public boolean isCalmPeriod() {
-    // "calm period" is when we have no queued nor active threads
-    return ((ThreadPoolExecutor) hostThreadPool.getTargetExecutorService()).getQueue().isEmpty()
-        && ((ThreadPoolExecutor) hostThreadPool.getTargetExecutorService()).getActiveCount() == 0;
+    // "calm period" is when we have no queued nor in-flight events
+    for (SubscriberQueue subscriberQueue : subscriberQueues.values()) {
+      if (!subscriberQueue.isIdle()) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Subscribe
   @AllowConcurrentEvents
   public void onEvent(final Object evt) {
-    asyncBus.post(evt);
+    if (subscriberQueues.isEmpty()) {
+      return;
+    }
+    final Envelope envelope = new Envelope(evt, currentSubject());
+    for (SubscriberQueue subscriberQueue : subscriberQueues.values()) {
+      subscriberQueue.offer(envelope);
+    }
+  }
+
+  private Subject currentSubject() {
+    try {
+      return SecurityUtils.getSubject();
+    }
+    catch (UnavailableSecurityManagerException e) {
+      return null;
+    }
+  }
+
+  private int getInteger(final String key, final String type, final int defaultValue) {
+    return SystemPropertiesHelper.getInteger(EventSubscriberHost.class.getName() + "." + key + "." + type,
+        defaultValue);
+  }
+
+  private boolean getBoolean(final String key, final String type, final boolean defaultValue) {
+    return SystemPropertiesHelper.getBoolean(EventSubscriberHost.class.getName() + "." + key + "." + type,
+        defaultValue);
+  }
+
+  private OverflowPolicy getOverflowPolicy(final String type) {
+    final String value = SystemPropertiesHelper.getString(
+        EventSubscriberHost.class.getName() + ".overflowPolicy." + type, OVERFLOW_POLICY);
+    try {
+      return OverflowPolicy.valueOf(value);
+    }
+    catch (IllegalArgumentException e) {
+      log.warn("Unknown event overflow policy {} for {}, using {}", value, type, OverflowPolicy.CALLER_RUNS);
+      return OverflowPolicy.CALLER_RUNS;
+    }
   }
 }
@@ -0,0 +1,466 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.events;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.sonatype.nexus.proxy.events.RepositoryItemEvent;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventCacheUpdate;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventStoreUpdate;
+import org.sonatype.nexus.threads.MDCUtils;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.reflect.TypeToken;
+import org.apache.shiro.subject.Subject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Bounded queue of events for one asynchronous subscriber, drained by at most "parallelism" tasks concurrently on
+ * the shared executor (or by the calling thread, if executor rejects the drain task). Events the subscriber has no
+ * handler for are not queued at all. Optionally, queued item update events of the same item are coalesced (only the
+ * latest is delivered). When queue is full, the overflow policy applies. Queue depth, lag (time spent in queue) and
+ * handler latency are published as metrics.
+ *
+ * @since 3.0
+ */
+class SubscriberQueue
+{
+  /**
+   * What to do with an event when subscriber queue is full.
+   */
+  public enum OverflowPolicy
+  {
+    /**
+     * The posting thread delivers the event to subscriber (as unbounded host did when all threads were busy).
+     */
+    CALLER_RUNS,
+    /**
+     * The event is dropped.
+     */
+    DROP_NEWEST,
+    /**
+     * The oldest queued event is dropped to make room for the event.
+     */
+    DROP_OLDEST
+  }
+
+  /**
+   * Event with the context (subject and MDC) of the posting thread, shared by all the subscriber queues.
+   */
+  static class Envelope
+  {
+    private final Object event;
+
+    private final Subject subject;
+
+    private final Map<String, String> mdcContext;
+
+    Envelope(final Object event, final Subject subject) {
+      this.event = checkNotNull(event);
+      this.subject = subject;
+      this.mdcContext = MDCUtils.getCopyOfContextMap();
+    }
+
+    Object getEvent() {
+      return event;
+    }
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(SubscriberQueue.class);
+
+  /**
+   * Max count of events delivered by one drain task before it yields executor thread to other subscribers.
+   */
+  private static final int DRAIN_BATCH = 100;
+
+  private final Object subscriber;
+
+  private final String name;
+
+  private final Executor executor;
+
+  private final int parallelism;
+
+  private final OverflowPolicy overflowPolicy;
+
+  private final boolean coalesce;
+
+  private final EventBus bus;
+
+  private final Set<Class<?>> handledTypes;
+
+  private final ConcurrentMap<Class<?>, Boolean> handles;
+
+  private final BlockingQueue<Pending> queue;
+
+  private final ConcurrentMap<String, Pending> coalescing;
+
+  private final AtomicInteger drainers;
+
+  private final AtomicInteger inFlight;
+
+  private final MetricRegistry metrics;
+
+  private final Timer lag;
+
+  private final Timer latency;
+
+  private final Meter dropped;
+
+  private final Meter coalesced;
+
+  private final Meter callerRuns;
+
+  SubscriberQueue(final Object subscriber, final Executor executor, final int capacity, final int parallelism,
+                  final OverflowPolicy overflowPolicy, final boolean coalesce, final MetricRegistry metrics)
+  {
+    checkArgument(capacity > 0, "Capacity must be positive");
+    checkArgument(parallelism > 0, "Parallelism must be positive");
+    this.subscriber = checkNotNull(subscriber);
+    this.name = subscriber.getClass().getName();
+    this.executor = checkNotNull(executor);
+    this.parallelism = parallelism;
+    this.overflowPolicy = checkNotNull(overflowPolicy);
+    this.coalesce = coalesce;
+    this.bus = new EventBus("esh-" + name);
+    this.bus.register(subscriber);
+    this.handledTypes = handledTypes(subscriber);
+    this.handles = new ConcurrentHashMap<Class<?>, Boolean>();
+    this.queue = new LinkedBlockingQueue<Pending>(capacity);
+    this.coalescing = new ConcurrentHashMap<String, Pending>();
+    this.drainers = new AtomicInteger();
+    this.inFlight = new AtomicInteger();
+
+    this.metrics = checkNotNull(metrics);
+    removeMetrics();
+    this.lag = metrics.timer(metricName("lag"));
+    this.latency = metrics.timer(metricName("latency"));
+    this.dropped = metrics.meter(metricName("dropped"));
+    this.coalesced = metrics.meter(metricName("coalesced"));
+    this.callerRuns = metrics.meter(metricName("callerRuns"));
+    metrics.register(metricName("depth"), new Gauge<Integer>()
+    {
+      @Override
+      public Integer getValue() {
+        return queue.size();
+      }
+    });
+  }
+
+  Object getSubscriber() {
+    return subscriber;
+  }
+
+  /**
+   * Returns {@code true} if there are no queued nor in-flight events.
+   */
+  boolean isIdle() {
+    return queue.isEmpty() && inFlight.get() == 0;
+  }
+
+  int getDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Unregisters the metrics of this queue. Queued events are still delivered.
+   */
+  void close() {
+    removeMetrics();
+  }
+
+  /**
+   * Queues the event for delivery, if subscriber handles it.
+   */
+  void offer(final Envelope envelope) {
+    if (!handles(envelope.getEvent().getClass())) {
+      return;
+    }
+
+    final String key = coalesce ? coalescingKey(envelope.getEvent()) : null;
+    if (key != null) {
+      final Pending existing = coalescing.get(key);
+      if (existing != null && existing.replace(envelope)) {
+        coalesced.mark();
+        return;
+      }
+    }
+
+    final Pending pending = new Pending(envelope, key);
+    if (key != null) {
+      coalescing.put(key, pending);
+    }
+    if (queue.offer(pending)
+        || (overflowPolicy == OverflowPolicy.DROP_OLDEST && dropOldest() && queue.offer(pending))) {
+      schedule();
+      return;
+    }
+
+    // did not fit into queue (meanwhile, it might have been coalesced with a newer event)
+    final Envelope taken = pending.take();
+    if (taken == null) {
+      return;
+    }
+    if (overflowPolicy == OverflowPolicy.CALLER_RUNS) {
+      callerRuns.mark();
+      inFlight.incrementAndGet();
+      try {
+        deliver(taken.getEvent());
+      }
+      finally {
+        inFlight.decrementAndGet();
+      }
+    }
+    else {
+      dropped.mark();
+      log.debug("Queue of {} full, dropped {}", name, taken.getEvent());
+    }
+  }
+
+  private boolean dropOldest() {
+    final Pending oldest = queue.poll();
+    if (oldest == null) {
+      return false;
+    }
+    final Envelope envelope = oldest.take();
+    if (envelope != null) {
+      dropped.mark();
+      log.debug("Queue of {} full, dropped {}", name, envelope.getEvent());
+    }
+    return true;
+  }
+
+  private void schedule() {
+    while (true) {
+      final int current = drainers.get();
+      if (current >= parallelism) {
+        return;
+      }
+      if (drainers.compareAndSet(current, current + 1)) {
+        try {
+          executor.execute(new Runnable()
+          {
+            @Override
+            public void run() {
+              drain();
+            }
+          });
+        }
+        catch (RejectedExecutionException e) {
+          // pool exhausted or shut down, deliver in this thread
+          log.debug("Could not schedule delivery of events to {}, delivering them in caller thread", name);
+          drain();
+        }
+        return;
+      }
+    }
+  }
+
+  private void drain() {
+    try {
+      for (int i = 0; i < DRAIN_BATCH; i++) {
+        inFlight.incrementAndGet();
+        try {
+          final Pending pending = queue.poll();
+          if (pending == null) {
+            break;
+          }
+          final Envelope envelope = pending.take();
+          if (envelope == null) {
+            continue;
+          }
+          lag.update(System.nanoTime() - pending.getQueuedNanos(), TimeUnit.NANOSECONDS);
+          deliver(envelope);
+        }
+        finally {
+          inFlight.decrementAndGet();
+        }
+      }
+    }
+    finally {
+      drainers.decrementAndGet();
+      if (!queue.isEmpty()) {
+        schedule();
+      }
+    }
+  }
+
+  private void deliver(final Envelope envelope) {
+    final Runnable delivery = new Runnable()
+    {
+      @Override
+      public void run() {
+        // might run in a thread having its own MDC (drain in caller thread), restore it once done
+        //noinspection unchecked
+        final Map<String, String> previous = MDC.getCopyOfContextMap();
+        MDCUtils.setContextMap(envelope.mdcContext);
+        try {
+          deliver(envelope.getEvent());
+        }
+        finally {
+          if (previous != null) {
+            MDC.setContextMap(previous);
+          }
+          else {
+            MDC.clear();
+          }
+        }
+      }
+    };
+    if (envelope.subject != null) {
+      envelope.subject.execute(delivery);
+    }
+    else {
+      delivery.run();
+    }
+  }
+
+  private void deliver(final Object event) {
+    // handler exceptions are logged by the bus
+    final Timer.Context context = latency.time();
+    try {
+      bus.post(event);
+    }
+    finally {
+      context.stop();
+    }
+  }
+
+  // ==
+
+  private boolean handles(final Class<?> eventType) {
+    Boolean result = handles.get(eventType);
+    if (result == null) {
+      result = Boolean.FALSE;
+      for (Class<?> handledType : handledTypes) {
+        if (handledType.isAssignableFrom(eventType)) {
+          result = Boolean.TRUE;
+          break;
+        }
+      }
+      handles.put(eventType, result);
+    }
+    return result;
+  }
+
+  /**
+   * Collects the event types subscriber has handlers for, the same way as Guava event bus finds handlers.
+   */
+  private static Set<Class<?>> handledTypes(final Object subscriber) {
+    final Set<Class<?>> result = new HashSet<Class<?>>();
+    for (Class<?> type : TypeToken.of(subscriber.getClass()).getTypes().rawTypes()) {
+      for (Method method : type.getMethods()) {
+        if (method.isAnnotationPresent(Subscribe.class) && method.getParameterTypes().length == 1) {
+          result.add(method.getParameterTypes()[0]);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Events that might be coalesced: item update events, same kind of update of same item is redundant while the
+   * former is still queued.
+   */
+  private static String coalescingKey(final Object event) {
+    if (event instanceof RepositoryItemEventStoreUpdate || event instanceof RepositoryItemEventCacheUpdate) {
+      return event.getClass().getName() + ":" + ((RepositoryItemEvent) event).getItemUid().toString();
+    }
+    return null;
+  }
+
+  private String metricName(final String metric) {
+    return MetricRegistry.name(EventSubscriberHost.class, name, metric);
+  }
+
+  private void removeMetrics() {
+    final String prefix = MetricRegistry.name(EventSubscriberHost.class, name) + ".";
+    metrics.removeMatching(new MetricFilter()
+    {
+      @Override
+      public boolean matches(final String metricName, final Metric metric) {
+        return metricName.startsWith(prefix);
+      }
+    });
+  }
+
+  // ==
+
+  private class Pending
+  {
+    private final AtomicReference<Envelope> envelope;
+
+    private final String key;
+
+    private final long queuedNanos;
+
+    private Pending(final Envelope envelope, final String key) {
+      this.envelope = new AtomicReference<Envelope>(envelope);
+      this.key = key;
+      this.queuedNanos = System.nanoTime();
+    }
+
+    private long getQueuedNanos() {
+      return queuedNanos;
+    }
+
+    /**
+     * Replaces the event if it was not yet taken for delivery.
+     */
+    private boolean replace(final Envelope newer) {
+      while (true) {
+        final Envelope current = envelope.get();
+        if (current == null) {
+          return false;
+        }
+        if (envelope.compareAndSet(current, newer)) {
+          return true;
+        }
+      }
+    }
+
+    /**
+     * Takes the event for delivery, returns {@code null} if already taken.
+     */
+    private Envelope take() {
+      if (key != null) {
+        coalescing.remove(key, this);
+      }
+      return envelope.getAndSet(null);
+    }
+  }
+}
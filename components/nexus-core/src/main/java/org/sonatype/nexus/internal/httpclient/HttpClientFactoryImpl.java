@@ -32,8 +32,10 @@ import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 
+import com.codahale.metrics.SharedMetricRegistries;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.eventbus.Subscribe;
+import org.apache.http.HttpHost;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.config.Registry;
@@ -127,26 +129,6 @@ public class HttpClientFactoryImpl
    */
   private final EventBus eventBus;
 
-  private static class ManagedClientConnectionManager
-      extends PoolingHttpClientConnectionManager
-  {
-    public ManagedClientConnectionManager(final Registry<ConnectionSocketFactory> schemeRegistry) {
-      super(schemeRegistry);
-    }
-
-    /**
-     * Do nothing in order to avoid unwanted shutdown of shared connection manager.
-     */
-    @Override
-    public void shutdown() {
-      // empty
-    }
-
-    private void _shutdown() {
-      super.shutdown();
-    }
-  }
-
   /**
    * Shared client connection manager.
    */
@@ -192,7 +174,8 @@ public class HttpClientFactoryImpl
             SSLConnectionSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER, selectors)
         ).build();
 
-    final ManagedClientConnectionManager connManager = new ManagedClientConnectionManager(registry);
+    final ManagedClientConnectionManager connManager =
+        new ManagedClientConnectionManager(registry, SharedMetricRegistries.getOrCreate("nexus"));
     final int maxConnectionCount = SystemPropertiesHelper.getInteger(CONNECTION_POOL_MAX_SIZE_KEY, CONNECTION_POOL_MAX_SIZE_DEFAULT);
     final int poolSize = SystemPropertiesHelper.getInteger(CONNECTION_POOL_SIZE_KEY, CONNECTION_POOL_SIZE_DEFAULT);
     final int perRouteConnectionCount = Math.min(poolSize, maxConnectionCount);
@@ -267,6 +250,11 @@ public class HttpClientFactoryImpl
     return false;
   }
 
+  @Override
+  public void setMaxConnectionsPerHost(final String key, final HttpHost host, final int maxConnections) {
+    sharedConnectionManager.setMaxPerHost(key, host, maxConnections);
+  }
+
   @Override
   public HttpClient create(final Customizer customizer) {
     return prepare(customizer).build();
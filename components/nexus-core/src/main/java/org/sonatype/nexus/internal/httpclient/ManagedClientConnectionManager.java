@@ -0,0 +1,445 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+
+package org.sonatype.nexus.internal.httpclient;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Shared {@link PoolingHttpClientConnectionManager} partitioning its pool per remote host: connections to a host,
+ * summed up over all the routes to it (direct or via any proxy), are limited to the count set by
+ * {@link #setMaxPerHost(String, HttpHost, int)}, or to the default per route limit if host has no limit set. Tracks
+ * lease wait times and connection usage of every remote host.
+ *
+ * @since 3.0
+ */
+class ManagedClientConnectionManager
+    extends PoolingHttpClientConnectionManager
+{
+  private final MetricRegistry metricRegistry;
+
+  /**
+   * Hosts and limits set by components (usually proxy repositories), keyed by component key.
+   */
+  private final Map<String, HostLimit> limits = new HashMap<>();
+
+  /**
+   * Connection gates of hosts leased from so far, keyed by host key.
+   */
+  private final ConcurrentMap<String, HostGate> gates = new ConcurrentHashMap<>();
+
+  /**
+   * Routes leased from this pool so far, with their host keys.
+   */
+  private final ConcurrentMap<HttpRoute, String> routes = new ConcurrentHashMap<>();
+
+  /**
+   * Leased connections, with the gate they hold a permit of.
+   */
+  private final ConcurrentMap<HttpClientConnection, HostGate> leased = new ConcurrentHashMap<>();
+
+  /**
+   * Lease wait timers, keyed by host key.
+   */
+  private final ConcurrentMap<String, Timer> leaseTimers = new ConcurrentHashMap<>();
+
+  public ManagedClientConnectionManager(final Registry<ConnectionSocketFactory> schemeRegistry,
+                                        final MetricRegistry metricRegistry)
+  {
+    super(schemeRegistry);
+    this.metricRegistry = checkNotNull(metricRegistry);
+  }
+
+  /**
+   * Do nothing in order to avoid unwanted shutdown of shared connection manager.
+   */
+  @Override
+  public void shutdown() {
+    // empty
+  }
+
+  void _shutdown() {
+    super.shutdown();
+    metricRegistry.removeMatching(new MetricFilter()
+    {
+      @Override
+      public boolean matches(final String name, final Metric metric) {
+        return name.startsWith(metricPrefix());
+      }
+    });
+  }
+
+  /**
+   * Sets the connection limit of given host on behalf of component having given key. Highest limit of all components
+   * applies to the host, a limit less than 1 leaves the host on default limit. A {@code null} host forgets the
+   * component (as when it is removed), and hosts no component refers to anymore are evicted with their routes.
+   */
+  synchronized void setMaxPerHost(final String key, final HttpHost host, final int max) {
+    checkNotNull(key);
+    final HostLimit previous = host == null ? limits.remove(key) : limits.put(key, new HostLimit(hostKey(host), max));
+
+    final Map<String, Integer> hostLimits = new HashMap<>();
+    for (HostLimit limit : limits.values()) {
+      hostLimits.put(limit.host, hostMax(limit.host));
+    }
+
+    if (previous != null && !hostLimits.containsKey(previous.host)) {
+      gates.remove(previous.host);
+      evictRoutes(previous.host);
+    }
+    for (Entry<String, Integer> entry : hostLimits.entrySet()) {
+      final HostGate gate = gates.get(entry.getKey());
+      if (gate != null && gate.setMax(entry.getValue())) {
+        for (Entry<HttpRoute, String> route : routes.entrySet()) {
+          if (route.getValue().equals(entry.getKey())) {
+            setMaxPerRoute(route.getKey(), entry.getValue());
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public ConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+    final String host = hostKey(route.getTargetHost());
+    final HostGate gate = gate(host);
+    if (routes.putIfAbsent(route, host) == null) {
+      // a single route may use all the connections of its host, the gate limits the routes of host together
+      setMaxPerRoute(route, gate.max);
+      registerGauges(host);
+    }
+
+    final Timer leaseTimer = leaseTimer(host);
+    final ConnectionRequest request = super.requestConnection(route, state);
+    return new ConnectionRequest()
+    {
+      @Override
+      public HttpClientConnection get(final long timeout, final TimeUnit tunit)
+          throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException
+      {
+        final Timer.Context context = leaseTimer.time();
+        try {
+          final long deadline = timeout > 0 ? System.nanoTime() + tunit.toNanos(timeout) : 0;
+          if (!gate.acquire(timeout > 0 ? tunit.toNanos(timeout) : 0)) {
+            throw new ConnectionPoolTimeoutException("Timeout waiting for connection to " + host);
+          }
+          boolean success = false;
+          try {
+            final HttpClientConnection connection = timeout > 0
+                ? request.get(Math.max(1, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                : request.get(0, TimeUnit.MILLISECONDS);
+            leased.put(connection, gate);
+            success = true;
+            return connection;
+          }
+          finally {
+            if (!success) {
+              gate.release();
+            }
+          }
+        }
+        finally {
+          context.stop();
+        }
+      }
+
+      @Override
+      public boolean cancel() {
+        return request.cancel();
+      }
+    };
+  }
+
+  @Override
+  public void releaseConnection(final HttpClientConnection managedConn, final Object state, final long keepalive,
+                                final TimeUnit tunit)
+  {
+    try {
+      super.releaseConnection(managedConn, state, keepalive, tunit);
+    }
+    finally {
+      final HostGate gate = leased.remove(managedConn);
+      if (gate != null) {
+        gate.release();
+      }
+    }
+  }
+
+  /**
+   * Returns pool statistics of routes leased so far, summed up per remote host.
+   */
+  Map<String, PoolStats> getHostStats() {
+    final Map<String, int[]> sums = new TreeMap<>();
+    for (Entry<HttpRoute, String> entry : routes.entrySet()) {
+      final PoolStats stats = getStats(entry.getKey());
+      int[] sum = sums.get(entry.getValue());
+      if (sum == null) {
+        sum = new int[4];
+        sums.put(entry.getValue(), sum);
+      }
+      sum[0] += stats.getLeased();
+      sum[1] += stats.getPending();
+      sum[2] += stats.getAvailable();
+    }
+    final Map<String, PoolStats> result = new TreeMap<>();
+    for (Entry<String, int[]> entry : sums.entrySet()) {
+      final int[] sum = entry.getValue();
+      final HostGate gate = gates.get(entry.getKey());
+      result.put(entry.getKey(),
+          new PoolStats(sum[0], sum[1], sum[2], gate != null ? gate.max : getDefaultMaxPerRoute()));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the lease wait timer of given host key.
+   */
+  Timer leaseTimer(final String host) {
+    Timer timer = leaseTimers.get(host);
+    if (timer == null) {
+      timer = metricRegistry.timer(MetricRegistry.name(metricPrefix(), host, "lease"));
+      leaseTimers.putIfAbsent(host, timer);
+    }
+    return timer;
+  }
+
+  /**
+   * Returns the gate of given host key, creating it with the limit in effect for the host if needed.
+   */
+  private HostGate gate(final String host) {
+    HostGate gate = gates.get(host);
+    if (gate == null) {
+      synchronized (this) {
+        gate = gates.get(host);
+        if (gate == null) {
+          gate = new HostGate(hostMax(host));
+          gates.put(host, gate);
+        }
+      }
+    }
+    return gate;
+  }
+
+  /**
+   * Returns the highest limit set for given host key, or the default per route limit if none is set.
+   */
+  private synchronized int hostMax(final String host) {
+    int max = 0;
+    for (HostLimit limit : limits.values()) {
+      if (limit.host.equals(host) && limit.max > max) {
+        max = limit.max;
+      }
+    }
+    return max > 0 ? max : getDefaultMaxPerRoute();
+  }
+
+  /**
+   * Forgets the routes, gauges and timer of given host key. Idle connections of evicted routes are closed by the
+   * usual idle connection eviction, leased ones are returned to the pool as usual.
+   */
+  private void evictRoutes(final String host) {
+    for (Iterator<Entry<HttpRoute, String>> iter = routes.entrySet().iterator(); iter.hasNext(); ) {
+      final Entry<HttpRoute, String> entry = iter.next();
+      if (entry.getValue().equals(host)) {
+        iter.remove();
+        setMaxPerRoute(entry.getKey(), getDefaultMaxPerRoute());
+      }
+    }
+    final String prefix = MetricRegistry.name(metricPrefix(), host) + ".";
+    metricRegistry.removeMatching(new MetricFilter()
+    {
+      @Override
+      public boolean matches(final String name, final Metric metric) {
+        return name.startsWith(prefix);
+      }
+    });
+    leaseTimers.remove(host);
+  }
+
+  private void registerGauges(final String host) {
+    registerGauge(host, "leased", 0);
+    registerGauge(host, "pending", 1);
+    registerGauge(host, "available", 2);
+  }
+
+  private void registerGauge(final String host, final String name, final int index) {
+    try {
+      metricRegistry.register(MetricRegistry.name(metricPrefix(), host, name), new Gauge<Integer>()
+      {
+        @Override
+        public Integer getValue() {
+          final PoolStats stats = getHostStats().get(host);
+          if (stats == null) {
+            return 0;
+          }
+          return index == 0 ? stats.getLeased() : index == 1 ? stats.getPending() : stats.getAvailable();
+        }
+      });
+    }
+    catch (IllegalArgumentException e) {
+      // already registered, another route to same host
+    }
+  }
+
+  private String metricPrefix() {
+    return MetricRegistry.name(HttpClientFactoryImpl.class, "pool");
+  }
+
+  /**
+   * Returns the key of given host as "scheme://hostname:port", resolving default HTTP ports the same way as routes
+   * do.
+   */
+  static String hostKey(final HttpHost host) {
+    final String scheme = host.getSchemeName().toLowerCase(Locale.ENGLISH);
+    int port = host.getPort();
+    if (port < 0) {
+      port = "https".equals(scheme) ? 443 : 80;
+    }
+    return scheme + "://" + host.getHostName().toLowerCase(Locale.ENGLISH) + ":" + port;
+  }
+
+  private static class HostLimit
+  {
+    private final String host;
+
+    private final int max;
+
+    private HostLimit(final String host, final int max) {
+      this.host = host;
+      this.max = max;
+    }
+  }
+
+  /**
+   * Limits the connections leased to one host over all its routes. Permits are taken without locking while host is
+   * below its limit, lock is used only to wait for a permit.
+   */
+  private static class HostGate
+  {
+    private final AtomicInteger leased = new AtomicInteger();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition released = lock.newCondition();
+
+    private volatile int max;
+
+    private HostGate(final int max) {
+      this.max = max;
+    }
+
+    /**
+     * Sets the limit, returns {@code true} if it changed.
+     */
+    private boolean setMax(final int max) {
+      if (this.max == max) {
+        return false;
+      }
+      lock.lock();
+      try {
+        this.max = max;
+        released.signalAll();
+      }
+      finally {
+        lock.unlock();
+      }
+      return true;
+    }
+
+    private boolean tryAcquire() {
+      while (true) {
+        final int current = leased.get();
+        if (current >= max) {
+          return false;
+        }
+        if (leased.compareAndSet(current, current + 1)) {
+          return true;
+        }
+      }
+    }
+
+    /**
+     * Takes a permit, waiting at most given nanoseconds for it (or indefinitely if 0).
+     */
+    private boolean acquire(final long timeoutNanos) throws InterruptedException {
+      if (tryAcquire()) {
+        return true;
+      }
+      long nanos = timeoutNanos;
+      lock.lockInterruptibly();
+      waiting.incrementAndGet();
+      try {
+        while (!tryAcquire()) {
+          if (timeoutNanos == 0) {
+            released.await();
+          }
+          else if (nanos <= 0) {
+            return false;
+          }
+          else {
+            nanos = released.awaitNanos(nanos);
+          }
+        }
+        return true;
+      }
+      finally {
+        waiting.decrementAndGet();
+        lock.unlock();
+      }
+    }
+
+    private void release() {
+      leased.decrementAndGet();
+      if (waiting.get() > 0) {
+        lock.lock();
+        try {
+          released.signal();
+        }
+        finally {
+          lock.unlock();
+        }
+      }
+    }
+  }
+}
@@ -12,6 +12,8 @@
  */
 package org.sonatype.nexus.internal.httpclient;
 
+import java.util.Map;
+
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 
 /**
@@ -42,4 +44,12 @@ public interface PoolingClientConnectionManagerMBean
 
   void setDefaultMaxPerRoute(int max);
 
+  /**
+   * Returns connection usage (leased, pending, available and max connections) and lease wait times of the pool,
+   * per remote host.
+   *
+   * @since 3.0
+   */
+  Map<String, String> getHostStats();
+
 }
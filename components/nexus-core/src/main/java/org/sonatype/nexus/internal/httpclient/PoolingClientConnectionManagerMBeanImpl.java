@@ -12,12 +12,18 @@
  */
 package org.sonatype.nexus.internal.httpclient;
 
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import javax.management.StandardMBean;
 
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Preconditions;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 
 /**
  * Default {@link PoolingClientConnectionManagerMBean} implementation.
@@ -87,4 +93,23 @@ public class PoolingClientConnectionManagerMBeanImpl
     connMgr.setDefaultMaxPerRoute(max);
   }
 
+  @Override
+  public Map<String, String> getHostStats() {
+    final Map<String, String> result = new TreeMap<>();
+    if (connMgr instanceof ManagedClientConnectionManager) {
+      final ManagedClientConnectionManager managed = (ManagedClientConnectionManager) connMgr;
+      for (Entry<String, PoolStats> entry : managed.getHostStats().entrySet()) {
+        final PoolStats stats = entry.getValue();
+        final Timer leaseTimer = managed.leaseTimer(entry.getKey());
+        final Snapshot snapshot = leaseTimer.getSnapshot();
+        result.put(entry.getKey(), String.format(
+            "leased=%d, pending=%d, available=%d, max=%d, leases=%d, leaseWaitMeanMs=%.2f, leaseWait99thMs=%.2f",
+            stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax(), leaseTimer.getCount(),
+            TimeUnit.NANOSECONDS.toMicros((long) snapshot.getMean()) / 1000d,
+            TimeUnit.NANOSECONDS.toMicros((long) snapshot.get99thPercentile()) / 1000d));
+      }
+    }
+    return result;
+  }
+
 }
@@ -87,6 +87,14 @@ public class RequestContext
    */
   public static final String CTX_AUTH_CHECK_ONLY = "request.auth.check.only";
 
+  /**
+   * Context flag to mark a request listing collections in lightweight way: local storage may return items having
+   * their attributes loaded only when accessed, and not touched as requested.
+   *
+   * @since 3.0
+   */
+  public static final String CTX_LIGHTWEIGHT_LISTING_FLAG = "request.lightweightListing";
+
   private RequestContext parent;
 
   private final HashMap<String, Object> delegate;
@@ -400,6 +408,29 @@ public class RequestContext
     put(CTX_REQUEST_IS_EXTERNAL, external);
   }
 
+  /**
+   * Returns {@code true} if collections should be listed in lightweight way.
+   *
+   * @since 3.0
+   */
+  public boolean isRequestLightweightListing() {
+    if (containsKey(CTX_LIGHTWEIGHT_LISTING_FLAG)) {
+      return (Boolean) get(CTX_LIGHTWEIGHT_LISTING_FLAG);
+    }
+    else {
+      return false;
+    }
+  }
+
+  /**
+   * Sets if collections should be listed in lightweight way.
+   *
+   * @since 3.0
+   */
+  public void setRequestLightweightListing(boolean lightweightListing) {
+    put(CTX_LIGHTWEIGHT_LISTING_FLAG, lightweightListing);
+  }
+
   // ==
 
   /**
@@ -353,6 +353,26 @@ public class ResourceStoreRequest
     return this;
   }
 
+  /**
+   * Returns {@code true} if collections should be listed in lightweight way, see
+   * {@link RequestContext#CTX_LIGHTWEIGHT_LISTING_FLAG}.
+   *
+   * @since 3.0
+   */
+  public boolean isRequestLightweightListing() {
+    return getRequestContext().isRequestLightweightListing();
+  }
+
+  /**
+   * Sets if collections should be listed in lightweight way.
+   *
+   * @since 3.0
+   */
+  public ResourceStoreRequest setRequestLightweightListing(boolean lightweightListing) {
+    getRequestContext().setRequestLightweightListing(lightweightListing);
+    return this;
+  }
+
   /**
    * Adds a list of applied mappings that happened in given repository.
    */
@@ -15,6 +15,7 @@ package org.sonatype.nexus.proxy.access;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -22,18 +23,36 @@ import javax.inject.Singleton;
 
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
 import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
 import org.sonatype.nexus.proxy.repository.GroupRepository;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.proxy.targets.TargetMatch;
 import org.sonatype.nexus.proxy.targets.TargetSet;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.security.SecuritySystem;
+import org.sonatype.security.events.AuthorizationConfigurationChanged;
+import org.sonatype.security.events.SecurityConfigurationChanged;
+import org.sonatype.security.events.UserPrincipalsExpired;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.eventbus.Subscribe;
+import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.subject.Subject;
 
 /**
- * Default implementation of Nexus Authorizer, that relies onto JSecurity.
+ * Default implementation of Nexus Authorizer, that relies onto JSecurity. Decisions are cached per subject principals
+ * and permission set (the latter being derived from repository, matched targets and action), as same CI users tend to
+ * hit same paths over and over again. Cache is flushed when security configuration, roles or users change, and its
+ * statistics are published as metrics.
  */
 @Named
 @Singleton
@@ -41,16 +60,57 @@ public class DefaultNexusItemAuthorizer
     extends ComponentSupport
     implements NexusItemAuthorizer
 {
+  /**
+   * Maximum count of cached decisions, 0 disables the cache.
+   */
+  private static final int DECISION_CACHE_SIZE = SystemPropertiesHelper.getInteger(
+      DefaultNexusItemAuthorizer.class.getName() + ".decisionCacheSize", 10000);
+
+  /**
+   * Time-to-live of cached decisions in seconds, bounds the staleness of decisions depending on external realms (like
+   * LDAP group membership) that Nexus is not notified about.
+   */
+  private static final int DECISION_CACHE_TTL = SystemPropertiesHelper.getInteger(
+      DefaultNexusItemAuthorizer.class.getName() + ".decisionCacheTtl", 60);
+
   private final SecuritySystem securitySystem;
 
   private final RepositoryRegistry repoRegistry;
 
+  private final EventBus eventBus;
+
+  private final Cache<DecisionKey, Boolean> decisionCache;
+
   @Inject
   public DefaultNexusItemAuthorizer(final SecuritySystem securitySystem,
-                                    final RepositoryRegistry repoRegistry)
+                                    final RepositoryRegistry repoRegistry,
+                                    final EventBus eventBus)
+  {
+    this(securitySystem, repoRegistry, eventBus, DECISION_CACHE_SIZE, DECISION_CACHE_TTL);
+  }
+
+  @VisibleForTesting
+  DefaultNexusItemAuthorizer(final SecuritySystem securitySystem,
+                             final RepositoryRegistry repoRegistry,
+                             final EventBus eventBus,
+                             final int decisionCacheSize,
+                             final int decisionCacheTtl)
   {
     this.securitySystem = securitySystem;
     this.repoRegistry = repoRegistry;
+    this.eventBus = eventBus;
+    if (decisionCacheSize > 0) {
+      this.decisionCache = CacheBuilder.newBuilder()
+          .maximumSize(decisionCacheSize)
+          .expireAfterWrite(decisionCacheTtl, TimeUnit.SECONDS)
+          .recordStats()
+          .build();
+      registerMetrics();
+    }
+    else {
+      this.decisionCache = null;
+    }
+    eventBus.register(this);
   }
 
   public boolean authorizePath(final Repository repository, final ResourceStoreRequest request, final Action action) {
@@ -139,9 +199,25 @@ public class DefaultNexusItemAuthorizer
   }
 
   protected boolean isPermitted(final List<String> perms) {
-    boolean trace = log.isTraceEnabled();
+    final Subject subject = securitySystem.getSubject();
+    final PrincipalCollection principals = subject != null ? subject.getPrincipals() : null;
+    if (decisionCache == null || principals == null || principals.isEmpty()) {
+      return isPermitted(subject, perms);
+    }
+    final DecisionKey key = new DecisionKey(principals, perms);
+    Boolean decision = decisionCache.getIfPresent(key);
+    if (decision == null) {
+      decision = isPermitted(subject, perms);
+      decisionCache.put(key, decision);
+    }
+    else if (log.isTraceEnabled()) {
+      log.trace("Subject '{}' cached decision for permissions {}: {}", subject.getPrincipal(), perms, decision);
+    }
+    return decision;
+  }
 
-    Subject subject = securitySystem.getSubject();
+  private boolean isPermitted(final Subject subject, final List<String> perms) {
+    boolean trace = log.isTraceEnabled();
 
     if (trace) {
       log.trace("Subject: {}", subject);
@@ -159,7 +235,6 @@ public class DefaultNexusItemAuthorizer
     }
     for (String perm : perms) {
       if (subject.isPermitted(perm)) {
-        // TODO: we should remember/cache these decisions per-thread and not re-evaluate it always from Security
         if (trace) {
           log.trace("Subject '{}' has permission: {}; allowing", subject.getPrincipal(), perm);
         }
@@ -173,4 +248,120 @@ public class DefaultNexusItemAuthorizer
 
     return false;
   }
+
+  // == Decision cache
+
+  @Subscribe
+  public void on(final AuthorizationConfigurationChanged evt) {
+    invalidateDecisions();
+  }
+
+  @Subscribe
+  public void on(final SecurityConfigurationChanged evt) {
+    invalidateDecisions();
+  }
+
+  @Subscribe
+  public void on(final UserPrincipalsExpired evt) {
+    if (decisionCache == null) {
+      return;
+    }
+    if (evt.getUserId() == null) {
+      invalidateDecisions();
+    }
+    else {
+      for (DecisionKey key : decisionCache.asMap().keySet()) {
+        if (evt.getUserId().equals(key.principals.getPrimaryPrincipal())) {
+          decisionCache.invalidate(key);
+        }
+      }
+    }
+  }
+
+  @Subscribe
+  public void on(final NexusStoppedEvent evt) {
+    eventBus.unregister(this);
+    invalidateDecisions();
+  }
+
+  @VisibleForTesting
+  void invalidateDecisions() {
+    if (decisionCache != null) {
+      log.debug("Invalidating authorization decisions");
+      decisionCache.invalidateAll();
+    }
+  }
+
+  private void registerMetrics() {
+    final MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate("nexus");
+    register(metricRegistry, "hits", new Gauge<Long>()
+    {
+      @Override
+      public Long getValue() {
+        return decisionCache.stats().hitCount();
+      }
+    });
+    register(metricRegistry, "misses", new Gauge<Long>()
+    {
+      @Override
+      public Long getValue() {
+        return decisionCache.stats().missCount();
+      }
+    });
+    register(metricRegistry, "hitRate", new Gauge<Double>()
+    {
+      @Override
+      public Double getValue() {
+        return decisionCache.stats().hitRate();
+      }
+    });
+    register(metricRegistry, "size", new Gauge<Long>()
+    {
+      @Override
+      public Long getValue() {
+        return decisionCache.size();
+      }
+    });
+  }
+
+  private void register(final MetricRegistry metricRegistry, final String name, final Gauge<?> gauge) {
+    final String metricName = MetricRegistry.name(DefaultNexusItemAuthorizer.class, "decisions", name);
+    metricRegistry.remove(metricName);
+    metricRegistry.register(metricName, gauge);
+  }
+
+  /**
+   * Key of cached decision: subject principals and the permissions of which at least one is required.
+   */
+  private static class DecisionKey
+  {
+    private final PrincipalCollection principals;
+
+    private final List<String> perms;
+
+    private final int hashCode;
+
+    private DecisionKey(final PrincipalCollection principals, final List<String> perms) {
+      this.principals = principals;
+      this.perms = ImmutableList.copyOf(perms);
+      this.hashCode = 31 * principals.hashCode() + this.perms.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof DecisionKey)) {
+        return false;
+      }
+      final DecisionKey that = (DecisionKey) o;
+      return hashCode == that.hashCode && principals.equals(that.principals) && perms.equals(that.perms);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
 }
@@ -21,6 +21,7 @@ import javax.inject.Singleton;
 
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.access.AccessManager;
+import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
 import org.sonatype.nexus.proxy.item.ContentLocator;
 import org.sonatype.nexus.proxy.item.RepositoryItemUid;
 import org.sonatype.nexus.proxy.item.StorageCollectionItem;
@@ -33,6 +34,9 @@ import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.proxy.repository.RepositoryKind;
 import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+
+import com.google.common.eventbus.Subscribe;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -40,7 +44,8 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * The default implementation of AttributesHandler. Does not have any assumption regarding actual AttributeStorage it
  * uses. It uses {@link StorageItemInspector} and {@link StorageFileItemInspector} components for "expansion" of core
  * (and custom) attributes (those components might come from plugins too). This class also implements some
- * "optimizations" for attribute "lastRequested", by using coarser resolution for it (saving it very n-th hour or so).
+ * "optimizations" for attribute "lastRequested", by using coarser resolution for it (saving it very n-th hour or so),
+ * and by writing it out asynchronously using {@link LastRequestedUpdater}.
  *
  * @author cstamas
  */
@@ -84,6 +89,31 @@ public class DefaultAttributesHandler
       "org.sonatype.nexus.proxy.attributes.DefaultAttributesHandler.lastRequested.enabled.proxy",
       LAST_REQUEST_ATTRIBUTE_ENABLED);
 
+  /**
+   * Flag to enable/disable write-behind (asynchronous, batched) updates of lastRequested attribute. When disabled
+   * (default), the attribute is written out by the thread serving the item.
+   */
+  private static final boolean LAST_REQUEST_ATTRIBUTE_WRITE_BEHIND = SystemPropertiesHelper.getBoolean(
+      "org.sonatype.nexus.proxy.attributes.DefaultAttributesHandler.lastRequested.writeBehind", false);
+
+  /**
+   * The maximum count of distinct items having lastRequested attribute update pending, touches above are dropped.
+   */
+  private static final int LAST_REQUEST_ATTRIBUTE_WRITE_BEHIND_CAPACITY = SystemPropertiesHelper.getInteger(
+      "org.sonatype.nexus.proxy.attributes.DefaultAttributesHandler.lastRequested.writeBehind.capacity", 100000);
+
+  /**
+   * The count of lastRequested attribute updates written out in one batch.
+   */
+  private static final int LAST_REQUEST_ATTRIBUTE_WRITE_BEHIND_BATCH_SIZE = SystemPropertiesHelper.getInteger(
+      "org.sonatype.nexus.proxy.attributes.DefaultAttributesHandler.lastRequested.writeBehind.batchSize", 500);
+
+  /**
+   * The period of flushing pending lastRequested attribute updates in milliseconds: 5 seconds.
+   */
+  private static final long LAST_REQUEST_ATTRIBUTE_WRITE_BEHIND_PERIOD = SystemPropertiesHelper.getLong(
+      "org.sonatype.nexus.proxy.attributes.DefaultAttributesHandler.lastRequested.writeBehind.period", 5000L);
+
   /**
    * The actual value of lastRequest attribute's resolution. Note: is not final due to UT access, see
    * setter method that is visible for testing.
@@ -100,12 +130,31 @@ public class DefaultAttributesHandler
    */
   private final List<StorageItemInspector> itemInspectorList;
 
+  private final EventBus eventBus;
+
+  /**
+   * The write-behind updater of lastRequested attribute, {@code null} if write-behind is disabled.
+   */
+  private final LastRequestedUpdater lastRequestedUpdater;
+
   @Inject
-  public DefaultAttributesHandler(@Named("ls") AttributeStorage attributeStorage,
-                                  List<StorageItemInspector> itemInspectorList)
+  public DefaultAttributesHandler(@Named("${nexus.attributeStorage:-ls}") AttributeStorage attributeStorage,
+                                  List<StorageItemInspector> itemInspectorList,
+                                  EventBus eventBus)
   {
     this.attributeStorage = checkNotNull(attributeStorage);
     this.itemInspectorList = checkNotNull(itemInspectorList);
+    this.eventBus = checkNotNull(eventBus);
+    if (LAST_REQUEST_ATTRIBUTE_WRITE_BEHIND) {
+      this.lastRequestedUpdater = new LastRequestedUpdater(attributeStorage,
+          LAST_REQUEST_ATTRIBUTE_WRITE_BEHIND_CAPACITY, LAST_REQUEST_ATTRIBUTE_WRITE_BEHIND_BATCH_SIZE,
+          LAST_REQUEST_ATTRIBUTE_WRITE_BEHIND_PERIOD);
+      this.lastRequestedUpdater.start();
+      eventBus.register(this);
+    }
+    else {
+      this.lastRequestedUpdater = null;
+    }
   }
 
   // ==
@@ -128,6 +177,22 @@ public class DefaultAttributesHandler
     return itemInspectorList;
   }
 
+  /**
+   * Gets the write-behind updater of lastRequested attribute.
+   *
+   * @return the updater or {@code null} if write-behind is disabled.
+   * @since 3.0
+   */
+  public LastRequestedUpdater getLastRequestedUpdater() {
+    return lastRequestedUpdater;
+  }
+
+  @Subscribe
+  public void on(final NexusStoppedEvent e) {
+    eventBus.unregister(this);
+    lastRequestedUpdater.stop();
+  }
+
   // ======================================================================
   // AttributesHandler iface
 
@@ -292,7 +357,13 @@ public class DefaultAttributesHandler
         if (diff < 0 || ((diff > 0) && (diff > lastRequestedResolution))) {
           attributes.setLastRequested(timestamp);
 
-          getAttributeStorage().putAttributes(uid, attributes);
+          if (lastRequestedUpdater != null) {
+            // queued touches are coalesced and written out in background
+            lastRequestedUpdater.offer(uid, timestamp);
+          }
+          else {
+            getAttributeStorage().putAttributes(uid, attributes);
+          }
         }
       }
     }
@@ -48,7 +48,7 @@ public class DefaultLSAttributeStorage
     extends AbstractAttributeStorage
     implements AttributeStorage
 {
-  private static final String ATTRIBUTE_PATH_PREFIX = "/.nexus/attributes";
+  public static final String ATTRIBUTE_PATH_PREFIX = "/.nexus/attributes";
 
   private final Marshaller marshaller;
 
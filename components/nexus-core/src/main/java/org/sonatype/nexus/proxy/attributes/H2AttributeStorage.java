@@ -0,0 +1,385 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.attributes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.enterprise.inject.Typed;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.configuration.application.ApplicationDirectories;
+import org.sonatype.nexus.proxy.access.Action;
+import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.RepositoryItemUidLock;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.eventbus.Subscribe;
+import org.h2.jdbcx.JdbcConnectionPool;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * AttributeStorage implementation that keeps attributes of each repository in a single embedded H2 database (one per
+ * repository, in {@code db/attributes} work directory), instead of one file per item. Attributes are keyed by item
+ * path, so point lookups are primary key lookups, and the path ordered index allows range scans by path prefix. The
+ * database page cache size (in KB, per repository) is set with {@code
+ * org.sonatype.nexus.proxy.attributes.H2AttributeStorage.cacheSize} system property.
+ *
+ * @since 3.0
+ */
+@Typed({AttributeStorage.class, OrderedAttributeStorage.class})
+@Named("h2")
+@Singleton
+public class H2AttributeStorage
+    extends AbstractAttributeStorage
+    implements OrderedAttributeStorage
+{
+  private static final int CACHE_SIZE = SystemPropertiesHelper.getInteger(
+      H2AttributeStorage.class.getName() + ".cacheSize", 16384);
+
+  private static final int MAX_CONNECTIONS = SystemPropertiesHelper.getInteger(
+      H2AttributeStorage.class.getName() + ".maxConnections", 20);
+
+  private static final String CREATE_TABLE =
+      "CREATE TABLE IF NOT EXISTS attributes (path VARCHAR PRIMARY KEY, data VARBINARY NOT NULL)";
+
+  private static final String SELECT = "SELECT data FROM attributes WHERE path = ?";
+
+  private static final String SELECT_RANGE =
+      "SELECT path, data FROM attributes WHERE path = ? OR (path >= ? AND path < ?) ORDER BY path";
+
+  private static final String MERGE = "MERGE INTO attributes (path, data) KEY (path) VALUES (?, ?)";
+
+  private static final String DELETE = "DELETE FROM attributes WHERE path = ?";
+
+  private final File baseDir;
+
+  private final EventBus eventBus;
+
+  private final Marshaller marshaller;
+
+  private final ConcurrentMap<String, JdbcConnectionPool> pools;
+
+  @Inject
+  public H2AttributeStorage(final ApplicationDirectories applicationDirectories, final EventBus eventBus) {
+    this(applicationDirectories.getWorkDirectory("db/attributes"), eventBus, new JacksonJSONMarshaller());
+  }
+
+  public H2AttributeStorage(final File baseDir, final EventBus eventBus, final Marshaller marshaller) {
+    this.baseDir = checkNotNull(baseDir);
+    this.eventBus = checkNotNull(eventBus);
+    this.marshaller = checkNotNull(marshaller);
+    this.pools = new ConcurrentHashMap<String, JdbcConnectionPool>();
+    eventBus.register(this);
+    log.info("H2 AttributeStorage in place, using {} marshaller, databases in {}.", marshaller, baseDir);
+  }
+
+  @Subscribe
+  public void on(final RepositoryRegistryEventRemove e) {
+    close(e.getRepository().getId());
+  }
+
+  @Subscribe
+  public void on(final NexusStoppedEvent e) {
+    eventBus.unregister(this);
+    for (String repositoryId : pools.keySet()) {
+      close(repositoryId);
+    }
+  }
+
+  // == AttributeStorage
+
+  @Override
+  public Attributes getAttributes(final RepositoryItemUid uid)
+      throws IOException
+  {
+    final RepositoryItemUidLock uidLock = uid.getLock();
+
+    uidLock.lock(Action.read);
+
+    try {
+      if (log.isDebugEnabled()) {
+        log.debug("Loading attributes on UID=" + uid.toString());
+      }
+
+      try (Connection connection = getConnection(uid.getRepository())) {
+        return doGetAttributes(connection, uid.getRepository(), uid.getPath());
+      }
+    }
+    catch (SQLException e) {
+      throw new IOException("Cannot load attributes of UID=" + uid, e);
+    }
+    finally {
+      uidLock.unlock();
+    }
+  }
+
+  @Override
+  public void putAttributes(final RepositoryItemUid uid, Attributes attributes)
+      throws IOException
+  {
+    final RepositoryItemUidLock uidLock = uid.getLock();
+
+    uidLock.lock(Action.create);
+
+    try {
+      if (log.isDebugEnabled()) {
+        log.debug("Storing attributes on UID=" + uid.toString());
+      }
+
+      try (Connection connection = getConnection(uid.getRepository())) {
+        final Attributes stored = doGetAttributes(connection, uid.getRepository(), uid.getPath());
+
+        if (stored != null && (stored.getGeneration() > attributes.getGeneration())) {
+          // change detected, overlay the to be saved onto the newer one and swap
+          stored.overlayAttributes(attributes);
+
+          // and overlay other things too
+          stored.setRepositoryId(uid.getRepository().getId());
+          stored.setPath(uid.getPath());
+          stored.setReadable(attributes.isReadable());
+          stored.setWritable(attributes.isWritable());
+
+          attributes = stored;
+        }
+
+        attributes.incrementGeneration();
+
+        try (PreparedStatement statement = connection.prepareStatement(MERGE)) {
+          statement.setString(1, uid.getPath());
+          statement.setBytes(2, marshal(attributes));
+          statement.executeUpdate();
+        }
+      }
+    }
+    catch (SQLException e) {
+      throw new IOException("Cannot store attributes of UID=" + uid, e);
+    }
+    finally {
+      uidLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean deleteAttributes(final RepositoryItemUid uid)
+      throws IOException
+  {
+    final RepositoryItemUidLock uidLock = uid.getLock();
+
+    uidLock.lock(Action.delete);
+
+    try {
+      if (log.isDebugEnabled()) {
+        log.debug("Deleting attributes on UID=" + uid.toString());
+      }
+
+      try (Connection connection = getConnection(uid.getRepository());
+           PreparedStatement statement = connection.prepareStatement(DELETE)) {
+        statement.setString(1, uid.getPath());
+        return statement.executeUpdate() > 0;
+      }
+    }
+    catch (SQLException e) {
+      throw new IOException("Cannot delete attributes of UID=" + uid, e);
+    }
+    finally {
+      uidLock.unlock();
+    }
+  }
+
+  // == OrderedAttributeStorage
+
+  /**
+   * Stores the attributes in one transaction per repository. No UID locking nor generation checks are done, the
+   * passed in attributes simply replace the stored ones, hence this method is meant for bulk operations like imports.
+   */
+  @Override
+  public void putAttributes(final Map<RepositoryItemUid, Attributes> attributes)
+      throws IOException
+  {
+    final ListMultimap<Repository, Map.Entry<RepositoryItemUid, Attributes>> byRepository =
+        LinkedListMultimap.create();
+    for (Map.Entry<RepositoryItemUid, Attributes> entry : attributes.entrySet()) {
+      byRepository.put(entry.getKey().getRepository(), entry);
+    }
+
+    for (Repository repository : byRepository.keySet()) {
+      try (Connection connection = getConnection(repository)) {
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(MERGE)) {
+          for (Map.Entry<RepositoryItemUid, Attributes> entry : byRepository.get(repository)) {
+            entry.getValue().incrementGeneration();
+            statement.setString(1, entry.getKey().getPath());
+            statement.setBytes(2, marshal(entry.getValue()));
+            statement.addBatch();
+          }
+          statement.executeBatch();
+          connection.commit();
+        }
+        catch (SQLException | IOException e) {
+          connection.rollback();
+          throw e;
+        }
+      }
+      catch (SQLException e) {
+        throw new IOException("Cannot store attributes batch in repository " + repository.getId(), e);
+      }
+    }
+  }
+
+  @Override
+  public void scanAttributes(final Repository repository, final String pathPrefix, final AttributesVisitor visitor)
+      throws IOException
+  {
+    // path itself, or anything below it: ['/' + prefix + '/', '/' + prefix + '0'), as '0' follows '/'
+    String prefix = pathPrefix.startsWith(RepositoryItemUid.PATH_SEPARATOR) ? pathPrefix
+        : RepositoryItemUid.PATH_SEPARATOR + pathPrefix;
+    if (prefix.endsWith(RepositoryItemUid.PATH_SEPARATOR)) {
+      prefix = prefix.substring(0, prefix.length() - 1);
+    }
+
+    try (Connection connection = getConnection(repository);
+         PreparedStatement statement = connection.prepareStatement(SELECT_RANGE)) {
+      statement.setString(1, prefix);
+      statement.setString(2, prefix + "/");
+      statement.setString(3, prefix + "0");
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          final String path = resultSet.getString(1);
+          final Attributes attributes = unmarshal(repository, path, resultSet.getBytes(2));
+          if (attributes != null && !visitor.visit(path, attributes)) {
+            break;
+          }
+        }
+      }
+    }
+    catch (SQLException e) {
+      throw new IOException("Cannot scan attributes in repository " + repository.getId() + " below " + pathPrefix,
+          e);
+    }
+  }
+
+  // ==
+
+  protected Attributes doGetAttributes(final Connection connection, final Repository repository, final String path)
+      throws SQLException, IOException
+  {
+    try (PreparedStatement statement = connection.prepareStatement(SELECT)) {
+      statement.setString(1, path);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        if (resultSet.next()) {
+          return unmarshal(repository, path, resultSet.getBytes(1));
+        }
+        return null;
+      }
+    }
+  }
+
+  protected byte[] marshal(final Attributes attributes)
+      throws IOException
+  {
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    marshaller.marshal(attributes, bos);
+    return bos.toByteArray();
+  }
+
+  protected Attributes unmarshal(final Repository repository, final String path, final byte[] data)
+      throws IOException
+  {
+    final Attributes result;
+    try {
+      result = marshaller.unmarshal(new ByteArrayInputStream(data));
+    }
+    catch (InvalidInputException e) {
+      log.info("Attributes of {}:{} are corrupt, ignoring them.", repository.getId(), path);
+      return null;
+    }
+
+    result.setRepositoryId(repository.getId());
+    result.setPath(path);
+
+    // fixing remoteChecked
+    if (result.getCheckedRemotely() == 0 || result.getCheckedRemotely() == 1) {
+      result.setCheckedRemotely(System.currentTimeMillis());
+      result.setExpired(true);
+    }
+
+    // fixing lastRequested
+    if (result.getLastRequested() == 0) {
+      result.setLastRequested(System.currentTimeMillis());
+    }
+
+    return result;
+  }
+
+  protected Connection getConnection(final Repository repository)
+      throws SQLException
+  {
+    JdbcConnectionPool pool = pools.get(repository.getId());
+    if (pool == null) {
+      synchronized (pools) {
+        pool = pools.get(repository.getId());
+        if (pool == null) {
+          pool = open(repository.getId());
+          pools.put(repository.getId(), pool);
+        }
+      }
+    }
+    return pool.getConnection();
+  }
+
+  private JdbcConnectionPool open(final String repositoryId)
+      throws SQLException
+  {
+    final File file = new File(new File(baseDir, repositoryId), "attributes");
+    final JdbcConnectionPool pool = JdbcConnectionPool.create(
+        "jdbc:h2:" + file.getAbsolutePath() + ";MVCC=TRUE;CACHE_SIZE=" + CACHE_SIZE, "sa", "");
+    pool.setMaxConnections(MAX_CONNECTIONS);
+    try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute(CREATE_TABLE);
+    }
+    catch (SQLException e) {
+      pool.dispose();
+      throw e;
+    }
+    log.debug("Opened attributes database of repository {} in {}", repositoryId, file);
+    return pool;
+  }
+
+  private void close(final String repositoryId) {
+    final JdbcConnectionPool pool = pools.remove(repositoryId);
+    if (pool != null) {
+      pool.dispose();
+      log.debug("Closed attributes database of repository {}", repositoryId);
+    }
+  }
+}
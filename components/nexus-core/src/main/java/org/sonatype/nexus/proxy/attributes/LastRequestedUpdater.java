@@ -0,0 +1,235 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.attributes;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Write-behind updater of "lastRequested" item attribute. Touches are queued and coalesced per UID (latest timestamp
+ * wins), and are written to {@link AttributeStorage} in batches by a background thread, so threads serving content do
+ * not pay for attribute rewrites. The queue is bounded: when full, touches of not yet queued UIDs are dropped, as
+ * "lastRequested" is a coarse attribute anyway (see resolution in {@link DefaultAttributesHandler}). Queue depth,
+ * coalesced, dropped and failed touches and flush times are published as metrics.
+ *
+ * @since 3.0
+ */
+public class LastRequestedUpdater
+    extends ComponentSupport
+{
+  private final AttributeStorage attributeStorage;
+
+  private final int capacity;
+
+  private final int batchSize;
+
+  private final long flushPeriodMillis;
+
+  private final ConcurrentMap<String, PendingTouch> pending;
+
+  private final AtomicInteger pendingCount;
+
+  private final Counter queued;
+
+  private final Counter coalesced;
+
+  private final Counter dropped;
+
+  private final Counter written;
+
+  private final Counter failed;
+
+  private final Timer flushes;
+
+  private ScheduledExecutorService executor;
+
+  public LastRequestedUpdater(final AttributeStorage attributeStorage, final int capacity, final int batchSize,
+                              final long flushPeriodMillis)
+  {
+    checkArgument(capacity > 0, "Capacity must be positive");
+    checkArgument(batchSize > 0, "Batch size must be positive");
+    checkArgument(flushPeriodMillis > 0, "Flush period must be positive");
+    this.attributeStorage = checkNotNull(attributeStorage);
+    this.capacity = capacity;
+    this.batchSize = batchSize;
+    this.flushPeriodMillis = flushPeriodMillis;
+    this.pending = new ConcurrentHashMap<String, PendingTouch>();
+    this.pendingCount = new AtomicInteger(0);
+
+    final MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate("nexus");
+    this.queued = metricRegistry.counter(MetricRegistry.name(LastRequestedUpdater.class, "queued"));
+    this.coalesced = metricRegistry.counter(MetricRegistry.name(LastRequestedUpdater.class, "coalesced"));
+    this.dropped = metricRegistry.counter(MetricRegistry.name(LastRequestedUpdater.class, "dropped"));
+    this.written = metricRegistry.counter(MetricRegistry.name(LastRequestedUpdater.class, "written"));
+    this.failed = metricRegistry.counter(MetricRegistry.name(LastRequestedUpdater.class, "failed"));
+    this.flushes = metricRegistry.timer(MetricRegistry.name(LastRequestedUpdater.class, "flush"));
+    final String depthName = MetricRegistry.name(LastRequestedUpdater.class, "depth");
+    metricRegistry.remove(depthName);
+    metricRegistry.register(depthName, new Gauge<Integer>()
+    {
+      @Override
+      public Integer getValue() {
+        return pendingCount.get();
+      }
+    });
+  }
+
+  public synchronized void start() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadScheduledExecutor(
+          new NexusThreadFactory("lastreq", "LastRequested Updater", Thread.NORM_PRIORITY, true));
+      executor.scheduleWithFixedDelay(new Runnable()
+      {
+        @Override
+        public void run() {
+          flush();
+        }
+      }, flushPeriodMillis, flushPeriodMillis, TimeUnit.MILLISECONDS);
+      log.debug("Started, capacity={}, batchSize={}, flushPeriod={}ms", capacity, batchSize, flushPeriodMillis);
+    }
+  }
+
+  /**
+   * Stops background flushing, and flushes all the pending touches in caller thread.
+   */
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdown();
+      try {
+        executor.awaitTermination(flushPeriodMillis, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      executor = null;
+      flush();
+      log.debug("Stopped");
+    }
+  }
+
+  /**
+   * Queues the touch of "lastRequested" attribute of given UID. Returns {@code false} if touch was dropped due to
+   * full queue.
+   */
+  public boolean offer(final RepositoryItemUid uid, final long timestamp) {
+    final String key = uid.getKey();
+    final PendingTouch touch = new PendingTouch(uid, timestamp);
+    while (true) {
+      final PendingTouch existing = pending.get(key);
+      if (existing != null) {
+        if (pending.replace(key, existing, touch)) {
+          coalesced.inc();
+          return true;
+        }
+      }
+      else {
+        if (pendingCount.get() >= capacity) {
+          dropped.inc();
+          return false;
+        }
+        if (pending.putIfAbsent(key, touch) == null) {
+          pendingCount.incrementAndGet();
+          queued.inc();
+          return true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the count of touches waiting to be written.
+   */
+  public int getPendingCount() {
+    return pendingCount.get();
+  }
+
+  /**
+   * Writes out all the pending touches in batches. Returns the count of touches processed.
+   */
+  public int flush() {
+    int result = 0;
+    final Timer.Context context = flushes.time();
+    try {
+      final List<PendingTouch> batch = Lists.newArrayListWithCapacity(batchSize);
+      for (Map.Entry<String, PendingTouch> entry : pending.entrySet()) {
+        // if touch was coalesced meanwhile, newer one is left for next flush
+        if (pending.remove(entry.getKey(), entry.getValue())) {
+          pendingCount.decrementAndGet();
+          batch.add(entry.getValue());
+          if (batch.size() == batchSize) {
+            result += write(batch);
+            batch.clear();
+          }
+        }
+      }
+      result += write(batch);
+    }
+    finally {
+      context.stop();
+    }
+    return result;
+  }
+
+  private int write(final List<PendingTouch> batch) {
+    for (PendingTouch touch : batch) {
+      try {
+        final Attributes attributes = attributeStorage.getAttributes(touch.uid);
+        // item might be deleted meanwhile
+        if (attributes != null && attributes.getLastRequested() != touch.timestamp) {
+          attributes.setLastRequested(touch.timestamp);
+          attributeStorage.putAttributes(touch.uid, attributes);
+        }
+        written.inc();
+      }
+      catch (Exception e) {
+        failed.inc();
+        log.debug("Could not update lastRequested attribute of {}", touch.uid, e);
+      }
+    }
+    return batch.size();
+  }
+
+  // ==
+
+  private static class PendingTouch
+  {
+    private final RepositoryItemUid uid;
+
+    private final long timestamp;
+
+    private PendingTouch(final RepositoryItemUid uid, final long timestamp) {
+      this.uid = uid;
+      this.timestamp = timestamp;
+    }
+  }
+}
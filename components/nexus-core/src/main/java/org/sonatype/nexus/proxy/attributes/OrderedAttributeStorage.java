@@ -0,0 +1,61 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.attributes;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.repository.Repository;
+
+/**
+ * AttributeStorage that keeps attributes ordered by item path, hence allows range scans by path prefix (for walkers,
+ * eviction and similar tasks) and batched writes.
+ *
+ * @since 3.0
+ */
+public interface OrderedAttributeStorage
+    extends AttributeStorage
+{
+  /**
+   * Puts all the attributes in one batch.
+   *
+   * @param attributes the attributes to store, keyed by UID.
+   * @throws IOException in case of IO problem.
+   */
+  void putAttributes(Map<RepositoryItemUid, Attributes> attributes)
+      throws IOException;
+
+  /**
+   * Scans the attributes of given repository in path order, for items on given path and below it.
+   *
+   * @param repository the repository to scan.
+   * @param pathPrefix the path to scan, "/" scans whole repository.
+   * @param visitor    the visitor to invoke with attributes found.
+   * @throws IOException in case of IO problem.
+   */
+  void scanAttributes(Repository repository, String pathPrefix, AttributesVisitor visitor)
+      throws IOException;
+
+  /**
+   * Visitor of scanned attributes.
+   */
+  interface AttributesVisitor
+  {
+    /**
+     * Visits attributes of item on given path. Returns {@code false} to stop the scan.
+     */
+    boolean visit(String path, Attributes attributes)
+        throws IOException;
+  }
+}
@@ -13,13 +13,13 @@
 package org.sonatype.nexus.proxy.attributes.inspectors;
 
 import java.io.InputStream;
-import java.security.MessageDigest;
+import java.util.Map;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.sonatype.nexus.proxy.attributes.AbstractStorageItemInspector;
-import org.sonatype.nexus.proxy.item.ChecksummingContentLocator;
+import org.sonatype.nexus.proxy.item.DigestingContentLocator;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.util.io.StreamSupport;
@@ -27,8 +27,9 @@ import org.sonatype.nexus.util.io.StreamSupport;
 import static com.google.common.io.ByteStreams.nullOutputStream;
 
 /**
- * The Class DigestCalculatingInspector calculates MD5 and SHA1 digests of a file and stores them into extended
- * attributes.
+ * The Class DigestCalculatingInspector calculates MD5 and SHA1 (and optionally SHA-256 and SHA-512) digests of a
+ * file and stores them into extended attributes. Usually the digests are calculated while the file is being stored,
+ * see {@link DigestingContentLocator}, and are just lifted from item context.
  *
  * @author cstamas
  */
@@ -73,14 +74,9 @@ public class DigestCalculatingInspector
   {
     if (item instanceof StorageFileItem) {
       final StorageFileItem file = (StorageFileItem) item;
-      final ChecksummingContentLocator sha1cl =
-          new ChecksummingContentLocator(file.getContentLocator(), MessageDigest.getInstance("SHA1"),
-              StorageFileItem.DIGEST_SHA1_KEY, item.getItemContext());
-      // md5 is deprecated but still calculated
-      ChecksummingContentLocator md5cl =
-          new ChecksummingContentLocator(sha1cl, MessageDigest.getInstance("MD5"),
-              StorageFileItem.DIGEST_MD5_KEY, item.getItemContext());
-      try (final InputStream is = md5cl.getContent()) {
+      final DigestingContentLocator digestingContentLocator =
+          new DigestingContentLocator(file.getContentLocator(), item.getItemContext());
+      try (final InputStream is = digestingContentLocator.getContent()) {
         StreamSupport.copy(is, nullOutputStream(), StreamSupport.BUFFER_SIZE);
       }
       // we made sure that above operations will make values into context
@@ -97,6 +93,13 @@ public class DigestCalculatingInspector
       // do this one "blindly"
       item.getRepositoryItemAttributes().put(DIGEST_MD5_KEY,
           String.valueOf(item.getItemContext().get(StorageFileItem.DIGEST_MD5_KEY)));
+      // optional ones, if enabled and present
+      for (Map.Entry<String, String> entry : DigestingContentLocator.getDigestAlgorithms().entrySet()) {
+        final String key = entry.getKey();
+        if (!DIGEST_SHA1_KEY.equals(key) && !DIGEST_MD5_KEY.equals(key) && item.getItemContext().containsKey(key)) {
+          item.getRepositoryItemAttributes().put(key, String.valueOf(item.getItemContext().get(key)));
+        }
+      }
       // we did our job, those were in context
       return true;
     }
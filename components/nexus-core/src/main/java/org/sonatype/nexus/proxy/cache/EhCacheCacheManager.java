@@ -12,20 +12,31 @@
  */
 package org.sonatype.nexus.proxy.cache;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 
 import com.google.common.eventbus.Subscribe;
+import net.sf.ehcache.config.CacheConfiguration;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * The Class EhCacheCacheManager is a thin wrapper around EhCache, just to make things going.
+ * The Class EhCacheCacheManager is a thin wrapper around EhCache, just to make things going. By default, it hands
+ * out {@link TriePathCache} instances (one per repository) instead of EhCache backed ones, as those support
+ * subtree removal without scanning all the keys of all the repositories. The path caches share the bound, default
+ * time to live and time to idle of the {@value #SINGLE_PATH_CACHE_NAME} cache configured in {@code ehcache.xml}, so the
+ * bound applies to the paths of all repositories together, as with EhCache backed path caches. Set
+ * {@code org.sonatype.nexus.proxy.cache.EhCacheCacheManager.triePathCache} system property to {@code false} to use
+ * EhCache backed path caches.
  *
  * @author cstamas
  */
@@ -35,17 +46,44 @@ public class EhCacheCacheManager
     extends ComponentSupport
     implements CacheManager
 {
+  private static final boolean TRIE_PATH_CACHE = SystemPropertiesHelper.getBoolean(
+      EhCacheCacheManager.class.getName() + ".triePathCache", true);
+
   private final net.sf.ehcache.CacheManager cacheManager;
 
+  private final ConcurrentMap<String, TriePathCache> triePathCaches;
+
+  /**
+   * The bound shared by all the {@link TriePathCache}s.
+   */
+  private TriePathCache.Bound triePathCachesBound;
+
+  private int triePathCacheDefaultTtl;
+
+  private int triePathCacheTti;
+
   public static final String SINGLE_PATH_CACHE_NAME = "nx-repository-path-cache";
 
   @Inject
   public EhCacheCacheManager(final EventBus eventBus, final net.sf.ehcache.CacheManager cacheManager) {
     eventBus.register(this);
     this.cacheManager = checkNotNull(cacheManager);
+    this.triePathCaches = new ConcurrentHashMap<String, TriePathCache>();
   }
 
   public synchronized PathCache getPathCache(String cache) {
+    if (TRIE_PATH_CACHE) {
+      TriePathCache pathCache = triePathCaches.get(cache);
+      if (pathCache == null) {
+        if (triePathCaches.isEmpty()) {
+          configureTriePathCaches();
+        }
+        pathCache = new TriePathCache(cache, triePathCachesBound, triePathCacheDefaultTtl, triePathCacheTti);
+        triePathCaches.put(cache, pathCache);
+      }
+      return pathCache;
+    }
+
     if (!cacheManager.cacheExists(SINGLE_PATH_CACHE_NAME)) {
       cacheManager.addCache(SINGLE_PATH_CACHE_NAME);
     }
@@ -53,8 +91,36 @@ public class EhCacheCacheManager
     return new EhCachePathCache(cache, cacheManager.getEhcache(SINGLE_PATH_CACHE_NAME));
   }
 
+  /**
+   * Takes the limits of trie path caches from {@value #SINGLE_PATH_CACHE_NAME} cache configuration, if configured.
+   */
+  private void configureTriePathCaches() {
+    int maxSize = 100000;
+    int defaultTtl = 120;
+    int tti = 120;
+    if (cacheManager.cacheExists(SINGLE_PATH_CACHE_NAME)) {
+      final CacheConfiguration config = cacheManager.getEhcache(SINGLE_PATH_CACHE_NAME).getCacheConfiguration();
+      if (config.getMaxElementsInMemory() > 0) {
+        maxSize = config.getMaxElementsInMemory();
+      }
+      defaultTtl = (int) config.getTimeToLiveSeconds();
+      tti = (int) config.getTimeToIdleSeconds();
+    }
+    triePathCachesBound = new TriePathCache.Bound(
+        SystemPropertiesHelper.getInteger(TriePathCache.class.getName() + ".maxSize", maxSize));
+    triePathCacheDefaultTtl = SystemPropertiesHelper.getInteger(
+        TriePathCache.class.getName() + ".defaultTimeToLive", defaultTtl);
+    triePathCacheTti = SystemPropertiesHelper.getInteger(TriePathCache.class.getName() + ".timeToIdle", tti);
+    log.debug("NFC max size: {} paths, default TTL: {}s, TTI: {}s", triePathCachesBound.getMaxSize(),
+        triePathCacheDefaultTtl, triePathCacheTti);
+  }
+
   @Subscribe
   public void on(final NexusStoppedEvent event) {
+    for (TriePathCache pathCache : triePathCaches.values()) {
+      pathCache.purge();
+    }
+    triePathCaches.clear();
     cacheManager.shutdown();
   }
 }
@@ -0,0 +1,603 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * {@link PathCache} of one repository backed by a concurrent path trie. Every node keeps the count of entries in its
+ * subtree, so {@link #removeWithChildren(String)} (detaching a subtree) and {@link #removeWithParents(String)} cost is
+ * proportional to path depth, not to cache size. Lookups are lock free and are fronted by an approximate membership
+ * filter, so most of the negative lookups do not even walk the trie, while modifications are serialized (they are
+ * O(depth) too). Caches may share their {@link Bound}: the maximum size applies to all the paths cached by caches
+ * sharing it. When full, paths are evicted across all the caches sharing the bound in approximate LRU order (expired
+ * paths first met are evicted regardless of use), as with EHCache. Paths not looked up for the time to idle expire
+ * before their time to live, as with EHCache.
+ *
+ * @since 3.0
+ */
+public class TriePathCache
+    implements PathCache
+{
+  private static final Logger log = LoggerFactory.getLogger(TriePathCache.class);
+
+  private final String repositoryId;
+
+  private final Bound bound;
+
+  private final long defaultTimeToLiveMillis;
+
+  private final long timeToIdleMillis;
+
+  private final Node root;
+
+  private final AtomicLong hits;
+
+  private final AtomicLong misses;
+
+  private volatile MembershipFilter filter;
+
+  /**
+   * @param repositoryId           the ID of repository this cache belongs to.
+   * @param maxSize                the maximum count of cached paths.
+   * @param defaultTimeToLiveSecs  the time to live of paths put without explicit expiration (-1).
+   */
+  public TriePathCache(final String repositoryId, final int maxSize, final int defaultTimeToLiveSecs) {
+    this(repositoryId, new Bound(maxSize), defaultTimeToLiveSecs, 0);
+  }
+
+  /**
+   * @param repositoryId           the ID of repository this cache belongs to.
+   * @param bound                  the bound shared by the caches.
+   * @param defaultTimeToLiveSecs  the time to live of paths put without explicit expiration (-1).
+   * @param timeToIdleSecs         the time after last lookup a path expires, 0 means no idle expiration.
+   */
+  public TriePathCache(final String repositoryId, final Bound bound, final int defaultTimeToLiveSecs,
+                       final int timeToIdleSecs)
+  {
+    this.repositoryId = checkNotNull(repositoryId);
+    this.bound = checkNotNull(bound);
+    this.defaultTimeToLiveMillis = defaultTimeToLiveSecs * 1000L;
+    this.timeToIdleMillis = timeToIdleSecs * 1000L;
+    this.root = new Node(null);
+    this.hits = new AtomicLong();
+    this.misses = new AtomicLong();
+    this.filter = new MembershipFilter(MembershipFilter.MIN_CAPACITY);
+  }
+
+  public String getRepositoryId() {
+    return repositoryId;
+  }
+
+  @Override
+  public boolean contains(final String path) {
+    final String[] segments = segments(path);
+    if (!filter.mightContain(segments)) {
+      misses.incrementAndGet();
+      return false;
+    }
+    final Node node = find(segments);
+    final Entry entry = node != null ? node.entry : null;
+    if (entry == null) {
+      misses.incrementAndGet();
+      return false;
+    }
+    final long now = System.currentTimeMillis();
+    if (entry.isExpired(now)) {
+      misses.incrementAndGet();
+      removeEntry(entry);
+      return false;
+    }
+    entry.accessed(now);
+    hits.incrementAndGet();
+    return true;
+  }
+
+  @Override
+  public boolean isExpired(final String path) {
+    final Node node = find(segments(path));
+    final Entry entry = node != null ? node.entry : null;
+    return entry != null && entry.isExpired(System.currentTimeMillis());
+  }
+
+  @Override
+  public void put(final String path, final Object element) {
+    put(path, element, -1);
+  }
+
+  /**
+   * Puts the path into cache. Expiration is in seconds, 0 means the path never expires, negative value means default
+   * time to live, same as with EHCache based implementation. If the bound is reached, paths are evicted before a new
+   * path is cached. Eviction happens while not holding the lock of this cache, as the evicted paths may belong to
+   * other caches.
+   */
+  @Override
+  public void put(final String path, final Object element, final int expirationSeconds) {
+    final String[] segments = segments(path);
+    final Node existing = find(segments);
+    if (existing == null || existing.entry == null) {
+      bound.makeRoom();
+    }
+    putEntry(segments, element, expirationSeconds);
+  }
+
+  private synchronized void putEntry(final String[] segments, final Object element, final int expirationSeconds) {
+    final long expiresAt;
+    if (expirationSeconds > 0) {
+      expiresAt = System.currentTimeMillis() + expirationSeconds * 1000L;
+    }
+    else if (expirationSeconds == 0) {
+      expiresAt = Long.MAX_VALUE;
+    }
+    else {
+      expiresAt = System.currentTimeMillis() + defaultTimeToLiveMillis;
+    }
+    final Entry entry =
+        new Entry(this, segments, element, expiresAt, expiresAt == Long.MAX_VALUE ? 0 : timeToIdleMillis);
+
+    final Node[] nodes = walk(segments, true);
+    final Node node = nodes[segments.length];
+    final boolean added = node.entry == null;
+    node.entry = entry;
+    bound.enqueue(entry);
+    if (added) {
+      adjustCounts(nodes, segments.length, 1);
+      filter.add(segments);
+      if (filter.isSaturated()) {
+        rebuildFilter();
+      }
+    }
+  }
+
+  @Override
+  public synchronized boolean remove(final String path) {
+    final String[] segments = segments(path);
+    final Node[] nodes = walk(segments, false);
+    final Node node = nodes[segments.length];
+    if (node == null || node.entry == null) {
+      return false;
+    }
+    node.entry = null;
+    adjustCounts(nodes, segments.length, -1);
+    prune(nodes, segments);
+    return true;
+  }
+
+  @Override
+  public synchronized boolean removeWithParents(final String path) {
+    final String[] segments = segments(path);
+    final Node[] nodes = walk(segments, false);
+    boolean removed = false;
+    for (int depth = segments.length; depth >= 0; depth--) {
+      final Node node = nodes[depth];
+      if (node != null && node.entry != null) {
+        node.entry = null;
+        adjustCounts(nodes, depth, -1);
+        removed = true;
+      }
+    }
+    prune(nodes, segments);
+    return removed;
+  }
+
+  @Override
+  public synchronized boolean removeWithChildren(final String path) {
+    final String[] segments = segments(path);
+    if (segments.length == 0) {
+      return purge();
+    }
+    final Node[] nodes = walk(segments, false);
+    final Node node = nodes[segments.length];
+    if (node == null) {
+      return false;
+    }
+    final int count = node.count;
+    nodes[segments.length - 1].children.remove(segments[segments.length - 1], node);
+    adjustCounts(nodes, segments.length - 1, -count);
+    prune(nodes, segments);
+    return count > 0;
+  }
+
+  @Override
+  public synchronized boolean purge() {
+    final boolean removed = root.count > 0;
+    root.children.clear();
+    root.entry = null;
+    bound.size.addAndGet(-root.count);
+    root.count = 0;
+    filter = new MembershipFilter(MembershipFilter.MIN_CAPACITY);
+    return removed;
+  }
+
+  @Override
+  public CacheStatistics getStatistics() {
+    return new CacheStatistics(root.count, misses.get(), hits.get());
+  }
+
+  @Override
+  public Collection<String> listKeysInCache() {
+    final List<String> keys = new ArrayList<String>();
+    collectKeys(root, "", System.currentTimeMillis(), keys);
+    return keys;
+  }
+
+  // ==
+
+  private static String[] segments(final String path) {
+    final List<String> segments = new ArrayList<String>();
+    int start = 0;
+    final int length = path.length();
+    while (start < length) {
+      int end = path.indexOf('/', start);
+      if (end == -1) {
+        end = length;
+      }
+      if (end > start) {
+        segments.add(path.substring(start, end));
+      }
+      start = end + 1;
+    }
+    return segments.toArray(new String[segments.size()]);
+  }
+
+  private Node find(final String[] segments) {
+    Node node = root;
+    for (int i = 0; i < segments.length && node != null; i++) {
+      node = node.children.get(segments[i]);
+    }
+    return node;
+  }
+
+  /**
+   * Returns the nodes along given path (root at index 0), creating missing ones if asked for, otherwise missing nodes
+   * are {@code null}. Must be called while holding the lock.
+   */
+  private Node[] walk(final String[] segments, final boolean create) {
+    final Node[] nodes = new Node[segments.length + 1];
+    nodes[0] = root;
+    for (int i = 0; i < segments.length; i++) {
+      Node child = nodes[i].children.get(segments[i]);
+      if (child == null) {
+        if (!create) {
+          break;
+        }
+        child = new Node(segments[i]);
+        nodes[i].children.put(segments[i], child);
+      }
+      nodes[i + 1] = child;
+    }
+    return nodes;
+  }
+
+  /**
+   * Adjusts entry counts of nodes up to given depth (inclusive). Must be called while holding the lock.
+   */
+  private void adjustCounts(final Node[] nodes, final int depth, final int delta) {
+    for (int i = 0; i <= depth; i++) {
+      nodes[i].count += delta;
+    }
+    bound.size.addAndGet(delta);
+  }
+
+  /**
+   * Detaches the nodes along given path that have no entries in their subtree anymore. Must be called while holding
+   * the lock.
+   */
+  private static void prune(final Node[] nodes, final String[] segments) {
+    for (int depth = segments.length; depth > 0; depth--) {
+      final Node node = nodes[depth];
+      if (node != null && node.count == 0) {
+        nodes[depth - 1].children.remove(segments[depth - 1], node);
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if the entry is still cached, it was not removed nor replaced meanwhile.
+   */
+  private boolean isCached(final Entry entry) {
+    final Node node = find(entry.segments);
+    return node != null && node.entry == entry;
+  }
+
+  /**
+   * Removes the entry, if it is still cached.
+   */
+  private synchronized void removeEntry(final Entry entry) {
+    final Node[] nodes = walk(entry.segments, false);
+    final Node node = nodes[entry.segments.length];
+    // might be replaced meanwhile
+    if (node != null && node.entry == entry) {
+      node.entry = null;
+      adjustCounts(nodes, entry.segments.length, -1);
+      prune(nodes, entry.segments);
+    }
+  }
+
+  /**
+   * Rebuilds membership filter sized for current content, as removed paths are never removed from filter, and it
+   * would saturate over time. Must be called while holding the lock.
+   */
+  private void rebuildFilter() {
+    final MembershipFilter rebuilt = new MembershipFilter(Math.max(MembershipFilter.MIN_CAPACITY, root.count * 2));
+    addToFilter(rebuilt, root, new ArrayList<String>());
+    filter = rebuilt;
+  }
+
+  private static void addToFilter(final MembershipFilter filter, final Node node, final List<String> segments) {
+    if (node.entry != null) {
+      filter.add(segments.toArray(new String[segments.size()]));
+    }
+    for (Node child : node.children.values()) {
+      segments.add(child.name);
+      addToFilter(filter, child, segments);
+      segments.remove(segments.size() - 1);
+    }
+  }
+
+  private static void collectKeys(final Node node, final String key, final long now, final List<String> keys) {
+    final Entry entry = node.entry;
+    if (entry != null && !entry.isExpired(now)) {
+      keys.add(key);
+    }
+    for (Node child : node.children.values()) {
+      collectKeys(child, key.isEmpty() ? child.name : key + "/" + child.name, now, keys);
+    }
+  }
+
+  // ==
+
+  private static class Node
+  {
+    private final String name;
+
+    private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<String, Node>(4, 0.75f, 1);
+
+    private volatile Entry entry;
+
+    /**
+     * Count of entries in the subtree of this node (including this node). Modified only while holding the lock.
+     */
+    private volatile int count;
+
+    private Node(final String name) {
+      this.name = name;
+    }
+  }
+
+  private static class Entry
+  {
+    private final TriePathCache cache;
+
+    private final String[] segments;
+
+    private final Object element;
+
+    private final long expiresAt;
+
+    private final long timeToIdleMillis;
+
+    private volatile long lastAccess;
+
+    /**
+     * Whether the entry was looked up since it was (re)queued for eviction.
+     */
+    private volatile boolean referenced;
+
+    private Entry(final TriePathCache cache, final String[] segments, final Object element, final long expiresAt,
+                  final long timeToIdleMillis)
+    {
+      this.cache = cache;
+      this.segments = segments;
+      this.element = element;
+      this.expiresAt = expiresAt;
+      this.timeToIdleMillis = timeToIdleMillis;
+      this.lastAccess = System.currentTimeMillis();
+    }
+
+    private void accessed(final long now) {
+      if (timeToIdleMillis > 0) {
+        lastAccess = now;
+      }
+      if (!referenced) {
+        referenced = true;
+      }
+    }
+
+    private boolean isExpired(final long now) {
+      return now >= expiresAt || (timeToIdleMillis > 0 && now - lastAccess >= timeToIdleMillis);
+    }
+  }
+
+  /**
+   * Bound shared by caches: the maximum count of paths cached by all of them. Keeps the cached paths of all the caches
+   * in one queue, in order of caching, and evicts with second chance (CLOCK) algorithm, an approximation of LRU: paths
+   * looked up since queued are requeued once instead of evicted. Removed and replaced paths are dropped from the queue
+   * lazily, when met at its head. Both making room and queueing cost is amortized constant (plus the path depth of
+   * the paths met).
+   */
+  public static class Bound
+  {
+    private final int maxSize;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<Entry>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * @param maxSize the maximum count of paths cached by all the caches sharing the bound.
+     */
+    public Bound(final int maxSize) {
+      checkArgument(maxSize > 0, "Max size must be positive");
+      this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+      return maxSize;
+    }
+
+    /**
+     * Returns the count of paths cached by all the caches sharing the bound.
+     */
+    public int getSize() {
+      return size.get();
+    }
+
+    private void enqueue(final Entry entry) {
+      queue.offer(entry);
+      if (queued.incrementAndGet() > 2 * maxSize) {
+        // more than half of queued paths are removed ones, drop some as we queue one more
+        for (int i = 0; i < 2; i++) {
+          final Entry head = poll();
+          if (head != null && head.cache.isCached(head)) {
+            queue.offer(head);
+            queued.incrementAndGet();
+          }
+        }
+      }
+    }
+
+    private Entry poll() {
+      final Entry entry = queue.poll();
+      if (entry != null) {
+        queued.decrementAndGet();
+      }
+      return entry;
+    }
+
+    /**
+     * Evicts paths until there is room for one more path. Must be called while not holding lock of any cache.
+     */
+    private void makeRoom() {
+      final long now = System.currentTimeMillis();
+      // give second chance at most once per queued path, so eviction ends even if all the paths are looked up
+      int secondChances = queued.get();
+      while (size.get() >= maxSize) {
+        final Entry entry = poll();
+        if (entry == null) {
+          return;
+        }
+        if (!entry.cache.isCached(entry)) {
+          continue;
+        }
+        if (entry.referenced && secondChances-- > 0 && !entry.isExpired(now)) {
+          entry.referenced = false;
+          queue.offer(entry);
+          queued.incrementAndGet();
+          continue;
+        }
+        entry.cache.removeEntry(entry);
+        log.trace("NFC is full ({} paths), evicted a path of repository {}", maxSize, entry.cache.repositoryId);
+      }
+    }
+  }
+
+  /**
+   * Bloom filter of cached paths: says for sure if a path is not cached. Paths are never removed, so it needs to be
+   * rebuilt once more paths were added than it was sized for.
+   */
+  static class MembershipFilter
+  {
+    static final int MIN_CAPACITY = 1024;
+
+    private static final int BITS_PER_ENTRY = 10;
+
+    private static final int HASHES = 7;
+
+    private final int capacity;
+
+    private final int mask;
+
+    private final AtomicLongArray bits;
+
+    private final AtomicLong insertions;
+
+    MembershipFilter(final int capacity) {
+      this.capacity = capacity;
+      final int numBits = Integer.highestOneBit(Math.max(64, capacity * BITS_PER_ENTRY - 1)) << 1;
+      this.mask = numBits - 1;
+      this.bits = new AtomicLongArray(numBits / 64);
+      this.insertions = new AtomicLong();
+    }
+
+    void add(final String[] segments) {
+      final long hash = hash(segments);
+      final int h1 = (int) hash;
+      final int h2 = (int) (hash >>> 32) | 1;
+      for (int i = 0; i < HASHES; i++) {
+        final int bit = (h1 + i * h2) & mask;
+        final int index = bit >>> 6;
+        final long bitMask = 1L << bit;
+        long word;
+        do {
+          word = bits.get(index);
+        }
+        while ((word & bitMask) == 0 && !bits.compareAndSet(index, word, word | bitMask));
+      }
+      insertions.incrementAndGet();
+    }
+
+    boolean mightContain(final String[] segments) {
+      final long hash = hash(segments);
+      final int h1 = (int) hash;
+      final int h2 = (int) (hash >>> 32) | 1;
+      for (int i = 0; i < HASHES; i++) {
+        final int bit = (h1 + i * h2) & mask;
+        if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    boolean isSaturated() {
+      return insertions.get() > capacity;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of path segments (separated as in path).
+     */
+    private static long hash(final String[] segments) {
+      long hash = 0xcbf29ce484222325L;
+      for (String segment : segments) {
+        for (int i = 0; i < segment.length(); i++) {
+          hash ^= segment.charAt(i);
+          hash *= 0x100000001b3L;
+        }
+        hash ^= '/';
+        hash *= 0x100000001b3L;
+      }
+      // FNV low bits are weak for short keys, mix them
+      hash ^= hash >>> 33;
+      hash *= 0xff51afd7ed558ccdL;
+      hash ^= hash >>> 33;
+      return hash;
+    }
+  }
+}
@@ -35,6 +35,19 @@ public abstract class AbstractWrappingContentLocator
     return contentLocator;
   }
 
+  /**
+   * Returns the innermost content locator wrapped by passed in locator, or the locator itself if it does not wrap any.
+   *
+   * @since 3.0
+   */
+  public static ContentLocator unwrap(final ContentLocator contentLocator) {
+    ContentLocator result = contentLocator;
+    while (result instanceof AbstractWrappingContentLocator) {
+      result = ((AbstractWrappingContentLocator) result).getTarget();
+    }
+    return result;
+  }
+
   @Override
   public InputStream getContent() throws IOException {
     return getTarget().getContent();
@@ -26,7 +26,9 @@ import org.sonatype.nexus.util.DigesterUtils;
  * result into passed in Context.
  *
  * @author cstamas
+ * @deprecated Use {@link DigestingContentLocator} that calculates all the digests in single pass.
  */
+@Deprecated
 public class ChecksummingContentLocator
     extends AbstractWrappingContentLocator
 {
@@ -0,0 +1,276 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.item;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A content locator backed by a file that is still being written. The writer (the FSPeer storing the item) attaches
+ * the hidden file it writes to, advances the write offset as content arrives and finally marks the spool as finished
+ * or failed. Streams got from {@link #getContent()} read the hidden file up to the current write offset, and block
+ * when they caught up with the writer. This is what makes "stream-through" caching possible: the clients of a proxied
+ * item get the bytes as they arrive from remote, while the very same bytes are written to local storage.
+ * <p>
+ * The spool is handed to the writer in item context using {@link #CTX_KEY} key. If the writer makes no progress for
+ * the stall timeout, the spool is failed, so readers never block forever on a writer that went away.
+ *
+ * @since 3.0
+ */
+public class ContentSpool
+    implements ContentLocator
+{
+  /**
+   * Item context key under which the spool is passed to local storage.
+   */
+  public static final String CTX_KEY = ContentSpool.class.getName();
+
+  /**
+   * Time in milliseconds readers wait for writer progress before failing the spool: 5 minutes.
+   */
+  private static final long STALL_TIMEOUT = SystemPropertiesHelper.getLong(
+      ContentSpool.class.getName() + ".stallTimeout", TimeUnit.MINUTES.toMillis(5));
+
+  private final String mimeType;
+
+  private final long length;
+
+  private final long stallTimeout;
+
+  private long lastProgress;
+
+  private File file;
+
+  private long written;
+
+  private boolean finished;
+
+  private IOException failure;
+
+  public ContentSpool(final String mimeType, final long length) {
+    this(mimeType, length, STALL_TIMEOUT);
+  }
+
+  public ContentSpool(final String mimeType, final long length, final long stallTimeout) {
+    this.mimeType = checkNotNull(mimeType);
+    this.length = length;
+    this.stallTimeout = stallTimeout;
+    this.lastProgress = System.currentTimeMillis();
+  }
+
+  // == Writer side
+
+  /**
+   * Invoked by writer once the file to write content into is known.
+   */
+  public synchronized void attach(final File file) {
+    this.file = checkNotNull(file);
+    progressed();
+  }
+
+  /**
+   * Invoked by writer when {@code count} more bytes were written to the attached file.
+   */
+  public synchronized void advance(final long count) {
+    written += count;
+    progressed();
+  }
+
+  /**
+   * Invoked by writer when the attached file was moved to its final location.
+   */
+  public synchronized void published(final File target) {
+    this.file = checkNotNull(target);
+    progressed();
+  }
+
+  /**
+   * Marks the content complete and valid, readers will get EOF once they consumed all the written bytes.
+   */
+  public synchronized void finish() {
+    finished = true;
+    notifyAll();
+  }
+
+  /**
+   * Marks the content as failed (incomplete or invalid), readers will get {@link IOException}. Only the first failure
+   * is recorded.
+   */
+  public synchronized void fail(final Throwable cause) {
+    if (failure == null && !finished) {
+      failure = cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+    }
+    finished = true;
+    notifyAll();
+  }
+
+  public synchronized boolean isFailed() {
+    return failure != null;
+  }
+
+  public synchronized long getWritten() {
+    return written;
+  }
+
+  private void progressed() {
+    lastProgress = System.currentTimeMillis();
+    notifyAll();
+  }
+
+  // == ContentLocator
+
+  @Override
+  public InputStream getContent() throws IOException {
+    return new SpoolInputStream();
+  }
+
+  @Override
+  public String getMimeType() {
+    return mimeType;
+  }
+
+  @Override
+  public long getLength() {
+    return length;
+  }
+
+  @Override
+  public boolean isReusable() {
+    return true;
+  }
+
+  // ==
+
+  /**
+   * Waits for writer progress, failing the spool if the writer made no progress for the stall timeout. Must be
+   * invoked while holding the spool monitor.
+   */
+  private void awaitProgress() throws InterruptedException {
+    final long remaining = lastProgress + stallTimeout - System.currentTimeMillis();
+    if (remaining > 0) {
+      wait(remaining);
+    }
+    else {
+      fail(new IOException("Spooled content stalled, no progress in " + stallTimeout + " ms"));
+    }
+  }
+
+  private synchronized File awaitFile(final File previous) throws IOException {
+    try {
+      while (failure == null && (file == null || file.equals(previous)) && !finished) {
+        awaitProgress();
+      }
+    }
+    catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while waiting for spooled content");
+    }
+    if (failure != null) {
+      throw new IOException("Spooled content failed", failure);
+    }
+    if (file == null) {
+      throw new IOException("Spool finished without content");
+    }
+    return file;
+  }
+
+  /**
+   * Returns the count of bytes available from {@code position} on, or {@code -1} if EOF reached.
+   */
+  private synchronized long awaitAvailable(final long position) throws IOException {
+    try {
+      while (failure == null && position >= written && !finished) {
+        awaitProgress();
+      }
+    }
+    catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while waiting for spooled content");
+    }
+    if (failure != null) {
+      throw new IOException("Spooled content failed", failure);
+    }
+    return position < written ? written - position : -1;
+  }
+
+  private class SpoolInputStream
+      extends InputStream
+  {
+    private FileChannel channel;
+
+    private long position;
+
+    @Override
+    public int read() throws IOException {
+      final byte[] b = new byte[1];
+      final int read = read(b, 0, 1);
+      return read == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      final long available = awaitAvailable(position);
+      if (available == -1) {
+        return -1;
+      }
+      if (channel == null) {
+        channel = open();
+      }
+      final int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, available)), position);
+      if (read > 0) {
+        position += read;
+      }
+      return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(Integer.MAX_VALUE, Math.max(0, getWritten() - position));
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (channel != null) {
+        channel.close();
+      }
+    }
+
+    private FileChannel open() throws IOException {
+      File current = awaitFile(null);
+      // the hidden file might be moved to its final location meanwhile, retry with published one
+      for (int i = 0; ; i++) {
+        try {
+          return FileChannel.open(current.toPath(), StandardOpenOption.READ);
+        }
+        catch (NoSuchFileException e) {
+          if (i > 0) {
+            throw e;
+          }
+          current = awaitFile(current);
+        }
+      }
+    }
+  }
+}
@@ -12,13 +12,19 @@
  */
 package org.sonatype.nexus.proxy.item;
 
+import java.lang.management.ManagementFactory;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
 import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
@@ -35,7 +41,9 @@ import org.slf4j.LoggerFactory;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * A default factory for UIDs.
+ * A default factory for UIDs. UID locks are kept in a concurrent registry of weak references keyed by UID key, so
+ * looking up an existing lock is lock-free and allocation-free, while locks not referenced by any UID anymore are
+ * expunged as they are garbage collected. Registry statistics are exposed over JMX.
  * 
  * @author cstamas
  */
@@ -52,8 +60,20 @@ public class DefaultRepositoryItemUidFactory
 
   private final ResourceLockFactory sisuLockFactory;
 
-  private final WeakHashMap<DefaultRepositoryItemUidLock, WeakReference<DefaultRepositoryItemUidLock>> locks =
-      new WeakHashMap<DefaultRepositoryItemUidLock, WeakReference<DefaultRepositoryItemUidLock>>();
+  private static final String JMX_DOMAIN = DefaultRepositoryItemUidFactory.class.getPackage().getName();
+
+  private final ConcurrentMap<String, LockReference> locks = new ConcurrentHashMap<String, LockReference>();
+
+  private final ReferenceQueue<DefaultRepositoryItemUidLock> collectedLocks =
+      new ReferenceQueue<DefaultRepositoryItemUidLock>();
+
+  private final AtomicLong lockMisses = new AtomicLong();
+
+  private final AtomicLong lockRaces = new AtomicLong();
+
+  private final AtomicLong locksExpunged = new AtomicLong();
+
+  private ObjectName jmxName;
 
   @Inject
   public DefaultRepositoryItemUidFactory(final EventBus eventBus, final RepositoryRegistry repositoryRegistry,
@@ -63,6 +83,21 @@ public class DefaultRepositoryItemUidFactory
     this.repositoryRegistry = checkNotNull(repositoryRegistry);
     this.sisuLockFactory = sisuLockFactory;
     log.debug("Lock factory: {}", sisuLockFactory);
+
+    try {
+      jmxName = ObjectName.getInstance(JMX_DOMAIN, "name", DefaultRepositoryItemUidFactory.class.getSimpleName());
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(jmxName)) {
+        log.warn("MBean already registered; replacing: {}", jmxName);
+        server.unregisterMBean(jmxName);
+      }
+      server.registerMBean(new DefaultRepositoryItemUidFactoryMBean(this), jmxName);
+    }
+    catch (Exception e) {
+      jmxName = null;
+      log.warn("Problem registering MBean for: " + getClass().getName(), e);
+    }
+
     eventBus.register(this);
   }
 
@@ -111,25 +146,58 @@ public class DefaultRepositoryItemUidFactory
     return doCreateUidLockForKey(key);
   }
 
-  protected synchronized DefaultRepositoryItemUidLock doCreateUidLockForKey(final String key) {
-    final LockResource lockResource;
+  protected DefaultRepositoryItemUidLock doCreateUidLockForKey(final String key) {
+    // hit path: no locking, no allocation, no shared writes
+    LockReference lockRef = locks.get(key);
+    if (lockRef != null) {
+      final DefaultRepositoryItemUidLock lock = lockRef.get();
+      if (lock != null) {
+        return lock;
+      }
+    }
+
+    lockMisses.incrementAndGet();
+    expungeCollectedLocks();
+
+    final DefaultRepositoryItemUidLock newLock = new DefaultRepositoryItemUidLock(key, createLockResource(key));
+    final LockReference newLockRef = new LockReference(key, newLock, collectedLocks);
+    while (true) {
+      lockRef = locks.putIfAbsent(key, newLockRef);
+      if (lockRef == null) {
+        return newLock;
+      }
+      final DefaultRepositoryItemUidLock existingLock = lockRef.get();
+      if (existingLock != null) {
+        // other thread created the same lock meanwhile
+        lockRaces.incrementAndGet();
+        return existingLock;
+      }
+      if (locks.replace(key, lockRef, newLockRef)) {
+        return newLock;
+      }
+    }
+  }
+
+  protected LockResource createLockResource(final String key) {
     if (sisuLockFactory != null) {
-      lockResource = new SisuLockResource(sisuLockFactory.getResourceLock(key));
+      return new SisuLockResource(sisuLockFactory.getResourceLock(key));
     }
     else {
-      lockResource = new SimpleLockResource();
+      return new SimpleLockResource();
     }
-    final DefaultRepositoryItemUidLock newLock = new DefaultRepositoryItemUidLock(key, lockResource);
-    final WeakReference<DefaultRepositoryItemUidLock> oldLockRef = locks.get(newLock);
-    if (oldLockRef != null) {
-      final RepositoryItemUidLock oldLock = oldLockRef.get();
+  }
 
-      if (oldLock != null) {
-        return oldLockRef.get();
+  /**
+   * Removes the registry entries of locks already garbage collected. Entry is removed only if still mapped to the
+   * collected reference, as the key might be remapped to a new lock meanwhile.
+   */
+  private void expungeCollectedLocks() {
+    LockReference lockRef;
+    while ((lockRef = (LockReference) collectedLocks.poll()) != null) {
+      if (locks.remove(lockRef.key, lockRef)) {
+        locksExpunged.incrementAndGet();
       }
     }
-    locks.put(newLock, new WeakReference<DefaultRepositoryItemUidLock>(newLock));
-    return newLock;
   }
 
   /**
@@ -139,11 +207,54 @@ public class DefaultRepositoryItemUidFactory
     return locks.size();
   }
 
+  // == JMX
+
+  int getLiveLocks() {
+    expungeCollectedLocks();
+    return locks.size();
+  }
+
+  long getLockMisses() {
+    return lockMisses.get();
+  }
+
+  long getLockRaces() {
+    return lockRaces.get();
+  }
+
+  long getLocksExpunged() {
+    return locksExpunged.get();
+  }
+
   @Subscribe
   public void on(final NexusStoppedEvent e) {
     eventBus.unregister(this);
+    if (jmxName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(jmxName);
+      }
+      catch (Exception ex) {
+        log.warn("Problem unregistering MBean for: " + getClass().getName(), ex);
+      }
+      jmxName = null;
+    }
     if (sisuLockFactory != null) {
       sisuLockFactory.shutdown();
     }
   }
+
+  // ==
+
+  private static class LockReference
+      extends WeakReference<DefaultRepositoryItemUidLock>
+  {
+    private final String key;
+
+    private LockReference(final String key, final DefaultRepositoryItemUidLock lock,
+                          final ReferenceQueue<DefaultRepositoryItemUidLock> queue)
+    {
+      super(lock, queue);
+      this.key = key;
+    }
+  }
 }
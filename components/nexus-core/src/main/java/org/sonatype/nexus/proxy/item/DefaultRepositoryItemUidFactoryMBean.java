@@ -0,0 +1,54 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.item;
+
+import javax.management.StandardMBean;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The default implementation of MBean management interface for {@link DefaultRepositoryItemUidFactory}.
+ *
+ * @since 3.0
+ */
+public class DefaultRepositoryItemUidFactoryMBean
+    extends StandardMBean
+    implements RepositoryItemUidFactoryMBean
+{
+  private final DefaultRepositoryItemUidFactory factory;
+
+  public DefaultRepositoryItemUidFactoryMBean(final DefaultRepositoryItemUidFactory factory) {
+    super(RepositoryItemUidFactoryMBean.class, false);
+    this.factory = Preconditions.checkNotNull(factory, "Managed DefaultRepositoryItemUidFactory cannot be null!");
+  }
+
+  @Override
+  public int getLiveLocks() {
+    return factory.getLiveLocks();
+  }
+
+  @Override
+  public long getLockMisses() {
+    return factory.getLockMisses();
+  }
+
+  @Override
+  public long getLockRaces() {
+    return factory.getLockRaces();
+  }
+
+  @Override
+  public long getLocksExpunged() {
+    return factory.getLocksExpunged();
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.item;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.sonatype.nexus.proxy.RequestContext;
+import org.sonatype.nexus.util.DigesterUtils;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A content locator that wraps another content locator, and calculates all the needed digests of it in a single pass
+ * while reading it, putting the results into passed in context once content is fully read. Digests calculated by
+ * default are SHA1 and MD5, optionally SHA-256 and SHA-512 too, see {@link #getDigestAlgorithms()}.
+ *
+ * @since 3.0
+ */
+public class DigestingContentLocator
+    extends AbstractWrappingContentLocator
+{
+  private static final boolean SHA256_ENABLED = SystemPropertiesHelper.getBoolean(
+      DigestingContentLocator.class.getName() + ".sha256", false);
+
+  private static final boolean SHA512_ENABLED = SystemPropertiesHelper.getBoolean(
+      DigestingContentLocator.class.getName() + ".sha512", false);
+
+  private static final Map<String, String> DIGEST_ALGORITHMS;
+
+  static {
+    final Map<String, String> algorithms = new LinkedHashMap<>();
+    algorithms.put(StorageFileItem.DIGEST_SHA1_KEY, "SHA1");
+    // md5 is deprecated but still calculated
+    algorithms.put(StorageFileItem.DIGEST_MD5_KEY, "MD5");
+    if (SHA256_ENABLED) {
+      algorithms.put(StorageFileItem.DIGEST_SHA256_KEY, "SHA-256");
+    }
+    if (SHA512_ENABLED) {
+      algorithms.put(StorageFileItem.DIGEST_SHA512_KEY, "SHA-512");
+    }
+    DIGEST_ALGORITHMS = Collections.unmodifiableMap(algorithms);
+  }
+
+  private final Map<String, MessageDigest> messageDigests;
+
+  private final RequestContext context;
+
+  public DigestingContentLocator(final ContentLocator content, final RequestContext context)
+      throws NoSuchAlgorithmException
+  {
+    this(content, getDigestAlgorithms(), context);
+  }
+
+  /**
+   * Constructor with explicit digests to calculate, given as map of context key to {@link MessageDigest} algorithm.
+   */
+  public DigestingContentLocator(final ContentLocator content, final Map<String, String> digestAlgorithms,
+                                 final RequestContext context)
+      throws NoSuchAlgorithmException
+  {
+    super(content);
+    this.messageDigests = new LinkedHashMap<>(digestAlgorithms.size());
+    for (Map.Entry<String, String> entry : digestAlgorithms.entrySet()) {
+      messageDigests.put(entry.getKey(), MessageDigest.getInstance(entry.getValue()));
+    }
+    this.context = checkNotNull(context);
+  }
+
+  /**
+   * Returns the digests calculated by default, as map of context (and attribute) key to {@link MessageDigest}
+   * algorithm.
+   */
+  public static Map<String, String> getDigestAlgorithms() {
+    return DIGEST_ALGORITHMS;
+  }
+
+  @Override
+  public InputStream getContent()
+      throws IOException
+  {
+    for (MessageDigest messageDigest : messageDigests.values()) {
+      messageDigest.reset();
+    }
+    return new DigestingInputStream(getTarget().getContent());
+  }
+
+  private class DigestingInputStream
+      extends FilterInputStream
+  {
+    private boolean done;
+
+    private DigestingInputStream(final InputStream source) {
+      super(source);
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+      final int result = super.read();
+      if (result == -1) {
+        setDigests();
+      }
+      else {
+        for (MessageDigest messageDigest : messageDigests.values()) {
+          messageDigest.update((byte) result);
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+      final int result = super.read(b, off, len);
+      if (result == -1) {
+        setDigests();
+      }
+      else {
+        // all digests are updated from the same buffer
+        for (MessageDigest messageDigest : messageDigests.values()) {
+          messageDigest.update(b, off, result);
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Skipped bytes must be digested too, so they are read instead of skipped.
+     */
+    @Override
+    public long skip(final long n)
+        throws IOException
+    {
+      if (n <= 0) {
+        return 0;
+      }
+      final byte[] buffer = new byte[(int) Math.min(n, 8192L)];
+      long skipped = 0;
+      while (skipped < n) {
+        final int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+        if (read == -1) {
+          break;
+        }
+        skipped += read;
+      }
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public synchronized void mark(final int readlimit) {
+      // not supported, as digests cannot be reset to mark
+    }
+
+    @Override
+    public synchronized void reset()
+        throws IOException
+    {
+      throw new IOException("mark/reset not supported");
+    }
+
+    // ==
+
+    private synchronized void setDigests() {
+      if (done) {
+        return;
+      }
+      done = true;
+      for (Map.Entry<String, MessageDigest> entry : messageDigests.entrySet()) {
+        if (!context.containsKey(entry.getKey(), false)) {
+          context.put(entry.getKey(), DigesterUtils.getDigestAsString(entry.getValue().digest()));
+        }
+      }
+    }
+  }
+}
@@ -19,8 +19,11 @@ import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 import org.sonatype.nexus.util.file.DirSupport;
+import org.sonatype.nexus.util.io.FileChannelSource;
+import org.sonatype.nexus.util.io.StreamSupport;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -110,6 +113,7 @@ public class FileContentLocator
 
   public static class DeleteOnCloseFileInputStream
       extends FilterInputStream
+      implements FileChannelSource
   {
     private final File file;
 
@@ -118,6 +122,11 @@ public class FileContentLocator
       this.file = file;
     }
 
+    @Override
+    public FileChannel getFileChannel() {
+      return StreamSupport.getFileChannel(in);
+    }
+
     public void close() throws IOException {
       super.close();
       // locator is used against files only, not directories
@@ -30,6 +30,14 @@ import org.sonatype.nexus.proxy.NoSuchRepositoryException;
  */
 public interface LinkPersister
 {
+  /**
+   * Key of item attribute recording whether the item content is a link, saving the need to inspect the content. It is
+   * recorded when item is stored by local storage, with value {@code "true"} or {@code "false"}.
+   *
+   * @since 3.0
+   */
+  String LINK_ATTRIBUTE = "storageItem-link";
+
   /**
    * Uses ContentLocator to inspect the supplied content and decide whether the content holds a "serialized" link
    * form
@@ -15,8 +15,11 @@ package org.sonatype.nexus.proxy.item;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
 import org.sonatype.nexus.proxy.access.Action;
+import org.sonatype.nexus.util.io.FileChannelSource;
+import org.sonatype.nexus.util.io.StreamSupport;
 
 import org.slf4j.LoggerFactory;
 
@@ -64,6 +67,7 @@ public class ReadLockingContentLocator
 
   private static class ReadLockingInputStream
       extends FilterInputStream
+      implements FileChannelSource
   {
     private final RepositoryItemUid uid;
 
@@ -77,6 +81,11 @@ public class ReadLockingContentLocator
       this.lock = lock;
     }
 
+    @Override
+    public FileChannel getFileChannel() {
+      return StreamSupport.getFileChannel(in);
+    }
+
     @Override
     public void close() throws IOException {
       try {
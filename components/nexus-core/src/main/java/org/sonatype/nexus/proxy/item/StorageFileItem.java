@@ -32,6 +32,20 @@ public interface StorageFileItem
   @Deprecated
   public static final String DIGEST_MD5_KEY = "digest.md5";
 
+  /**
+   * The digest sha256 key used in item context and attributes, present only if enabled.
+   *
+   * @since 3.0
+   */
+  public static final String DIGEST_SHA256_KEY = "digest.sha256";
+
+  /**
+   * The digest sha512 key used in item context and attributes, present only if enabled.
+   *
+   * @since 3.0
+   */
+  public static final String DIGEST_SHA512_KEY = "digest.sha512";
+
   /**
    * Returns the file content length in bytes, or {@link ContentLocator#UNKNOWN_LENGTH} if unknown. Shortcut method for
    * {@link ContentLocator#getLength()}.
@@ -0,0 +1,43 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.item;
+
+import java.io.IOException;
+
+/**
+ * A {@link ContentLocator} of generated content that is able to tell the version and modification time of the content
+ * it would provide, without actually providing it. This allows conditional requests to be served for generated items
+ * too, as long as the generator is able to track changes of the content it generates.
+ *
+ * @since 3.0
+ */
+public interface VersionedContentLocator
+    extends ContentLocator
+{
+  /**
+   * Returns the version of the content, usable as entity tag, or {@code null} if version is unknown. Same version
+   * means same content.
+   */
+  String getVersion() throws IOException;
+
+  /**
+   * Modification timestamp of content that has no reliable modification time, like content generated per subject.
+   * Such content is validated by its version only.
+   */
+  long UNKNOWN_MODIFIED = -1L;
+
+  /**
+   * Returns the timestamp of the last modification of the content, or {@link #UNKNOWN_MODIFIED}.
+   */
+  long getModified() throws IOException;
+}
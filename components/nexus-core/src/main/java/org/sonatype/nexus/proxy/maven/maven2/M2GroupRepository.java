@@ -88,14 +88,21 @@ public class M2GroupRepository
    */
   private final M2GroupRepositoryConfigurator m2GroupRepositoryConfigurator;
 
+  /**
+   * Cache of merged metadata.
+   */
+  private final MergedMetadataCache mergedMetadataCache;
+
   @Inject
   public M2GroupRepository(final @Named(Maven2ContentClass.ID) ContentClass contentClass, 
                            final @Named("maven2") GavCalculator gavCalculator,
-                           final M2GroupRepositoryConfigurator m2GroupRepositoryConfigurator)
+                           final M2GroupRepositoryConfigurator m2GroupRepositoryConfigurator,
+                           final MergedMetadataCache mergedMetadataCache)
   {
     this.contentClass = checkNotNull(contentClass);
     this.gavCalculator = checkNotNull(gavCalculator);
     this.m2GroupRepositoryConfigurator = checkNotNull(m2GroupRepositoryConfigurator);
+    this.mergedMetadataCache = checkNotNull(mergedMetadataCache);
   }
 
   @Override
@@ -198,7 +205,8 @@ public class M2GroupRepository
   }
 
   /**
-   * Aggregates metadata from all member repositories
+   * Aggregates metadata from all member repositories. Merged metadata is cached, and served from cache as long as
+   * member items are unchanged.
    */
   private StorageItem doRetrieveMetadata(ResourceStoreRequest request)
       throws StorageException, IllegalOperationException, UnsupportedStorageOperationException, ItemNotFoundException
@@ -216,11 +224,34 @@ public class M2GroupRepository
       return items.get(0);
     }
 
+    final MergedMetadataCache.Entry cached = mergedMetadataCache.get(getId(), request.getRequestPath(), items);
+    if (cached != null) {
+      try {
+        // checksum files were stored when merged, but might have been removed since
+        ensureMergedMetadataItemDigest(request, cached.getMd5(), items, "MD5");
+
+        ensureMergedMetadataItemDigest(request, cached.getSha1(), items, "SHA1");
+      }
+      catch (IOException e) {
+        throw new LocalStorageException("Got IOException during M2 metadata merging.", e);
+      }
+
+      if (log.isDebugEnabled()) {
+        log.debug("Item for path " + request.toString() + " served from merged metadata cache.");
+      }
+
+      return createMergedMetadataItem(request, cached.getContent(), items);
+    }
+
     List<Metadata> existingMetadatas = new ArrayList<Metadata>();
 
+    // cache only if all the items were merged
+    boolean mergedAll = true;
+
     try {
       for (StorageItem item : items) {
         if (!(item instanceof StorageFileItem)) {
+          mergedAll = false;
           break;
         }
 
@@ -230,6 +261,7 @@ public class M2GroupRepository
           existingMetadatas.add(parseMetadata(fileItem));
         }
         catch (IOException e) {
+          mergedAll = false;
           log.warn(
               "IOException during parse of metadata UID=\"" + fileItem.getRepositoryItemUid().toString()
                   + "\", will be skipped from aggregation!", e);
@@ -239,6 +271,7 @@ public class M2GroupRepository
                   "Invalid metadata served by repository. If repository is proxy, please check out what is it serving!"));
         }
         catch (MetadataException e) {
+          mergedAll = false;
           log.warn(
               "Metadata exception during parse of metadata from UID=\""
                   + fileItem.getRepositoryItemUid().toString() + "\", will be skipped from aggregation!", e);
@@ -294,6 +327,11 @@ public class M2GroupRepository
 
       resultOutputStream.close();
 
+      if (mergedAll) {
+        mergedMetadataCache.put(getId(), request.getRequestPath(), items, resultOutputStream.toByteArray(),
+            md5Digest, sha1Digest);
+      }
+
       if (log.isDebugEnabled()) {
         log.debug(
             "Item for path " + request.toString() + " merged from " + Integer.toString(items.size())
@@ -334,6 +372,22 @@ public class M2GroupRepository
     storeItem(false, digestFileItem);
   }
 
+  /**
+   * Stores the digest file of merged metadata, unless it is already present in local storage.
+   *
+   * @since 3.0
+   */
+  protected void ensureMergedMetadataItemDigest(ResourceStoreRequest request, String digest,
+                                                List<StorageItem> sources, String algorithm)
+      throws IOException, UnsupportedStorageOperationException, IllegalOperationException
+  {
+    ResourceStoreRequest req = new ResourceStoreRequest(request.getRequestPath() + "." + algorithm.toLowerCase());
+
+    if (!getLocalStorage().containsItem(this, req)) {
+      storeMergedMetadataItemDigest(request, digest, sources, algorithm);
+    }
+  }
+
   protected StorageCompositeFileItem createMergedMetadataItem(ResourceStoreRequest request, byte[] content,
                                                               List<StorageItem> sources)
   {
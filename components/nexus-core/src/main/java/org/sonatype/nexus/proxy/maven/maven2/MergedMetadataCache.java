@@ -0,0 +1,344 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven.maven2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryGroupMembersChangedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryItemEvent;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventCache;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventDelete;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventStore;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.proxy.item.StorageCollectionItem;
+import org.sonatype.nexus.proxy.item.StorageCompositeItem;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.maven.MavenRepository;
+import org.sonatype.nexus.proxy.maven.gav.M2ArtifactRecognizer;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Cache of merged Maven2 metadata of group repositories, holding the serialized merged metadata and it's digests. A
+ * cached entry is keyed by group ID and request path, and is valid only as long the member items it was merged from
+ * are unchanged (same items, having same modification timestamp, length and attribute generation), hence a cache hit
+ * saves the parsing, merging, serializing and digesting of metadata. Entries are also invalidated when member items
+ * are stored, cached or deleted, or group members change. Cache is bounded by memory budget (bytes of merged content)
+ * set by {@code org.sonatype.nexus.proxy.maven.maven2.MergedMetadataCache.maxBytes} system property (default 32MB,
+ * 0 disables the cache).
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class MergedMetadataCache
+    extends ComponentSupport
+{
+  private static final long MAX_BYTES = SystemPropertiesHelper.getInteger(
+      MergedMetadataCache.class.getName() + ".maxBytes", 32 * 1024 * 1024);
+
+  /**
+   * Rough estimate of per-entry memory used besides the content bytes (key, fingerprints and digests).
+   */
+  private static final int ENTRY_OVERHEAD = 512;
+
+  private final EventBus eventBus;
+
+  private final RepositoryRegistry repositoryRegistry;
+
+  private final Cache<Key, Entry> cache;
+
+  @Inject
+  public MergedMetadataCache(final EventBus eventBus, final RepositoryRegistry repositoryRegistry) {
+    this(eventBus, repositoryRegistry, MAX_BYTES);
+  }
+
+  @VisibleForTesting
+  MergedMetadataCache(final EventBus eventBus, final RepositoryRegistry repositoryRegistry, final long maxBytes) {
+    this.eventBus = checkNotNull(eventBus);
+    this.repositoryRegistry = checkNotNull(repositoryRegistry);
+    if (maxBytes > 0) {
+      this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes).weigher(new Weigher<Key, Entry>()
+      {
+        @Override
+        public int weigh(final Key key, final Entry entry) {
+          return entry.getContent().length + ENTRY_OVERHEAD;
+        }
+      }).build();
+    }
+    else {
+      this.cache = null;
+    }
+    eventBus.register(this);
+  }
+
+  /**
+   * Returns the cached merged metadata of given group and path, if present and was merged from the very same member
+   * items as passed in, otherwise {@code null}.
+   */
+  public Entry get(final String groupId, final String path, final List<StorageItem> items) {
+    if (cache == null) {
+      return null;
+    }
+    final Key key = new Key(groupId, path);
+    final Entry entry = cache.getIfPresent(key);
+    if (entry == null) {
+      return null;
+    }
+    if (!entry.getFingerprint().equals(fingerprint(items))) {
+      cache.asMap().remove(key, entry);
+      return null;
+    }
+    return entry;
+  }
+
+  /**
+   * Caches the merged metadata of given group and path, merged from passed in member items.
+   */
+  public Entry put(final String groupId, final String path, final List<StorageItem> items, final byte[] content,
+                   final String md5, final String sha1)
+  {
+    final Entry entry = new Entry(fingerprint(items), content, md5, sha1);
+    if (cache != null) {
+      cache.put(new Key(groupId, path), entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Invalidates all cached entries of given group.
+   */
+  public void invalidate(final String groupId) {
+    if (cache == null) {
+      return;
+    }
+    for (Key key : cache.asMap().keySet()) {
+      if (key.groupId.equals(groupId)) {
+        cache.invalidate(key);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  long size() {
+    return cache == null ? 0 : cache.size();
+  }
+
+  // ==
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryItemEventStore evt) {
+    invalidate(evt);
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryItemEventCache evt) {
+    invalidate(evt);
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryItemEventDelete evt) {
+    invalidate(evt);
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryGroupMembersChangedEvent evt) {
+    invalidate(evt.getRepository().getId());
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryRegistryEventRemove evt) {
+    invalidate(evt.getRepository().getId());
+  }
+
+  @Subscribe
+  public void on(final NexusStoppedEvent evt) {
+    eventBus.unregister(this);
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+
+  private void invalidate(final RepositoryItemEvent evt) {
+    if (cache == null || cache.size() == 0) {
+      return;
+    }
+    final boolean collection = evt.getItem() instanceof StorageCollectionItem;
+    final String path = evt.getItemUid().getPath();
+    if (!collection && !(M2ArtifactRecognizer.isMetadata(path) && !M2ArtifactRecognizer.isChecksum(path))) {
+      return;
+    }
+    final Set<String> groupIds = groupsOf(evt.getRepository().getId());
+    if (groupIds.isEmpty()) {
+      return;
+    }
+    if (collection) {
+      final String prefix = path.endsWith("/") ? path : path + "/";
+      for (Key key : cache.asMap().keySet()) {
+        if (groupIds.contains(key.groupId) && key.path.startsWith(prefix)) {
+          cache.invalidate(key);
+        }
+      }
+    }
+    else {
+      for (String groupId : groupIds) {
+        cache.invalidate(new Key(groupId, path));
+      }
+    }
+  }
+
+  /**
+   * Returns the IDs of groups the repository is member of, directly or transitively, including the repository
+   * itself.
+   */
+  private Set<String> groupsOf(final String repositoryId) {
+    final Set<String> result = new HashSet<String>();
+    final Deque<String> queue = new ArrayDeque<String>();
+    queue.add(repositoryId);
+    while (!queue.isEmpty()) {
+      final String id = queue.poll();
+      if (result.add(id)) {
+        queue.addAll(repositoryRegistry.getGroupsOfRepository(id));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Identity of member items: their UIDs, modification timestamps, lengths and attribute generations, recursively
+   * for composite items (as merged metadata served by member groups).
+   */
+  private static List<Object> fingerprint(final List<StorageItem> items) {
+    final List<Object> result = new ArrayList<Object>();
+    for (StorageItem item : items) {
+      fingerprint(item, result);
+    }
+    return result;
+  }
+
+  private static void fingerprint(final StorageItem item, final List<Object> result) {
+    result.add(item.getRepositoryItemUid().toString());
+    result.add(item.getModified());
+    result.add(item.getRepositoryItemAttributes().getGeneration());
+    if (item instanceof StorageFileItem) {
+      result.add(((StorageFileItem) item).getLength());
+    }
+    final MavenRepository mavenRepository =
+        item.getRepositoryItemUid().getRepository().adaptToFacet(MavenRepository.class);
+    if (mavenRepository != null) {
+      // merged content depends on member policy too
+      result.add(mavenRepository.getRepositoryPolicy());
+    }
+    if (item instanceof StorageCompositeItem) {
+      for (StorageItem source : ((StorageCompositeItem) item).getSources()) {
+        fingerprint(source, result);
+      }
+    }
+  }
+
+  // ==
+
+  private static class Key
+  {
+    private final String groupId;
+
+    private final String path;
+
+    private Key(final String groupId, final String path) {
+      this.groupId = checkNotNull(groupId);
+      this.path = checkNotNull(path);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      final Key that = (Key) o;
+      return groupId.equals(that.groupId) && path.equals(that.path);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(groupId, path);
+    }
+  }
+
+  /**
+   * Merged metadata: serialized content and it's digests.
+   */
+  public static class Entry
+  {
+    private final List<Object> fingerprint;
+
+    private final byte[] content;
+
+    private final String md5;
+
+    private final String sha1;
+
+    private Entry(final List<Object> fingerprint, final byte[] content, final String md5, final String sha1) {
+      this.fingerprint = fingerprint;
+      this.content = content;
+      this.md5 = md5;
+      this.sha1 = sha1;
+    }
+
+    private List<Object> getFingerprint() {
+      return fingerprint;
+    }
+
+    public byte[] getContent() {
+      return content;
+    }
+
+    public String getMd5() {
+      return md5;
+    }
+
+    public String getSha1() {
+      return sha1;
+    }
+  }
+}
@@ -82,4 +82,14 @@ public interface Config
    * @return the maximum allowed file size for prefix file, in bytes.
    */
   public int getPrefixFileMaxSize();
+
+  /**
+   * Returns the interval (in milliseconds) of persisting and publishing the changes of hosted repository prefix
+   * files caused by deploys and deletes. Changes happening within interval are persisted and published at once. Zero
+   * means changes are persisted and published immediately.
+   *
+   * @return the hosted prefix file update interval in milliseconds.
+   * @since 3.0
+   */
+  public long getHostedPrefixFileUpdateInterval();
 }
@@ -69,6 +69,9 @@ public class ConfigImpl
   private static final int PREFIX_FILE_MAX_SIZE = SystemPropertiesHelper.getInteger(Config.class.getName()
       + ".prefixFileMaxSize", 100000); // 100 KB
 
+  private static final long HOSTED_PREFIX_FILE_UPDATE_INTERVAL = SystemPropertiesHelper.getLong(Config.class.getName()
+      + ".hostedPrefixFileUpdateInterval", 1000L); // 1 second
+
   private final boolean featureActive;
 
   /**
@@ -125,4 +128,9 @@ public class ConfigImpl
     return PREFIX_FILE_MAX_SIZE;
   }
 
+  @Override
+  public long getHostedPrefixFileUpdateInterval() {
+    return HOSTED_PREFIX_FILE_UPDATE_INTERVAL;
+  }
+
 }
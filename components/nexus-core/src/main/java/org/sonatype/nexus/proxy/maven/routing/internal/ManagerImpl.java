@@ -18,9 +18,15 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -109,6 +115,12 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * long. This allows concurrent execution of multiple repository deploy/delete operations that do not require changes
  * to
  * the contents of the prefix file.</li>
+ * <li>as of 3.0, prefix lists of hosted repositories are kept in memory (see {@link PrefixTree}) once loaded, and are
+ * modified by deploy/delete operations in memory only. Changes are persisted (prefix file is written while holding
+ * write lock) and published at most once per {@link Config#getHostedPrefixFileUpdateInterval()}. Additions are
+ * propagated to the prefix files of containing groups incrementally, while removals cause a full update of the
+ * groups as before. Resident prefix list is dropped whenever the prefix file is published or unpublished by other
+ * means (like full update of the repository).</li>
  * </ul>
  * </p>
  *
@@ -154,6 +166,21 @@ public class ManagerImpl
    */
   private final ConstrainedExecutor constrainedExecutor;
 
+  /**
+   * Resident prefix lists of hosted repositories, keyed by repository ID.
+   */
+  private final ConcurrentMap<String, HostedPrefixFile> hostedPrefixFiles;
+
+  /**
+   * Incremented whenever resident prefix lists are dropped, to detect the ones loaded concurrently with a drop.
+   */
+  private final AtomicLong hostedPrefixFilesGeneration;
+
+  /**
+   * Count of scheduled, but not yet finished hosted prefix file updates.
+   */
+  private final AtomicInteger pendingHostedPrefixFileUpdates;
+
   /**
    * Da constructor.
    */
@@ -178,6 +205,9 @@ public class ManagerImpl
             new ThreadPoolExecutor.AbortPolicy());
     this.executor = NexusScheduledExecutorService.forFixedSubject(target, FakeAlmightySubject.TASK_SUBJECT);
     this.constrainedExecutor = new ConstrainedExecutorImpl(executor);
+    this.hostedPrefixFiles = new ConcurrentHashMap<String, HostedPrefixFile>();
+    this.hostedPrefixFilesGeneration = new AtomicLong();
+    this.pendingHostedPrefixFileUpdates = new AtomicInteger();
     // register event dispatcher
     this.eventDispatcher = new EventDispatcher(this);
     this.eventBus.register(this);
@@ -235,6 +265,12 @@ public class ManagerImpl
     if (config.isFeatureActive()) {
       eventBus.unregister(eventDispatcher);
     }
+    // persist pending changes of hosted prefix lists
+    for (HostedPrefixFile hostedPrefixFile : hostedPrefixFiles.values()) {
+      if (hostedPrefixFile.getPrefixTree() != null && hostedPrefixFile.getPrefixTree().hasChanges()) {
+        updateHostedPrefixFile(hostedPrefixFile);
+      }
+    }
     executor.shutdown();
     constrainedExecutor.cancelAllJobs();
     try {
@@ -493,6 +529,10 @@ public class ManagerImpl
       log.debug("Boot process not done yet, periodic updater did not yet finish!");
       return true;
     }
+    if (pendingHostedPrefixFileUpdates.get() > 0) {
+      log.debug("Hosted prefix file updates pending");
+      return true;
+    }
     final Statistics statistics = constrainedExecutor.getStatistics();
     log.debug("Running update jobs for {}", statistics.getCurrentlyRunningJobKeys());
     return !statistics.getCurrentlyRunningJobKeys().isEmpty();
@@ -843,41 +883,19 @@ public class ManagerImpl
       // although not 100% bulletproof, this logic reduces the risk of this happening
       return false;
     }
-    final FilePrefixSource prefixSource = getPrefixSourceFor(mavenHostedRepository);
-    final RepositoryItemUidLock lock = prefixSource.getRepositoryItemUid().getLock();
-    lock.lock(Action.read);
-    try {
-      if (!prefixSource.supported()) {
-        return false;
-      }
-      final String entry;
-      if (item.getPathDepth() == 0) {
-        entry = item.getPath();
-      } else {
-        entry = item.getParentPath();
-      }
-      final WritablePrefixSourceModifier wesm =
-          new WritablePrefixSourceModifier(prefixSource, config.getLocalScrapeDepth());
-      wesm.offerEntry(entry);
-      if (wesm.hasChanges()) {
-        boolean changed = false;
-        lock.lock(Action.update);
-        try {
-          wesm.reset();
-          wesm.offerEntry(entry);
-          changed = wesm.apply();
-          if (changed) {
-            publish(mavenHostedRepository, prefixSource);
-          }
-        }
-        finally {
-          lock.unlock();
-        }
-        return changed;
-      }
+    final HostedPrefixFile hostedPrefixFile = getHostedPrefixFile(mavenHostedRepository);
+    if (hostedPrefixFile.getPrefixTree() == null) {
+      return false;
+    }
+    final String entry;
+    if (item.getPathDepth() == 0) {
+      entry = item.getPath();
+    } else {
+      entry = item.getParentPath();
     }
-    finally {
-      lock.unlock();
+    if (hostedPrefixFile.getPrefixTree().offerEntry(entry)) {
+      scheduleHostedPrefixFileUpdate(hostedPrefixFile);
+      return true;
     }
     return false;
   }
@@ -893,37 +911,138 @@ public class ManagerImpl
       // although not 100% bulletproof, this logic reduces the risk of this happening
       return false;
     }
-    final FilePrefixSource prefixSource = getPrefixSourceFor(mavenHostedRepository);
-    final RepositoryItemUidLock lock = prefixSource.getRepositoryItemUid().getLock();
-    lock.lock(Action.read);
-    try {
-      if (!prefixSource.supported()) {
-        return false;
-      }
-      final WritablePrefixSourceModifier wesm =
-          new WritablePrefixSourceModifier(prefixSource, config.getLocalScrapeDepth());
-      wesm.revokeEntry(item.getPath());
-      if (wesm.hasChanges()) {
-        boolean changed = false;
-        lock.lock(Action.update);
-        try {
-          wesm.reset();
-          wesm.revokeEntry(item.getPath());
-          changed = wesm.apply();
-          if (changed) {
-            publish(mavenHostedRepository, prefixSource);
+    final HostedPrefixFile hostedPrefixFile = getHostedPrefixFile(mavenHostedRepository);
+    if (hostedPrefixFile.getPrefixTree() == null) {
+      return false;
+    }
+    if (hostedPrefixFile.getPrefixTree().revokeEntry(item.getPath())) {
+      scheduleHostedPrefixFileUpdate(hostedPrefixFile);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the resident prefix list of hosted repository, loading it from prefix file if needed.
+   */
+  protected HostedPrefixFile getHostedPrefixFile(final MavenHostedRepository mavenHostedRepository)
+      throws IOException
+  {
+    HostedPrefixFile hostedPrefixFile = hostedPrefixFiles.get(mavenHostedRepository.getId());
+    if (hostedPrefixFile == null) {
+      final long generation = hostedPrefixFilesGeneration.get();
+      final FilePrefixSource prefixSource = getPrefixSourceFor(mavenHostedRepository);
+      final RepositoryItemUidLock lock = prefixSource.getRepositoryItemUid().getLock();
+      lock.lock(Action.read);
+      try {
+        PrefixTree prefixTree = null;
+        if (prefixSource.supported()) {
+          final List<String> entries = prefixSource.readEntries();
+          if (entries != null) {
+            prefixTree = new PrefixTree(entries, config.getLocalScrapeDepth());
           }
         }
+        hostedPrefixFile = new HostedPrefixFile(mavenHostedRepository, prefixTree);
+      }
+      finally {
+        lock.unlock();
+      }
+      final HostedPrefixFile existing =
+          hostedPrefixFiles.putIfAbsent(mavenHostedRepository.getId(), hostedPrefixFile);
+      if (existing != null) {
+        hostedPrefixFile = existing;
+      }
+      else if (generation != hostedPrefixFilesGeneration.get()) {
+        // prefix file was (re)published while we loaded it, do not keep what we loaded
+        hostedPrefixFiles.remove(mavenHostedRepository.getId(), hostedPrefixFile);
+      }
+    }
+    return hostedPrefixFile;
+  }
+
+  /**
+   * Schedules the update of hosted prefix file, unless already scheduled.
+   */
+  protected void scheduleHostedPrefixFileUpdate(final HostedPrefixFile hostedPrefixFile) {
+    if (!hostedPrefixFile.getUpdateScheduled().compareAndSet(false, true)) {
+      return;
+    }
+    pendingHostedPrefixFileUpdates.incrementAndGet();
+    final Runnable update = new Runnable()
+    {
+      @Override
+      public void run() {
+        try {
+          updateHostedPrefixFile(hostedPrefixFile);
+        }
         finally {
-          lock.unlock();
+          pendingHostedPrefixFileUpdates.decrementAndGet();
         }
-        return changed;
+      }
+    };
+    final long interval = config.getHostedPrefixFileUpdateInterval();
+    if (interval > 0) {
+      try {
+        executor.schedule(update, interval, TimeUnit.MILLISECONDS);
+        return;
+      }
+      catch (RejectedExecutionException e) {
+        // being shut down
       }
     }
-    finally {
-      lock.unlock();
+    update.run();
+  }
+
+  /**
+   * Persists and publishes the changes of resident prefix list of hosted repository, and propagates them to groups.
+   */
+  protected void updateHostedPrefixFile(final HostedPrefixFile hostedPrefixFile) {
+    hostedPrefixFile.getUpdateScheduled().set(false);
+    final MavenHostedRepository mavenHostedRepository = hostedPrefixFile.getMavenHostedRepository();
+    if (hostedPrefixFiles.get(mavenHostedRepository.getId()) != hostedPrefixFile) {
+      // dropped meanwhile, as prefix file was (re)published
+      return;
+    }
+    final FilePrefixSource prefixSource = getPrefixSourceFor(mavenHostedRepository);
+    final RepositoryItemUidLock lock = prefixSource.getRepositoryItemUid().getLock();
+    try {
+      final PrefixTree.Changes changes;
+      lock.lock(Action.update);
+      try {
+        changes = hostedPrefixFile.getPrefixTree().takeChanges();
+        if (changes == null) {
+          return;
+        }
+        prefixSource.writeEntries(new ArrayListPrefixSource(changes.getEntries()));
+      }
+      catch (InvalidInputException e) {
+        unpublish(mavenHostedRepository);
+        throw e;
+      }
+      finally {
+        lock.unlock();
+      }
+
+      log.debug("Updated prefix file of {}: added {}, removed {}", mavenHostedRepository, changes.getAdded(),
+          changes.getRemoved());
+
+      // event
+      eventBus.post(new PrefixFilePublishedRepositoryEvent(mavenHostedRepository, prefixSource));
+
+      // propagate
+      if (changes.getRemoved().isEmpty()) {
+        propagatePrefixFileAdditionsOf(mavenHostedRepository, changes.getAdded());
+      }
+      else {
+        propagatePrefixFileUpdateOf(mavenHostedRepository);
+      }
+    }
+    catch (IOException e) {
+      log.warn("Problem while updating prefix file of hosted repository {}, scheduling full update",
+          RepositoryStringUtils.getHumanizedNameString(mavenHostedRepository), e);
+      hostedPrefixFiles.remove(mavenHostedRepository.getId(), hostedPrefixFile);
+      doUpdatePrefixFileAsync(false, mavenHostedRepository);
     }
-    return false;
   }
 
   // ==
@@ -932,6 +1051,8 @@ public class ManagerImpl
   public void publish(final MavenRepository mavenRepository, final PrefixSource prefixSource)
       throws IOException
   {
+    dropHostedPrefixFile(mavenRepository);
+
     // publish prefix file
     final FilePrefixSource prefixesFile = getPrefixSourceFor(mavenRepository);
     try {
@@ -953,6 +1074,8 @@ public class ManagerImpl
   public void unpublish(final MavenRepository mavenRepository)
       throws IOException
   {
+    dropHostedPrefixFile(mavenRepository);
+
     getPrefixSourceFor(mavenRepository).writeUnsupported();
 
     // event
@@ -976,6 +1099,70 @@ public class ManagerImpl
     }
   }
 
+  /**
+   * Adds the entries to prefix files of groups containing the repository (directly or transitively), without
+   * recalculating them from member prefix files. Groups being unpublished are left unpublished, as adding entries
+   * does not change that.
+   */
+  protected void propagatePrefixFileAdditionsOf(final MavenRepository mavenRepository, final List<String> added) {
+    if (added.isEmpty()) {
+      return;
+    }
+    for (GroupRepository groupRepository : repositoryRegistry.getGroupsOfRepository(mavenRepository)) {
+      final MavenGroupRepository mavenGroupRepository = groupRepository.adaptToFacet(MavenGroupRepository.class);
+      if (mavenGroupRepository == null) {
+        continue;
+      }
+      if (constrainedExecutor.hasRunningWithKey(mavenGroupRepository.getId())) {
+        // an update is running that might have missed the additions, restart it
+        doUpdatePrefixFileAsync(true, mavenGroupRepository);
+        continue;
+      }
+      final FilePrefixSource groupPrefixSource = getPrefixSourceFor(mavenGroupRepository);
+      final RepositoryItemUidLock lock = groupPrefixSource.getRepositoryItemUid().getLock();
+      final List<String> groupAdded = new ArrayList<String>();
+      try {
+        lock.lock(Action.update);
+        try {
+          if (!groupPrefixSource.supported()) {
+            continue;
+          }
+          final LinkedHashSet<String> entries = new LinkedHashSet<String>(groupPrefixSource.readEntries());
+          for (String entry : added) {
+            if (entries.add(entry)) {
+              groupAdded.add(entry);
+            }
+          }
+          if (groupAdded.isEmpty()) {
+            continue;
+          }
+          groupPrefixSource.writeEntries(new ArrayListPrefixSource(new ArrayList<String>(entries)));
+        }
+        finally {
+          lock.unlock();
+        }
+      }
+      catch (IOException e) {
+        log.debug("Could not add entries to prefix file of {}, scheduling full update", mavenGroupRepository, e);
+        doUpdatePrefixFileAsync(true, mavenGroupRepository);
+        continue;
+      }
+
+      // event
+      eventBus.post(new PrefixFilePublishedRepositoryEvent(mavenGroupRepository, groupPrefixSource));
+
+      // propagate
+      propagatePrefixFileAdditionsOf(mavenGroupRepository, groupAdded);
+    }
+  }
+
+  protected void dropHostedPrefixFile(final MavenRepository mavenRepository) {
+    if (hostedPrefixFiles.remove(mavenRepository.getId()) != null) {
+      log.debug("Dropped resident prefix list of {}", mavenRepository);
+    }
+    hostedPrefixFilesGeneration.incrementAndGet();
+  }
+
   // ==
 
   @Override
@@ -1002,4 +1189,37 @@ public class ManagerImpl
   public void onNexusStoppedEvent(final NexusStoppedEvent evt) {
     shutdown();
   }
+
+  // ==
+
+  /**
+   * Resident prefix list of hosted repository, {@code null} prefix tree means prefix file is not supported (hosted
+   * repository is marked for noscrape).
+   */
+  protected static class HostedPrefixFile
+  {
+    private final MavenHostedRepository mavenHostedRepository;
+
+    private final PrefixTree prefixTree;
+
+    private final AtomicBoolean updateScheduled;
+
+    public HostedPrefixFile(final MavenHostedRepository mavenHostedRepository, final PrefixTree prefixTree) {
+      this.mavenHostedRepository = checkNotNull(mavenHostedRepository);
+      this.prefixTree = prefixTree;
+      this.updateScheduled = new AtomicBoolean(false);
+    }
+
+    public MavenHostedRepository getMavenHostedRepository() {
+      return mavenHostedRepository;
+    }
+
+    public PrefixTree getPrefixTree() {
+      return prefixTree;
+    }
+
+    public AtomicBoolean getUpdateScheduled() {
+      return updateScheduled;
+    }
+  }
 }
@@ -0,0 +1,308 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven.routing.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.sonatype.nexus.util.PathUtils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Resident, modifiable prefix list of a hosted repository, kept as a tree of path elements. It has same semantics as
+ * {@link WritablePrefixSourceModifier}, but it is meant to stay in memory and accumulate changes, while the changes are
+ * persisted by taking them with {@link #takeChanges()} from time to time. Lookups are lock free, modifications are
+ * serialized. Offering an entry that is already matched (most common case, like a deploy into an existing group ID)
+ * costs a lookup only.
+ *
+ * @since 3.0
+ */
+public class PrefixTree
+{
+  /**
+   * Changes of prefix list since previous {@link #takeChanges()} invocation.
+   */
+  public static class Changes
+  {
+    private final List<String> entries;
+
+    private final List<String> added;
+
+    private final List<String> removed;
+
+    private Changes(final List<String> entries, final List<String> added, final List<String> removed) {
+      this.entries = entries;
+      this.added = added;
+      this.removed = removed;
+    }
+
+    /**
+     * All the entries of prefix list.
+     */
+    public List<String> getEntries() {
+      return entries;
+    }
+
+    /**
+     * Entries added to prefix list.
+     */
+    public List<String> getAdded() {
+      return added;
+    }
+
+    /**
+     * Entries removed from prefix list.
+     */
+    public List<String> getRemoved() {
+      return removed;
+    }
+  }
+
+  private static class Node
+  {
+    private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<String, Node>(4, 0.75f, 1);
+
+    /**
+     * The prefix list entry this node represents, or {@code null}.
+     */
+    private volatile String entry;
+
+    /**
+     * Count of entries in subtree of this node (including this node).
+     */
+    private int count;
+  }
+
+  private final int maxDepth;
+
+  private final Node root;
+
+  private final LinkedHashSet<String> entries;
+
+  private final LinkedHashSet<String> added;
+
+  private final LinkedHashSet<String> removed;
+
+  /**
+   * Constructor.
+   *
+   * @param entries  the initial entries of prefix list.
+   * @param maxDepth the max depth of offered entries.
+   */
+  public PrefixTree(final List<String> entries, final int maxDepth) {
+    checkNotNull(entries);
+    checkArgument(maxDepth >= 2);
+    this.maxDepth = maxDepth;
+    this.root = new Node();
+    this.entries = new LinkedHashSet<String>();
+    this.added = new LinkedHashSet<String>();
+    this.removed = new LinkedHashSet<String>();
+    for (String entry : entries) {
+      if (this.entries.add(entry)) {
+        insert(PathUtils.elementsOf(entry), entry);
+      }
+    }
+  }
+
+  /**
+   * Adds entry (capped to max depth) to prefix list, unless it is already matched by an entry.
+   *
+   * @return {@code true} if the invocation actually did change the prefix list.
+   */
+  public boolean offerEntry(final String entry) {
+    final List<String> elements = PathUtils.elementsOf(entry);
+    final List<String> capped = elements.size() > maxDepth ? elements.subList(0, maxDepth) : elements;
+    if (matches(capped)) {
+      return false;
+    }
+    synchronized (this) {
+      if (matches(capped)) {
+        return false;
+      }
+      final String normalizedEntry = PathUtils.pathFrom(capped);
+      entries.add(normalizedEntry);
+      insert(capped, normalizedEntry);
+      if (!removed.remove(normalizedEntry)) {
+        added.add(normalizedEntry);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Removes entry and all the entries below it from prefix list.
+   *
+   * @return {@code true} if the invocation actually did change the prefix list.
+   */
+  public boolean revokeEntry(final String entry) {
+    final List<String> elements = PathUtils.elementsOf(entry);
+    if (!contains(elements)) {
+      return false;
+    }
+    synchronized (this) {
+      final List<String> revoked = remove(elements);
+      for (String revokedEntry : revoked) {
+        entries.remove(revokedEntry);
+        if (!added.remove(revokedEntry)) {
+          removed.add(revokedEntry);
+        }
+      }
+      return !revoked.isEmpty();
+    }
+  }
+
+  /**
+   * Returns {@code true} if path is matched by any entry (an entry is the path or is a parent of the path). Entries
+   * deeper than max depth are cut to max depth for matching, same as {@link PathMatcher} does.
+   */
+  public boolean matches(final String path) {
+    return matches(PathUtils.elementsOf(path));
+  }
+
+  /**
+   * Returns {@code true} if path is matched by any entry, or is a parent of any entry.
+   */
+  public boolean contains(final String path) {
+    return contains(PathUtils.elementsOf(path));
+  }
+
+  /**
+   * Returns {@code true} if prefix list has changes not yet taken.
+   */
+  public synchronized boolean hasChanges() {
+    return !added.isEmpty() || !removed.isEmpty();
+  }
+
+  /**
+   * Returns the changes since last invocation, or {@code null} if there were none.
+   */
+  public synchronized Changes takeChanges() {
+    if (!hasChanges()) {
+      return null;
+    }
+    final Changes changes =
+        new Changes(new ArrayList<String>(entries), new ArrayList<String>(added), new ArrayList<String>(removed));
+    added.clear();
+    removed.clear();
+    return changes;
+  }
+
+  // ==
+
+  private boolean matches(final List<String> elements) {
+    Node node = root;
+    if (node.entry != null) {
+      return true;
+    }
+    for (int i = 0; i < elements.size(); i++) {
+      node = node.children.get(elements.get(i));
+      if (node == null) {
+        return false;
+      }
+      if (node.entry != null || i + 1 == maxDepth) {
+        // entries deeper than max depth are matched as if they were cut to max depth
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean contains(final List<String> elements) {
+    Node node = root;
+    for (String element : elements) {
+      if (node.entry != null) {
+        return true;
+      }
+      node = node.children.get(element);
+      if (node == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Inserts entry. Must be called while holding the lock.
+   */
+  private void insert(final List<String> elements, final String entry) {
+    Node node = root;
+    node.count++;
+    for (String element : elements) {
+      Node child = node.children.get(element);
+      if (child == null) {
+        child = new Node();
+        node.children.put(element, child);
+      }
+      node = child;
+      node.count++;
+    }
+    if (node.entry != null) {
+      // was already present, undo counts
+      node = root;
+      node.count--;
+      for (String element : elements) {
+        node = node.children.get(element);
+        node.count--;
+      }
+    }
+    node.entry = entry;
+  }
+
+  /**
+   * Removes node on given path with it's whole subtree, returns the removed entries. Must be called while holding
+   * the lock.
+   */
+  private List<String> remove(final List<String> elements) {
+    final List<String> result = new ArrayList<String>();
+    final Node[] nodes = new Node[elements.size() + 1];
+    nodes[0] = root;
+    for (int i = 0; i < elements.size(); i++) {
+      nodes[i + 1] = nodes[i].children.get(elements.get(i));
+      if (nodes[i + 1] == null) {
+        return result;
+      }
+    }
+    final Node node = nodes[elements.size()];
+    collect(node, result);
+    final int count = node.count;
+    if (elements.isEmpty()) {
+      root.children.clear();
+      root.entry = null;
+      root.count = 0;
+      return result;
+    }
+    nodes[elements.size() - 1].children.remove(elements.get(elements.size() - 1));
+    for (int i = elements.size() - 1; i >= 0; i--) {
+      nodes[i].count -= count;
+      if (i > 0 && nodes[i].count == 0) {
+        nodes[i - 1].children.remove(elements.get(i - 1));
+      }
+    }
+    return result;
+  }
+
+  private static void collect(final Node node, final List<String> result) {
+    if (node.entry != null) {
+      result.add(node.entry);
+    }
+    for (Map.Entry<String, Node> child : node.children.entrySet()) {
+      collect(child.getValue(), result);
+    }
+  }
+}
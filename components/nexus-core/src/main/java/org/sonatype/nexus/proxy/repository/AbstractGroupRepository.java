@@ -18,6 +18,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.inject.Inject;
 
@@ -42,9 +46,15 @@ import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.item.uid.IsGroupLocalOnlyAttribute;
 import org.sonatype.nexus.proxy.mapping.RequestRepositoryMapper;
 import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.threads.ThreadPoolManager;
 import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
 import org.sonatype.nexus.proxy.walker.WalkerFilter;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.eventbus.Subscribe;
 
@@ -53,6 +63,10 @@ import static org.sonatype.nexus.proxy.ItemNotFoundException.reasonFor;
 
 /**
  * An abstract group repository. The specific behaviour (ie. metadata merge) should be implemented in subclases.
+ * <p>
+ * By default members are queried one by one, in member order. When "memberParallelism" is set to 2 or more, members
+ * are queried concurrently (at most that many at once) on the repository thread pool, while the result still honors
+ * member order (first member having the item wins). Member lookup times are published as metrics in that mode.
  *
  * @author cstamas
  */
@@ -66,14 +80,18 @@ public abstract class AbstractGroupRepository
 
   private RequestRepositoryMapper requestRepositoryMapper;
 
+  private ThreadPoolManager poolManager;
+
   // ==
 
   @Inject
   public void populateAbstractGroupRepository(
-      final RepositoryRegistry repoRegistry, final RequestRepositoryMapper requestRepositoryMapper)
+      final RepositoryRegistry repoRegistry, final RequestRepositoryMapper requestRepositoryMapper,
+      final ThreadPoolManager poolManager)
   {
     this.repoRegistry = checkNotNull(repoRegistry);
     this.requestRepositoryMapper = requestRepositoryMapper;
+    this.poolManager = checkNotNull(poolManager);
   }
 
   @Override
@@ -81,6 +99,22 @@ public abstract class AbstractGroupRepository
     return (AbstractGroupRepositoryConfiguration) super.getExternalConfiguration(forWrite);
   }
 
+  /**
+   * Returns the count of members queried concurrently, values below 2 mean members are queried one by one.
+   *
+   * @since 3.0
+   */
+  public int getMemberParallelism() {
+    return getExternalConfiguration(false).getMemberParallelism();
+  }
+
+  /**
+   * @since 3.0
+   */
+  public void setMemberParallelism(final int parallelism) {
+    getExternalConfiguration(true).setMemberParallelism(parallelism);
+  }
+
   @Subscribe
   public void onEvent(final RepositoryRegistryEventRemove evt) {
     final AbstractGroupRepositoryConfiguration extConfig = this.getExternalConfiguration(false);
@@ -172,6 +206,8 @@ public abstract class AbstractGroupRepository
     final HashMap<Repository, Throwable> memberThrowables = Maps.newLinkedHashMap();
 
     if (!isRequestGroupLocalOnly) {
+      // items of members shadowed by same named ones are dropped, do not load their attributes (request is ours)
+      request.setRequestLightweightListing(true);
       for (Repository repo : getMemberRepositories()) {
         if (!request.getProcessedRepositories().contains(repo.getId())) {
           try {
@@ -255,7 +291,44 @@ public abstract class AbstractGroupRepository
       final boolean isRequestGroupLocalOnly =
           request.isRequestGroupLocalOnly() || uid.getBooleanAttributeValue(IsGroupLocalOnlyAttribute.class);
 
-      if (!isRequestGroupLocalOnly) {
+      if (!isRequestGroupLocalOnly && isMemberParallelismEnabled()) {
+        final MemberLookups lookups = new MemberLookups(request, getRequestRepositories(request), true);
+        try {
+          for (int i = 0; i < lookups.size(); i++) {
+            final Repository repo = lookups.getMember(i);
+            try {
+              StorageItem item = lookups.getItem(i);
+
+              if (item instanceof StorageCollectionItem) {
+                item = new DefaultStorageCollectionItem(this, request, true, false);
+              }
+
+              return item;
+            }
+            catch (IllegalOperationException e) {
+              // ignored, but bookkeeping happens now
+              memberThrowables.put(repo, e);
+            }
+            catch (ItemNotFoundException e) {
+              // ignored, but bookkeeping happens now
+              memberThrowables.put(repo, e);
+            }
+            catch (StorageException e) {
+              // ignored, but bookkeeping happens now
+              memberThrowables.put(repo, e);
+            }
+            catch (AccessDeniedException e) {
+              // cannot happen, since we add/check for AccessManager.REQUEST_AUTHORIZED flag
+              // ignored, but bookkeeping happens now
+              memberThrowables.put(repo, e);
+            }
+          }
+        }
+        finally {
+          lookups.cancel();
+        }
+      }
+      else if (!isRequestGroupLocalOnly) {
         for (Repository repo : getRequestRepositories(request)) {
           if (!request.getProcessedRepositories().contains(repo.getId())) {
             try {
@@ -444,7 +517,46 @@ public abstract class AbstractGroupRepository
 
     final HashMap<Repository, Throwable> memberThrowables = Maps.newLinkedHashMap();
 
-    if (!isRequestGroupLocalOnly) {
+    if (!isRequestGroupLocalOnly && isMemberParallelismEnabled()) {
+      final MemberLookups lookups = new MemberLookups(request, getRequestRepositories(request), false);
+      try {
+        for (int i = 0; i < lookups.size(); i++) {
+          final Repository repository = lookups.getMember(i);
+          try {
+            items.add(lookups.getItem(i));
+          }
+          catch (ItemNotFoundException e) {
+            // ignored, but bookkeeping happens now
+            memberThrowables.put(repository, e);
+          }
+          catch (RepositoryNotAvailableException e) {
+            if (log.isDebugEnabled()) {
+              log.debug(
+                  RepositoryStringUtils.getFormattedMessage(
+                      "Member repository %s is not available, request failed.", e.getRepository()));
+            }
+            // ignored, but bookkeeping happens now
+            memberThrowables.put(repository, e);
+          }
+          catch (StorageException e) {
+            throw e;
+          }
+          catch (IllegalOperationException e) {
+            log.warn("Member repository request failed", e);
+            // ignored, but bookkeeping happens now
+            memberThrowables.put(repository, e);
+          }
+          catch (AccessDeniedException e) {
+            // cannot happen, access is not checked for member lookups here
+            memberThrowables.put(repository, e);
+          }
+        }
+      }
+      finally {
+        lookups.cancel();
+      }
+    }
+    else if (!isRequestGroupLocalOnly) {
       for (Repository repository : getRequestRepositories(request)) {
         if (!request.getProcessedRepositories().contains(repository.getId())) {
           try {
@@ -503,6 +615,140 @@ public abstract class AbstractGroupRepository
   // ===================================================================================
   // Inner stuff
 
+  protected boolean isMemberParallelismEnabled() {
+    return getMemberParallelism() > 1;
+  }
+
+  /**
+   * Concurrent lookups of an item in group members. Lookups are started in member order, and at most
+   * "memberParallelism" of them are in flight ahead of the one being waited for, while results are consumed in
+   * member order, so the outcome is same as with sequential processing. Each lookup works on its own copy of the
+   * request, and the copy's bookkeeping is merged back into original request once the lookup result is consumed.
+   * Lookups not consumed are cancelled: pending ones will not start, but running ones are let to finish (and cache
+   * what they fetched), as interrupting a thread in the middle of local storage I/O is not safe.
+   */
+  private class MemberLookups
+  {
+    private final ResourceStoreRequest request;
+
+    private final List<Repository> members;
+
+    private final boolean checkAccess;
+
+    private final List<ResourceStoreRequest> memberRequests;
+
+    private final List<Future<StorageItem>> lookups;
+
+    private MemberLookups(final ResourceStoreRequest request, final List<Repository> requestRepositories,
+                          final boolean checkAccess)
+    {
+      this.request = request;
+      this.members = Lists.newArrayListWithCapacity(requestRepositories.size());
+      for (Repository repo : requestRepositories) {
+        if (!request.getProcessedRepositories().contains(repo.getId())) {
+          members.add(repo);
+        }
+        else {
+          if (log.isDebugEnabled()) {
+            log.debug(
+                String.format(
+                    "Repository %s member of group %s was already processed during this request! Skipping it from processing. Request: %s",
+                    RepositoryStringUtils.getHumanizedNameString(repo),
+                    RepositoryStringUtils.getHumanizedNameString(AbstractGroupRepository.this),
+                    request.toString()));
+          }
+        }
+      }
+      this.checkAccess = checkAccess;
+      this.memberRequests = Lists.newArrayListWithCapacity(members.size());
+      this.lookups = Lists.newArrayListWithCapacity(members.size());
+    }
+
+    private int size() {
+      return members.size();
+    }
+
+    private Repository getMember(final int index) {
+      return members.get(index);
+    }
+
+    private StorageItem getItem(final int index)
+        throws IllegalOperationException, ItemNotFoundException, StorageException, AccessDeniedException
+    {
+      final int parallelism = getMemberParallelism();
+      while (lookups.size() < members.size() && lookups.size() < index + parallelism) {
+        final Repository member = members.get(lookups.size());
+        final ResourceStoreRequest memberRequest = request.cloneAndDetach();
+        memberRequests.add(memberRequest);
+        lookups.add(poolManager.getRepositoryThreadPool(AbstractGroupRepository.this).submit(
+            new MemberLookupCallable(member, memberRequest, checkAccess)));
+      }
+
+      try {
+        return lookups.get(index).get();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new LocalStorageException("Interrupted while waiting for member " + members.get(index).getId()
+            + " of group " + getId(), e);
+      }
+      catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        Throwables.propagateIfInstanceOf(cause, IllegalOperationException.class);
+        Throwables.propagateIfInstanceOf(cause, ItemNotFoundException.class);
+        Throwables.propagateIfInstanceOf(cause, StorageException.class);
+        Throwables.propagateIfInstanceOf(cause, AccessDeniedException.class);
+        throw Throwables.propagate(cause);
+      }
+      finally {
+        for (String repositoryId : memberRequests.get(index).getProcessedRepositories()) {
+          if (!request.getProcessedRepositories().contains(repositoryId)) {
+            request.addProcessedRepository(repositoryId);
+          }
+        }
+        for (Map.Entry<String, List<String>> mapping : memberRequests.get(index).getAppliedMappings().entrySet()) {
+          request.getAppliedMappings().put(mapping.getKey(), mapping.getValue());
+        }
+      }
+    }
+
+    private void cancel() {
+      for (Future<StorageItem> lookup : lookups) {
+        lookup.cancel(false);
+      }
+    }
+  }
+
+  private class MemberLookupCallable
+      implements Callable<StorageItem>
+  {
+    private final Repository member;
+
+    private final ResourceStoreRequest request;
+
+    private final boolean checkAccess;
+
+    private MemberLookupCallable(final Repository member, final ResourceStoreRequest request,
+                                 final boolean checkAccess)
+    {
+      this.member = member;
+      this.request = request;
+      this.checkAccess = checkAccess;
+    }
+
+    @Override
+    public StorageItem call() throws Exception {
+      final Timer.Context context = SharedMetricRegistries.getOrCreate("nexus")
+          .timer(MetricRegistry.name(AbstractGroupRepository.class, getId(), member.getId(), "retrieve")).time();
+      try {
+        return checkAccess ? member.retrieveItem(request) : member.retrieveItem(false, request);
+      }
+      finally {
+        context.stop();
+      }
+    }
+  }
+
   @Override
   public void maintainNotFoundCache(ResourceStoreRequest request)
       throws ItemNotFoundException
@@ -31,6 +31,8 @@ public class AbstractGroupRepositoryConfiguration
 {
   private static final String MEMBER_REPOSITORIES = "memberRepositories";
 
+  private static final String MEMBER_PARALLELISM = "memberParallelism";
+
   public AbstractGroupRepositoryConfiguration(Xpp3Dom configuration) {
     super(configuration);
   }
@@ -60,6 +62,21 @@ public class AbstractGroupRepositoryConfiguration
     removeFromCollection(getRootNode(), MEMBER_REPOSITORIES, repositoryId);
   }
 
+  /**
+   * @return the count of members to query concurrently, values below 2 mean members are queried one by one.
+   * @since 3.0
+   */
+  public int getMemberParallelism() {
+    return Integer.parseInt(getNodeValue(getRootNode(), MEMBER_PARALLELISM, "0"));
+  }
+
+  /**
+   * @since 3.0
+   */
+  public void setMemberParallelism(int parallelism) {
+    setNodeValue(getRootNode(), MEMBER_PARALLELISM, String.valueOf(parallelism));
+  }
+
   @Override
   public ValidationResponse doValidateChanges(ApplicationConfiguration applicationConfiguration,
                                               CoreConfiguration owner, Xpp3Dom config)
@@ -20,6 +20,10 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.inject.Inject;
 import javax.net.ssl.SSLException;
@@ -48,13 +52,18 @@ import org.sonatype.nexus.proxy.events.RepositoryItemEventCacheCreate;
 import org.sonatype.nexus.proxy.events.RepositoryItemEventCacheUpdate;
 import org.sonatype.nexus.proxy.events.RepositoryItemValidationEvent;
 import org.sonatype.nexus.proxy.item.AbstractStorageItem;
+import org.sonatype.nexus.proxy.item.ContentLocator;
+import org.sonatype.nexus.proxy.item.ContentSpool;
+import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
 import org.sonatype.nexus.proxy.item.RepositoryItemUid;
 import org.sonatype.nexus.proxy.item.RepositoryItemUidLock;
 import org.sonatype.nexus.proxy.item.StorageCollectionItem;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.repository.EvictUnusedItemsWalkerProcessor.EvictUnusedItemsWalkerFilter;
 import org.sonatype.nexus.proxy.repository.threads.ThreadPoolManager;
 import org.sonatype.nexus.proxy.storage.UnsupportedStorageOperationException;
+import org.sonatype.nexus.proxy.storage.local.fs.DefaultFSLocalRepositoryStorage;
 import org.sonatype.nexus.proxy.storage.remote.AbstractHTTPRemoteRepositoryStorage;
 import org.sonatype.nexus.proxy.storage.remote.DefaultRemoteStorageContext;
 import org.sonatype.nexus.proxy.storage.remote.RemoteRepositoryStorage;
@@ -108,6 +117,21 @@ public abstract class AbstractProxyRepository
    */
   private static final long AUTO_BLOCK_STATUS_MAX_RETAIN_TIME = 60L * 60L * 1000L;
 
+  /**
+   * Enables "stream-through" caching: clients get proxied content while it is being cached, and concurrent clients
+   * requesting same item attach to the in-progress download instead of waiting for it to complete. Disabled by
+   * default.
+   */
+  private static final boolean STREAM_THROUGH_ENABLED = SystemPropertiesHelper.getBoolean(
+      "nexus.proxy.streamThrough", false);
+
+  /**
+   * Items with known length smaller than this (in bytes) are always fully cached and validated before being served,
+   * even if stream-through caching is enabled: 1 MB.
+   */
+  private static final long STREAM_THROUGH_MIN_SIZE = SystemPropertiesHelper.getLong(
+      "nexus.proxy.streamThrough.minSize", 1024L * 1024L);
+
   // == injected
 
   private ThreadPoolManager poolManager;
@@ -154,12 +178,23 @@ public abstract class AbstractProxyRepository
    */
   private volatile boolean remoteUrlChanged = false;
 
+  /**
+   * if remote connection pool size changed, remote storage context needs update after save
+   */
+  private volatile boolean remoteConnectionPoolSizeChanged = false;
+
   /**
    * How much should be the last known remote status be retained.
    */
   private volatile NumberSequence remoteStatusRetainTimeSequence = new ConstantNumberSequence(
       REMOTE_STATUS_RETAIN_TIME);
 
+  /**
+   * The in-progress stream-through downloads, keyed by item path.
+   */
+  private final ConcurrentMap<String, StreamingDownload> streamingDownloads =
+      new ConcurrentHashMap<String, StreamingDownload>();
+
   @Inject
   public void populateAbstractProxyRepository(ThreadPoolManager poolManager) {
     this.poolManager = checkNotNull(poolManager);
@@ -226,7 +261,15 @@ public abstract class AbstractProxyRepository
     boolean result = super.commitChanges();
 
     if (result) {
+      // remote host connection limit is applied when remote storage (re)creates its context
+      if (remoteConnectionPoolSizeChanged || (remoteUrlChanged && getRemoteConnectionPoolSize() > 0)) {
+        final RemoteStorageContext ctx = getRemoteStorageContext();
+        if (ctx != null) {
+          ctx.incrementGeneration();
+        }
+      }
       this.remoteUrlChanged = false;
+      this.remoteConnectionPoolSizeChanged = false;
     }
 
     return result;
@@ -235,6 +278,7 @@ public abstract class AbstractProxyRepository
   @Override
   public boolean rollbackChanges() {
     this.remoteUrlChanged = false;
+    this.remoteConnectionPoolSizeChanged = false;
 
     return super.rollbackChanges();
   }
@@ -335,6 +379,7 @@ public abstract class AbstractProxyRepository
   {
     request.setRequestLocalOnly(true);
     DefaultWalkerContext ctx = new DefaultWalkerContext(this, request, filter);
+    ctx.setParallel(true);
     ctx.getProcessors().add(processor);
     // and let it loose
     try {
@@ -376,6 +421,59 @@ public abstract class AbstractProxyRepository
     getExternalConfiguration(true).setItemAgingActive(value);
   }
 
+  /**
+   * Returns the count of concurrent range requests used to download large remote items, or a value less than 2 if
+   * chunked download is disabled for this repository.
+   *
+   * @since 3.0
+   */
+  public int getChunkedDownloadParallelism() {
+    return getExternalConfiguration(false).getChunkedDownloadParallelism();
+  }
+
+  /**
+   * @since 3.0
+   */
+  public void setChunkedDownloadParallelism(int parallelism) {
+    getExternalConfiguration(true).setChunkedDownloadParallelism(parallelism);
+  }
+
+  /**
+   * Returns the minimal remote item size (in bytes) for which chunked download is attempted.
+   *
+   * @since 3.0
+   */
+  public long getChunkedDownloadMinSize() {
+    return getExternalConfiguration(false).getChunkedDownloadMinSize();
+  }
+
+  /**
+   * @since 3.0
+   */
+  public void setChunkedDownloadMinSize(long size) {
+    getExternalConfiguration(true).setChunkedDownloadMinSize(size);
+  }
+
+  /**
+   * Returns the maximal count of pooled connections to the remote host of this repository, or a value less than 1 if
+   * the default per route limit applies.
+   *
+   * @since 3.0
+   */
+  public int getRemoteConnectionPoolSize() {
+    return getExternalConfiguration(false).getRemoteConnectionPoolSize();
+  }
+
+  /**
+   * @since 3.0
+   */
+  public void setRemoteConnectionPoolSize(int size) {
+    if (size != getRemoteConnectionPoolSize()) {
+      remoteConnectionPoolSizeChanged = true;
+    }
+    getExternalConfiguration(true).setRemoteConnectionPoolSize(size);
+  }
+
   @Override
   public boolean isAutoBlockActive() {
     return getExternalConfiguration(false).isAutoBlockActive();
@@ -848,7 +946,12 @@ public abstract class AbstractProxyRepository
 
       final RepositoryItemUidLock itemLock = item.getRepositoryItemUid().getLock();
 
-      itemLock.lock(Action.create);
+      // stream-through caching writes content unlocked to let readers attach, local storage locks the rename only
+      final boolean streaming = item.getItemContext().containsKey(ContentSpool.CTX_KEY, false);
+
+      if (!streaming) {
+        itemLock.lock(Action.create);
+      }
 
       final Action action;
 
@@ -867,7 +970,9 @@ public abstract class AbstractProxyRepository
 
       }
       finally {
-        itemLock.unlock();
+        if (!streaming) {
+          itemLock.unlock();
+        }
       }
 
       result.getItemContext().setParentContext(item.getItemContext());
@@ -927,6 +1032,12 @@ public abstract class AbstractProxyRepository
 
     final RepositoryItemUid itemUid = createUid(request.getRequestPath());
 
+    // if item is being downloaded in stream-through mode, just attach to it, no need to wait for anything
+    final StorageItem streamedItem = attachToStreamingDownload(request, itemUid);
+    if (streamedItem != null) {
+      return streamedItem;
+    }
+
     final RepositoryItemUidLock itemUidLock = itemUid.getLock();
 
     itemUidLock.lock(Action.read);
@@ -965,6 +1076,13 @@ public abstract class AbstractProxyRepository
         itemUidLock.lock(Action.create);
 
         try {
+          // a stream-through download may have started while we were blocked, and the item is not
+          // in local storage until it is completely spooled, so attach to it instead of going remote again
+          final StorageItem startedItem = attachToStreamingDownload(request, itemUid);
+          if (startedItem != null) {
+            return startedItem;
+          }
+
           // check local copy again, we were maybe blocked for a download, and we need to
           // recheck local copy after we acquired exclusive lock
           if (!request.isRequestRemoteOnly()) {
@@ -995,6 +1113,28 @@ public abstract class AbstractProxyRepository
     }
   }
 
+  /**
+   * Returns item attached to the stream-through download of the requested item, or {@code null} if the item is not
+   * being downloaded (or the download failed).
+   */
+  private StorageItem attachToStreamingDownload(final ResourceStoreRequest request, final RepositoryItemUid itemUid) {
+    if (request.isRequestRemoteOnly() || streamingDownloads.isEmpty()) {
+      return null;
+    }
+
+    final StreamingDownload download = streamingDownloads.get(itemUid.getPath());
+
+    if (download == null || download.getSpool().isFailed()) {
+      return null;
+    }
+
+    if (log.isDebugEnabled()) {
+      log.debug("Item " + request.toString() + " is being downloaded, attaching to it.");
+    }
+
+    return download.createItem(request);
+  }
+
   protected void shouldTryRemote(final ResourceStoreRequest request)
       throws IllegalOperationException, ItemNotFoundException
   {
@@ -1361,6 +1501,11 @@ public abstract class AbstractProxyRepository
             AbstractStorageItem remoteItem =
                 getRemoteStorage().retrieveItem(this, request, remoteUrl);
 
+            if (shouldStreamThrough(request, remoteItem)) {
+              // caching and validation happens in background, no retries from this point on
+              return doStreamThroughItem(request, remoteUrl, remoteItem);
+            }
+
             remoteItem = doCacheItem(remoteItem);
 
             if (doValidateRemoteItemContent(request, remoteUrl, remoteItem, events)) {
@@ -1487,6 +1632,53 @@ public abstract class AbstractProxyRepository
     }
   }
 
+  /**
+   * Returns {@code true} if the passed in just retrieved remote item should be cached in stream-through mode, when
+   * clients are served with content as it arrives from remote.
+   *
+   * @since 3.0
+   */
+  protected boolean shouldStreamThrough(final ResourceStoreRequest request, final AbstractStorageItem remoteItem) {
+    // only external requests (an actual client is waiting) and only if local storage can spool
+    if (!STREAM_THROUGH_ENABLED || !request.isExternal() || !(remoteItem instanceof StorageFileItem)
+        || !(getLocalStorage() instanceof DefaultFSLocalRepositoryStorage)) {
+      return false;
+    }
+    final long length = ((StorageFileItem) remoteItem).getLength();
+    return length == ContentLocator.UNKNOWN_LENGTH || length >= STREAM_THROUGH_MIN_SIZE;
+  }
+
+  /**
+   * Caches the remote item in background, and returns an item that reads the content as it is being written to local
+   * storage. Caching and content validation happens on repository thread pool, if it fails, the clients reading the
+   * returned item will get an IO error when reaching the end of written content. Concurrent requests for same item
+   * are served with same content while the download is in progress, see {@link #doRetrieveItem(ResourceStoreRequest)}.
+   *
+   * @since 3.0
+   */
+  protected AbstractStorageItem doStreamThroughItem(final ResourceStoreRequest request, final String remoteUrl,
+                                                    final AbstractStorageItem remoteItem)
+  {
+    final StorageFileItem remoteFile = (StorageFileItem) remoteItem;
+    final ContentSpool spool = new ContentSpool(remoteFile.getMimeType(), remoteFile.getLength());
+    remoteItem.getItemContext().put(ContentSpool.CTX_KEY, spool);
+
+    final StreamingDownload download = new StreamingDownload(remoteItem, spool);
+    streamingDownloads.put(download.getPath(), download);
+
+    final StreamThroughCacheRunnable runnable = new StreamThroughCacheRunnable(request, remoteUrl, download);
+    final ExecutorService pool = poolManager.getRepositoryThreadPool(this);
+    if (!pool.isShutdown()) {
+      pool.submit(runnable);
+    }
+    // a shut down pool silently discards tasks (CallerRunsPolicy), do it in caller thread unless a pool thread took it
+    if (pool.isShutdown()) {
+      runnable.run();
+    }
+
+    return download.createItem(request);
+  }
+
   protected List<String> getRemoteUrls(final ResourceStoreRequest request) {
     return Lists.newArrayList(getRemoteUrl());
   }
@@ -1540,6 +1732,104 @@ public abstract class AbstractProxyRepository
     }
   }
 
+  /**
+   * An in-progress stream-through download.
+   */
+  private class StreamingDownload
+  {
+    private final AbstractStorageItem remoteItem;
+
+    private final ContentSpool spool;
+
+    private StreamingDownload(final AbstractStorageItem remoteItem, final ContentSpool spool) {
+      this.remoteItem = remoteItem;
+      this.spool = spool;
+    }
+
+    public String getPath() {
+      return remoteItem.getRepositoryItemUid().getPath();
+    }
+
+    public ContentSpool getSpool() {
+      return spool;
+    }
+
+    public AbstractStorageItem createItem(final ResourceStoreRequest request) {
+      final DefaultStorageFileItem item =
+          new DefaultStorageFileItem(AbstractProxyRepository.this, request, true, true, spool);
+      item.setRemoteUrl(remoteItem.getRemoteUrl());
+      item.setModified(remoteItem.getModified());
+      item.setCreated(remoteItem.getCreated());
+      return item;
+    }
+  }
+
+  /**
+   * Caches and validates stream-through downloaded item, and signals the outcome to spool readers.
+   */
+  private class StreamThroughCacheRunnable
+      implements Runnable
+  {
+    private final ResourceStoreRequest request;
+
+    private final String remoteUrl;
+
+    private final StreamingDownload download;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private StreamThroughCacheRunnable(final ResourceStoreRequest request, final String remoteUrl,
+                                       final StreamingDownload download)
+    {
+      this.request = request;
+      this.remoteUrl = remoteUrl;
+      this.download = download;
+    }
+
+    @Override
+    public void run() {
+      if (!started.compareAndSet(false, true)) {
+        return;
+      }
+      final ContentSpool spool = download.getSpool();
+      try {
+        final List<RepositoryItemValidationEvent> events = new ArrayList<>();
+
+        final AbstractStorageItem cachedItem = doCacheItem(download.remoteItem);
+
+        if (doValidateRemoteItemContent(request, remoteUrl, cachedItem, events)) {
+          sendContentValidationEvents(request, events, true);
+
+          spool.finish();
+        }
+        else {
+          sendContentValidationEvents(request, events, false);
+
+          spool.fail(new IOException("Proxied item " + cachedItem.getRepositoryItemUid()
+              + " failed content validation"));
+
+          try {
+            getLocalStorage().deleteItem(AbstractProxyRepository.this, request);
+          }
+          catch (ItemNotFoundException e) {
+            // good, we want this item deleted
+          }
+        }
+      }
+      catch (Exception e) {
+        spool.fail(e);
+
+        log.warn("Failed stream-through caching of {} from URL {}", request, remoteUrl, e);
+      }
+      finally {
+        // no-op if the outcome was already signaled
+        spool.fail(new IOException("Stream-through caching ended unexpectedly"));
+
+        streamingDownloads.remove(download.getPath(), download);
+      }
+    }
+  }
+
   private class RemoteStatusUpdateCallable
       implements Callable<Object>
   {
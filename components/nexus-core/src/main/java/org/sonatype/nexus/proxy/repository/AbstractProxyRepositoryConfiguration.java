@@ -29,6 +29,12 @@ public abstract class AbstractProxyRepositoryConfiguration
 
   public static final String FILE_TYPE_VALIDATION = "fileTypeValidation";
 
+  private static final String CHUNKED_DOWNLOAD_PARALLELISM = "chunkedDownloadParallelism";
+
+  private static final String CHUNKED_DOWNLOAD_MIN_SIZE = "chunkedDownloadMinSize";
+
+  private static final String REMOTE_CONNECTION_POOL_SIZE = "remoteConnectionPoolSize";
+
   public AbstractProxyRepositoryConfiguration(Xpp3Dom configuration) {
     super(configuration);
   }
@@ -82,4 +88,46 @@ public abstract class AbstractProxyRepositoryConfiguration
   public void setAutoBlockActive(boolean value) {
     setNodeValue(getRootNode(), AUTO_BLOCK_ACTIVE, Boolean.toString(value));
   }
+
+  /**
+   * @since 3.0
+   */
+  public int getChunkedDownloadParallelism() {
+    return Integer.parseInt(getNodeValue(getRootNode(), CHUNKED_DOWNLOAD_PARALLELISM, "0"));
+  }
+
+  /**
+   * @since 3.0
+   */
+  public void setChunkedDownloadParallelism(int parallelism) {
+    setNodeValue(getRootNode(), CHUNKED_DOWNLOAD_PARALLELISM, String.valueOf(parallelism));
+  }
+
+  /**
+   * @since 3.0
+   */
+  public long getChunkedDownloadMinSize() {
+    return Long.parseLong(getNodeValue(getRootNode(), CHUNKED_DOWNLOAD_MIN_SIZE, String.valueOf(64L * 1024 * 1024)));
+  }
+
+  /**
+   * @since 3.0
+   */
+  public void setChunkedDownloadMinSize(long size) {
+    setNodeValue(getRootNode(), CHUNKED_DOWNLOAD_MIN_SIZE, String.valueOf(size));
+  }
+
+  /**
+   * @since 3.0
+   */
+  public int getRemoteConnectionPoolSize() {
+    return Integer.parseInt(getNodeValue(getRootNode(), REMOTE_CONNECTION_POOL_SIZE, "0"));
+  }
+
+  /**
+   * @since 3.0
+   */
+  public void setRemoteConnectionPoolSize(int size) {
+    setNodeValue(getRootNode(), REMOTE_CONNECTION_POOL_SIZE, String.valueOf(size));
+  }
 }
@@ -539,6 +539,7 @@ public abstract class AbstractRepository
     log.info("Rebuilding item attributes in repository {} from path='{}'", this, request.getRequestPath());
     final RecreateAttributesWalker walkerProcessor = new RecreateAttributesWalker(this, initialData);
     final DefaultWalkerContext ctx = new DefaultWalkerContext(this, request);
+    ctx.setParallel(true);
     ctx.getProcessors().add(walkerProcessor);
     // let it loose
     try {
@@ -20,10 +20,12 @@ import org.sonatype.nexus.proxy.item.StorageCollectionItem;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.walker.AbstractWalkerProcessor;
+import org.sonatype.nexus.proxy.walker.ConcurrentWalkerProcessor;
 import org.sonatype.nexus.proxy.walker.WalkerContext;
 
 public class RecreateAttributesWalker
     extends AbstractWalkerProcessor
+    implements ConcurrentWalkerProcessor
 {
   public static final String FORCE_ATTRIBUTE_RECREATION = RecreateAttributesWalker.class.getName()
       + ".forceAttributeRecreation";
@@ -16,14 +16,13 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 import org.sonatype.nexus.mime.MimeSupport;
 import org.sonatype.nexus.proxy.ItemNotFoundException;
 import org.sonatype.nexus.proxy.LocalStorageException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
-import org.sonatype.nexus.proxy.item.ChecksummingContentLocator;
+import org.sonatype.nexus.proxy.item.DigestingContentLocator;
 import org.sonatype.nexus.proxy.item.LinkPersister;
 import org.sonatype.nexus.proxy.item.RepositoryItemUid;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
@@ -153,21 +152,12 @@ public abstract class AbstractLocalRepositoryStorage
       throws LocalStorageException
   {
     try {
-      // replace content locator
-      ChecksummingContentLocator sha1cl =
-          new ChecksummingContentLocator(item.getContentLocator(), MessageDigest.getInstance("SHA1"),
-              StorageFileItem.DIGEST_SHA1_KEY, item.getItemContext());
-
-      // md5 is deprecated but still calculated
-      ChecksummingContentLocator md5cl =
-          new ChecksummingContentLocator(sha1cl, MessageDigest.getInstance("MD5"),
-              StorageFileItem.DIGEST_MD5_KEY, item.getItemContext());
-
-      item.setContentLocator(md5cl);
+      // replace content locator, all the digests are calculated in single pass while content is being stored
+      item.setContentLocator(new DigestingContentLocator(item.getContentLocator(), item.getItemContext()));
     }
     catch (NoSuchAlgorithmException e) {
       throw new LocalStorageException(
-          "The JVM does not support SHA1 MessageDigest or MD5 MessageDigest, that is essential for Nexus. We cannot write to local storage! Please run Nexus on JVM that does provide these MessageDigests.",
+          "The JVM does not support SHA1 MessageDigest or MD5 MessageDigest (or other enabled MessageDigest), that is essential for Nexus. We cannot write to local storage! Please run Nexus on JVM that does provide these MessageDigests.",
           e);
     }
   }
@@ -19,6 +19,9 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -80,6 +83,12 @@ public class DefaultFSLocalRepositoryStorage
    */
   private static final String BASEDIR_FILE = DefaultFSLocalRepositoryStorage.class.getName() + ".baseDir";
 
+  /**
+   * Size of largest file probed for link content. Link content is a short prefix and the UID of link target, hence
+   * is bound by path length limits of file systems.
+   */
+  private static final long MAX_LINK_SIZE = 8 * 1024;
+
   private FSPeer fsPeer;
 
   @Inject
@@ -215,34 +224,18 @@ public class DefaultFSLocalRepositoryStorage
           repository.getMimeRulesSource(), target.getAbsolutePath()));
 
       try {
+        final DefaultStorageFileItem file =
+            new DefaultStorageFileItem(repository, request, target.canRead(), target.canWrite(), fileContent);
+        repository.getAttributesHandler().fetchAttributes(file);
         // Probe for link only if we KNOW it's not an attribute but "plain" content
         final boolean isAttribute = uid.getBooleanAttributeValue(IsItemAttributeMetacontentAttribute.class);
-        final boolean isLink = !isAttribute && getLinkPersister().isLinkContent(fileContent);
-        if (isLink) {
-          try {
-            DefaultStorageLinkItem link =
-                new DefaultStorageLinkItem(repository, request, target.canRead(), target.canWrite(),
-                    getLinkPersister().readLinkContent(fileContent));
-            repository.getAttributesHandler().fetchAttributes(link);
-            link.setModified(target.lastModified());
-            link.setCreated(target.lastModified());
-            result = link;
-
-            repository.getAttributesHandler().touchItemLastRequested(System.currentTimeMillis(), link);
-          }
-          catch (NoSuchRepositoryException e) {
-            log.warn("Stale link object found on UID: {}, deleting it.", uid);
-            DirSupport.delete(target.toPath());
-            throw new ItemNotFoundException(reasonFor(request, repository,
-                "Path %s not found in local storage of repository %s", request.getRequestPath(),
-                RepositoryStringUtils.getHumanizedNameString(repository)), e);
-          }
+        if (!isAttribute && isLink(repository, file, target)) {
+          final DefaultStorageLinkItem link = retrieveLinkFromFile(repository, request, target, file);
+          result = link;
+
+          repository.getAttributesHandler().touchItemLastRequested(System.currentTimeMillis(), link);
         }
         else {
-          DefaultStorageFileItem file =
-              new DefaultStorageFileItem(repository, request, target.canRead(), target.canWrite(),
-                  fileContent);
-          repository.getAttributesHandler().fetchAttributes(file);
           file.setModified(target.lastModified());
           file.setCreated(target.lastModified());
           result = file;
@@ -272,6 +265,95 @@ public class DefaultFSLocalRepositoryStorage
     return result;
   }
 
+  /**
+   * Returns {@code true} if the file item, having its attributes fetched, is a link. Link status recorded in
+   * attributes is used if present. Otherwise (content stored before link status was recorded) files small enough to
+   * be a link are probed, in any repository, and the outcome is recorded so the probe happens once per item.
+   *
+   * @since 3.0
+   */
+  protected boolean isLink(final Repository repository, final StorageFileItem file, final File target)
+      throws IOException
+  {
+    final String linkStatus = file.getRepositoryItemAttributes().get(LinkPersister.LINK_ATTRIBUTE);
+    if (linkStatus != null) {
+      return Boolean.parseBoolean(linkStatus);
+    }
+    final boolean link = target.length() <= MAX_LINK_SIZE
+        && getLinkPersister().isLinkContent(file.getContentLocator());
+    file.getRepositoryItemAttributes().put(LinkPersister.LINK_ATTRIBUTE, Boolean.toString(link));
+    repository.getAttributesHandler().storeAttributes(file);
+    return link;
+  }
+
+  /**
+   * Creates link item of a file known to be a link, taking over attributes of the file item.
+   */
+  private DefaultStorageLinkItem retrieveLinkFromFile(final Repository repository, final ResourceStoreRequest request,
+                                                      final File target, final StorageFileItem file)
+      throws ItemNotFoundException, IOException
+  {
+    try {
+      final DefaultStorageLinkItem link = new DefaultStorageLinkItem(repository, request, target.canRead(),
+          target.canWrite(), getLinkPersister().readLinkContent(file.getContentLocator()));
+      link.getRepositoryItemAttributes().overlayAttributes(file.getRepositoryItemAttributes());
+      link.setModified(target.lastModified());
+      link.setCreated(target.lastModified());
+      return link;
+    }
+    catch (NoSuchRepositoryException e) {
+      log.warn("Stale link object found on UID: {}, deleting it.", file.getRepositoryItemUid());
+      DirSupport.delete(target.toPath());
+      throw new ItemNotFoundException(reasonFor(request, repository,
+          "Path %s not found in local storage of repository %s", request.getRequestPath(),
+          RepositoryStringUtils.getHumanizedNameString(repository)), e);
+    }
+  }
+
+  /**
+   * Retrieve item from file of a lightweight listing. File attributes are read once, file items get their attributes
+   * loaded only when accessed, and they are not touched as requested. Only files small enough are probed for being a
+   * link.
+   *
+   * @since 3.0
+   */
+  protected AbstractStorageItem retrieveListedItemFromFile(final Repository repository,
+                                                           final ResourceStoreRequest request,
+                                                           final File target)
+      throws ItemNotFoundException, LocalStorageException
+  {
+    try {
+      final BasicFileAttributes fileAttributes = Files.readAttributes(target.toPath(), BasicFileAttributes.class);
+      if (fileAttributes.isRegularFile()) {
+        final FileContentLocator fileContent = new FileContentLocator(target, getMimeSupport().guessMimeTypeFromPath(
+            repository.getMimeRulesSource(), target.getAbsolutePath()));
+        final RepositoryItemUid uid = repository.createUid(request.getRequestPath());
+        final boolean mayBeLink = fileAttributes.size() <= MAX_LINK_SIZE
+            && !uid.getBooleanAttributeValue(IsItemAttributeMetacontentAttribute.class);
+        if (!mayBeLink || !getLinkPersister().isLinkContent(fileContent)) {
+          return new LazyStorageFileItem(repository, request, target, fileAttributes, fileContent);
+        }
+        // content is the truth here, whatever link status is recorded
+        final DefaultStorageFileItem file =
+            new DefaultStorageFileItem(repository, request, true, true, fileContent);
+        repository.getAttributesHandler().fetchAttributes(file);
+        return retrieveLinkFromFile(repository, request, target, file);
+      }
+    }
+    catch (FileNotFoundException | NoSuchFileException e) {
+      // NEXUS-4570: file removed since directory was listed
+      log.debug("File '{}' removed before finished processing the directory listing", target, e);
+      throw new ItemNotFoundException(reasonFor(request, repository,
+          "Path %s not found in local storage of repository %s", request.getRequestPath(),
+          RepositoryStringUtils.getHumanizedNameString(repository)), e);
+    }
+    catch (IOException e) {
+      throw new LocalStorageException("Exception during reading up an item from FS storage!", e);
+    }
+    // directories, and anything else retrieveItemFromFile knows how to handle
+    return retrieveItemFromFile(repository, request, target);
+  }
+
   public boolean isReachable(Repository repository, ResourceStoreRequest request)
       throws LocalStorageException
   {
@@ -358,6 +440,10 @@ public class DefaultFSLocalRepositoryStorage
     final ContentLocator mdis =
         item instanceof StorageFileItem ? ((StorageFileItem) item).getContentLocator() : null;
 
+    // saves probing the content for being a link when retrieved
+    item.getRepositoryItemAttributes().put(LinkPersister.LINK_ATTRIBUTE,
+        Boolean.toString(item instanceof StorageLinkItem));
+
     try {
       repository.getAttributesHandler().storeAttributes(item, mdis);
     }
@@ -427,6 +513,7 @@ public class DefaultFSLocalRepositoryStorage
     Collection<File> files = getFSPeer().listItems(repository, getBaseDir(repository, request), request, target);
 
     if (files != null) {
+      final boolean lightweight = request.isRequestLightweightListing();
       for (File file : files) {
         String newPath = PathUtils.concatPaths(request.getRequestPath(), file.getName());
 
@@ -434,7 +521,12 @@ public class DefaultFSLocalRepositoryStorage
         try {
           ResourceStoreRequest collMemberReq = new ResourceStoreRequest(request);
           try {
-            result.add(retrieveItemFromFile(repository, collMemberReq, file));
+            if (lightweight) {
+              result.add(retrieveListedItemFromFile(repository, collMemberReq, file));
+            }
+            else {
+              result.add(retrieveItemFromFile(repository, collMemberReq, file));
+            }
           }
           catch (ItemNotFoundException e) {
             log.debug("ItemNotFoundException while listing directory, for request: {}",
@@ -15,16 +15,21 @@ package org.sonatype.nexus.proxy.storage.local.fs;
 import java.io.BufferedOutputStream;
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileFilter;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
 import java.util.List;
 
+import javax.annotation.Nullable;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
@@ -34,7 +39,10 @@ import org.sonatype.nexus.proxy.LocalStorageException;
 import org.sonatype.nexus.proxy.RemoteStorageEOFException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.access.Action;
+import org.sonatype.nexus.proxy.item.AbstractWrappingContentLocator;
 import org.sonatype.nexus.proxy.item.ContentLocator;
+import org.sonatype.nexus.proxy.item.ContentSpool;
+import org.sonatype.nexus.proxy.item.FileContentLocator;
 import org.sonatype.nexus.proxy.item.RepositoryItemUidLock;
 import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.item.uid.IsItemAttributeMetacontentAttribute;
@@ -49,6 +57,7 @@ import org.sonatype.sisu.goodies.common.Throwables2;
 
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.proxy.ItemNotFoundException.reasonFor;
@@ -112,18 +121,40 @@ public class DefaultFSPeer
       // we have _content_ (content or link), hence we store a file
       final File hiddenTarget = getHiddenTarget(repository, repositoryBaseDir, target, item);
 
+      // stream-through caching: concurrent readers are consuming the hidden file while we write it
+      final ContentSpool spool = getContentSpool(item);
+
+      // non reusable file content (as assembled chunked download) is moved in place, not copied
+      final File movableFile = getMovableFile(cl);
+
       // NEXUS-4550: Part One, saving to "hidden" (temp) file
       // In case of error cleaning up only what needed
       // No locking needed, AbstractRepository took care of that
-      try (final InputStream is = cl.getContent(); final OutputStream os = new BufferedOutputStream(
-          new FileOutputStream(hiddenTarget), getCopyStreamBufferSize())) {
-        StreamSupport.copy(is, os, getCopyStreamBufferSize());
-        os.flush();
+      try {
+        if (spool != null) {
+          spool.attach(hiddenTarget);
+          try (final InputStream is = cl.getContent(); final OutputStream os = new FileOutputStream(hiddenTarget)) {
+            copyAndAdvance(is, os, spool);
+          }
+        }
+        else if (movableFile != null) {
+          moveContent(cl, movableFile, hiddenTarget);
+        }
+        else {
+          try (final InputStream is = cl.getContent(); final OutputStream os = new BufferedOutputStream(
+              new FileOutputStream(hiddenTarget), getCopyStreamBufferSize())) {
+            StreamSupport.copy(is, os, getCopyStreamBufferSize());
+            os.flush();
+          }
+        }
       }
       catch (EOFException | RemoteStorageEOFException e)
       // NXCM-4852: Upload premature end (thrown by Jetty org.eclipse.jetty.io.EofException)
       // NXCM-4852: Proxy remote peer response premature end (should be translated by RRS)
       {
+        if (spool != null) {
+          spool.fail(e);
+        }
         try {
           Files.deleteIfExists(hiddenTarget.toPath());
         }
@@ -135,6 +166,9 @@ public class DefaultFSPeer
             item.getRepositoryItemUid().toString(), hiddenTarget.getAbsolutePath()), e);
       }
       catch (IOException e) {
+        if (spool != null) {
+          spool.fail(e);
+        }
         try {
           Files.deleteIfExists(hiddenTarget.toPath());
         }
@@ -158,8 +192,14 @@ public class DefaultFSPeer
       try {
         handleRenameOperation(hiddenTarget, target);
         target.setLastModified(item.getModified());
+        if (spool != null) {
+          spool.published(target);
+        }
       }
       catch (IOException e) {
+        if (spool != null) {
+          spool.fail(e);
+        }
         // if we ARE NOT handling attributes, do proper cleanup in case of IOEx
         // if we ARE handling attributes, leave backups in case of IOEx
         final boolean isCleanupNeeded =
@@ -262,24 +302,32 @@ public class DefaultFSPeer
   {
     if (target.isDirectory()) {
       final List<File> result = Lists.newArrayList();
-      final File[] files = target.listFiles(new FileFilter()
+      final DirectoryStream.Filter<Path> filter = new DirectoryStream.Filter<Path>()
       {
         @Override
-        public boolean accept(File pathname) {
-          return !pathname.getName().endsWith(HIDDEN_TARGET_SUFFIX);
+        public boolean accept(final Path entry) {
+          return !entry.getFileName().toString().endsWith(HIDDEN_TARGET_SUFFIX);
         }
-      });
-
-      if (files != null) {
-        for (File file : files) {
-          if (file.isFile() || file.isDirectory()) {
-            result.add(file);
+      };
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(target.toPath(), filter)) {
+        for (Path entry : entries) {
+          // one stat per entry, instead of File#isFile and File#isDirectory
+          final BasicFileAttributes attributes;
+          try {
+            attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+          }
+          catch (NoSuchFileException e) {
+            // removed since listed, or a dangling symlink
+            continue;
+          }
+          if (attributes.isRegularFile() || attributes.isDirectory()) {
+            result.add(entry.toFile());
           }
         }
       }
-      else {
+      catch (IOException | DirectoryIteratorException e) {
         throw new LocalStorageException("Cannot list directory in repository " + repository + ", path "
-            + target.getAbsolutePath());
+            + target.getAbsolutePath(), e);
       }
       return result;
     }
@@ -295,6 +343,71 @@ public class DefaultFSPeer
 
   // ==
 
+  /**
+   * Returns the {@link ContentSpool} passed in with item context, if any.
+   *
+   * @since 3.0
+   */
+  protected ContentSpool getContentSpool(final StorageItem item) {
+    final Object spool = item.getItemContext().get(ContentSpool.CTX_KEY, false);
+    return spool instanceof ContentSpool ? (ContentSpool) spool : null;
+  }
+
+  /**
+   * Copies content while advancing the spool after every chunk written, so concurrent readers see content as soon as
+   * it hit the disk. No buffering of output happens here, as chunks are flushed to file anyway.
+   *
+   * @since 3.0
+   */
+  protected void copyAndAdvance(final InputStream is, final OutputStream os, final ContentSpool spool)
+      throws IOException
+  {
+    final byte[] buffer = new byte[getCopyStreamBufferSize()];
+    int read;
+    while ((read = is.read(buffer)) != -1) {
+      os.write(buffer, 0, read);
+      spool.advance(read);
+    }
+    os.flush();
+  }
+
+  /**
+   * Returns the file backing the passed in content locator, if it is a non reusable {@link FileContentLocator} (as
+   * those of chunked remote downloads), that is to be deleted once consumed anyway.
+   *
+   * @since 3.0
+   */
+  @Nullable
+  protected File getMovableFile(final ContentLocator cl) {
+    final ContentLocator target = AbstractWrappingContentLocator.unwrap(cl);
+    if (target instanceof FileContentLocator && !target.isReusable()) {
+      return ((FileContentLocator) target).getFile();
+    }
+    return null;
+  }
+
+  /**
+   * Moves the file backing the content locator to hidden target instead of copying it. The content is still read
+   * (wrapping locators, like the digesting one, need to see it), but it is not written again. Falls back to copy if
+   * the move fails, as when the file cannot be moved while open.
+   *
+   * @since 3.0
+   */
+  protected void moveContent(final ContentLocator cl, final File source, final File hiddenTarget)
+      throws IOException
+  {
+    try (final InputStream is = cl.getContent()) {
+      StreamSupport.copy(is, ByteStreams.nullOutputStream(), getCopyStreamBufferSize());
+      try {
+        Files.move(source.toPath(), hiddenTarget.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+      catch (IOException e) {
+        log.debug("Could not move {} to {}, copying it", source, hiddenTarget, e);
+        Files.copy(source.toPath(), hiddenTarget.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+  }
+
   protected File getHiddenTarget(final Repository repository, final File repositoryBaseDir, final File target,
                                  final StorageItem item)
       throws LocalStorageException
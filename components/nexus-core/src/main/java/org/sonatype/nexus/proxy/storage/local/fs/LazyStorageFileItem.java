@@ -0,0 +1,279 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.storage.local.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.attributes.Attributes;
+import org.sonatype.nexus.proxy.item.ContentLocator;
+import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
+import org.sonatype.nexus.proxy.repository.Repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * File item of lightweight directory listings, created from file attributes read while listing. Its attributes are
+ * fetched from attribute storage, and its file checked for permissions, only when first accessed. Until then, the
+ * modification time reported is the one of the file, even for items having generated content.
+ *
+ * @since 3.0
+ */
+class LazyStorageFileItem
+    extends DefaultStorageFileItem
+{
+  private static final Logger log = LoggerFactory.getLogger(LazyStorageFileItem.class);
+
+  private final LazyAttributes lazyAttributes;
+
+  LazyStorageFileItem(final Repository repository, final ResourceStoreRequest request, final File file,
+                      final BasicFileAttributes fileAttributes, final ContentLocator contentLocator)
+  {
+    super(repository, request, true, true, contentLocator);
+    setModified(fileAttributes.lastModifiedTime().toMillis());
+    setCreated(fileAttributes.lastModifiedTime().toMillis());
+    this.lazyAttributes = new LazyAttributes(super.getRepositoryItemAttributes(), file);
+  }
+
+  @Override
+  public Attributes getRepositoryItemAttributes() {
+    // null while superclass constructor runs
+    return lazyAttributes != null ? lazyAttributes : super.getRepositoryItemAttributes();
+  }
+
+  @Override
+  public long getModified() {
+    if (lazyAttributes != null && !lazyAttributes.loaded) {
+      // content generator is known from attributes only, not worth loading them
+      return lazyAttributes.getModified();
+    }
+    return super.getModified();
+  }
+
+  private class LazyAttributes
+      implements Attributes
+  {
+    private final Attributes delegate;
+
+    private final File file;
+
+    private boolean permissionsChecked;
+
+    private boolean loaded;
+
+    private LazyAttributes(final Attributes delegate, final File file) {
+      this.delegate = delegate;
+      this.file = file;
+    }
+
+    private Attributes permissionsChecked() {
+      if (!permissionsChecked) {
+        permissionsChecked = true;
+        delegate.setReadable(file.canRead());
+        delegate.setWritable(file.canWrite());
+      }
+      return delegate;
+    }
+
+    private Attributes loaded() {
+      if (!loaded) {
+        loaded = true;
+        permissionsChecked();
+        // values from the file prevail over stored ones, just like with items retrieved
+        final String path = delegate.getPath();
+        final String repositoryId = delegate.getRepositoryId();
+        final boolean readable = delegate.isReadable();
+        final boolean writable = delegate.isWritable();
+        final long created = delegate.getCreated();
+        final long modified = delegate.getModified();
+        try {
+          getRepositoryItemUid().getRepository().getAttributesHandler().fetchAttributes(LazyStorageFileItem.this);
+        }
+        catch (IOException e) {
+          log.warn("Could not fetch attributes of {}", getRepositoryItemUid(), e);
+        }
+        delegate.setPath(path);
+        delegate.setRepositoryId(repositoryId);
+        delegate.setReadable(readable);
+        delegate.setWritable(writable);
+        delegate.setCreated(created);
+        delegate.setModified(modified);
+      }
+      return delegate;
+    }
+
+    @Override
+    public boolean containsKey(final String key) {
+      return loaded().containsKey(key);
+    }
+
+    @Override
+    public String get(final String key) {
+      return loaded().get(key);
+    }
+
+    @Override
+    public String put(final String key, final String value) {
+      return loaded().put(key, value);
+    }
+
+    @Override
+    public String remove(final String key) {
+      return loaded().remove(key);
+    }
+
+    @Override
+    public void putAll(final Map<? extends String, ? extends String> map) {
+      loaded().putAll(map);
+    }
+
+    @Override
+    public void overlayAttributes(final Attributes repositoryItemAttributes) {
+      loaded().overlayAttributes(repositoryItemAttributes);
+    }
+
+    @Override
+    public int getGeneration() {
+      return loaded().getGeneration();
+    }
+
+    @Override
+    public void setGeneration(final int value) {
+      loaded().setGeneration(value);
+    }
+
+    @Override
+    public void incrementGeneration() {
+      loaded().incrementGeneration();
+    }
+
+    @Override
+    public String getPath() {
+      return delegate.getPath();
+    }
+
+    @Override
+    public void setPath(final String value) {
+      delegate.setPath(value);
+    }
+
+    @Override
+    public boolean isReadable() {
+      return permissionsChecked().isReadable();
+    }
+
+    @Override
+    public void setReadable(final boolean value) {
+      permissionsChecked().setReadable(value);
+    }
+
+    @Override
+    public boolean isWritable() {
+      return permissionsChecked().isWritable();
+    }
+
+    @Override
+    public void setWritable(final boolean value) {
+      permissionsChecked().setWritable(value);
+    }
+
+    @Override
+    public String getRepositoryId() {
+      return delegate.getRepositoryId();
+    }
+
+    @Override
+    public void setRepositoryId(final String value) {
+      delegate.setRepositoryId(value);
+    }
+
+    @Override
+    public long getCreated() {
+      return delegate.getCreated();
+    }
+
+    @Override
+    public void setCreated(final long value) {
+      delegate.setCreated(value);
+    }
+
+    @Override
+    public long getModified() {
+      return delegate.getModified();
+    }
+
+    @Override
+    public void setModified(final long value) {
+      delegate.setModified(value);
+    }
+
+    @Override
+    public long getStoredLocally() {
+      return loaded().getStoredLocally();
+    }
+
+    @Override
+    public void setStoredLocally(final long value) {
+      loaded().setStoredLocally(value);
+    }
+
+    @Override
+    public long getCheckedRemotely() {
+      return loaded().getCheckedRemotely();
+    }
+
+    @Override
+    public void setCheckedRemotely(final long value) {
+      loaded().setCheckedRemotely(value);
+    }
+
+    @Override
+    public long getLastRequested() {
+      return loaded().getLastRequested();
+    }
+
+    @Override
+    public void setLastRequested(final long value) {
+      loaded().setLastRequested(value);
+    }
+
+    @Override
+    public boolean isExpired() {
+      return loaded().isExpired();
+    }
+
+    @Override
+    public void setExpired(final boolean value) {
+      loaded().setExpired(value);
+    }
+
+    @Override
+    public String getRemoteUrl() {
+      return loaded().getRemoteUrl();
+    }
+
+    @Override
+    public void setRemoteUrl(final String value) {
+      loaded().setRemoteUrl(value);
+    }
+
+    @Override
+    public Map<String, String> asMap() {
+      return loaded().asMap();
+    }
+  }
+}
@@ -12,7 +12,9 @@
  */
 package org.sonatype.nexus.proxy.storage.remote.httpclient;
 
+import java.net.MalformedURLException;
 import java.net.URI;
+import java.net.URL;
 import java.util.Locale;
 import java.util.Objects;
 
@@ -21,14 +23,20 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.sonatype.nexus.events.EventSubscriber;
 import org.sonatype.nexus.httpclient.HttpClientFactory;
 import org.sonatype.nexus.httpclient.HttpClientFactory.Builder;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.proxy.repository.AbstractProxyRepository;
 import org.sonatype.nexus.proxy.repository.ProxyRepository;
 import org.sonatype.nexus.proxy.storage.remote.RemoteItemNotFoundException;
 import org.sonatype.nexus.proxy.storage.remote.RemoteStorageContext;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
 import org.apache.http.Header;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.ProtocolException;
@@ -51,7 +59,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 @Named
 public class HttpClientManagerImpl
     extends ComponentSupport
-    implements HttpClientManager
+    implements HttpClientManager, EventSubscriber
 {
   private final HttpClientFactory httpClientFactory;
 
@@ -66,6 +74,7 @@ public class HttpClientManagerImpl
     checkNotNull(ctx);
     final Builder builder = httpClientFactory.prepare(new RemoteStorageContextCustomizer(ctx));
     configure(proxyRepository, ctx, builder);
+    limitConnections(proxyRepository);
     return builder.build();
   }
 
@@ -74,8 +83,41 @@ public class HttpClientManagerImpl
     // nop for now
   }
 
+  /**
+   * Drops the remote host connection limit of removed repository.
+   *
+   * @since 3.0
+   */
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryRegistryEventRemove event) {
+    httpClientFactory.setMaxConnectionsPerHost(event.getRepository().getId(), null, 0);
+  }
+
   // ==
 
+  /**
+   * Applies the remote connection pool size of proxy repository (if any) to the remote host of the repository, so
+   * that a slow or unresponsive remote cannot occupy all the connections of the shared pool.
+   *
+   * @since 3.0
+   */
+  protected void limitConnections(final ProxyRepository proxyRepository) {
+    HttpHost host = null;
+    int maxConnections = 0;
+    if (proxyRepository instanceof AbstractProxyRepository && proxyRepository.getRemoteUrl() != null) {
+      maxConnections = ((AbstractProxyRepository) proxyRepository).getRemoteConnectionPoolSize();
+      try {
+        final URL url = new URL(proxyRepository.getRemoteUrl());
+        host = new HttpHost(url.getHost(), url.getPort(), url.getProtocol());
+      }
+      catch (MalformedURLException e) {
+        log.debug("Not limiting connections of {} with malformed remote URL", proxyRepository, e);
+      }
+    }
+    httpClientFactory.setMaxConnectionsPerHost(proxyRepository.getId(), host, maxConnections);
+  }
+
   /**
    * Configures the fresh instance of HttpClient for given proxy repository specific needs. Right now it sets
    * appropriate redirect strategy only.
@@ -13,19 +13,37 @@
 
 package org.sonatype.nexus.proxy.storage.remote.httpclient;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.UnsupportedCharsetException;
-
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.sonatype.nexus.SystemStatus;
+import org.sonatype.nexus.configuration.application.ApplicationDirectories;
+import org.sonatype.nexus.events.EventSubscriber;
 import org.sonatype.nexus.httpclient.HttpClientFactory;
 import org.sonatype.nexus.httpclient.Page;
 import org.sonatype.nexus.httpclient.Page.PageContext;
@@ -37,13 +55,16 @@ import org.sonatype.nexus.proxy.RemoteAuthenticationNeededException;
 import org.sonatype.nexus.proxy.RemoteStorageException;
 import org.sonatype.nexus.proxy.RemoteStorageTransportOverloadedException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
 import org.sonatype.nexus.proxy.item.AbstractStorageItem;
 import org.sonatype.nexus.proxy.item.ContentLocator;
 import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
+import org.sonatype.nexus.proxy.item.FileContentLocator;
 import org.sonatype.nexus.proxy.item.PreparedContentLocator;
 import org.sonatype.nexus.proxy.item.RepositoryItemUid;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.repository.AbstractProxyRepository;
 import org.sonatype.nexus.proxy.repository.ProxyRepository;
 import org.sonatype.nexus.proxy.storage.UnsupportedStorageOperationException;
 import org.sonatype.nexus.proxy.storage.remote.AbstractHTTPRemoteRepositoryStorage;
@@ -52,12 +73,19 @@ import org.sonatype.nexus.proxy.storage.remote.RemoteItemNotFoundException;
 import org.sonatype.nexus.proxy.storage.remote.RemoteRepositoryStorage;
 import org.sonatype.nexus.proxy.storage.remote.RemoteStorageContext;
 import org.sonatype.nexus.proxy.storage.remote.http.QueryStringBuilder;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.nexus.util.DigesterUtils;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
 
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.Subscribe;
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
@@ -90,7 +118,7 @@ import org.slf4j.LoggerFactory;
 @Singleton
 public class HttpClientRemoteStorage
     extends AbstractHTTPRemoteRepositoryStorage
-    implements RemoteRepositoryStorage
+    implements RemoteRepositoryStorage, EventSubscriber
 {
 
   static final Logger outboundRequestLog = LoggerFactory.getLogger("remote.storage.outbound");
@@ -129,12 +157,46 @@ public class HttpClientRemoteStorage
    */
   private static final boolean CAN_WRITE = true;
 
+  /**
+   * Minimal size of one chunk of a chunked download, to not split items into many tiny range requests.
+   */
+  private static final long MIN_CHUNK_SIZE = 4L * 1024 * 1024;
+
+  /**
+   * Maximal size of a remote SHA1 file accepted for validation of chunked downloads.
+   */
+  private static final long MAX_CHECKSUM_SIZE = 1024;
+
+  /**
+   * Maximal count of threads fetching chunks, shared by all repositories. When all are busy, the thread retrieving
+   * the item fetches the remaining chunks itself.
+   */
+  private static final int CHUNK_THREADS = SystemPropertiesHelper.getInteger(
+      HttpClientRemoteStorage.class.getName() + ".chunkThreads", 20);
+
+  /**
+   * Extensions of items that are small by nature (POMs, checksums, signatures, metadata), for which the HEAD request
+   * probing for chunked download is not even sent.
+   */
+  private static final Set<String> NON_CHUNKED_EXTENSIONS = ImmutableSet.copyOf(
+      Splitter.on(',').trimResults().omitEmptyStrings().split(SystemPropertiesHelper.getString(
+          HttpClientRemoteStorage.class.getName() + ".nonChunkedExtensions",
+          "pom,xml,sha1,sha256,sha512,md5,asc,properties,txt,json")));
+
   private final MetricRegistry metricRegistry;
 
   private final QueryStringBuilder queryStringBuilder;
 
   private final HttpClientManager httpClientManager;
 
+  private final ApplicationDirectories applicationDirectories;
+
+  /**
+   * Executes range requests of chunked downloads. Separate from repository thread pools, as the thread retrieving
+   * the item blocks on the chunks, and fetches the first chunk itself.
+   */
+  private final ThreadPoolExecutor chunkExecutor;
+
   // ----------------------------------------------------------------------
   // Constructors
   // ----------------------------------------------------------------------
@@ -143,12 +205,23 @@ public class HttpClientRemoteStorage
   HttpClientRemoteStorage(final Provider<SystemStatus> systemStatusProvider,
                           final MimeSupport mimeSupport,
                           final QueryStringBuilder queryStringBuilder,
-                          final HttpClientManager httpClientManager)
+                          final HttpClientManager httpClientManager,
+                          final ApplicationDirectories applicationDirectories)
   {
     super(systemStatusProvider, mimeSupport);
     this.metricRegistry = SharedMetricRegistries.getOrCreate("nexus");
     this.queryStringBuilder = queryStringBuilder;
     this.httpClientManager = httpClientManager;
+    this.applicationDirectories = applicationDirectories;
+    // direct hand-off, rejected chunks are fetched by the retrieving thread
+    this.chunkExecutor = new ThreadPoolExecutor(0, CHUNK_THREADS, 60L, TimeUnit.SECONDS,
+        new SynchronousQueue<Runnable>(),
+        new NexusThreadFactory("chunkdl", "Chunked remote downloads", Thread.NORM_PRIORITY, true));
+  }
+
+  @Subscribe
+  public void on(final NexusStoppedEvent e) {
+    chunkExecutor.shutdownNow();
   }
 
   // ----------------------------------------------------------------------
@@ -213,6 +286,11 @@ public class HttpClientRemoteStorage
       throw new RemoteItemNotFoundException(request, repository, "remoteIsCollection", remoteURL.toString());
     }
 
+    final AbstractStorageItem chunkedItem = retrieveItemChunked(repository, request, baseUrl, remoteURL);
+    if (chunkedItem != null) {
+      return chunkedItem;
+    }
+
     final HttpGet method = new HttpGet(url);
 
     final HttpResponse httpResponse = executeRequest(repository, request, method, baseUrl, true);
@@ -539,7 +617,9 @@ public class HttpClientRemoteStorage
 
     httpRequest.setHeader("Accept", "*/*");
     httpRequest.setHeader("Accept-Language", "en-us");
-    httpRequest.setHeader("Accept-Encoding", "gzip,deflate,identity");
+    if (!httpRequest.containsHeader("Accept-Encoding")) {
+      httpRequest.setHeader("Accept-Encoding", "gzip,deflate,identity");
+    }
     httpRequest.setHeader("Cache-Control", "no-cache");
 
     HttpResponse httpResponse = null;
@@ -601,6 +681,313 @@ public class HttpClientRemoteStorage
     }
   }
 
+  /**
+   * Retrieves a large item using concurrent range requests assembled into a temporary file, if enabled for the
+   * repository and the remote advertises byte range support for the item. The assembled content is validated against
+   * the remote SHA1 checksum (if one exists) before the item is handed over to be cached.
+   *
+   * @return the retrieved item, or {@code null} if the item should be retrieved with single plain GET instead.
+   * @since 3.0
+   */
+  @Nullable
+  private AbstractStorageItem retrieveItemChunked(final ProxyRepository repository,
+                                                  final ResourceStoreRequest request, final String baseUrl,
+                                                  final URL remoteURL)
+      throws RemoteStorageException
+  {
+    if (!(repository instanceof AbstractProxyRepository)) {
+      return null;
+    }
+    final AbstractProxyRepository proxyRepository = (AbstractProxyRepository) repository;
+    final int parallelism = proxyRepository.getChunkedDownloadParallelism();
+    if (parallelism < 2 || !isChunkCandidate(request.getRequestPath())) {
+      return null;
+    }
+
+    final HttpHead head = new HttpHead(remoteURL.toExternalForm());
+    head.setHeader("Accept-Encoding", "identity");
+    final HttpResponse headResponse = executeRequestAndRelease(repository, request, head, baseUrl);
+    if (headResponse.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+      // let the plain GET sort out the outcome
+      return null;
+    }
+    final long length = getContentLength(headResponse);
+    final String validator = getRangeValidator(headResponse);
+    final Header acceptRanges = headResponse.getFirstHeader("accept-ranges");
+    final Header contentEncoding = headResponse.getFirstHeader("content-encoding");
+    if (length <= 0 || length < proxyRepository.getChunkedDownloadMinSize() || validator == null || acceptRanges == null
+        || !"bytes".equalsIgnoreCase(acceptRanges.getValue().trim())
+        || (contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding.getValue().trim()))) {
+      return null;
+    }
+
+    File file = null;
+    boolean success = false;
+    try {
+      file = File.createTempFile("nx-chunkdl", ".tmp", applicationDirectories.getTemporaryDirectory());
+      if (!downloadChunks(repository, request, baseUrl, remoteURL, validator, length, parallelism, file)) {
+        log.debug("Remote {} did not honor range requests, falling back to plain GET", remoteURL);
+        return null;
+      }
+      verifyChecksum(repository, request, baseUrl, remoteURL, file);
+
+      String mimeType = null;
+      try {
+        final Header contentType = headResponse.getFirstHeader("content-type");
+        if (contentType != null) {
+          mimeType = ContentType.parse(contentType.getValue()).getMimeType();
+        }
+      }
+      catch (ParseException | UnsupportedCharsetException e) {
+        // NEXUS-6622: Java/HC4 gave up, let's ask mime support instead then
+      }
+      if (mimeType == null) {
+        mimeType = getMimeSupport().guessMimeTypeFromPath(repository.getMimeRulesSource(), request.getRequestPath());
+      }
+
+      final DefaultStorageFileItem httpItem = new DefaultStorageFileItem(repository, request, CAN_READ, CAN_WRITE,
+          new FileContentLocator(file, mimeType, true));
+      httpItem.setRemoteUrl(remoteURL.toString());
+      httpItem.setModified(makeDateFromHeader(headResponse.getFirstHeader("last-modified")));
+      httpItem.setCreated(httpItem.getModified());
+      success = true;
+      return httpItem;
+    }
+    catch (RemoteStorageException ex) {
+      throw ex;
+    }
+    catch (IOException ex) {
+      throw new RemoteStorageException("IO Error during chunked download [repositoryId=\""
+          + repository.getId() + "\", requestPath=\"" + request.getRequestPath() + "\", remoteUrl=\""
+          + remoteURL.toString() + "\"]!", ex);
+    }
+    finally {
+      if (!success && file != null && !file.delete()) {
+        log.warn("Could not delete temporary file {}", file);
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if item on given path might be large enough to be retrieved chunked, judged by its
+   * extension.
+   */
+  @VisibleForTesting
+  static boolean isChunkCandidate(final String path) {
+    final String name = path.substring(path.lastIndexOf('/') + 1);
+    final int dot = name.lastIndexOf('.');
+    return dot == -1 || !NON_CHUNKED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ENGLISH));
+  }
+
+  /**
+   * Downloads the content as concurrent range requests, writing each chunk at its position into the passed in file.
+   *
+   * @return {@code true} if all chunks were downloaded, {@code false} if remote ignored the range requests or the
+   * content changed meanwhile.
+   */
+  private boolean downloadChunks(final ProxyRepository repository, final ResourceStoreRequest request,
+                                 final String baseUrl, final URL remoteURL, final String validator, final long length,
+                                 final int parallelism, final File file)
+      throws IOException
+  {
+    final long chunkSize = Math.max(MIN_CHUNK_SIZE, (length + parallelism - 1) / parallelism);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+      final List<ChunkDownload> chunks = new ArrayList<>();
+      for (long from = 0; from < length; from += chunkSize) {
+        chunks.add(new ChunkDownload(repository, request, baseUrl, remoteURL, validator, channel, from,
+            Math.min(from + chunkSize, length) - 1));
+      }
+      final List<FutureTask<Boolean>> futures = new ArrayList<>();
+      final List<FutureTask<Boolean>> rejected = new ArrayList<>();
+      boolean complete = false;
+      try {
+        for (ChunkDownload chunk : chunks.subList(1, chunks.size())) {
+          final FutureTask<Boolean> future = new FutureTask<>(chunk);
+          futures.add(future);
+          try {
+            chunkExecutor.execute(future);
+          }
+          catch (RejectedExecutionException e) {
+            // all chunk threads busy or shut down
+            rejected.add(future);
+          }
+        }
+        complete = chunks.get(0).call();
+        for (FutureTask<Boolean> future : futures) {
+          if (!complete) {
+            break;
+          }
+          if (rejected.contains(future)) {
+            future.run();
+          }
+          complete = future.get();
+        }
+        complete = complete && channel.size() == length;
+        return complete;
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RemoteStorageException("Interrupted while waiting for chunked download of " + remoteURL, e);
+      }
+      catch (ExecutionException e) {
+        Throwables.propagateIfPossible(e.getCause(), IOException.class);
+        throw new RemoteStorageException("Chunked download of " + remoteURL + " failed", e.getCause());
+      }
+      finally {
+        if (!complete) {
+          for (ChunkDownload chunk : chunks) {
+            chunk.abort();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Validates the assembled file against the remote SHA1 checksum, if remote has one. Missing or unreadable checksum
+   * is not an error, the repository content validators still get to inspect the item.
+   */
+  private void verifyChecksum(final ProxyRepository repository, final ResourceStoreRequest request,
+                              final String baseUrl, final URL remoteURL, final File file)
+      throws IOException
+  {
+    final URL sha1URL =
+        appendQueryString(repository, request, getAbsoluteUrlFromBase(baseUrl, request.getRequestPath() + ".sha1"));
+    String expected = null;
+    try {
+      final HttpResponse httpResponse = executeRequest(repository, request, new HttpGet(sha1URL.toExternalForm()),
+          baseUrl, true);
+      try {
+        if (httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_OK && httpResponse.getEntity() != null
+            && httpResponse.getEntity().getContentLength() <= MAX_CHECKSUM_SIZE) {
+          final String[] tokens = EntityUtils.toString(httpResponse.getEntity(), "UTF-8").trim().split("\\s+");
+          if (tokens[0].matches("[0-9a-fA-F]{40}")) {
+            expected = tokens[0];
+          }
+        }
+      }
+      finally {
+        release(httpResponse);
+      }
+    }
+    catch (RemoteStorageException e) {
+      log.debug("Could not retrieve {}, skipping validation of chunked download", sha1URL, e);
+    }
+    if (expected == null) {
+      return;
+    }
+    final String actual = DigesterUtils.getSha1Digest(file);
+    if (!expected.equalsIgnoreCase(actual)) {
+      throw new RemoteStorageException("Chunked download of " + remoteURL + " has SHA1 " + actual
+          + " but remote declares " + expected + " [repositoryId=\"" + repository.getId() + "\"]");
+    }
+  }
+
+  /**
+   * Single range request of a chunked download.
+   */
+  private class ChunkDownload
+      implements Callable<Boolean>
+  {
+    private final ProxyRepository repository;
+
+    private final ResourceStoreRequest request;
+
+    private final String baseUrl;
+
+    private final FileChannel channel;
+
+    private final long from;
+
+    private final long to;
+
+    private final HttpGet method;
+
+    private ChunkDownload(final ProxyRepository repository, final ResourceStoreRequest request, final String baseUrl,
+                          final URL remoteURL, final String validator, final FileChannel channel, final long from,
+                          final long to)
+    {
+      this.repository = repository;
+      this.request = request;
+      this.baseUrl = baseUrl;
+      this.channel = channel;
+      this.from = from;
+      this.to = to;
+      this.method = new HttpGet(remoteURL.toExternalForm());
+      method.setHeader("Accept-Encoding", "identity");
+      method.setHeader("Range", "bytes=" + from + "-" + to);
+      method.setHeader("If-Range", validator);
+    }
+
+    @Override
+    public Boolean call() throws IOException {
+      final HttpResponse httpResponse = executeRequest(repository, request, method, baseUrl, true);
+      final Header contentRange = httpResponse.getFirstHeader("content-range");
+      if (httpResponse.getStatusLine().getStatusCode() != HttpStatus.SC_PARTIAL_CONTENT || contentRange == null
+          || !contentRange.getValue().trim().startsWith("bytes " + from + "-" + to + "/")) {
+        // remote ignored range or content changed (If-Range), do not read the full body
+        method.abort();
+        return false;
+      }
+      try (InputStream is = new Hc4InputStream(repository, httpResponse.getEntity().getContent())) {
+        final byte[] buffer = new byte[64 * 1024];
+        long position = from;
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+          if (position + read > to + 1) {
+            throw new RemoteStorageException("Remote returned more than requested range " + from + "-" + to
+                + " of " + method.getURI());
+          }
+          final ByteBuffer bb = ByteBuffer.wrap(buffer, 0, read);
+          while (bb.hasRemaining()) {
+            position += channel.write(bb, position);
+          }
+        }
+        if (position != to + 1) {
+          throw new RemoteStorageException("Premature end of range " + from + "-" + to + " of " + method.getURI());
+        }
+        return true;
+      }
+      catch (IOException | RuntimeException e) {
+        method.abort();
+        throw e;
+      }
+    }
+
+    private void abort() {
+      method.abort();
+    }
+  }
+
+  /**
+   * Returns the content length declared by response headers, or -1 if unknown.
+   */
+  private long getContentLength(final HttpResponse httpResponse) {
+    final Header header = httpResponse.getFirstHeader("content-length");
+    if (header != null) {
+      try {
+        return Long.parseLong(header.getValue().trim());
+      }
+      catch (NumberFormatException e) {
+        // fall through
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the value for "If-Range" header: strong ETag if present, otherwise the last modified date.
+   */
+  @Nullable
+  private String getRangeValidator(final HttpResponse httpResponse) {
+    final Header etag = httpResponse.getFirstHeader("etag");
+    if (etag != null && !etag.getValue().trim().startsWith("W/")) {
+      return etag.getValue().trim();
+    }
+    final Header lastModified = httpResponse.getFirstHeader("last-modified");
+    return lastModified != null ? lastModified.getValue() : null;
+  }
+
   /**
    * Executes the HTTP request and automatically releases any related resources.
    *
@@ -0,0 +1,189 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.targets;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.sonatype.nexus.proxy.registry.ContentClass;
+
+/**
+ * Index of target patterns by their literal prefix. As patterns must match the whole path, a path may match only the
+ * patterns whose literal prefix (the leading part of pattern without any regular expression construct, like "/org/"
+ * of "/org/.*") is a prefix of the path. Prefixes are kept in a character trie, so candidate patterns of a path are
+ * collected by walking the path once, and only those are evaluated, instead of every pattern of every target.
+ * Patterns without literal prefix (like ".*") are candidates for every path. Instances are immutable, and are rebuilt
+ * by {@link DefaultTargetRegistry} whenever targets change.
+ *
+ * @since 3.0
+ */
+class TargetPathIndex
+{
+  private final Node root;
+
+  TargetPathIndex(final Collection<Target> targets) {
+    this.root = new Node();
+    for (Target target : targets) {
+      for (Pattern pattern : target.getPatterns()) {
+        Node node = root;
+        for (char c : literalPrefix(pattern.pattern()).toCharArray()) {
+          node = node.child(c, true);
+        }
+        node.entries.add(new Entry(target, pattern));
+      }
+    }
+  }
+
+  /**
+   * Returns the targets having content class compatible with given one and any pattern matching the path, each
+   * target once.
+   */
+  List<Target> getTargets(final ContentClass contentClass, final String path) {
+    final Map<Target, Boolean> compatible = new IdentityHashMap<Target, Boolean>();
+    final Set<Target> matched = Collections.newSetFromMap(new IdentityHashMap<Target, Boolean>());
+    final List<Target> result = new ArrayList<Target>();
+    Node node = root;
+    int i = 0;
+    while (node != null) {
+      for (Entry entry : node.entries) {
+        if (matched.contains(entry.target)) {
+          continue;
+        }
+        Boolean isCompatible = compatible.get(entry.target);
+        if (isCompatible == null) {
+          isCompatible = entry.target.isContentClassCompatible(contentClass);
+          compatible.put(entry.target, isCompatible);
+        }
+        if (isCompatible && entry.pattern.matcher(path).matches()) {
+          matched.add(entry.target);
+          result.add(entry.target);
+        }
+      }
+      node = i < path.length() ? node.child(path.charAt(i++), false) : null;
+    }
+    return result;
+  }
+
+  // ==
+
+  /**
+   * Returns the literal prefix of the regular expression, that any string matching the whole expression must start
+   * with. The returned prefix is conservative: it might be shorter than it could be, but is never wrong.
+   */
+  static String literalPrefix(final String regex) {
+    // top level alternation: branches have different prefixes
+    if (hasTopLevelAlternation(regex)) {
+      return "";
+    }
+    final StringBuilder prefix = new StringBuilder();
+    int i = regex.startsWith("^") ? 1 : 0;
+    while (i < regex.length()) {
+      final char c = regex.charAt(i);
+      final char literal;
+      final int next;
+      if (c == '\\') {
+        if (i + 1 >= regex.length()) {
+          break;
+        }
+        final char escaped = regex.charAt(i + 1);
+        if (Character.isLetterOrDigit(escaped)) {
+          // character classes (\d, \w...), back references, quotes (\Q) and such
+          break;
+        }
+        literal = escaped;
+        next = i + 2;
+      }
+      else if (".[]{}()*+?^$|".indexOf(c) > -1) {
+        break;
+      }
+      else {
+        literal = c;
+        next = i + 1;
+      }
+      // a quantified char is optional or repeated, so it is not part of the prefix
+      if (next < regex.length() && "*+?{".indexOf(regex.charAt(next)) > -1) {
+        break;
+      }
+      prefix.append(literal);
+      i = next;
+    }
+    return prefix.toString();
+  }
+
+  private static boolean hasTopLevelAlternation(final String regex) {
+    int depth = 0;
+    boolean inClass = false;
+    for (int i = 0; i < regex.length(); i++) {
+      final char c = regex.charAt(i);
+      if (c == '\\') {
+        i++;
+      }
+      else if (inClass) {
+        if (c == ']') {
+          inClass = false;
+        }
+      }
+      else if (c == '[') {
+        inClass = true;
+      }
+      else if (c == '(') {
+        depth++;
+      }
+      else if (c == ')') {
+        depth--;
+      }
+      else if (c == '|' && depth == 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static class Node
+  {
+    private final List<Entry> entries = new ArrayList<Entry>(1);
+
+    private Map<Character, Node> children;
+
+    private Node child(final char c, final boolean create) {
+      Node child = children != null ? children.get(c) : null;
+      if (child == null && create) {
+        if (children == null) {
+          children = new HashMap<Character, Node>();
+        }
+        child = new Node();
+        children.put(c, child);
+      }
+      return child;
+    }
+  }
+
+  private static class Entry
+  {
+    private final Target target;
+
+    private final Pattern pattern;
+
+    private Entry(final Target target, final Pattern pattern) {
+      this.target = target;
+      this.pattern = pattern;
+    }
+  }
+}
@@ -12,8 +12,10 @@
  */
 package org.sonatype.nexus.proxy.targets;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -27,6 +29,9 @@ public class TargetSet
 
   private final Set<String> matchedRepositoryIds = new HashSet<String>();
 
+  // target and repository ID pairs of matches, to detect duplicates
+  private final Set<List<Object>> matchKeys = new HashSet<List<Object>>();
+
   public Set<TargetMatch> getMatches() {
     return Collections.unmodifiableSet(matches);
   }
@@ -36,13 +41,8 @@ public class TargetSet
   }
 
   public void addTargetMatch(TargetMatch tm) {
-    // TODO: a very crude solution!
-    for (TargetMatch t : matches) {
-      if (t.getTarget().equals(tm.getTarget())
-          && t.getRepository().getId().equals(tm.getRepository().getId())) {
-        return;
-      }
-
+    if (!matchKeys.add(Arrays.<Object>asList(tm.getTarget(), tm.getRepository().getId()))) {
+      return;
     }
 
     matches.add(tm);
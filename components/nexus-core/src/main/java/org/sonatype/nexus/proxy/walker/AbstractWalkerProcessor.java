@@ -18,7 +18,7 @@ import org.sonatype.nexus.proxy.item.StorageItem;
 public abstract class AbstractWalkerProcessor
     implements WalkerProcessor
 {
-  private boolean active = true;
+  private volatile boolean active = true;
 
   public boolean isActive() {
     return active;
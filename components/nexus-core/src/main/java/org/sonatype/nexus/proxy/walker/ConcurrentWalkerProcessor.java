@@ -0,0 +1,31 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+
+package org.sonatype.nexus.proxy.walker;
+
+/**
+ * Marker for {@link WalkerProcessor}s that are thread safe, and hence may be used in parallel walks (see
+ * {@link WalkerContext#isParallel()}). In parallel walks, subtrees are walked concurrently, and methods
+ * {@link #onCollectionEnter(WalkerContext, org.sonatype.nexus.proxy.item.StorageCollectionItem)},
+ * {@link #processItem(WalkerContext, org.sonatype.nexus.proxy.item.StorageItem)} and
+ * {@link #onCollectionExit(WalkerContext, org.sonatype.nexus.proxy.item.StorageCollectionItem)} are invoked from
+ * multiple threads. Ordering of calls still holds within each subtree: a collection is entered before any of its
+ * members are processed, and (in depth-first walks) exited after its whole subtree was walked. Methods
+ * {@link #beforeWalk(WalkerContext)} and {@link #afterWalk(WalkerContext)} are invoked from the thread doing the walk.
+ *
+ * @since 3.0
+ */
+public interface ConcurrentWalkerProcessor
+    extends WalkerProcessor
+{
+}
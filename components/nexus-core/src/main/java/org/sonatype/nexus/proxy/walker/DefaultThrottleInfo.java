@@ -12,10 +12,12 @@
  */
 package org.sonatype.nexus.proxy.walker;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.sonatype.nexus.proxy.walker.WalkerThrottleController.ThrottleInfo;
 
 /**
- * A simple single-threaded ThrottleInfo used in Walker implementation.
+ * A simple ThrottleInfo used in Walker implementation. Thread safe, as walker threads of parallel walks share it.
  *
  * @author cstamas
  * @since 2.0
@@ -25,16 +27,17 @@ public class DefaultThrottleInfo
 {
   private final long walkStarted;
 
-  private long totalProcessItemSpentMillis;
+  private final AtomicLong totalProcessItemSpentMillis;
 
-  private long totalProcessItemInvocationCount;
+  private final AtomicLong totalProcessItemInvocationCount;
 
-  private long lastProcessItemEnterTime;
+  private final ThreadLocal<Long> lastProcessItemEnterTime;
 
   public DefaultThrottleInfo() {
     this.walkStarted = now();
-    this.totalProcessItemSpentMillis = 0;
-    this.totalProcessItemInvocationCount = 0;
+    this.totalProcessItemSpentMillis = new AtomicLong(0);
+    this.totalProcessItemInvocationCount = new AtomicLong(0);
+    this.lastProcessItemEnterTime = new ThreadLocal<>();
   }
 
   protected long now() {
@@ -42,17 +45,21 @@ public class DefaultThrottleInfo
   }
 
   public void enterProcessItem() {
-    this.lastProcessItemEnterTime = now();
+    this.lastProcessItemEnterTime.set(now());
   }
 
   public void exitProcessItem() {
-    totalProcessItemSpentMillis += now() - lastProcessItemEnterTime;
-    totalProcessItemInvocationCount++;
+    final Long enterTime = lastProcessItemEnterTime.get();
+    if (enterTime != null) {
+      totalProcessItemSpentMillis.addAndGet(now() - enterTime);
+      lastProcessItemEnterTime.remove();
+    }
+    totalProcessItemInvocationCount.incrementAndGet();
   }
 
   @Override
   public long getTotalProcessItemInvocationCount() {
-    return totalProcessItemInvocationCount;
+    return totalProcessItemInvocationCount.get();
   }
 
   @Override
@@ -16,24 +16,40 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nullable;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.sonatype.nexus.events.EventSubscriber;
 import org.sonatype.nexus.proxy.AccessDeniedException;
 import org.sonatype.nexus.proxy.IllegalOperationException;
 import org.sonatype.nexus.proxy.ItemNotFoundException;
 import org.sonatype.nexus.proxy.StorageException;
+import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
 import org.sonatype.nexus.proxy.item.RepositoryItemUid;
 import org.sonatype.nexus.proxy.item.StorageCollectionItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.repository.LocalStatus;
 import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
 import org.sonatype.nexus.proxy.walker.WalkerContext.TraversalType;
+import org.sonatype.nexus.threads.MDCAwareCallable;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.scheduling.TaskInterruptedException;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 
 import com.google.common.collect.Lists;
+import com.google.common.eventbus.Subscribe;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
 
 /**
  * The Class Walker.
@@ -44,7 +60,7 @@ import com.google.common.collect.Lists;
 @Singleton
 public class DefaultWalker
     extends ComponentSupport
-    implements Walker
+    implements Walker, EventSubscriber
 {
   public static final String WALKER_WALKED_COLLECTION_COUNT = Walker.class.getSimpleName() + ".collCount";
 
@@ -52,6 +68,17 @@ public class DefaultWalker
 
   public static final String WALKER_THROTTLE_INFO = Walker.class.getSimpleName() + ".throttleInfo";
 
+  /**
+   * Count of threads walking subtrees of parallel walks, shared by all parallel walks. Values less than 2 disable
+   * parallel walks.
+   *
+   * @since 3.0
+   */
+  private static final int PARALLELISM = SystemPropertiesHelper.getInteger(
+      DefaultWalker.class.getName() + ".parallelism", Runtime.getRuntime().availableProcessors());
+
+  private ForkJoinPool pool;
+
   @Override
   public void walk(WalkerContext context)
       throws WalkerException
@@ -70,6 +97,8 @@ public class DefaultWalker
     else {
       context.getContext().put(WALKER_WALKED_FROM_PATH, fromPath);
       context.getContext().put(WALKER_THROTTLE_INFO, new DefaultThrottleInfo());
+      // walked items are not requested, and processors need attributes of few of them if any
+      context.getResourceStoreRequest().setRequestLightweightListing(true);
 
       if (log.isDebugEnabled()) {
         log.debug("Start walking on ResourceStore {} from path \"{}\".",
@@ -86,7 +115,13 @@ public class DefaultWalker
               context.getFilter() != null ? context.getFilter() : new DefaultStoreWalkerFilter();
           try {
             if (StorageCollectionItem.class.isAssignableFrom(item.getClass())) {
-              int collCount = walkRecursive(0, context, filter, (StorageCollectionItem) item);
+              int collCount;
+              if (isParallel(context)) {
+                collCount = walkParallel(context, filter, (StorageCollectionItem) item);
+              }
+              else {
+                collCount = walkRecursive(0, context, filter, (StorageCollectionItem) item);
+              }
               context.getContext().put(WALKER_WALKED_COLLECTION_COUNT, collCount);
             }
             else {
@@ -238,6 +273,205 @@ public class DefaultWalker
     return collCount;
   }
 
+  /**
+   * Returns {@code true} if the walk should be parallel: it is requested by context, and all the processors are
+   * {@link ConcurrentWalkerProcessor}s.
+   *
+   * @since 3.0
+   */
+  protected boolean isParallel(final WalkerContext context) {
+    if (PARALLELISM < 2 || !context.isParallel()) {
+      return false;
+    }
+    for (WalkerProcessor processor : context.getProcessors()) {
+      if (!(processor instanceof ConcurrentWalkerProcessor)) {
+        log.debug("Walking sequentially, processor {} is not concurrent", processor);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Walks the collection with subtrees walked in parallel on a fork/join pool. Walk cancellation is checked by
+   * calling thread (as task progress is bound to it), walker threads react on the stop flag of the context.
+   *
+   * @since 3.0
+   */
+  protected final int walkParallel(final WalkerContext context, final WalkerFilter filter,
+                                   final StorageCollectionItem coll)
+  {
+    // walker threads act on behalf of the subject of the calling thread
+    final ForkJoinTask<Integer> task = getPool().submit(
+        new WalkTask(context, filter, coll, ThreadContext.getSubject()));
+    try {
+      while (true) {
+        try {
+          return task.get(500, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e) {
+          context.isStopped();
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      context.stop(new TaskInterruptedException("Thread \"" + Thread.currentThread().getName()
+          + "\" is interrupted!", false));
+      // let walker threads bail out, no processor calls may happen once walk returned
+      return task.join();
+    }
+    catch (ExecutionException e) {
+      // WalkTask stops the context on exceptions, only errors get here
+      context.stop(e.getCause());
+      return 0;
+    }
+  }
+
+  private synchronized ForkJoinPool getPool() {
+    if (pool == null) {
+      pool = new ForkJoinPool(PARALLELISM, new NexusThreadFactory("walker", "Parallel walker", Thread.NORM_PRIORITY,
+          true), null, false);
+    }
+    return pool;
+  }
+
+  /**
+   * Shuts down the pool of parallel walks, walks in progress are finished.
+   *
+   * @since 3.0
+   */
+  @Subscribe
+  public synchronized void on(final NexusStoppedEvent evt) {
+    if (pool != null) {
+      pool.shutdown();
+      pool = null;
+    }
+  }
+
+  /**
+   * Walks a subtree, forking a task for each member collection. Within the subtree, ordering of calls is same as in
+   * sequential walk, except that all members of a collection are processed before its member collections are walked.
+   */
+  private class WalkTask
+      extends RecursiveTask<Integer>
+  {
+    private final WalkerContext context;
+
+    private final WalkerFilter filter;
+
+    private final StorageCollectionItem coll;
+
+    @Nullable
+    private final Subject subject;
+
+    /**
+     * Walks the collection with the subject and MDC of the thread creating this task bound.
+     */
+    private final Callable<Integer> walk;
+
+    private WalkTask(final WalkerContext context, final WalkerFilter filter, final StorageCollectionItem coll,
+                     @Nullable final Subject subject)
+    {
+      this.context = context;
+      this.filter = filter;
+      this.coll = coll;
+      this.subject = subject;
+      final Callable<Integer> mdcAwareWalk = new MDCAwareCallable<>(new Callable<Integer>()
+      {
+        @Override
+        public Integer call() throws Exception {
+          return walkCollection();
+        }
+      });
+      this.walk = subject != null ? subject.associateWith(mdcAwareWalk) : mdcAwareWalk;
+    }
+
+    @Override
+    protected Integer compute() {
+      try {
+        return walk.call();
+      }
+      catch (Exception e) {
+        context.stop(e);
+        return 0;
+      }
+    }
+
+    private int walkCollection()
+        throws AccessDeniedException, IllegalOperationException, StorageException
+    {
+      if (context.isStopped()) {
+        return 0;
+      }
+      final boolean shouldProcess = filter.shouldProcess(context, coll);
+      final boolean shouldProcessRecursively = filter.shouldProcessRecursively(context, coll);
+      if (!shouldProcess && !shouldProcessRecursively) {
+        return 0;
+      }
+
+      int collCount = 0;
+      if (shouldProcess) {
+        onCollectionEnter(context, coll);
+        collCount++;
+      }
+
+      if (context.isStopped()) {
+        return collCount;
+      }
+
+      final List<WalkTask> subtasks = Lists.newArrayList();
+      if (shouldProcessRecursively) {
+        try {
+          final List<StorageItem> ls = Lists.newArrayList(context.getRepository().list(false, coll));
+
+          if (context.getItemComparator() != null) {
+            Collections.sort(ls, context.getItemComparator());
+          }
+
+          for (StorageItem i : ls) {
+            if (context.isProcessCollections() || !(i instanceof StorageCollectionItem)) {
+              walkItem(context, filter, i);
+              if (context.isStopped()) {
+                return collCount;
+              }
+            }
+            if (i instanceof StorageCollectionItem) {
+              subtasks.add(new WalkTask(context, filter, (StorageCollectionItem) i, subject));
+            }
+          }
+        }
+        catch (ItemNotFoundException e) {
+          log.debug("ItemNotFound not found while walking it, skipping.", e);
+        }
+      }
+
+      if (context.getTraversalType() == TraversalType.DEPTH_FIRST) {
+        collCount += walkSubtrees(subtasks);
+        if (context.isStopped()) {
+          return collCount;
+        }
+      }
+
+      if (shouldProcess) {
+        onCollectionExit(context, coll);
+      }
+
+      if (context.getTraversalType() == TraversalType.BREADTH_FIRST && !context.isStopped()) {
+        collCount += walkSubtrees(subtasks);
+      }
+
+      return collCount;
+    }
+
+    private int walkSubtrees(final List<WalkTask> subtasks) {
+      int collCount = 0;
+      for (WalkTask subtask : invokeAll(subtasks)) {
+        collCount += subtask.join();
+      }
+      return collCount;
+    }
+  }
+
   protected void walkItem(WalkerContext context, WalkerFilter filter, StorageItem i) {
     if (filter.shouldProcess(context, i)) {
       // user may call stop()
@@ -300,15 +534,18 @@ public class DefaultWalker
       info.exitProcessItem();
 
       if (!context.isStopped() && context.getThrottleController().isThrottled()) {
-        final long throttleTime = context.getThrottleController().throttleTime(info);
+        // threads of parallel walk throttle one by one, the controller paces the walk as a whole
+        synchronized (info) {
+          final long throttleTime = context.getThrottleController().throttleTime(info);
 
-        if (throttleTime > 0) {
-          try {
-            Thread.sleep(throttleTime);
-          }
-          catch (InterruptedException e) {
-            throw new TaskInterruptedException("Thread \"" + Thread.currentThread().getName()
-                + "\" is interrupted!", false);
+          if (throttleTime > 0) {
+            try {
+              Thread.sleep(throttleTime);
+            }
+            catch (InterruptedException e) {
+              throw new TaskInterruptedException("Thread \"" + Thread.currentThread().getName()
+                  + "\" is interrupted!", false);
+            }
           }
         }
       }
@@ -49,10 +49,12 @@ public class DefaultWalkerContext
 
   private final List<WalkerProcessor> processors;
 
-  private Throwable stopCause;
+  private volatile Throwable stopCause;
 
   private Comparator<StorageItem> itemComparator;
 
+  private boolean parallel;
+
   private volatile boolean running;
 
   public DefaultWalkerContext(final Repository store, final ResourceStoreRequest request) {
@@ -131,6 +133,18 @@ public class DefaultWalkerContext
     return processCollections;
   }
 
+  @Override
+  public boolean isParallel() {
+    return parallel;
+  }
+
+  /**
+   * @since 3.0
+   */
+  public void setParallel(final boolean parallel) {
+    this.parallel = parallel;
+  }
+
   @Override
   public ResourceStoreRequest getResourceStoreRequest() {
     return request;
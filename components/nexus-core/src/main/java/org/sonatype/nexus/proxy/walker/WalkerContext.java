@@ -50,6 +50,14 @@ public interface WalkerContext
    */
   boolean isProcessCollections();
 
+  /**
+   * Returns {@code true} if subtrees may be walked in parallel. Walk is parallel only if all the processors are
+   * {@link ConcurrentWalkerProcessor}s. Default is {@code false}.
+   *
+   * @since 3.0
+   */
+  boolean isParallel();
+
   /**
    * Gets the resource store request that initiated this walk.
    */
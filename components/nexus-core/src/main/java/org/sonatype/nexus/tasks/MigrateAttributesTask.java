@@ -0,0 +1,156 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.tasks;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.sonatype.nexus.proxy.ItemNotFoundException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.attributes.AttributeStorage;
+import org.sonatype.nexus.proxy.attributes.Attributes;
+import org.sonatype.nexus.proxy.attributes.DefaultLSAttributeStorage;
+import org.sonatype.nexus.proxy.attributes.OrderedAttributeStorage;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.StorageCollectionItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.scheduling.AbstractNexusRepositoriesTask;
+import org.sonatype.nexus.tasks.descriptors.MigrateAttributesTaskDescriptor;
+import org.sonatype.scheduling.TaskUtil;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Migrates item attributes from the legacy "ls" (one file per item) storage into the "h2" embedded storage. Once
+ * done, Nexus may be restarted with {@code nexus.attributeStorage=h2} system property. Source attribute files are
+ * left in place.
+ *
+ * @since 3.0
+ */
+@Named(MigrateAttributesTaskDescriptor.ID)
+public class MigrateAttributesTask
+    extends AbstractNexusRepositoriesTask<Object>
+{
+  /**
+   * System event action: migrate attributes
+   */
+  public static final String ACTION = "MIGRATEATTRIBUTES";
+
+  private static final int BATCH_SIZE = 1000;
+
+  private final AttributeStorage source;
+
+  private final OrderedAttributeStorage target;
+
+  @Inject
+  public MigrateAttributesTask(final @Named("ls") AttributeStorage source,
+                               final @Named("h2") OrderedAttributeStorage target)
+  {
+    this.source = checkNotNull(source);
+    this.target = checkNotNull(target);
+  }
+
+  @Override
+  protected String getRepositoryFieldId() {
+    return MigrateAttributesTaskDescriptor.REPO_OR_GROUP_FIELD_ID;
+  }
+
+  @Override
+  protected Object doRun()
+      throws Exception
+  {
+    if (getRepositoryId() != null) {
+      migrate(getRepositoryRegistry().getRepository(getRepositoryId()));
+    }
+    else {
+      for (Repository repository : getRepositoryRegistry().getRepositories()) {
+        migrate(repository);
+      }
+    }
+    return null;
+  }
+
+  protected void migrate(final Repository repository)
+      throws Exception
+  {
+    final Map<RepositoryItemUid, Attributes> batch = new LinkedHashMap<RepositoryItemUid, Attributes>();
+    final int migrated = migrate(repository, DefaultLSAttributeStorage.ATTRIBUTE_PATH_PREFIX, batch);
+    flush(batch);
+    getLogger().info("Migrated attributes of {} items in repository {}", migrated, repository.getId());
+  }
+
+  private int migrate(final Repository repository, final String path, final Map<RepositoryItemUid, Attributes> batch)
+      throws Exception
+  {
+    final Collection<StorageItem> items;
+    try {
+      items = repository.getLocalStorage().listItems(repository, new ResourceStoreRequest(path, true));
+    }
+    catch (ItemNotFoundException e) {
+      // no attributes in this repository
+      return 0;
+    }
+
+    int result = 0;
+    for (StorageItem item : items) {
+      TaskUtil.checkInterruption();
+
+      if (item instanceof StorageCollectionItem) {
+        result += migrate(repository, item.getPath(), batch);
+      }
+      else {
+        final String itemPath = item.getPath().substring(DefaultLSAttributeStorage.ATTRIBUTE_PATH_PREFIX.length());
+        final RepositoryItemUid uid = repository.createUid(itemPath);
+        final Attributes attributes = source.getAttributes(uid);
+        if (attributes != null) {
+          batch.put(uid, attributes);
+          result++;
+          if (batch.size() >= BATCH_SIZE) {
+            flush(batch);
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private void flush(final Map<RepositoryItemUid, Attributes> batch)
+      throws IOException
+  {
+    if (!batch.isEmpty()) {
+      target.putAttributes(batch);
+      batch.clear();
+    }
+  }
+
+  @Override
+  protected String getAction() {
+    return ACTION;
+  }
+
+  @Override
+  protected String getMessage() {
+    if (getRepositoryId() != null) {
+      return "Migrating attributes of repository " + getRepositoryName();
+    }
+    else {
+      return "Migrating attributes of all registered repositories";
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.tasks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.sonatype.nexus.proxy.ItemNotFoundException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.attributes.Attributes;
+import org.sonatype.nexus.proxy.item.LinkPersister;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.StorageCollectionItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.item.StorageLinkItem;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.proxy.walker.AbstractWalkerProcessor;
+import org.sonatype.nexus.proxy.walker.ConcurrentWalkerProcessor;
+import org.sonatype.nexus.proxy.walker.DefaultWalkerContext;
+import org.sonatype.nexus.proxy.walker.Walker;
+import org.sonatype.nexus.proxy.walker.WalkerContext;
+import org.sonatype.nexus.proxy.walker.WalkerException;
+import org.sonatype.nexus.scheduling.AbstractNexusRepositoriesTask;
+import org.sonatype.nexus.tasks.descriptors.RecordLinkStatusTaskDescriptor;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Records link status in attributes of items stored before it was recorded on store (see
+ * {@link LinkPersister#LINK_ATTRIBUTE}). Such items get their status recorded on first retrieval anyway, the task
+ * just does it up front for a whole repository.
+ *
+ * @since 3.0
+ */
+@Named(RecordLinkStatusTaskDescriptor.ID)
+public class RecordLinkStatusTask
+    extends AbstractNexusRepositoriesTask<Object>
+{
+  /**
+   * System event action: record link status
+   */
+  public static final String ACTION = "RECORDLINKSTATUS";
+
+  private final Walker walker;
+
+  @Inject
+  public RecordLinkStatusTask(final Walker walker) {
+    this.walker = checkNotNull(walker);
+  }
+
+  @Override
+  protected String getRepositoryFieldId() {
+    return RecordLinkStatusTaskDescriptor.REPO_OR_GROUP_FIELD_ID;
+  }
+
+  @Override
+  protected Object doRun()
+      throws Exception
+  {
+    if (getRepositoryId() != null) {
+      record(getRepositoryRegistry().getRepository(getRepositoryId()));
+    }
+    else {
+      for (Repository repository : getRepositoryRegistry().getRepositories()) {
+        record(repository);
+      }
+    }
+    return null;
+  }
+
+  protected void record(final Repository repository)
+      throws WalkerException
+  {
+    final ResourceStoreRequest request = new ResourceStoreRequest(RepositoryItemUid.PATH_ROOT, true);
+    // members of groups are recorded on their own
+    request.setRequestGroupLocalOnly(true);
+    final RecordLinkStatusWalkerProcessor processor = new RecordLinkStatusWalkerProcessor();
+    final DefaultWalkerContext context = new DefaultWalkerContext(repository, request);
+    context.setParallel(true);
+    context.getProcessors().add(processor);
+    try {
+      walker.walk(context);
+    }
+    catch (WalkerException e) {
+      if (!(e.getWalkerContext().getStopCause() instanceof ItemNotFoundException)) {
+        throw e;
+      }
+    }
+    getLogger().info("Recorded link status of {} items in repository {}", processor.recorded.get(),
+        repository.getId());
+  }
+
+  @Override
+  protected String getAction() {
+    return ACTION;
+  }
+
+  @Override
+  protected String getMessage() {
+    if (getRepositoryId() != null) {
+      return "Recording link status of items in repository " + getRepositoryName();
+    }
+    else {
+      return "Recording link status of items in all registered repositories";
+    }
+  }
+
+  /**
+   * Walked items are listed in lightweight way, hence their type comes from their content.
+   */
+  private static class RecordLinkStatusWalkerProcessor
+      extends AbstractWalkerProcessor
+      implements ConcurrentWalkerProcessor
+  {
+    private final AtomicInteger recorded = new AtomicInteger();
+
+    @Override
+    public void processItem(final WalkerContext context, final StorageItem item)
+        throws Exception
+    {
+      if (item instanceof StorageCollectionItem) {
+        return; // collections have no attributes persisted
+      }
+      final Attributes attributes = item.getRepositoryItemAttributes();
+      if (!attributes.containsKey(LinkPersister.LINK_ATTRIBUTE)) {
+        attributes.put(LinkPersister.LINK_ATTRIBUTE, Boolean.toString(item instanceof StorageLinkItem));
+        context.getRepository().getAttributesHandler().storeAttributes(item);
+        recorded.incrementAndGet();
+      }
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.tasks.descriptors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.formfields.FormField;
+import org.sonatype.nexus.formfields.RepositoryCombobox;
+
+/**
+ * @since 3.0
+ */
+@Named("RecordLinkStatus")
+@Singleton
+public class RecordLinkStatusTaskDescriptor
+    extends AbstractScheduledTaskDescriptor
+{
+  public static final String ID = "RecordLinkStatusTask";
+
+  public static final String REPO_OR_GROUP_FIELD_ID = "repositoryId";
+
+  private final FormField repoField = new RepositoryCombobox(
+      REPO_OR_GROUP_FIELD_ID,
+      "Repository",
+      "Select the repository to record link status of items in",
+      FormField.MANDATORY
+  ).includeAnEntryForAllRepositories();
+
+  public String getId() {
+    return ID;
+  }
+
+  public String getName() {
+    return "Record Repository Link Status";
+  }
+
+  public List<FormField> formFields() {
+    List<FormField> fields = new ArrayList<FormField>();
+
+    fields.add(repoField);
+
+    return fields;
+  }
+}
@@ -12,11 +12,14 @@
  */
 package org.sonatype.nexus.threads;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class NexusThreadFactory
-    implements ThreadFactory
+    implements ThreadFactory, ForkJoinWorkerThreadFactory
 {
   private static final AtomicInteger poolNumber = new AtomicInteger(1);
 
@@ -55,4 +58,25 @@ public class NexusThreadFactory
     return result;
   }
 
+  /**
+   * Creates worker threads of fork/join pools, named and configured as the other threads of this factory.
+   *
+   * @since 3.0
+   */
+  @Override
+  public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+    final ForkJoinWorkerThread result = new NexusForkJoinWorkerThread(pool);
+    result.setName(namePrefix + threadNumber.getAndIncrement());
+    result.setDaemon(this.deamonThread);
+    result.setPriority(this.threadPriority);
+    return result;
+  }
+
+  private static class NexusForkJoinWorkerThread
+      extends ForkJoinWorkerThread
+  {
+    private NexusForkJoinWorkerThread(final ForkJoinPool pool) {
+      super(pool);
+    }
+  }
 }
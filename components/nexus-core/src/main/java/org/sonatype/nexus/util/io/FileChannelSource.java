@@ -0,0 +1,34 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.util.io;
+
+import java.nio.channels.FileChannel;
+
+import javax.annotation.Nullable;
+
+/**
+ * Implemented by (wrapping) input streams that read a file, to expose the underlying {@link FileChannel}, allowing
+ * consumers to transfer file regions directly (see {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}) instead of copying the stream through heap buffers. The channel is owned
+ * by the stream: it must not be closed directly, and is closed when the stream is closed.
+ *
+ * @since 3.0
+ */
+public interface FileChannelSource
+{
+  /**
+   * Returns the channel of the file this stream reads, or {@code null} if not available.
+   */
+  @Nullable
+  FileChannel getFileChannel();
+}
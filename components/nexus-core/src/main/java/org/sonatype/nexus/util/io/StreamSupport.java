@@ -12,9 +12,13 @@
  */
 package org.sonatype.nexus.util.io;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+
+import javax.annotation.Nullable;
 
 import org.sonatype.nexus.util.SystemPropertiesHelper;
 
@@ -60,4 +64,21 @@ public final class StreamSupport
     }
     return count;
   }
+
+  /**
+   * Returns the {@link FileChannel} underlying the passed in stream, if it reads a file and exposes the channel,
+   * otherwise {@code null}. See {@link FileChannelSource}.
+   *
+   * @since 3.0
+   */
+  @Nullable
+  public static FileChannel getFileChannel(final InputStream stream) {
+    if (stream instanceof FileInputStream) {
+      return ((FileInputStream) stream).getChannel();
+    }
+    else if (stream instanceof FileChannelSource) {
+      return ((FileChannelSource) stream).getFileChannel();
+    }
+    return null;
+  }
 }
@@ -12,9 +12,13 @@
  */
 package org.sonatype.nexus.web;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -26,6 +30,11 @@ import org.sonatype.nexus.SystemStatus;
 import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.nexus.util.io.StreamSupport;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.Range;
+import com.google.common.io.ByteStreams;
+
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -44,6 +53,16 @@ public class WebUtils
   private static final int BUFFER_SIZE = SystemPropertiesHelper
       .getInteger(WebUtils.class.getName() + ".BUFFER_SIZE", -1);
 
+  /**
+   * When {@code true}, content read from files is sent by transferring file regions from the file channel to the
+   * response (see {@link FileChannel#transferTo(long, long, WritableByteChannel)}), instead of copying it through a
+   * heap buffer, but only if the container output stream is a channel. Wrapping a plain output stream into a channel
+   * would just add a copy through a smaller buffer, so content is copied as stream then, as is content not read from
+   * files.
+   */
+  private static final boolean TRANSFER_FILE_CHANNELS = SystemPropertiesHelper
+      .getBoolean(WebUtils.class.getName() + ".transferFileChannels", true);
+
   private final String serverString;
 
   @Inject
@@ -89,6 +108,113 @@ public class WebUtils
    * The passed in {@link HttpServletResponse} after this call returns is committed and flushed.
    */
   public void sendContent(final InputStream input, final HttpServletResponse response) throws IOException {
+    final int bufferSize = prepareBufferSize(response);
+    try (final InputStream from = input; final OutputStream to = response.getOutputStream()) {
+      final FileChannel channel = getTransferableChannel(from, to);
+      if (channel != null) {
+        transfer(channel, channel.position(), channel.size() - channel.position(), (WritableByteChannel) to);
+      }
+      else {
+        StreamSupport.copy(from, to, bufferSize);
+      }
+      response.flushBuffer();
+    }
+  }
+
+  /**
+   * Sends a part of content, {@code length} bytes starting at {@code offset}, from the input stream to the response,
+   * otherwise same as {@link #sendContent(InputStream, HttpServletResponse)}. Content read from files is sent using
+   * positional transfer, without reading the skipped bytes.
+   *
+   * @since 3.0
+   */
+  public void sendContent(final InputStream input, final long offset, final long length,
+                          final HttpServletResponse response)
+      throws IOException
+  {
+    checkArgument(offset >= 0 && length >= 0, "Offset and length must be non-negative");
+    final int bufferSize = prepareBufferSize(response);
+    try (final InputStream from = input; final OutputStream to = response.getOutputStream()) {
+      final FileChannel channel = getTransferableChannel(from, to);
+      if (channel != null) {
+        transfer(channel, channel.position() + offset, length, (WritableByteChannel) to);
+      }
+      else {
+        ByteStreams.skipFully(from, offset);
+        StreamSupport.copy(ByteStreams.limit(from, length), to, bufferSize);
+      }
+      response.flushBuffer();
+    }
+  }
+
+  /**
+   * Sends parts of content as "multipart/byteranges" body (see RFC 7233 Appendix A) to the response, otherwise same
+   * as {@link #sendContent(InputStream, HttpServletResponse)}. Ranges are closed ranges of byte positions (first and
+   * last byte inclusive), and must be sorted and not overlapping, as content read as stream is only skipped forward.
+   * Content read from files is sent using positional transfer of each range.
+   *
+   * @see #getMultipartContentLength(List, String, long, String)
+   * @since 3.0
+   */
+  public void sendMultipartContent(final InputStream input, final List<Range<Long>> ranges, final String mimeType,
+                                   final long contentLength, final String boundary,
+                                   final HttpServletResponse response)
+      throws IOException
+  {
+    final int bufferSize = prepareBufferSize(response);
+    try (final InputStream from = input; final OutputStream to = response.getOutputStream()) {
+      final FileChannel channel = getTransferableChannel(from, to);
+      final long base = channel != null ? channel.position() : 0;
+      long streamPosition = 0;
+      for (Range<Long> range : ranges) {
+        final long length = range.upperEndpoint() - range.lowerEndpoint() + 1;
+        to.write(getMultipartPartHeader(range, mimeType, contentLength, boundary));
+        if (channel != null) {
+          transfer(channel, base + range.lowerEndpoint(), length, (WritableByteChannel) to);
+        }
+        else {
+          checkArgument(range.lowerEndpoint() >= streamPosition, "Ranges must be sorted and not overlapping");
+          ByteStreams.skipFully(from, range.lowerEndpoint() - streamPosition);
+          StreamSupport.copy(ByteStreams.limit(from, length), to, bufferSize);
+          streamPosition = range.upperEndpoint() + 1;
+        }
+      }
+      to.write(getMultipartTrailer(boundary));
+      response.flushBuffer();
+    }
+  }
+
+  /**
+   * Returns the exact length of "multipart/byteranges" body that {@link #sendMultipartContent(InputStream, List,
+   * String, long, String, HttpServletResponse)} sends with same parameters.
+   *
+   * @since 3.0
+   */
+  public long getMultipartContentLength(final List<Range<Long>> ranges, final String mimeType,
+                                        final long contentLength, final String boundary)
+  {
+    long result = getMultipartTrailer(boundary).length;
+    for (Range<Long> range : ranges) {
+      result += getMultipartPartHeader(range, mimeType, contentLength, boundary).length;
+      result += range.upperEndpoint() - range.lowerEndpoint() + 1;
+    }
+    return result;
+  }
+
+  private byte[] getMultipartPartHeader(final Range<Long> range, final String mimeType, final long contentLength,
+                                        final String boundary)
+  {
+    return ("\r\n--" + boundary + "\r\n"
+        + "Content-Type: " + mimeType + "\r\n"
+        + "Content-Range: bytes " + range.lowerEndpoint() + "-" + range.upperEndpoint() + "/" + contentLength
+        + "\r\n\r\n").getBytes(Charsets.US_ASCII);
+  }
+
+  private byte[] getMultipartTrailer(final String boundary) {
+    return ("\r\n--" + boundary + "--\r\n").getBytes(Charsets.US_ASCII);
+  }
+
+  private int prepareBufferSize(final HttpServletResponse response) {
     int bufferSize = BUFFER_SIZE;
     if (bufferSize < 1) {
       // if no user override, ask container for bufferSize
@@ -102,9 +228,34 @@ public class WebUtils
       // user override present, tell container what buffer size we'd like
       response.setBufferSize(bufferSize);
     }
-    try (final InputStream from = input; final OutputStream to = response.getOutputStream()) {
-      StreamSupport.copy(from, to, bufferSize);
-      response.flushBuffer();
+    return bufferSize;
+  }
+
+  /**
+   * Returns the file channel to transfer the content from, or {@code null} if content should be copied as stream:
+   * transfer is disabled, content is not read from a file, or the output is not a channel.
+   */
+  private FileChannel getTransferableChannel(final InputStream from, final OutputStream to) {
+    if (!TRANSFER_FILE_CHANNELS || !(to instanceof WritableByteChannel)) {
+      return null;
+    }
+    return StreamSupport.getFileChannel(from);
+  }
+
+  /**
+   * Transfers the file region to the output channel. The file channel position is not used nor modified.
+   */
+  private void transfer(final FileChannel channel, final long position, final long count,
+                        final WritableByteChannel target)
+      throws IOException
+  {
+    long transferred = 0;
+    while (transferred < count) {
+      final long written = channel.transferTo(position + transferred, count - transferred, target);
+      if (written <= 0 && position + transferred >= channel.size()) {
+        throw new EOFException("File truncated while being sent, " + transferred + " of " + count + " bytes sent");
+      }
+      transferred += written;
     }
   }
 }
@@ -0,0 +1,226 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.sonatype.nexus.events.SubscriberQueue.Envelope;
+import org.sonatype.nexus.events.SubscriberQueue.OverflowPolicy;
+import org.sonatype.nexus.proxy.RequestContext;
+import org.sonatype.nexus.proxy.events.RepositoryItemEvent;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventStoreUpdate;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.threads.UserIdMdcHelper;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.eventbus.Subscribe;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * UT for {@link SubscriberQueue}.
+ */
+public class SubscriberQueueTest
+    extends TestSupport
+{
+  public static class Subscriber
+  {
+    private final List<Object> received = Collections.synchronizedList(new ArrayList<Object>());
+
+    private Thread thread;
+
+    private String mdcValue;
+
+    @Subscribe
+    public void on(final Integer event) {
+      received.add(event);
+      thread = Thread.currentThread();
+      mdcValue = MDC.get("test");
+    }
+
+    @Subscribe
+    public void on(final RepositoryItemEvent event) {
+      received.add(event);
+      thread = Thread.currentThread();
+    }
+  }
+
+  /**
+   * Executor that runs tasks only when asked for.
+   */
+  private static class ManualExecutor
+      implements Executor
+  {
+    private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+    @Override
+    public void execute(final Runnable command) {
+      tasks.add(command);
+    }
+
+    private void runAll() {
+      while (!tasks.isEmpty()) {
+        tasks.remove(0).run();
+      }
+    }
+  }
+
+  private MetricRegistry metrics;
+
+  private ManualExecutor executor;
+
+  private Subscriber subscriber;
+
+  @Before
+  public void prepare() {
+    metrics = new MetricRegistry();
+    executor = new ManualExecutor();
+    subscriber = new Subscriber();
+  }
+
+  @After
+  public void cleanup() {
+    MDC.clear();
+  }
+
+  private RepositoryItemEvent updateEvent(final String path) {
+    final RepositoryItemUid uid = mock(RepositoryItemUid.class);
+    when(uid.toString()).thenReturn("repo:" + path);
+    final StorageItem item = mock(StorageItem.class);
+    when(item.getRepositoryItemUid()).thenReturn(uid);
+    when(item.getItemContext()).thenReturn(new RequestContext());
+    return new RepositoryItemEventStoreUpdate(mock(Repository.class), item);
+  }
+
+  @Test
+  public void unhandledEventsAreNotQueued() {
+    final SubscriberQueue underTest =
+        new SubscriberQueue(subscriber, executor, 10, 1, OverflowPolicy.CALLER_RUNS, false, metrics);
+    underTest.offer(new Envelope("string", null));
+    assertThat(underTest.isIdle(), equalTo(true));
+    assertThat(executor.tasks, empty());
+
+    underTest.offer(new Envelope(1, null));
+    assertThat(underTest.isIdle(), equalTo(false));
+    executor.runAll();
+    assertThat(subscriber.received, contains((Object) 1));
+    assertThat(underTest.isIdle(), equalTo(true));
+  }
+
+  @Test
+  public void callerRunsWhenFull() {
+    final SubscriberQueue underTest =
+        new SubscriberQueue(subscriber, executor, 2, 1, OverflowPolicy.CALLER_RUNS, false, metrics);
+    underTest.offer(new Envelope(1, null));
+    underTest.offer(new Envelope(2, null));
+    underTest.offer(new Envelope(3, null));
+    assertThat(subscriber.received, contains((Object) 3));
+    assertThat(subscriber.thread, equalTo(Thread.currentThread()));
+    assertThat(executor.tasks.size(), equalTo(1));
+
+    executor.runAll();
+    assertThat(subscriber.received, contains((Object) 3, 1, 2));
+    assertThat(metrics.meter(MetricRegistry.name(EventSubscriberHost.class, Subscriber.class.getName(),
+        "callerRuns")).getCount(), equalTo(1L));
+  }
+
+  @Test
+  public void callerThreadDrainRestoresMdc() {
+    final Executor rejecting = new Executor()
+    {
+      @Override
+      public void execute(final Runnable command) {
+        throw new RejectedExecutionException();
+      }
+    };
+    final SubscriberQueue underTest =
+        new SubscriberQueue(subscriber, rejecting, 10, 1, OverflowPolicy.CALLER_RUNS, false, metrics);
+
+    MDC.put(UserIdMdcHelper.KEY, "poster");
+    MDC.put("test", "poster");
+    final Envelope envelope = new Envelope(1, null);
+    MDC.clear();
+    MDC.put("test", "caller");
+
+    underTest.offer(envelope);
+    assertThat(subscriber.received, contains((Object) 1));
+    assertThat(subscriber.thread, equalTo(Thread.currentThread()));
+    assertThat(subscriber.mdcValue, equalTo("poster"));
+    assertThat(MDC.get("test"), equalTo("caller"));
+    assertThat(MDC.get(UserIdMdcHelper.KEY), nullValue());
+  }
+
+  @Test
+  public void dropPolicies() {
+    SubscriberQueue underTest =
+        new SubscriberQueue(subscriber, executor, 2, 1, OverflowPolicy.DROP_NEWEST, false, metrics);
+    for (int i = 1; i <= 4; i++) {
+      underTest.offer(new Envelope(i, null));
+    }
+    executor.runAll();
+    assertThat(subscriber.received, contains((Object) 1, 2));
+
+    subscriber.received.clear();
+    underTest = new SubscriberQueue(subscriber, executor, 2, 1, OverflowPolicy.DROP_OLDEST, false, metrics);
+    for (int i = 1; i <= 4; i++) {
+      underTest.offer(new Envelope(i, null));
+    }
+    executor.runAll();
+    assertThat(subscriber.received, contains((Object) 3, 4));
+  }
+
+  @Test
+  public void coalescing() {
+    final SubscriberQueue underTest =
+        new SubscriberQueue(subscriber, executor, 10, 1, OverflowPolicy.CALLER_RUNS, true, metrics);
+    final RepositoryItemEvent first = updateEvent("/a");
+    final RepositoryItemEvent other = updateEvent("/b");
+    final RepositoryItemEvent last = updateEvent("/a");
+    underTest.offer(new Envelope(first, null));
+    underTest.offer(new Envelope(other, null));
+    underTest.offer(new Envelope(last, null));
+    executor.runAll();
+    assertThat(subscriber.received, contains((Object) last, other));
+
+    // once delivered, it is not coalesced anymore
+    underTest.offer(new Envelope(first, null));
+    executor.runAll();
+    assertThat(subscriber.received.size(), equalTo(3));
+  }
+
+  @Test
+  public void closeRemovesMetrics() {
+    final SubscriberQueue underTest =
+        new SubscriberQueue(subscriber, executor, 10, 1, OverflowPolicy.CALLER_RUNS, false, metrics);
+    assertThat(metrics.getNames().isEmpty(), equalTo(false));
+    underTest.close();
+    assertThat(metrics.getNames(), empty());
+  }
+}
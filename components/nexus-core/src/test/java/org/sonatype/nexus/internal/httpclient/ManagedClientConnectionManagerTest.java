@@ -0,0 +1,127 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.internal.httpclient;
+
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ManagedClientConnectionManager}.
+ */
+public class ManagedClientConnectionManagerTest
+    extends TestSupport
+{
+  private ManagedClientConnectionManager underTest;
+
+  @Before
+  public void prepare() {
+    underTest = new ManagedClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory>create()
+        .register("http", PlainConnectionSocketFactory.getSocketFactory()).build(), new MetricRegistry());
+    underTest.setDefaultMaxPerRoute(20);
+  }
+
+  @After
+  public void cleanup() {
+    underTest._shutdown();
+  }
+
+  @Test
+  public void hostKeyResolvesDefaultPorts() {
+    assertThat(ManagedClientConnectionManager.hostKey(new HttpHost("Repo.Example.com", -1, "http")),
+        equalTo("http://repo.example.com:80"));
+    assertThat(ManagedClientConnectionManager.hostKey(new HttpHost("repo.example.com", -1, "https")),
+        equalTo("https://repo.example.com:443"));
+    assertThat(ManagedClientConnectionManager.hostKey(new HttpHost("repo.example.com", 8081, "http")),
+        equalTo("http://repo.example.com:8081"));
+  }
+
+  @Test
+  public void highestHostLimitAppliesToRoutes() {
+    final HttpRoute route = new HttpRoute(new HttpHost("repo.example.com", 80, "http"));
+
+    underTest.setMaxPerHost("a", new HttpHost("repo.example.com", -1, "http"), 5);
+    underTest.setMaxPerHost("b", new HttpHost("REPO.example.com", 80, "http"), 3);
+    underTest.requestConnection(route, null).cancel();
+    assertThat(underTest.getMaxPerRoute(route), equalTo(5));
+
+    underTest.setMaxPerHost("a", null, 0);
+    underTest.requestConnection(route, null).cancel();
+    assertThat(underTest.getMaxPerRoute(route), equalTo(3));
+
+    underTest.setMaxPerHost("b", new HttpHost("repo.example.com", 80, "http"), 0);
+    underTest.requestConnection(route, null).cancel();
+    assertThat(underTest.getMaxPerRoute(route), equalTo(20));
+
+    assertThat(underTest.getHostStats(), hasKey("http://repo.example.com:80"));
+    assertThat(underTest.getHostStats().get("http://repo.example.com:80").getMax(), equalTo(20));
+  }
+
+  @Test
+  public void hostLimitSpansAllRoutesToHost() throws Exception {
+    final HttpHost host = new HttpHost("repo.example.com", 80, "http");
+    final HttpRoute direct = new HttpRoute(host);
+    final HttpRoute proxied = new HttpRoute(host, null, new HttpHost("proxy.example.com", 3128, "http"), false);
+    underTest.setMaxPerHost("a", host, 1);
+
+    final HttpClientConnection connection = underTest.requestConnection(direct, null).get(1, TimeUnit.SECONDS);
+    try {
+      underTest.requestConnection(proxied, null).get(100, TimeUnit.MILLISECONDS);
+      fail("ConnectionPoolTimeoutException expected");
+    }
+    catch (ConnectionPoolTimeoutException e) {
+      // expected, host has no more connections
+    }
+    underTest.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+
+    underTest.releaseConnection(underTest.requestConnection(proxied, null).get(1, TimeUnit.SECONDS), null, 0,
+        TimeUnit.MILLISECONDS);
+    assertThat(underTest.getHostStats().get("http://repo.example.com:80").getMax(), equalTo(1));
+  }
+
+  @Test
+  public void routesEvictedWhenHostForgotten() {
+    final HttpHost host = new HttpHost("repo.example.com", 80, "http");
+    final HttpRoute route = new HttpRoute(host);
+
+    underTest.setMaxPerHost("a", host, 5);
+    underTest.setMaxPerHost("b", host, 0);
+    underTest.requestConnection(route, null).cancel();
+    assertThat(underTest.getHostStats(), hasKey("http://repo.example.com:80"));
+
+    underTest.setMaxPerHost("a", null, 0);
+    assertThat(underTest.getHostStats(), hasKey("http://repo.example.com:80"));
+    assertThat(underTest.getMaxPerRoute(route), equalTo(20));
+
+    underTest.setMaxPerHost("b", null, 0);
+    assertThat(underTest.getHostStats(), not(hasKey("http://repo.example.com:80")));
+  }
+}
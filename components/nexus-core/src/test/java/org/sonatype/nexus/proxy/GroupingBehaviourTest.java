@@ -88,6 +88,39 @@ public class GroupingBehaviourTest
     }
   }
 
+  @Test
+  public void testSpoofingNonMetadataWithParallelMembers()
+      throws Exception
+  {
+    String spoofedPath = "/spoof/simple.txt";
+
+    File md1File = createTempFile("md1", "tmp");
+
+    try {
+      // get file directly from repo1
+      StorageItem item1 =
+          getRepositoryRegistry().getRepository("repo1").retrieveItem(
+              new ResourceStoreRequest(spoofedPath, false));
+      checkForFileAndMatchContents(item1);
+      saveItemToFile((StorageFileItem) item1, md1File);
+
+      // query all members concurrently, the highest ranked repo in group (repo1) should still provide the file
+      MavenGroupRepository mgr =
+          getRepositoryRegistry().getRepositoryWithFacet("test", MavenGroupRepository.class);
+      mgr.setMergeMetadata(false);
+      ((AbstractMavenGroupRepository) mgr).setMemberParallelism(3);
+      ((AbstractMavenGroupRepository) mgr).commitChanges();
+      eventBus().post(new ConfigurationChangeEvent(getApplicationConfiguration(), null, null));
+
+      StorageItem item =
+          getRootRouter().retrieveItem(new ResourceStoreRequest("/groups/test" + spoofedPath, false));
+      checkForFileAndMatchContents(item, md1File);
+    }
+    finally {
+      md1File.delete();
+    }
+  }
+
   @Test
   public void testSpoofingMetadata()
       throws Exception
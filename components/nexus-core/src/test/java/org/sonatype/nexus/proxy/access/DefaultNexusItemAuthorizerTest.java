@@ -0,0 +1,98 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.access;
+
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.security.SecuritySystem;
+import org.sonatype.security.events.AuthorizationConfigurationChanged;
+import org.sonatype.security.events.UserPrincipalsExpired;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * UT for {@link DefaultNexusItemAuthorizer} decision cache.
+ */
+public class DefaultNexusItemAuthorizerTest
+    extends TestSupport
+{
+  private static final String PERM = "nexus:target:1:central:read";
+
+  @Mock
+  private SecuritySystem securitySystem;
+
+  @Mock
+  private RepositoryRegistry repositoryRegistry;
+
+  @Mock
+  private EventBus eventBus;
+
+  @Mock
+  private Subject subject;
+
+  private DefaultNexusItemAuthorizer authorizer;
+
+  @Before
+  public void prepare() {
+    when(securitySystem.getSubject()).thenReturn(subject);
+    when(subject.getPrincipals()).thenReturn(new SimplePrincipalCollection("ci", "default"));
+    when(subject.isPermitted(PERM)).thenReturn(true);
+    authorizer = new DefaultNexusItemAuthorizer(securitySystem, repositoryRegistry, eventBus, 100, 60);
+  }
+
+  @Test
+  public void decisionsAreCached() {
+    assertThat(authorizer.authorizePermission(PERM), equalTo(true));
+    assertThat(authorizer.authorizePermission(PERM), equalTo(true));
+    verify(subject, times(1)).isPermitted(PERM);
+  }
+
+  @Test
+  public void decisionsAreInvalidatedOnAuthorizationChange() {
+    assertThat(authorizer.authorizePermission(PERM), equalTo(true));
+    when(subject.isPermitted(PERM)).thenReturn(false);
+    authorizer.on(new AuthorizationConfigurationChanged());
+    assertThat(authorizer.authorizePermission(PERM), equalTo(false));
+    verify(subject, times(2)).isPermitted(PERM);
+  }
+
+  @Test
+  public void decisionsAreInvalidatedForExpiredUserOnly() {
+    assertThat(authorizer.authorizePermission(PERM), equalTo(true));
+    authorizer.on(new UserPrincipalsExpired("other", "default"));
+    assertThat(authorizer.authorizePermission(PERM), equalTo(true));
+    verify(subject, times(1)).isPermitted(PERM);
+    authorizer.on(new UserPrincipalsExpired("ci", "default"));
+    assertThat(authorizer.authorizePermission(PERM), equalTo(true));
+    verify(subject, times(2)).isPermitted(PERM);
+  }
+
+  @Test
+  public void disabledCacheAlwaysEvaluates() {
+    authorizer = new DefaultNexusItemAuthorizer(securitySystem, repositoryRegistry, eventBus, 0, 60);
+    authorizer.authorizePermission(PERM);
+    authorizer.authorizePermission(PERM);
+    verify(subject, times(2)).isPermitted(PERM);
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.attributes;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonatype.nexus.proxy.attributes.OrderedAttributeStorage.AttributesVisitor;
+import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.RepositoryItemUidLock;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * UT for {@link H2AttributeStorage}.
+ */
+public class H2AttributeStorageTest
+    extends TestSupport
+{
+  @Mock
+  private EventBus eventBus;
+
+  @Mock
+  private Repository repository;
+
+  private H2AttributeStorage attributeStorage;
+
+  @Before
+  public void prepare() throws IOException {
+    when(repository.getId()).thenReturn("repo");
+    attributeStorage = new H2AttributeStorage(util.createTempDir(), eventBus, new JacksonJSONMarshaller());
+  }
+
+  @After
+  public void cleanup() {
+    attributeStorage.on(new NexusStoppedEvent(null));
+  }
+
+  @Test
+  public void putGetDelete() throws Exception {
+    final RepositoryItemUid uid = uid("/a/b.txt");
+    final Attributes attributes = new DefaultAttributes();
+    attributes.put("kuku", "kuku");
+
+    assertThat(attributeStorage.getAttributes(uid), nullValue());
+
+    attributeStorage.putAttributes(uid, attributes);
+    final Attributes stored = attributeStorage.getAttributes(uid);
+    assertThat(stored, notNullValue());
+    assertThat(stored.get("kuku"), equalTo("kuku"));
+    assertThat(stored.getPath(), equalTo("/a/b.txt"));
+    assertThat(stored.getRepositoryId(), equalTo("repo"));
+
+    assertThat(attributeStorage.deleteAttributes(uid), equalTo(true));
+    assertThat(attributeStorage.deleteAttributes(uid), equalTo(false));
+    assertThat(attributeStorage.getAttributes(uid), nullValue());
+  }
+
+  @Test
+  public void batchPutAndScan() throws Exception {
+    final Map<RepositoryItemUid, Attributes> batch = new LinkedHashMap<RepositoryItemUid, Attributes>();
+    for (String path : new String[]{"/a", "/a/b", "/a/b/c", "/a-b", "/a0", "/ab", "/b"}) {
+      batch.put(uid(path), new DefaultAttributes());
+    }
+    attributeStorage.putAttributes(batch);
+
+    assertThat(scan("/a"), contains("/a", "/a/b", "/a/b/c"));
+    assertThat(scan("/a/"), contains("/a", "/a/b", "/a/b/c"));
+    assertThat(scan("/a/b"), contains("/a/b", "/a/b/c"));
+    assertThat(scan("/"), contains("/a", "/a-b", "/a/b", "/a/b/c", "/a0", "/ab", "/b"));
+  }
+
+  private List<String> scan(final String prefix) throws IOException {
+    final List<String> result = Lists.newArrayList();
+    attributeStorage.scanAttributes(repository, prefix, new AttributesVisitor()
+    {
+      @Override
+      public boolean visit(final String path, final Attributes attributes) {
+        result.add(path);
+        return true;
+      }
+    });
+    return result;
+  }
+
+  private RepositoryItemUid uid(final String path) {
+    final RepositoryItemUid uid = mock(RepositoryItemUid.class);
+    when(uid.getRepository()).thenReturn(repository);
+    when(uid.getPath()).thenReturn(path);
+    when(uid.getKey()).thenReturn("repo:" + path);
+    when(uid.getLock()).thenReturn(mock(RepositoryItemUidLock.class));
+    return uid;
+  }
+}
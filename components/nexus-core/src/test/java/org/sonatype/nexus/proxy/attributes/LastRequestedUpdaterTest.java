@@ -0,0 +1,95 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.attributes;
+
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * UT for {@link LastRequestedUpdater}.
+ */
+public class LastRequestedUpdaterTest
+    extends TestSupport
+{
+  private HashMapAttributeStorage attributeStorage;
+
+  private LastRequestedUpdater updater;
+
+  @Before
+  public void prepare() {
+    attributeStorage = new HashMapAttributeStorage();
+    updater = new LastRequestedUpdater(attributeStorage, 2, 10, 60000L);
+  }
+
+  @Test
+  public void touchesAreCoalesced() throws Exception {
+    final RepositoryItemUid uid = uid("repo:/a");
+
+    assertThat(updater.offer(uid, 1000L), equalTo(true));
+    assertThat(updater.offer(uid, 2000L), equalTo(true));
+    assertThat(updater.offer(uid, 3000L), equalTo(true));
+    assertThat(updater.getPendingCount(), equalTo(1));
+    assertThat(attributeStorage.getAttributes(uid).getLastRequested(), equalTo(1L));
+
+    assertThat(updater.flush(), equalTo(1));
+    assertThat(updater.getPendingCount(), equalTo(0));
+    assertThat(attributeStorage.getAttributes(uid).getLastRequested(), equalTo(3000L));
+  }
+
+  @Test
+  public void touchesAboveCapacityAreDropped() throws Exception {
+    final RepositoryItemUid a = uid("repo:/a");
+    final RepositoryItemUid b = uid("repo:/b");
+    final RepositoryItemUid c = uid("repo:/c");
+
+    assertThat(updater.offer(a, 1000L), equalTo(true));
+    assertThat(updater.offer(b, 1000L), equalTo(true));
+    assertThat(updater.offer(c, 1000L), equalTo(false));
+    // already queued ones are still coalesced
+    assertThat(updater.offer(a, 2000L), equalTo(true));
+
+    assertThat(updater.flush(), equalTo(2));
+    assertThat(attributeStorage.getAttributes(a).getLastRequested(), equalTo(2000L));
+    assertThat(attributeStorage.getAttributes(b).getLastRequested(), equalTo(1000L));
+    assertThat(attributeStorage.getAttributes(c).getLastRequested(), equalTo(1L));
+  }
+
+  @Test
+  public void deletedItemsAreSkipped() throws Exception {
+    final RepositoryItemUid uid = uid("repo:/a");
+
+    assertThat(updater.offer(uid, 1000L), equalTo(true));
+    attributeStorage.deleteAttributes(uid);
+
+    assertThat(updater.flush(), equalTo(1));
+    assertThat(attributeStorage.getAttributes(uid), nullValue());
+  }
+
+  private RepositoryItemUid uid(final String key) {
+    final RepositoryItemUid uid = mock(RepositoryItemUid.class);
+    when(uid.getKey()).thenReturn(key);
+    final Attributes attributes = new DefaultAttributes();
+    attributes.setLastRequested(1L);
+    attributeStorage.putAttributes(uid, attributes);
+    return uid;
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.cache;
+
+import java.util.Collection;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * UT for {@link TriePathCache}.
+ */
+public class TriePathCacheTest
+    extends TestSupport
+{
+  @Test
+  public void removeWithChildrenRemovesSubtreeOnly() {
+    final TriePathCache cache = new TriePathCache("test", 100, 120);
+    cache.put("/foo", Boolean.TRUE);
+    cache.put("/foo/bar/baz", Boolean.TRUE);
+    cache.put("/foobar", Boolean.TRUE);
+    cache.put("/other/foo", Boolean.TRUE);
+
+    assertThat(cache.removeWithChildren("/foo/"), equalTo(true));
+    assertThat(cache.contains("/foo"), equalTo(false));
+    assertThat(cache.contains("/foo/bar/baz"), equalTo(false));
+    assertThat(cache.contains("/foobar"), equalTo(true));
+    assertThat(cache.contains("/other/foo"), equalTo(true));
+    assertThat(cache.getStatistics().getSize(), equalTo(2L));
+
+    assertThat(cache.removeWithChildren("/foo"), equalTo(false));
+    assertThat(cache.removeWithChildren("/"), equalTo(true));
+    assertThat(cache.getStatistics().getSize(), equalTo(0L));
+    assertThat(cache.contains("/foobar"), equalTo(false));
+  }
+
+  @Test
+  public void removeWithParents() {
+    final TriePathCache cache = new TriePathCache("test", 100, 120);
+    cache.put("/", Boolean.TRUE);
+    cache.put("/com", Boolean.TRUE);
+    cache.put("/com/sonatype", Boolean.TRUE);
+    cache.put("/com/sonatype/nexus", Boolean.TRUE);
+
+    assertThat(cache.removeWithParents("/com/sonatype"), equalTo(true));
+    assertThat(cache.contains("/com/sonatype/nexus"), equalTo(true));
+    assertThat(cache.contains("/com/sonatype"), equalTo(false));
+    assertThat(cache.contains("/com"), equalTo(false));
+    assertThat(cache.contains("/"), equalTo(false));
+    assertThat(cache.getStatistics().getSize(), equalTo(1L));
+
+    assertThat(cache.remove("/com/sonatype/nexus"), equalTo(true));
+    assertThat(cache.remove("/com/sonatype/nexus"), equalTo(false));
+    assertThat(cache.getStatistics().getSize(), equalTo(0L));
+  }
+
+  @Test
+  public void expiration()
+      throws Exception
+  {
+    final TriePathCache cache = new TriePathCache("test", 100, 120);
+    cache.put("/eternal", Boolean.TRUE, 0);
+    cache.put("/default", Boolean.TRUE, -1);
+    cache.put("/short", Boolean.TRUE, 1);
+
+    Thread.sleep(1100);
+
+    assertThat(cache.isExpired("/short"), equalTo(true));
+    assertThat(cache.contains("/short"), equalTo(false));
+    assertThat(cache.isExpired("/short"), equalTo(false));
+    assertThat(cache.contains("/eternal"), equalTo(true));
+    assertThat(cache.contains("/default"), equalTo(true));
+    assertThat(cache.getStatistics().getSize(), equalTo(2L));
+  }
+
+  @Test
+  public void fullCacheEvictsLeastRecentlyUsed() {
+    final TriePathCache cache = new TriePathCache("test", 3, 120);
+    cache.put("/a", Boolean.TRUE);
+    cache.put("/b", Boolean.TRUE);
+    cache.put("/c", Boolean.TRUE);
+    assertThat(cache.contains("/a"), equalTo(true));
+
+    cache.put("/d", Boolean.TRUE);
+    assertThat(cache.contains("/a"), equalTo(true));
+    assertThat(cache.contains("/b"), equalTo(false));
+    assertThat(cache.contains("/c"), equalTo(true));
+    assertThat(cache.contains("/d"), equalTo(true));
+    assertThat(cache.getStatistics().getSize(), equalTo(3L));
+  }
+
+  @Test
+  public void fullCacheEvictsExpiredFirst()
+      throws Exception
+  {
+    final TriePathCache cache = new TriePathCache("test", 2, 120);
+    cache.put("/a", Boolean.TRUE, 1);
+    cache.put("/b", Boolean.TRUE);
+
+    Thread.sleep(1100);
+
+    cache.put("/c", Boolean.TRUE);
+    assertThat(cache.contains("/b"), equalTo(true));
+    assertThat(cache.contains("/c"), equalTo(true));
+    assertThat(cache.getStatistics().getSize(), equalTo(2L));
+  }
+
+  @Test
+  public void boundIsSharedByCaches() {
+    final TriePathCache.Bound bound = new TriePathCache.Bound(3);
+    final TriePathCache cache1 = new TriePathCache("test1", bound, 120, 120);
+    final TriePathCache cache2 = new TriePathCache("test2", bound, 120, 120);
+    cache1.put("/a", Boolean.TRUE);
+    cache1.put("/b", Boolean.TRUE);
+    cache2.put("/a", Boolean.TRUE);
+    assertThat(bound.getSize(), equalTo(3));
+
+    // paths of quiet cache get evicted for the busy one
+    cache2.put("/b", Boolean.TRUE);
+    cache2.put("/c", Boolean.TRUE);
+    assertThat(bound.getSize(), equalTo(3));
+    assertThat(cache1.getStatistics().getSize(), equalTo(0L));
+    assertThat(cache2.contains("/a"), equalTo(true));
+    assertThat(cache2.contains("/b"), equalTo(true));
+    assertThat(cache2.contains("/c"), equalTo(true));
+
+    cache2.removeWithChildren("/");
+    assertThat(bound.getSize(), equalTo(0));
+    cache1.put("/b", Boolean.TRUE);
+    assertThat(cache1.contains("/b"), equalTo(true));
+    assertThat(bound.getSize(), equalTo(1));
+  }
+
+  @Test
+  public void removedPathsDoNotPileUpInEvictionQueue() {
+    final TriePathCache cache = new TriePathCache("test", 10, 120);
+    for (int i = 0; i < 1000; i++) {
+      cache.put("/path" + i, Boolean.TRUE);
+      cache.remove("/path" + i);
+    }
+    for (int i = 0; i < 20; i++) {
+      cache.put("/other" + i, Boolean.TRUE);
+    }
+    assertThat(cache.getStatistics().getSize(), equalTo(10L));
+    assertThat(cache.contains("/other19"), equalTo(true));
+  }
+
+  @Test
+  public void idlePathsExpire()
+      throws Exception
+  {
+    final TriePathCache cache = new TriePathCache("test", new TriePathCache.Bound(100), 120, 1);
+    cache.put("/idle", Boolean.TRUE, 60);
+    cache.put("/used", Boolean.TRUE, 60);
+    cache.put("/eternal", Boolean.TRUE, 0);
+
+    Thread.sleep(600);
+    assertThat(cache.contains("/used"), equalTo(true));
+    Thread.sleep(600);
+
+    assertThat(cache.contains("/idle"), equalTo(false));
+    assertThat(cache.contains("/used"), equalTo(true));
+    assertThat(cache.contains("/eternal"), equalTo(true));
+  }
+
+  @Test
+  public void listKeysAndStatistics() {
+    final TriePathCache cache = new TriePathCache("test", 5000, 120);
+    for (int i = 0; i < 3000; i++) {
+      cache.put("/org/group" + i + "/artifact/", Boolean.TRUE);
+    }
+    cache.removeWithChildren("/org");
+    cache.put("/com/", Boolean.TRUE);
+    cache.put("/com/sonatype", Boolean.TRUE);
+
+    final Collection<String> keys = cache.listKeysInCache();
+    assertThat(keys, containsInAnyOrder("com", "com/sonatype"));
+
+    assertThat(cache.contains("com/sonatype/"), equalTo(true));
+    assertThat(cache.contains("/org/group1/artifact"), equalTo(false));
+    final CacheStatistics statistics = cache.getStatistics();
+    assertThat(statistics.getSize(), equalTo(2L));
+    assertThat(statistics.getHits(), equalTo(1L));
+    assertThat(statistics.getMisses(), equalTo(1L));
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.item;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.fail;
+
+/**
+ * UT for {@link ContentSpool}.
+ */
+public class ContentSpoolTest
+    extends TestSupport
+{
+  private ExecutorService executor;
+
+  private File file;
+
+  @Before
+  public void prepare() throws IOException {
+    executor = Executors.newCachedThreadPool();
+    file = util.createTempFile();
+  }
+
+  @After
+  public void cleanup() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void readersFollowWriter() throws Exception {
+    final ContentSpool spool = new ContentSpool(ContentLocator.UNKNOWN_MIME_TYPE, 6);
+
+    final Future<byte[]> early = executor.submit(new Reader(spool));
+
+    try (final FileOutputStream os = new FileOutputStream(file)) {
+      spool.attach(file);
+      os.write("abc".getBytes());
+      os.flush();
+      spool.advance(3);
+
+      final Future<byte[]> late = executor.submit(new Reader(spool));
+
+      os.write("def".getBytes());
+      os.flush();
+      spool.advance(3);
+      spool.finish();
+
+      assertThat(new String(early.get(5, TimeUnit.SECONDS)), equalTo("abcdef"));
+      assertThat(new String(late.get(5, TimeUnit.SECONDS)), equalTo("abcdef"));
+    }
+  }
+
+  @Test
+  public void readerAfterPublish() throws Exception {
+    final ContentSpool spool = new ContentSpool(ContentLocator.UNKNOWN_MIME_TYPE, 3);
+    final File target = new File(file.getParentFile(), file.getName() + ".published");
+
+    try (final FileOutputStream os = new FileOutputStream(file)) {
+      spool.attach(file);
+      os.write("abc".getBytes());
+      spool.advance(3);
+    }
+    assertThat(file.renameTo(target), equalTo(true));
+    spool.published(target);
+    spool.finish();
+
+    assertThat(new String(new Reader(spool).call()), equalTo("abc"));
+  }
+
+  @Test
+  public void readerGetsFailure() throws Exception {
+    final ContentSpool spool = new ContentSpool(ContentLocator.UNKNOWN_MIME_TYPE, 6);
+
+    try (final FileOutputStream os = new FileOutputStream(file)) {
+      spool.attach(file);
+      os.write("abc".getBytes());
+      spool.advance(3);
+    }
+    spool.fail(new IOException("boom"));
+
+    try {
+      new Reader(spool).call();
+      fail("Failed spool should not be readable");
+    }
+    catch (IOException e) {
+      // good
+    }
+  }
+
+  @Test
+  public void readerFailsOnStalledWriter() throws Exception {
+    final ContentSpool spool = new ContentSpool(ContentLocator.UNKNOWN_MIME_TYPE, 6, 100L);
+
+    try (final FileOutputStream os = new FileOutputStream(file)) {
+      spool.attach(file);
+      os.write("abc".getBytes());
+      spool.advance(3);
+    }
+
+    try {
+      executor.submit(new Reader(spool)).get(5, TimeUnit.SECONDS);
+      fail("Stalled spool should not be readable");
+    }
+    catch (ExecutionException e) {
+      assertThat(e.getCause() instanceof IOException, equalTo(true));
+    }
+    assertThat(spool.isFailed(), equalTo(true));
+  }
+
+  private static class Reader
+      implements Callable<byte[]>
+  {
+    private final ContentSpool spool;
+
+    private Reader(final ContentSpool spool) {
+      this.spool = spool;
+    }
+
+    @Override
+    public byte[] call() throws IOException {
+      try (final InputStream is = spool.getContent()) {
+        return ByteStreams.toByteArray(is);
+      }
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.item;
+
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.sonatype.nexus.proxy.RequestContext;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * UT for {@link DigestingContentLocator}.
+ */
+public class DigestingContentLocatorTest
+    extends TestSupport
+{
+  private static final String CONTENT = "test";
+
+  @Test
+  public void digestsPutIntoContextWhenFullyRead() throws Exception {
+    final RequestContext context = new RequestContext();
+    final DigestingContentLocator locator =
+        new DigestingContentLocator(new StringContentLocator(CONTENT), context);
+    try (InputStream is = locator.getContent()) {
+      assertThat(new String(ByteStreams.toByteArray(is), "UTF-8"), equalTo(CONTENT));
+    }
+    assertThat((String) context.get(StorageFileItem.DIGEST_SHA1_KEY),
+        equalTo("a94a8fe5ccb19ba61c4c0873d391e987982fbbd3"));
+    assertThat((String) context.get(StorageFileItem.DIGEST_MD5_KEY), equalTo("098f6bcd4621d373cade4e832627b4f6"));
+  }
+
+  @Test
+  public void explicitDigests() throws Exception {
+    final Map<String, String> algorithms = new LinkedHashMap<>();
+    algorithms.put(StorageFileItem.DIGEST_SHA256_KEY, "SHA-256");
+    algorithms.put(StorageFileItem.DIGEST_SHA512_KEY, "SHA-512");
+    final RequestContext context = new RequestContext();
+    final DigestingContentLocator locator =
+        new DigestingContentLocator(new StringContentLocator(CONTENT), algorithms, context);
+    try (InputStream is = locator.getContent()) {
+      assertThat(is.skip(-1), is(0L));
+      assertThat(is.skip(0), is(0L));
+      // skipped content is digested too
+      assertThat(is.skip(2), is(2L));
+      ByteStreams.toByteArray(is);
+    }
+    assertThat((String) context.get(StorageFileItem.DIGEST_SHA256_KEY),
+        equalTo("9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08"));
+    assertThat((String) context.get(StorageFileItem.DIGEST_SHA512_KEY), equalTo(
+        "ee26b0dd4af7e749aa1a8ee3c10ae9923f618980772e473f8819a5d4940e0db27ac185f8a0e1d5f84f88bc887fd67b143732c304cc5fa9ad8e6f57f50028a8ff"));
+    assertThat(context.containsKey(StorageFileItem.DIGEST_SHA1_KEY), is(false));
+  }
+
+  @Test
+  public void noDigestsWhenNotFullyRead() throws Exception {
+    final RequestContext context = new RequestContext();
+    final DigestingContentLocator locator =
+        new DigestingContentLocator(new StringContentLocator(CONTENT), context);
+    try (InputStream is = locator.getContent()) {
+      is.read();
+    }
+    assertThat(context.containsKey(StorageFileItem.DIGEST_SHA1_KEY), is(false));
+  }
+}
@@ -12,10 +12,18 @@
  */
 package org.sonatype.nexus.proxy.item;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.sonatype.nexus.proxy.AbstractNexusTestEnvironment;
 import org.sonatype.nexus.proxy.access.Action;
 import org.sonatype.nexus.proxy.repository.Repository;
 
+import com.google.common.collect.Lists;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -173,4 +181,35 @@ public class RepositoryItemUidFactoryTest
 
     Assert.assertTrue("We should have less than 10k in weak map: " + size, size <= 30000 && size > 0);
   }
+
+  @Test
+  public void testConcurrentLookupsShareLock()
+      throws Exception
+  {
+    final int threads = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<RepositoryItemUidLock>> locks = Lists.newArrayList();
+      for (int i = 0; i < threads; i++) {
+        locks.add(executor.submit(new Callable<RepositoryItemUidLock>()
+        {
+          @Override
+          public RepositoryItemUidLock call() throws Exception {
+            start.await();
+            return factory.createUid(repository, "/some/contended/poth").getLock();
+          }
+        }));
+      }
+      start.countDown();
+
+      final RepositoryItemUidLock lock = locks.get(0).get();
+      for (Future<RepositoryItemUidLock> other : locks) {
+        Assert.assertSame("Concurrently created UIDLocks should be same", lock, other.get());
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
 }
@@ -0,0 +1,126 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven.maven2;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.sonatype.nexus.proxy.RequestContext;
+import org.sonatype.nexus.proxy.attributes.Attributes;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventStoreUpdate;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * UT for {@link MergedMetadataCache}.
+ */
+public class MergedMetadataCacheTest
+    extends TestSupport
+{
+  private static final String PATH = "/org/sonatype/maven-metadata.xml";
+
+  @Mock
+  private EventBus eventBus;
+
+  @Mock
+  private RepositoryRegistry repositoryRegistry;
+
+  @Mock
+  private Repository member;
+
+  private MergedMetadataCache underTest;
+
+  @Before
+  public void prepare() {
+    when(member.getId()).thenReturn("member");
+    when(repositoryRegistry.getGroupsOfRepository("member")).thenReturn(Collections.singletonList("group"));
+    when(repositoryRegistry.getGroupsOfRepository("group")).thenReturn(Collections.<String>emptyList());
+    underTest = new MergedMetadataCache(eventBus, repositoryRegistry, 1024 * 1024);
+  }
+
+  private StorageFileItem item(final String path, final long modified, final long length) {
+    final RepositoryItemUid uid = mock(RepositoryItemUid.class);
+    when(uid.getRepository()).thenReturn(member);
+    when(uid.getPath()).thenReturn(path);
+    when(uid.toString()).thenReturn("member:" + path);
+    final StorageFileItem item = mock(StorageFileItem.class);
+    when(item.getRepositoryItemUid()).thenReturn(uid);
+    when(item.getRepositoryItemAttributes()).thenReturn(mock(Attributes.class));
+    when(item.getItemContext()).thenReturn(new RequestContext());
+    when(item.getPath()).thenReturn(path);
+    when(item.getModified()).thenReturn(modified);
+    when(item.getLength()).thenReturn(length);
+    return item;
+  }
+
+  @Test
+  public void hitOnlyWhenMembersUnchanged() {
+    final List<StorageItem> items = ImmutableList.<StorageItem>of(item(PATH, 1000L, 10L));
+    underTest.put("group", PATH, items, new byte[]{1, 2, 3}, "md5", "sha1");
+
+    final MergedMetadataCache.Entry entry =
+        underTest.get("group", PATH, ImmutableList.<StorageItem>of(item(PATH, 1000L, 10L)));
+    assertThat(entry, notNullValue());
+    assertThat(entry.getSha1(), equalTo("sha1"));
+    assertThat(underTest.get("other", PATH, items), nullValue());
+
+    assertThat(underTest.get("group", PATH, ImmutableList.<StorageItem>of(item(PATH, 2000L, 10L))), nullValue());
+    // mismatching entry is dropped
+    assertThat(underTest.get("group", PATH, items), nullValue());
+  }
+
+  @Test
+  public void memberStoreInvalidates() {
+    final List<StorageItem> items = ImmutableList.<StorageItem>of(item(PATH, 1000L, 10L));
+    underTest.put("group", PATH, items, new byte[]{1, 2, 3}, "md5", "sha1");
+    underTest.put("group", "/other/maven-metadata.xml", items, new byte[]{1, 2, 3}, "md5", "sha1");
+
+    underTest.on(new RepositoryItemEventStoreUpdate(member, item(PATH, 2000L, 10L)));
+    assertThat(underTest.get("group", PATH, items), nullValue());
+    assertThat(underTest.size(), equalTo(1L));
+
+    underTest.invalidate("group");
+    assertThat(underTest.size(), equalTo(0L));
+  }
+
+  @Test
+  public void memoryBudget() {
+    underTest = new MergedMetadataCache(eventBus, repositoryRegistry, 10 * 1024);
+    final List<StorageItem> items = ImmutableList.<StorageItem>of(item(PATH, 1000L, 10L));
+    for (int i = 0; i < 100; i++) {
+      underTest.put("group", "/g" + i + "/maven-metadata.xml", items, new byte[1024], "md5", "sha1");
+    }
+    assertThat(underTest.size() < 10, equalTo(true));
+
+    underTest = new MergedMetadataCache(eventBus, repositoryRegistry, 0);
+    underTest.put("group", PATH, items, new byte[1], "md5", "sha1");
+    assertThat(underTest.get("group", PATH, items), nullValue());
+  }
+}
@@ -13,7 +13,6 @@
 package org.sonatype.nexus.proxy.maven.routing.internal;
 
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -114,8 +113,10 @@ public class PrefixFileMaintenanceTest
   }
 
   protected List<String> getEntriesOf(final MavenRepository mavenRepository)
-      throws IOException
+      throws Exception
   {
+    // prefix file updates of hosted repositories are persisted in background
+    waitForRoutingBackgroundUpdates();
     final PrefixSource entrySource = manager.getPrefixSourceFor(mavenRepository);
     final ArrayList<String> result = new ArrayList<String>(entrySource.readEntries());
     Collections.sort(result);
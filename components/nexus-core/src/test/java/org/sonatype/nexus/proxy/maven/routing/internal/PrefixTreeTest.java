@@ -0,0 +1,105 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven.routing.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.sonatype.nexus.proxy.maven.routing.internal.PrefixTree.Changes;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class PrefixTreeTest
+    extends TestSupport
+{
+  protected List<String> entries = Arrays.asList("/org/sonatype", "/com/sonatype/nexus", "/archetype-catalog.xml");
+
+  @Test
+  public void offerEntry() {
+    final PrefixTree tree = new PrefixTree(entries, 2);
+    assertThat(tree.hasChanges(), is(false));
+
+    // already matched
+    assertThat(tree.offerEntry("/org/sonatype/nexus/nexus-core/3.0"), is(false));
+    assertThat(tree.offerEntry("/com/sonatype/nexus"), is(false));
+    assertThat(tree.hasChanges(), is(false));
+
+    // capped to depth
+    assertThat(tree.offerEntry("/org/apache/maven/maven-core/3.0"), is(true));
+    assertThat(tree.offerEntry("/org/apache/maven/maven-model/3.0"), is(false));
+    assertThat(tree.matches("/org/apache/ant"), is(true));
+    assertThat(tree.matches("/org/codehaus"), is(false));
+    assertThat(tree.matches("/org"), is(false));
+    assertThat(tree.contains("/org"), is(true));
+
+    final Changes changes = tree.takeChanges();
+    assertThat(changes, notNullValue());
+    assertThat(changes.getAdded(), containsInAnyOrder("/org/apache"));
+    assertThat(changes.getRemoved(), is(empty()));
+    assertThat(changes.getEntries(), containsInAnyOrder("/org/sonatype", "/com/sonatype/nexus",
+        "/archetype-catalog.xml", "/org/apache"));
+    assertThat(tree.hasChanges(), is(false));
+    assertThat(tree.takeChanges(), nullValue());
+  }
+
+  @Test
+  public void revokeEntry() {
+    final PrefixTree tree = new PrefixTree(entries, 2);
+
+    // not contained
+    assertThat(tree.revokeEntry("/org/apache"), is(false));
+    // below an entry, entry stays
+    assertThat(tree.revokeEntry("/org/sonatype/nexus"), is(false));
+    assertThat(tree.hasChanges(), is(false));
+
+    // parent of entries removes them all
+    assertThat(tree.offerEntry("/com/apache/commons"), is(true));
+    assertThat(tree.revokeEntry("/com"), is(true));
+    assertThat(tree.matches("/com/sonatype/nexus"), is(false));
+    assertThat(tree.contains("/com"), is(false));
+    assertThat(tree.matches("/org/sonatype/nexus"), is(true));
+
+    // entry added and removed since last take is no change
+    final Changes changes = tree.takeChanges();
+    assertThat(changes.getAdded(), is(empty()));
+    assertThat(changes.getRemoved(), containsInAnyOrder("/com/sonatype/nexus"));
+    assertThat(changes.getEntries(), containsInAnyOrder("/org/sonatype", "/archetype-catalog.xml"));
+
+    // removing and re-adding same entry is no change either
+    assertThat(tree.revokeEntry("/archetype-catalog.xml"), is(true));
+    assertThat(tree.offerEntry("/archetype-catalog.xml"), is(true));
+    assertThat(tree.hasChanges(), is(false));
+  }
+
+  @Test
+  public void revokeAll() {
+    final PrefixTree tree = new PrefixTree(entries, 2);
+    assertThat(tree.revokeEntry("/"), is(true));
+    assertThat(tree.matches("/org/sonatype"), is(false));
+    assertThat(tree.takeChanges().getEntries(), is(empty()));
+
+    final PrefixTree empty = new PrefixTree(Collections.<String>emptyList(), 2);
+    assertThat(empty.matches("/org/sonatype"), is(false));
+    assertThat(empty.offerEntry("/org/sonatype/nexus"), is(true));
+    assertThat(empty.takeChanges().getEntries(), containsInAnyOrder("/org/sonatype"));
+  }
+}
@@ -26,9 +26,13 @@ import org.sonatype.nexus.proxy.ItemNotFoundException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.attributes.AttributesHandler;
 import org.sonatype.nexus.proxy.item.ContentLocator;
+import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
+import org.sonatype.nexus.proxy.item.DefaultStorageLinkItem;
 import org.sonatype.nexus.proxy.item.LinkPersister;
 import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.item.StringContentLocator;
 import org.sonatype.nexus.proxy.item.uid.IsItemAttributeMetacontentAttribute;
 import org.sonatype.nexus.proxy.repository.DefaultRepositoryKind;
 import org.sonatype.nexus.proxy.repository.HostedRepository;
@@ -40,6 +44,8 @@ import org.sonatype.sisu.litmus.testsupport.TestSupport;
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
@@ -152,6 +158,8 @@ public class DefaultFSLocalRepositoryStorageTest
     when(mockFile.isFile()).thenReturn(true);
     when(mockFile.exists()).thenReturn(true);
 
+    // link status is not recorded, so the file is probed
+    when(repository.getAttributesHandler()).thenReturn(mock(AttributesHandler.class));
 
     // needs to throw a FileNotFound when _opening_ the file
     LinkPersister linkPersister = mock(LinkPersister.class);
@@ -214,4 +222,174 @@ public class DefaultFSLocalRepositoryStorageTest
     localRepositoryStorageUnderTest.retrieveItemFromFile(repository, new ResourceStoreRequest("not-used"), mockFile);
     Mockito.verify(linkPersister, times(0)).isLinkContent(Mockito.any(ContentLocator.class));
   }
+
+  /**
+   * Verifies that lightweight listing does not load attributes of files until accessed, nor probes large files for
+   * being a link.
+   */
+  @Test
+  public void lightweightListingLoadsAttributesLazily()
+      throws Exception
+  {
+    File repoLocation = new File(util.getBaseDir(), "target/" + getClass().getSimpleName() + "/repo/");
+    File lazyDir = new File(repoLocation, "lazy/");
+    lazyDir.mkdirs();
+    File largeFile = new File(lazyDir, "large.jar");
+    FileUtils.writeByteArrayToFile(largeFile, new byte[16 * 1024]);
+    FileUtils.write(new File(lazyDir, "small.txt"), "something small", "UTF-8");
+
+    // Mocks
+    Wastebasket wastebasket = mock(Wastebasket.class);
+    LinkPersister linkPersister = mock(LinkPersister.class);
+    MimeSupport mimeSupport = mock(MimeSupport.class);
+    when(mimeSupport.guessMimeTypeFromPath(Mockito.any(MimeRulesSource.class), Mockito.anyString()))
+        .thenReturn("text/plain");
+    FSPeer fsPeer = mock(FSPeer.class);
+    when(fsPeer
+        .listItems(Mockito.any(Repository.class), Mockito.any(File.class), Mockito.any(ResourceStoreRequest.class),
+            eq(lazyDir))).thenReturn(Arrays.asList(lazyDir.listFiles()));
+    Repository repository = mock(Repository.class);
+    when(repository.getId()).thenReturn("mock");
+    when(repository.getLocalUrl()).thenReturn(repoLocation.toURI().toURL().toString());
+    AttributesHandler attributesHandler = mock(AttributesHandler.class);
+    when(repository.getAttributesHandler()).thenReturn(attributesHandler);
+    when(repository.getLocalStorageContext()).thenReturn(new DefaultLocalStorageContext(null));
+    RepositoryItemUid uid = mock(RepositoryItemUid.class);
+    when(uid.getRepository()).thenReturn(repository);
+    when(repository.createUid(anyString())).thenReturn(uid);
+
+    DefaultFSLocalRepositoryStorage localRepositoryStorageUnderTest = new DefaultFSLocalRepositoryStorage(wastebasket,
+        linkPersister, mimeSupport, fsPeer);
+
+    Collection<StorageItem> items = localRepositoryStorageUnderTest.listItems(repository,
+        new ResourceStoreRequest("lazy").setRequestLightweightListing(true));
+    assertThat(items, hasSize(2));
+    // only the small file might be a link
+    Mockito.verify(linkPersister, times(1)).isLinkContent(Mockito.any(ContentLocator.class));
+
+    StorageItem largeItem = null;
+    for (StorageItem item : items) {
+      if ("large.jar".equals(item.getName())) {
+        largeItem = item;
+      }
+    }
+    assertThat(largeItem, instanceOf(StorageFileItem.class));
+    assertThat(((StorageFileItem) largeItem).getLength(), equalTo(largeFile.length()));
+    assertThat(largeItem.getModified(), equalTo(largeFile.lastModified()));
+    Mockito.verify(attributesHandler, times(0)).fetchAttributes(Mockito.any(StorageItem.class));
+    Mockito.verify(attributesHandler, times(0)).touchItemLastRequested(Mockito.anyLong(),
+        Mockito.any(StorageItem.class));
+
+    // attributes are fetched on first access only
+    largeItem.getRepositoryItemAttributes().get("foo");
+    largeItem.getRepositoryItemAttributes().get("bar");
+    Mockito.verify(attributesHandler, times(1)).fetchAttributes(largeItem);
+    assertThat(largeItem.getModified(), equalTo(largeFile.lastModified()));
+  }
+
+  /**
+   * Verifies that files are not probed for being a link when link status is recorded in attributes, nor when too
+   * large to be a link. Files without recorded status are probed in any repository, once, as the outcome is recorded.
+   * Each probe saved is an open and read of the file on retrieval.
+   */
+  @Test
+  public void recordedLinkStatusSavesProbing()
+      throws Exception
+  {
+    // Mocks
+    Wastebasket wastebasket = mock(Wastebasket.class);
+    Repository repository = mock(Repository.class);
+    RepositoryItemUid uid = mock(RepositoryItemUid.class);
+    when(repository.getId()).thenReturn("test");
+    when(repository.createUid(anyString())).thenReturn(uid);
+    when(repository.getRepositoryKind()).thenReturn(new DefaultRepositoryKind(HostedRepository.class, null));
+    AttributesHandler attributesHandler = mock(AttributesHandler.class);
+    when(repository.getAttributesHandler()).thenReturn(attributesHandler);
+    when(repository.getLocalStorageContext()).thenReturn(new DefaultLocalStorageContext(null));
+    FSPeer fsPeer = mock(FSPeer.class);
+    MimeSupport mimeSupport = mock(MimeSupport.class);
+    when(mimeSupport.guessMimeTypeFromPath(Mockito.any(MimeRulesSource.class), Mockito.anyString()))
+        .thenReturn("text/plain");
+    LinkPersister linkPersister = mock(LinkPersister.class);
+
+    // mock file
+    File mockFile = mock(File.class);
+    when(mockFile.isDirectory()).thenReturn(false);
+    when(mockFile.isFile()).thenReturn(true);
+    when(mockFile.exists()).thenReturn(true);
+
+    // test subject
+    DefaultFSLocalRepositoryStorage localRepositoryStorageUnderTest = new DefaultFSLocalRepositoryStorage(wastebasket,
+        linkPersister, mimeSupport, fsPeer);
+
+    // link status not recorded, file too large to be a link: not probed, status recorded
+    when(mockFile.length()).thenReturn(1024L * 1024L);
+    StorageItem item =
+        localRepositoryStorageUnderTest.retrieveItemFromFile(repository, new ResourceStoreRequest("/a.jar"), mockFile);
+    assertThat(item, instanceOf(StorageFileItem.class));
+    assertThat(item.getRepositoryItemAttributes().get(LinkPersister.LINK_ATTRIBUTE), equalTo("false"));
+    Mockito.verify(linkPersister, times(0)).isLinkContent(Mockito.any(ContentLocator.class));
+    Mockito.verify(attributesHandler, times(1)).storeAttributes(item);
+
+    // link status not recorded, small file in a hosted repository: probed, status recorded
+    when(mockFile.length()).thenReturn(100L);
+    item =
+        localRepositoryStorageUnderTest.retrieveItemFromFile(repository, new ResourceStoreRequest("/a.jar"), mockFile);
+    assertThat(item, instanceOf(StorageFileItem.class));
+    assertThat(item.getRepositoryItemAttributes().get(LinkPersister.LINK_ATTRIBUTE), equalTo("false"));
+    Mockito.verify(linkPersister, times(1)).isLinkContent(Mockito.any(ContentLocator.class));
+    Mockito.verify(attributesHandler, times(1)).storeAttributes(item);
+
+    // link status recorded: not probed
+    Mockito.reset(linkPersister);
+    Mockito.doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(final InvocationOnMock invocation) {
+        ((StorageItem) invocation.getArguments()[0]).getRepositoryItemAttributes()
+            .put(LinkPersister.LINK_ATTRIBUTE, "false");
+        return null;
+      }
+    }).when(attributesHandler).fetchAttributes(Mockito.any(StorageItem.class));
+    item =
+        localRepositoryStorageUnderTest.retrieveItemFromFile(repository, new ResourceStoreRequest("/a.jar"), mockFile);
+    assertThat(item, instanceOf(StorageFileItem.class));
+    Mockito.verify(linkPersister, times(0)).isLinkContent(Mockito.any(ContentLocator.class));
+    Mockito.verify(attributesHandler, times(0)).storeAttributes(item);
+  }
+
+  /**
+   * Verifies that link status is recorded in attributes of stored items.
+   */
+  @Test
+  public void storeItemRecordsLinkStatus()
+      throws Exception
+  {
+    File repoLocation = new File(util.getBaseDir(), "target/" + getClass().getSimpleName() + "/repo/");
+
+    // Mocks
+    Wastebasket wastebasket = mock(Wastebasket.class);
+    LinkPersister linkPersister = mock(LinkPersister.class);
+    MimeSupport mimeSupport = mock(MimeSupport.class);
+    FSPeer fsPeer = mock(FSPeer.class);
+    Repository repository = mock(Repository.class);
+    when(repository.getId()).thenReturn("mock");
+    when(repository.getLocalUrl()).thenReturn(repoLocation.toURI().toURL().toString());
+    when(repository.getAttributesHandler()).thenReturn(mock(AttributesHandler.class));
+    when(repository.getLocalStorageContext()).thenReturn(new DefaultLocalStorageContext(null));
+    when(repository.createUid(anyString())).thenReturn(mock(RepositoryItemUid.class));
+
+    DefaultFSLocalRepositoryStorage localRepositoryStorageUnderTest = new DefaultFSLocalRepositoryStorage(wastebasket,
+        linkPersister, mimeSupport, fsPeer);
+
+    DefaultStorageFileItem file = new DefaultStorageFileItem(repository, new ResourceStoreRequest("/a.txt"), true,
+        true, new StringContentLocator("content"));
+    localRepositoryStorageUnderTest.storeItem(repository, file);
+    assertThat(file.getRepositoryItemAttributes().get(LinkPersister.LINK_ATTRIBUTE), equalTo("false"));
+
+    DefaultStorageLinkItem link = new DefaultStorageLinkItem(repository, new ResourceStoreRequest("/b.txt"), true,
+        true, mock(RepositoryItemUid.class));
+    localRepositoryStorageUnderTest.storeItem(repository, link);
+    assertThat(link.getRepositoryItemAttributes().get(LinkPersister.LINK_ATTRIBUTE), equalTo("true"));
+  }
 }
@@ -12,13 +12,24 @@
  */
 package org.sonatype.nexus.proxy.storage.remote.httpclient;
 
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.sonatype.nexus.SystemStatus;
+import org.sonatype.nexus.configuration.application.ApplicationDirectories;
 import org.sonatype.nexus.internal.httpclient.HttpClientFactoryImpl;
 import org.sonatype.nexus.internal.httpclient.PoolingClientConnectionManagerMBeanInstaller;
 import org.sonatype.nexus.mime.MimeSupport;
 import org.sonatype.nexus.proxy.RemoteStorageException;
 import org.sonatype.nexus.proxy.RemoteStorageTransportOverloadedException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.AbstractStorageItem;
+import org.sonatype.nexus.proxy.item.FileContentLocator;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.repository.AbstractProxyRepository;
 import org.sonatype.nexus.proxy.repository.DefaultRemoteConnectionSettings;
 import org.sonatype.nexus.proxy.repository.ProxyRepository;
 import org.sonatype.nexus.proxy.repository.RemoteProxySettings;
@@ -26,23 +37,33 @@ import org.sonatype.nexus.proxy.storage.remote.DefaultRemoteStorageContext;
 import org.sonatype.nexus.proxy.storage.remote.RemoteItemNotFoundException;
 import org.sonatype.nexus.proxy.storage.remote.RemoteStorageContext;
 import org.sonatype.nexus.proxy.storage.remote.http.QueryStringBuilder;
+import org.sonatype.nexus.util.DigesterUtils;
 import org.sonatype.sisu.goodies.common.Time;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 import org.sonatype.sisu.litmus.testsupport.TestSupport;
 import org.sonatype.tests.http.server.fluent.Behaviours;
 import org.sonatype.tests.http.server.fluent.Server;
 
+import com.google.common.io.ByteStreams;
 import com.google.inject.util.Providers;
 import junit.framework.Assert;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -69,7 +90,8 @@ public class HttpClientRemoteStorageTest
   {
     final HttpClientRemoteStorage underTest =
         new HttpClientRemoteStorage(Providers.of(mock(SystemStatus.class)),
-            mock(MimeSupport.class), mock(QueryStringBuilder.class), mock(HttpClientManager.class));
+            mock(MimeSupport.class), mock(QueryStringBuilder.class), mock(HttpClientManager.class),
+            mock(ApplicationDirectories.class));
     final ProxyRepository proxyMock = mock(ProxyRepository.class);
     when(proxyMock.getId()).thenReturn("id");
     when(proxyMock.getRemoteStorageContext()).thenReturn(new DefaultRemoteStorageContext(null));
@@ -90,7 +112,8 @@ public class HttpClientRemoteStorageTest
   {
     final HttpClientRemoteStorage underTest =
         new HttpClientRemoteStorage(Providers.of(mock(SystemStatus.class)),
-            mock(MimeSupport.class), mock(QueryStringBuilder.class), mock(HttpClientManager.class));
+            mock(MimeSupport.class), mock(QueryStringBuilder.class), mock(HttpClientManager.class),
+            mock(ApplicationDirectories.class));
     final ProxyRepository proxyMock = mock(ProxyRepository.class);
     when(proxyMock.getId()).thenReturn("id");
     when(proxyMock.getRemoteStorageContext()).thenReturn(new DefaultRemoteStorageContext(null));
@@ -112,7 +135,8 @@ public class HttpClientRemoteStorageTest
   {
     final HttpClientRemoteStorage underTest =
         new HttpClientRemoteStorage(Providers.of(mock(SystemStatus.class)),
-            mock(MimeSupport.class), mock(QueryStringBuilder.class), mock(HttpClientManager.class));
+            mock(MimeSupport.class), mock(QueryStringBuilder.class), mock(HttpClientManager.class),
+            mock(ApplicationDirectories.class));
     final ProxyRepository proxyMock = mock(ProxyRepository.class);
     when(proxyMock.getId()).thenReturn("id");
     when(proxyMock.getRemoteStorageContext()).thenReturn(new DefaultRemoteStorageContext(null));
@@ -135,7 +159,8 @@ public class HttpClientRemoteStorageTest
   {
     final HttpClientRemoteStorage underTest =
         new HttpClientRemoteStorage(Providers.of(mock(SystemStatus.class)),
-            mock(MimeSupport.class), mock(QueryStringBuilder.class), mock(HttpClientManager.class))
+            mock(MimeSupport.class), mock(QueryStringBuilder.class), mock(HttpClientManager.class),
+            mock(ApplicationDirectories.class))
         {
           @Override
           HttpResponse executeRequest(final ProxyRepository repository, final ResourceStoreRequest request,
@@ -189,7 +214,8 @@ public class HttpClientRemoteStorageTest
       // the RRS instance we test
       final HttpClientRemoteStorage underTest =
           new HttpClientRemoteStorage(Providers.of(mock(SystemStatus.class)),
-              mock(MimeSupport.class), mock(QueryStringBuilder.class), new HttpClientManagerImpl(httpClientFactory));
+              mock(MimeSupport.class), mock(QueryStringBuilder.class), new HttpClientManagerImpl(httpClientFactory),
+              mock(ApplicationDirectories.class));
 
       // a mock proxy repository with some mocks to make RRS work
       final RemoteStorageContext proxyContext = new DefaultRemoteStorageContext(globalRemoteStorageContext);
@@ -243,6 +269,161 @@ public class HttpClientRemoteStorageTest
     }
   }
 
+  /**
+   * Large item of a repository with chunked download enabled, on a remote supporting ranges, is assembled from
+   * range requests into a file.
+   */
+  @Test
+  public void retrieveItemChunked()
+      throws Exception
+  {
+    final byte[] content = content(9 * 1024 * 1024);
+    final File tmpDir = util.createTempDir();
+    final RangeServingRemoteStorage underTest = new RangeServingRemoteStorage(content, true, tmpDir);
+
+    final AbstractStorageItem item =
+        underTest.retrieveItem(chunkedProxy(3), new ResourceStoreRequest("foo/bar.jar"), "http://foo.com");
+
+    final StorageFileItem fileItem = (StorageFileItem) item;
+    assertThat(fileItem.getContentLocator(), instanceOf(FileContentLocator.class));
+    assertThat(((FileContentLocator) fileItem.getContentLocator()).getFile().getParentFile(), equalTo(tmpDir));
+    try (InputStream is = fileItem.getInputStream()) {
+      assertThat(ByteStreams.toByteArray(is), equalTo(content));
+    }
+    assertThat(underTest.rangeRequests.get(), equalTo(3));
+  }
+
+  /**
+   * If remote ignores the range requests, item is retrieved with plain GET.
+   */
+  @Test
+  public void retrieveItemChunkedFallsBackWhenRangeIgnored()
+      throws Exception
+  {
+    final byte[] content = content(9 * 1024 * 1024);
+    final RangeServingRemoteStorage underTest = new RangeServingRemoteStorage(content, false, util.createTempDir());
+
+    final AbstractStorageItem item =
+        underTest.retrieveItem(chunkedProxy(3), new ResourceStoreRequest("foo/bar.jar"), "http://foo.com");
+
+    final StorageFileItem fileItem = (StorageFileItem) item;
+    assertThat(fileItem.getContentLocator(), not(instanceOf(FileContentLocator.class)));
+    try (InputStream is = fileItem.getInputStream()) {
+      assertThat(ByteStreams.toByteArray(is), equalTo(content));
+    }
+  }
+
+  /**
+   * Items small by nature are retrieved with plain GET, without probing remote with HEAD first.
+   */
+  @Test
+  public void retrieveItemChunkedSkipsSmallItems()
+      throws Exception
+  {
+    final byte[] content = content(1024);
+    final RangeServingRemoteStorage underTest = new RangeServingRemoteStorage(content, true, util.createTempDir());
+
+    final AbstractStorageItem item =
+        underTest.retrieveItem(chunkedProxy(3), new ResourceStoreRequest("foo/bar.pom"), "http://foo.com");
+
+    try (InputStream is = ((StorageFileItem) item).getInputStream()) {
+      assertThat(ByteStreams.toByteArray(is), equalTo(content));
+    }
+    assertThat(underTest.headRequests.get(), equalTo(0));
+  }
+
+  @Test
+  public void chunkCandidates() {
+    assertThat(HttpClientRemoteStorage.isChunkCandidate("/foo/bar.jar"), equalTo(true));
+    assertThat(HttpClientRemoteStorage.isChunkCandidate("/foo/bar.tar.gz"), equalTo(true));
+    assertThat(HttpClientRemoteStorage.isChunkCandidate("/foo.pom/bar"), equalTo(true));
+    assertThat(HttpClientRemoteStorage.isChunkCandidate("/foo/bar.pom"), equalTo(false));
+    assertThat(HttpClientRemoteStorage.isChunkCandidate("/foo/bar.jar.SHA1"), equalTo(false));
+    assertThat(HttpClientRemoteStorage.isChunkCandidate("/foo/maven-metadata.xml"), equalTo(false));
+  }
+
+  private byte[] content(final int size) {
+    final byte[] content = new byte[size];
+    new Random(size).nextBytes(content);
+    return content;
+  }
+
+  private AbstractProxyRepository chunkedProxy(final int parallelism) {
+    final AbstractProxyRepository repository = mock(AbstractProxyRepository.class);
+    when(repository.getId()).thenReturn("foo");
+    when(repository.getRemoteStorageContext()).thenReturn(new DefaultRemoteStorageContext(null));
+    when(repository.getChunkedDownloadParallelism()).thenReturn(parallelism);
+    when(repository.getChunkedDownloadMinSize()).thenReturn(1L);
+    return repository;
+  }
+
+  /**
+   * Remote storage answering HEAD, ranged and plain GET requests for single content, and its SHA1.
+   */
+  private static class RangeServingRemoteStorage
+      extends HttpClientRemoteStorage
+  {
+    private final byte[] content;
+
+    private final boolean honorRanges;
+
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+
+    private final AtomicInteger headRequests = new AtomicInteger();
+
+    private RangeServingRemoteStorage(final byte[] content, final boolean honorRanges, final File tmpDir) {
+      super(Providers.of(mock(SystemStatus.class)), mock(MimeSupport.class), mock(QueryStringBuilder.class),
+          mock(HttpClientManager.class), applicationDirectories(tmpDir));
+      this.content = content;
+      this.honorRanges = honorRanges;
+    }
+
+    private static ApplicationDirectories applicationDirectories(final File tmpDir) {
+      final ApplicationDirectories applicationDirectories = mock(ApplicationDirectories.class);
+      when(applicationDirectories.getTemporaryDirectory()).thenReturn(tmpDir);
+      return applicationDirectories;
+    }
+
+    @Override
+    HttpResponse executeRequest(final ProxyRepository repository, final ResourceStoreRequest request,
+                                final HttpUriRequest httpRequest, final String baseUrl, final boolean contentRequest)
+        throws RemoteStorageException
+    {
+      if (httpRequest.getURI().getPath().endsWith(".sha1")) {
+        return response(200, DigesterUtils.getSha1Digest(content).getBytes());
+      }
+      final BasicHttpResponse response;
+      final Header range = httpRequest.getFirstHeader("Range");
+      if ("HEAD".equals(httpRequest.getMethod())) {
+        headRequests.incrementAndGet();
+        response = response(200, null);
+        response.setHeader("Content-Length", String.valueOf(content.length));
+      }
+      else if (range != null && honorRanges) {
+        rangeRequests.incrementAndGet();
+        final String[] bounds = range.getValue().substring("bytes=".length()).split("-");
+        final int from = Integer.parseInt(bounds[0]);
+        final int to = Integer.parseInt(bounds[1]);
+        response = response(206, Arrays.copyOfRange(content, from, to + 1));
+        response.setHeader("Content-Range", "bytes " + from + "-" + to + "/" + content.length);
+      }
+      else {
+        response = response(200, content);
+      }
+      response.setHeader("Accept-Ranges", "bytes");
+      response.setHeader("ETag", "\"v1\"");
+      return response;
+    }
+
+    private BasicHttpResponse response(final int status, final byte[] body) {
+      final BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, null);
+      if (body != null) {
+        response.setEntity(new ByteArrayEntity(body));
+      }
+      return response;
+    }
+  }
+
   protected void setParameters() {
     System.setProperty("nexus.apacheHttpClient4x.connectionPoolMaxSize", "1");
     System.setProperty("nexus.apacheHttpClient4x.connectionPoolSize", "1");
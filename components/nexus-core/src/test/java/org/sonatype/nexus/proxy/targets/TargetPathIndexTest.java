@@ -0,0 +1,82 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.targets;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.sonatype.nexus.proxy.maven.maven1.Maven1ContentClass;
+import org.sonatype.nexus.proxy.maven.maven2.Maven2ContentClass;
+import org.sonatype.nexus.proxy.registry.ContentClass;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+/**
+ * UT for {@link TargetPathIndex}.
+ */
+public class TargetPathIndexTest
+    extends TestSupport
+{
+  private final ContentClass maven1 = new Maven1ContentClass();
+
+  private final ContentClass maven2 = new Maven2ContentClass();
+
+  @Test
+  public void literalPrefixes() {
+    assertThat(TargetPathIndex.literalPrefix(".*"), equalTo(""));
+    assertThat(TargetPathIndex.literalPrefix("/org/apache/.*"), equalTo("/org/apache/"));
+    assertThat(TargetPathIndex.literalPrefix("^/org/.*"), equalTo("/org/"));
+    assertThat(TargetPathIndex.literalPrefix("/org\\.apache/.*"), equalTo("/org.apache/"));
+    assertThat(TargetPathIndex.literalPrefix("/orgs?/.*"), equalTo("/org"));
+    assertThat(TargetPathIndex.literalPrefix("/org/(apache|codehaus)/.*"), equalTo("/org/"));
+    assertThat(TargetPathIndex.literalPrefix("/org/.*|/com/.*"), equalTo(""));
+    assertThat(TargetPathIndex.literalPrefix("(?i)/org/.*"), equalTo(""));
+    assertThat(TargetPathIndex.literalPrefix("/org/\\d+/.*"), equalTo("/org/"));
+    assertThat(TargetPathIndex.literalPrefix("/org/[a-z]+/.*"), equalTo("/org/"));
+  }
+
+  @Test
+  public void sameResultAsTargets() {
+    final List<Target> targets = Arrays.asList(
+        new Target("all", "all", maven2, Collections.singleton(".*")),
+        new Target("apache", "apache", maven2, Arrays.asList("/org/apache/.*", "/org/codehaus/.*")),
+        new Target("sources", "sources", maven2, Collections.singleton("(?!.*-sources.*).*")),
+        new Target("alternation", "alternation", maven2, Collections.singleton("/com/.*|/org/apache/maven/.*")),
+        new Target("m1", "m1", maven1, Collections.singleton("/org\\.apache\\.maven/.*")));
+    final TargetPathIndex index = new TargetPathIndex(targets);
+
+    for (ContentClass contentClass : Arrays.asList(maven1, maven2)) {
+      for (String path : Arrays.asList("/org/apache/maven/maven-core/2.0.9/maven-core-2.0.9.pom",
+          "/org/apache/maven/maven-core/2.0.9/maven-core-2.0.9-sources.jar", "/org.apache.maven/jars/a.jar",
+          "/com/foo/bar.jar", "/", "")) {
+        final List<Target> expected = Lists.newArrayList();
+        for (Target target : targets) {
+          if (target.isPathContained(contentClass, path)) {
+            expected.add(target);
+          }
+        }
+        final List<Target> actual = index.getTargets(contentClass, path);
+        assertThat(actual, hasSize(expected.size()));
+        assertThat(actual, containsInAnyOrder(expected.toArray()));
+      }
+    }
+  }
+}
@@ -15,6 +15,9 @@ package org.sonatype.nexus.proxy.walker;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.sonatype.nexus.proxy.AbstractProxyTestEnvironment;
 import org.sonatype.nexus.proxy.EnvironmentBuilder;
@@ -32,9 +35,15 @@ import org.sonatype.nexus.proxy.repository.LocalStatus;
 import org.sonatype.nexus.proxy.walker.WalkerContext.TraversalType;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import junit.framework.Assert;
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
 import org.hamcrest.Matcher;
 import org.junit.Test;
+import org.slf4j.MDC;
 
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
@@ -104,6 +113,81 @@ public class WalkerTest
     Assert.assertEquals(0, wp.links);
   }
 
+  /**
+   * This test expects same numbers as {@link #testWalker()} since it walks same content but in parallel, and verifies
+   * that collections are exited only after their subtrees were walked.
+   */
+  @Test
+  public void testParallelWalker()
+      throws Exception
+  {
+    getRootRouter().retrieveItem(
+        new ResourceStoreRequest("/groups/test/activemq/activemq-core/1.2/activemq-core-1.2.jar", false));
+    getRootRouter().retrieveItem(
+        new ResourceStoreRequest("/groups/test/xstream/xstream/1.2.2/xstream-1.2.2.pom", false));
+    getRootRouter().retrieveItem(new ResourceStoreRequest("/groups/test/rome/rome/0.9/rome-0.9.pom", false));
+    getRootRouter().retrieveItem(new ResourceStoreRequest("/groups/test/repo3.txt", false));
+
+    final ConcurrentTestWalkerProcessor wp = new ConcurrentTestWalkerProcessor();
+    final DefaultWalkerContext wc = new DefaultWalkerContext(getRepositoryRegistry().getRepository("test"),
+        new ResourceStoreRequest(RepositoryItemUid.PATH_ROOT, true));
+    wc.setParallel(true);
+    wc.getProcessors().add(wp);
+
+    walker.walk(wc);
+
+    assertThat("Should not be stopped!", wc.isStopped(), is(false));
+    assertThat(wp.misorderedExits, empty());
+    Assert.assertEquals(10, wp.collEnters.get());
+    Assert.assertEquals(10, wp.collExits.get());
+    Assert.assertEquals(4, wp.files.get());
+  }
+
+  /**
+   * Walker threads of parallel walks act on behalf of the subject of the thread walking, with its MDC.
+   */
+  @Test
+  public void testParallelWalkerCarriesSubjectAndMdc()
+      throws Exception
+  {
+    getRootRouter().retrieveItem(
+        new ResourceStoreRequest("/groups/test/activemq/activemq-core/1.2/activemq-core-1.2.jar", false));
+    getRootRouter().retrieveItem(new ResourceStoreRequest("/groups/test/rome/rome/0.9/rome-0.9.pom", false));
+
+    final Subject subject = new Subject.Builder(new DefaultSecurityManager())
+        .principals(new SimplePrincipalCollection("walker-user", "test")).buildSubject();
+    final Set<String> principals = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    final Set<String> mdcValues = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    final ConcurrentTestWalkerProcessor wp = new ConcurrentTestWalkerProcessor()
+    {
+      @Override
+      public void processItem(final WalkerContext context, final StorageItem item) {
+        final Subject current = ThreadContext.getSubject();
+        principals.add(current != null ? String.valueOf(current.getPrincipal()) : "none");
+        mdcValues.add(String.valueOf(MDC.get("walkerTest")));
+        super.processItem(context, item);
+      }
+    };
+    final DefaultWalkerContext wc = new DefaultWalkerContext(getRepositoryRegistry().getRepository("test"),
+        new ResourceStoreRequest(RepositoryItemUid.PATH_ROOT, true));
+    wc.setParallel(true);
+    wc.getProcessors().add(wp);
+
+    ThreadContext.bind(subject);
+    MDC.put("walkerTest", "parallel");
+    try {
+      walker.walk(wc);
+    }
+    finally {
+      MDC.remove("walkerTest");
+      ThreadContext.unbindSubject();
+    }
+
+    assertThat("Should not be stopped!", wc.isStopped(), is(false));
+    assertThat(principals, contains("walker-user"));
+    assertThat(mdcValues, contains("parallel"));
+  }
+
   /**
    * This test expects same numbers as {@link #testWalker()} since it walks same content but in "breadth-first" way.
    * All other walk parameters (filter and processCollections) are same default as on {@link #testWalker()} test.
@@ -402,6 +486,47 @@ public class WalkerTest
     }
   }
 
+  private class ConcurrentTestWalkerProcessor
+      extends AbstractWalkerProcessor
+      implements ConcurrentWalkerProcessor
+  {
+    private final AtomicInteger collEnters = new AtomicInteger();
+
+    private final AtomicInteger collExits = new AtomicInteger();
+
+    private final AtomicInteger files = new AtomicInteger();
+
+    private final Set<String> entered = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final Set<String> misorderedExits = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    @Override
+    public void onCollectionEnter(WalkerContext context, StorageCollectionItem coll) {
+      collEnters.incrementAndGet();
+      entered.add(coll.getPath());
+    }
+
+    @Override
+    public void processItem(WalkerContext context, StorageItem item) {
+      if (item instanceof StorageFileItem) {
+        files.incrementAndGet();
+      }
+    }
+
+    @Override
+    public void onCollectionExit(WalkerContext context, StorageCollectionItem coll) {
+      collExits.incrementAndGet();
+      entered.remove(coll.getPath());
+      final String prefix = coll.getPath().endsWith("/") ? coll.getPath() : coll.getPath() + "/";
+      for (String path : entered) {
+        if (path.startsWith(prefix)) {
+          // a member collection is still being walked
+          misorderedExits.add(coll.getPath());
+        }
+      }
+    }
+  }
+
   // ==
 
   /**
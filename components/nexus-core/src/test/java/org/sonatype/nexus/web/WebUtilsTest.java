@@ -12,16 +12,35 @@
  */
 package org.sonatype.nexus.web;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.inject.Provider;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
 import org.sonatype.nexus.SystemStatus;
 import org.sonatype.sisu.litmus.testsupport.TestSupport;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import com.google.common.io.Files;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -58,4 +77,114 @@ public class WebUtilsTest
 
     verifyNoMoreInteractions(response);
   }
+
+  @Test
+  public void testSendContentFromFile() throws Exception {
+    final File file = util.createTempFile();
+    Files.write("0123456789", file, Charsets.UTF_8);
+
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    underTest.sendContent(new FileInputStream(file), responseWritingTo(body));
+    assertThat(body.toString("UTF-8"), equalTo("0123456789"));
+
+    body.reset();
+    underTest.sendContent(new FileInputStream(file), 2, 5, responseWritingTo(body));
+    assertThat(body.toString("UTF-8"), equalTo("23456"));
+  }
+
+  /**
+   * Output being a channel (like with some containers), file content is transferred to it.
+   */
+  @Test
+  public void testSendContentFromFileToChannel() throws Exception {
+    final File file = util.createTempFile();
+    Files.write("0123456789", file, Charsets.UTF_8);
+
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    final AtomicInteger channelWrites = new AtomicInteger();
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    doReturn(new ChannelServletOutputStream(body, channelWrites)).when(response).getOutputStream();
+
+    underTest.sendContent(new FileInputStream(file), 2, 5, response);
+    assertThat(body.toString("UTF-8"), equalTo("23456"));
+    assertThat(channelWrites.get(), greaterThan(0));
+
+    // stream content is copied
+    body.reset();
+    channelWrites.set(0);
+    underTest.sendContent(new ByteArrayInputStream("0123456789".getBytes("UTF-8")), response);
+    assertThat(body.toString("UTF-8"), equalTo("0123456789"));
+    assertThat(channelWrites.get(), equalTo(0));
+  }
+
+  @Test
+  public void testSendContentFromStream() throws Exception {
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    underTest.sendContent(new ByteArrayInputStream("0123456789".getBytes("UTF-8")), 2, 5, responseWritingTo(body));
+    assertThat(body.toString("UTF-8"), equalTo("23456"));
+  }
+
+  @Test
+  public void testSendMultipartContent() throws Exception {
+    final File file = util.createTempFile();
+    Files.write("0123456789", file, Charsets.UTF_8);
+    final List<Range<Long>> ranges = ImmutableList.of(Range.closed(0L, 1L), Range.closed(5L, 9L));
+    final String expected = "\r\n--b\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-1/10\r\n\r\n01"
+        + "\r\n--b\r\nContent-Type: text/plain\r\nContent-Range: bytes 5-9/10\r\n\r\n56789"
+        + "\r\n--b--\r\n";
+
+    for (InputStream input : new InputStream[]{
+        new FileInputStream(file), new ByteArrayInputStream("0123456789".getBytes("UTF-8"))}) {
+      final ByteArrayOutputStream body = new ByteArrayOutputStream();
+      underTest.sendMultipartContent(input, ranges, "text/plain", 10, "b", responseWritingTo(body));
+      assertThat(body.toString("UTF-8"), equalTo(expected));
+      assertThat(underTest.getMultipartContentLength(ranges, "text/plain", 10, "b"), equalTo((long) body.size()));
+    }
+  }
+
+  private static class ChannelServletOutputStream
+      extends ServletOutputStream
+      implements WritableByteChannel
+  {
+    private final ByteArrayOutputStream body;
+
+    private final AtomicInteger channelWrites;
+
+    private ChannelServletOutputStream(final ByteArrayOutputStream body, final AtomicInteger channelWrites) {
+      this.body = body;
+      this.channelWrites = channelWrites;
+    }
+
+    @Override
+    public void write(final int b) {
+      body.write(b);
+    }
+
+    @Override
+    public int write(final ByteBuffer src) {
+      channelWrites.incrementAndGet();
+      final int count = src.remaining();
+      while (src.hasRemaining()) {
+        body.write(src.get());
+      }
+      return count;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+  }
+
+  private HttpServletResponse responseWritingTo(final ByteArrayOutputStream body) throws IOException {
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    doReturn(new ServletOutputStream()
+    {
+      @Override
+      public void write(final int b) {
+        body.write(b);
+      }
+    }).when(response).getOutputStream();
+    return response;
+  }
 }
@@ -13,6 +13,7 @@
 package org.sonatype.nexus.httpclient;
 
 import com.google.common.annotations.VisibleForTesting;
+import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
 import org.apache.http.client.CredentialsProvider;
@@ -72,6 +73,17 @@ public interface HttpClientFactory
    */
   Builder prepare(Customizer customizer);
 
+  /**
+   * Limits the count of pooled connections to given remote host, on behalf of the component having given key (usually
+   * a repository ID), as all clients created by this factory share a single connection pool. When multiple components
+   * limit the same host, the highest limit applies. The limit spans all routes to the host, direct or proxied. A limit
+   * less than 1 leaves the host on the default per route limit. Passing {@code null} host forgets the component (as
+   * when it is removed), and the pool forgets the routes of hosts no component refers to anymore.
+   *
+   * @since 3.0
+   */
+  void setMaxConnectionsPerHost(String key, HttpHost host, int maxConnections);
+
   /**
    * Helper to build new {@link HttpClient} instances.
    */
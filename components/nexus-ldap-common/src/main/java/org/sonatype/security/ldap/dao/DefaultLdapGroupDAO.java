@@ -12,11 +12,15 @@
  */
 package org.sonatype.security.ldap.dao;
 
+import java.io.IOException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -27,8 +31,11 @@ import javax.naming.NamingException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
 import javax.naming.ldap.LdapContext;
 import javax.naming.ldap.LdapName;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
 
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 
@@ -173,15 +180,7 @@ public class DefaultLdapGroupDAO
         // get all the attributes
         NamingEnumeration attributes = groupIdAttr.getAll();
         while (attributes.hasMoreElements()) {
-          String group = String.valueOf(attributes.nextElement());
-
-          Set<String> mappedRoles = mappings.get(group);
-          if (mappedRoles == null) {
-            roles.add(group);
-          }
-          else {
-            roles.addAll(mappedRoles);
-          }
+          addMappedGroup(String.valueOf(attributes.nextElement()), mappings, roles);
         }
       }
     }
@@ -189,6 +188,16 @@ public class DefaultLdapGroupDAO
     return roles;
   }
 
+  private static void addMappedGroup(String group, Map<String, Set<String>> mappings, Set<String> roles) {
+    Set<String> mappedRoles = mappings.get(group);
+    if (mappedRoles == null) {
+      roles.add(group);
+    }
+    else {
+      roles.addAll(mappedRoles);
+    }
+  }
+
   private Set<String> getGroupMembershipFromUser(String username, LdapContext context,
                                                  LdapAuthConfiguration configuration)
       throws LdapDAOException,
@@ -337,4 +346,148 @@ public class DefaultLdapGroupDAO
     throw new NoSuchLdapGroupException(groupId, groupId);
   }
 
+  public Map<String, Set<String>> getAllGroupMemberships(LdapContext context, LdapAuthConfiguration configuration,
+                                                         int pageSize)
+      throws LdapDAOException
+  {
+    if (!isGroupsEnabled(configuration)) {
+      return null;
+    }
+
+    boolean dynamicGroups = !StringUtils.isEmpty(configuration.getUserMemberOfAttribute());
+
+    String baseDn;
+    String filter;
+    SearchControls ctls;
+    Pattern memberPattern = null;
+    if (dynamicGroups) {
+      // same users as found by user DAO
+      String f = configuration.getLdapFilter();
+      baseDn = StringUtils.defaultString(configuration.getUserBaseDn(), "");
+      filter = "(&(objectClass=" + configuration.getUserObjectClass() + ")(" + configuration.getUserIdAttribute()
+          + "=*)" + (f != null && !f.isEmpty() ? "(" + f + ")" : "") + ")";
+      ctls = this.getBaseSearchControls(new String[]{configuration.getUserIdAttribute(),
+          configuration.getUserMemberOfAttribute()}, configuration.isUserSubtree());
+    }
+    else {
+      String groupMemberFormat = configuration.getGroupMemberFormat();
+      if (groupMemberFormat != null) {
+        // member values with user DN cannot be mapped back to username without searching users
+        if (groupMemberFormat.contains("${dn}") || !groupMemberFormat.contains("${username}")) {
+          log.debug("Group member format {} not supported for bulk group membership retrieval", groupMemberFormat);
+          return null;
+        }
+        int idx = groupMemberFormat.indexOf("${username}");
+        memberPattern = Pattern.compile(Pattern.quote(groupMemberFormat.substring(0, idx)) + "(.+)"
+            + Pattern.quote(groupMemberFormat.substring(idx + "${username}".length())), Pattern.CASE_INSENSITIVE);
+      }
+      baseDn = StringUtils.defaultString(configuration.getGroupBaseDn(), "");
+      filter = "(&(objectClass=" + configuration.getGroupObjectClass() + ")(" + configuration.getGroupIdAttribute()
+          + "=*))";
+      ctls = this.getBaseSearchControls(new String[]{configuration.getGroupIdAttribute(),
+          configuration.getGroupMemberAttribute()}, configuration.isGroupSubtree());
+    }
+
+    log.debug("Searching for group membership of all users in DN: " + baseDn + "\nUsing filter: \'" + filter + "\'");
+
+    Map<String, Set<String>> memberships = new HashMap<String, Set<String>>();
+    try {
+      byte[] cookie = null;
+      do {
+        // non critical, servers not supporting paging will return all the results at once
+        context.setRequestControls(new Control[]{new PagedResultsControl(pageSize, cookie, Control.NONCRITICAL)});
+        NamingEnumeration<SearchResult> results = context.search(baseDn, filter, ctls);
+        try {
+          while (results.hasMoreElements()) {
+            SearchResult result = results.nextElement();
+            if (dynamicGroups) {
+              addUserMembership(result, configuration, memberships);
+            }
+            else {
+              addGroupMembers(result, configuration, memberPattern, memberships);
+            }
+          }
+        }
+        finally {
+          results.close();
+        }
+        cookie = null;
+        Control[] controls = context.getResponseControls();
+        if (controls != null) {
+          for (Control control : controls) {
+            if (control instanceof PagedResultsResponseControl) {
+              cookie = ((PagedResultsResponseControl) control).getCookie();
+            }
+          }
+        }
+      }
+      while (cookie != null && cookie.length > 0);
+    }
+    catch (NamingException | IOException e) {
+      throw new LdapDAOException("Failed to retrieve group membership of users.", e);
+    }
+    finally {
+      try {
+        context.setRequestControls(null);
+      }
+      catch (NamingException e) {
+        log.debug("Failed to reset request controls", e);
+      }
+    }
+    return memberships;
+  }
+
+  private void addUserMembership(SearchResult result, LdapAuthConfiguration configuration,
+                                 Map<String, Set<String>> memberships)
+      throws LdapDAOException
+  {
+    String username = LdapUtils.getAttributeValue(result.getAttributes(), configuration.getUserIdAttribute(),
+        "username");
+    Set<String> groups = LdapUtils.getAttributeValues(result.getAttributes(),
+        configuration.getUserMemberOfAttribute(), "Member Of");
+    if (username == null || groups.isEmpty()) {
+      return;
+    }
+    Set<String> membership = memberships.get(username);
+    if (membership == null) {
+      membership = new HashSet<String>();
+      memberships.put(username, membership);
+    }
+    for (String groupDN : groups) {
+      membership.add(this.getGroupFromString(groupDN));
+    }
+  }
+
+  private void addGroupMembers(SearchResult result, LdapAuthConfiguration configuration, Pattern memberPattern,
+                               Map<String, Set<String>> memberships)
+      throws NamingException
+  {
+    Attribute groupIdAttr = result.getAttributes().get(configuration.getGroupIdAttribute());
+    Attribute memberAttr = result.getAttributes().get(configuration.getGroupMemberAttribute());
+    if (groupIdAttr == null || memberAttr == null) {
+      return;
+    }
+    Set<String> groups = new LinkedHashSet<String>();
+    NamingEnumeration groupIds = groupIdAttr.getAll();
+    while (groupIds.hasMoreElements()) {
+      addMappedGroup(String.valueOf(groupIds.nextElement()), configuration.getGroupReverseMappings(), groups);
+    }
+    NamingEnumeration members = memberAttr.getAll();
+    while (members.hasMoreElements()) {
+      String username = String.valueOf(members.nextElement());
+      if (memberPattern != null) {
+        Matcher matcher = memberPattern.matcher(username);
+        if (!matcher.matches()) {
+          continue;
+        }
+        username = matcher.group(1);
+      }
+      Set<String> membership = memberships.get(username);
+      if (membership == null) {
+        membership = new HashSet<String>();
+        memberships.put(username, membership);
+      }
+      membership.addAll(groups);
+    }
+  }
 }
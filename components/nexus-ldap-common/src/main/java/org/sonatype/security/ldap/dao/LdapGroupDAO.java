@@ -12,6 +12,7 @@
  */
 package org.sonatype.security.ldap.dao;
 
+import java.util.Map;
 import java.util.Set;
 
 import javax.naming.ldap.LdapContext;
@@ -31,4 +32,15 @@ public interface LdapGroupDAO
   public String getGroupName(String groupId, LdapContext context, LdapAuthConfiguration configuration)
       throws LdapDAOException, NoSuchLdapGroupException;
 
+  /**
+   * Returns the group membership of all users keyed by username, retrieved with one paged search (of groups when
+   * using static groups, of users when using dynamic groups). Users without groups are not present in the map.
+   * Returns {@code null} if group membership of users cannot be retrieved this way with given configuration.
+   *
+   * @since 3.0
+   */
+  public Map<String, Set<String>> getAllGroupMemberships(LdapContext context, LdapAuthConfiguration configuration,
+                                                         int pageSize)
+      throws LdapDAOException;
+
 }
@@ -0,0 +1,390 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.security.ldap.realms.connector;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.security.ldap.dao.LdapDAOException;
+import org.sonatype.security.ldap.dao.LdapUser;
+import org.sonatype.security.ldap.dao.NoLdapUserRolesFoundException;
+import org.sonatype.security.ldap.dao.NoSuchLdapGroupException;
+import org.sonatype.security.ldap.dao.NoSuchLdapUserException;
+import org.sonatype.security.ldap.realms.persist.LdapClearCacheEvent;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.shiro.realm.ldap.LdapContextFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * {@link LdapConnector} caching user roles, user records and group names looked up by a {@link DefaultLdapConnector},
+ * including the negative outcomes (no roles found, no such user, no such group). Entries expire after a time to live
+ * (negative ones after a shorter one) and the caches are bounded in size. Concurrent lookups of same key result in
+ * one LDAP search only. Listing and searching of users and groups is not cached.
+ * <p/>
+ * Optionally (when prefetch page size is positive) the group membership of all users is retrieved with one paged
+ * search on first roles lookup, and roles are served from it until it expires, instead of searching per user.
+ * <p/>
+ * Cached user records never carry the password, authentication must look users up with the connector returned by
+ * {@link #getUncachedConnector()}.
+ * <p/>
+ * Instances are discarded together with the caches on {@link LdapClearCacheEvent} by their owner.
+ *
+ * @since 3.0
+ */
+public class CachingLdapConnector
+    extends ComponentSupport
+    implements LdapConnector
+{
+  private static final String PREFIX = CachingLdapConnector.class.getName();
+
+  /**
+   * Whether LDAP connectors should be decorated with caching one.
+   */
+  public static final boolean ENABLED = SystemPropertiesHelper.getBoolean(PREFIX + ".enabled", true);
+
+  private static final long TIME_TO_LIVE = SystemPropertiesHelper.getLong(PREFIX + ".timeToLive", 60L);
+
+  private static final long NEGATIVE_TIME_TO_LIVE = SystemPropertiesHelper.getLong(PREFIX + ".negativeTimeToLive",
+      10L);
+
+  private static final int MAX_SIZE = SystemPropertiesHelper.getInteger(PREFIX + ".maxSize", 10000);
+
+  private static final int PREFETCH_PAGE_SIZE = SystemPropertiesHelper.getInteger(PREFIX + ".prefetchPageSize", 0);
+
+  /**
+   * Cached outcome of a lookup, {@code null} value means negative outcome.
+   */
+  private static class Entry<T>
+  {
+    private final T value;
+
+    private final long expiresAt;
+
+    private Entry(final T value, final long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * Group membership of all users, keyed by lower cased username.
+   */
+  private static class Memberships
+  {
+    private final Map<String, Set<String>> memberships;
+
+    private final long expiresAt;
+
+    private Memberships(final Map<String, Set<String>> memberships, final long expiresAt) {
+      this.memberships = memberships;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final DefaultLdapConnector ldapConnector;
+
+  private final Ticker ticker;
+
+  private final long timeToLive;
+
+  private final long negativeTimeToLive;
+
+  private final int prefetchPageSize;
+
+  private final Cache<String, Entry<Set<String>>> userRoles;
+
+  private final Cache<String, Entry<LdapUser>> users;
+
+  private final Cache<String, Entry<String>> groupNames;
+
+  private final Object prefetchLock = new Object();
+
+  private volatile Memberships prefetched;
+
+  private volatile long prefetchRetryAt;
+
+  private volatile boolean prefetchUnsupported;
+
+  public CachingLdapConnector(final DefaultLdapConnector ldapConnector) {
+    this(ldapConnector, Ticker.systemTicker(), TimeUnit.SECONDS.toNanos(TIME_TO_LIVE),
+        TimeUnit.SECONDS.toNanos(NEGATIVE_TIME_TO_LIVE), MAX_SIZE, PREFETCH_PAGE_SIZE);
+  }
+
+  @VisibleForTesting
+  CachingLdapConnector(final DefaultLdapConnector ldapConnector, final Ticker ticker, final long timeToLive,
+                       final long negativeTimeToLive, final int maxSize, final int prefetchPageSize)
+  {
+    checkArgument(timeToLive > 0 && negativeTimeToLive > 0 && maxSize > 0);
+    this.ldapConnector = checkNotNull(ldapConnector);
+    this.ticker = checkNotNull(ticker);
+    this.timeToLive = timeToLive;
+    this.negativeTimeToLive = negativeTimeToLive;
+    this.prefetchPageSize = prefetchPageSize;
+    this.userRoles = newCache(maxSize);
+    this.users = newCache(maxSize);
+    this.groupNames = newCache(maxSize);
+  }
+
+  private <T> Cache<String, Entry<T>> newCache(final int maxSize) {
+    return CacheBuilder.newBuilder().ticker(ticker).maximumSize(maxSize)
+        .expireAfterWrite(Math.max(timeToLive, negativeTimeToLive), TimeUnit.NANOSECONDS).build();
+  }
+
+  @Override
+  public String getIdentifier() {
+    return ldapConnector.getIdentifier();
+  }
+
+  @Override
+  public Set<String> getUserRoles(final String userId)
+      throws LdapDAOException, NoLdapUserRolesFoundException
+  {
+    final Memberships memberships = getPrefetchedMemberships();
+    if (memberships != null) {
+      final Set<String> roles = memberships.memberships.get(userId.toLowerCase(Locale.ENGLISH));
+      if (roles == null) {
+        throw new NoLdapUserRolesFoundException(userId);
+      }
+      return new HashSet<String>(roles);
+    }
+
+    final Entry<Set<String>> entry = get(userRoles, userId, new Callable<Entry<Set<String>>>()
+    {
+      @Override
+      public Entry<Set<String>> call() throws Exception {
+        try {
+          return positive(ldapConnector.getUserRoles(userId));
+        }
+        catch (NoLdapUserRolesFoundException e) {
+          return negative();
+        }
+      }
+    });
+    if (entry.value == null) {
+      throw new NoLdapUserRolesFoundException(userId);
+    }
+    return new HashSet<String>(entry.value);
+  }
+
+  @Override
+  public SortedSet<LdapUser> getAllUsers()
+      throws LdapDAOException
+  {
+    return ldapConnector.getAllUsers();
+  }
+
+  @Override
+  public SortedSet<LdapUser> getUsers(final int userCount)
+      throws LdapDAOException
+  {
+    return ldapConnector.getUsers(userCount);
+  }
+
+  @Override
+  public LdapUser getUser(final String username)
+      throws NoSuchLdapUserException, LdapDAOException
+  {
+    final Entry<LdapUser> entry = get(users, username, new Callable<Entry<LdapUser>>()
+    {
+      @Override
+      public Entry<LdapUser> call() throws Exception {
+        try {
+          return positive(copyOf(ldapConnector.getUser(username)));
+        }
+        catch (NoSuchLdapUserException e) {
+          return negative();
+        }
+      }
+    });
+    if (entry.value == null) {
+      throw new NoSuchLdapUserException(username);
+    }
+    return copyOf(entry.value);
+  }
+
+  @Override
+  public SortedSet<LdapUser> searchUsers(final String username, final Set<String> roleIds)
+      throws LdapDAOException
+  {
+    return ldapConnector.searchUsers(username, roleIds);
+  }
+
+  @Override
+  public SortedSet<String> getAllGroups()
+      throws LdapDAOException
+  {
+    return ldapConnector.getAllGroups();
+  }
+
+  @Override
+  public String getGroupName(final String groupId)
+      throws LdapDAOException, NoSuchLdapGroupException
+  {
+    final Entry<String> entry = get(groupNames, groupId, new Callable<Entry<String>>()
+    {
+      @Override
+      public Entry<String> call() throws Exception {
+        try {
+          return positive(ldapConnector.getGroupName(groupId));
+        }
+        catch (NoSuchLdapGroupException e) {
+          return negative();
+        }
+      }
+    });
+    if (entry.value == null) {
+      throw new NoSuchLdapGroupException(groupId, groupId);
+    }
+    return entry.value;
+  }
+
+  @Override
+  public LdapContextFactory getLdapContextFactory() {
+    return ldapConnector.getLdapContextFactory();
+  }
+
+  /**
+   * Returns the decorated connector, looking up everything directly in LDAP.
+   */
+  public DefaultLdapConnector getUncachedConnector() {
+    return ldapConnector;
+  }
+
+  /**
+   * Invalidates all cached entries.
+   */
+  public void invalidateAll() {
+    userRoles.invalidateAll();
+    users.invalidateAll();
+    groupNames.invalidateAll();
+    prefetched = null;
+    prefetchRetryAt = 0;
+  }
+
+  // ==
+
+  private <T> Entry<T> positive(final T value) {
+    return new Entry<T>(value, ticker.read() + timeToLive);
+  }
+
+  private <T> Entry<T> negative() {
+    return new Entry<T>(null, ticker.read() + negativeTimeToLive);
+  }
+
+  private boolean isExpired(final long expiresAt) {
+    return expiresAt - ticker.read() <= 0;
+  }
+
+  private <T> Entry<T> get(final Cache<String, Entry<T>> cache, final String key, final Callable<Entry<T>> loader)
+      throws LdapDAOException
+  {
+    try {
+      Entry<T> entry = cache.get(key, loader);
+      if (isExpired(entry.expiresAt)) {
+        // negative entries expire before the cache evicts them
+        cache.invalidate(key);
+        entry = cache.get(key, loader);
+      }
+      return entry;
+    }
+    catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), LdapDAOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * Returns prefetched group membership of all users, retrieving it if needed, or {@code null} if prefetch is not
+   * enabled or not possible.
+   */
+  private Memberships getPrefetchedMemberships() {
+    if (prefetchPageSize <= 0 || prefetchUnsupported) {
+      return null;
+    }
+    Memberships memberships = prefetched;
+    if (memberships != null && !isExpired(memberships.expiresAt)) {
+      return memberships;
+    }
+    synchronized (prefetchLock) {
+      memberships = prefetched;
+      if (memberships != null && !isExpired(memberships.expiresAt)) {
+        return memberships;
+      }
+      prefetched = null;
+      if (prefetchRetryAt != 0 && !isExpired(prefetchRetryAt)) {
+        return null;
+      }
+      try {
+        final Map<String, Set<String>> all = ldapConnector.getAllGroupMemberships(prefetchPageSize);
+        if (all == null) {
+          log.debug("Group membership prefetch not supported by LDAP configuration");
+          prefetchUnsupported = true;
+          return null;
+        }
+        final Map<String, Set<String>> lowerCased = new HashMap<String, Set<String>>(all.size());
+        for (Map.Entry<String, Set<String>> membership : all.entrySet()) {
+          final String username = membership.getKey().toLowerCase(Locale.ENGLISH);
+          final Set<String> roles = lowerCased.get(username);
+          if (roles == null) {
+            lowerCased.put(username, new HashSet<String>(membership.getValue()));
+          }
+          else {
+            roles.addAll(membership.getValue());
+          }
+        }
+        log.debug("Prefetched group membership of {} users", lowerCased.size());
+        memberships = new Memberships(lowerCased, ticker.read() + timeToLive);
+        prefetched = memberships;
+        prefetchRetryAt = 0;
+        return memberships;
+      }
+      catch (LdapDAOException e) {
+        log.warn("Failed to prefetch group membership of users, falling back to per user lookups", e);
+        prefetchRetryAt = ticker.read() + negativeTimeToLive;
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Copies the user record, without the password.
+   */
+  private static LdapUser copyOf(final LdapUser user) {
+    final LdapUser copy = new LdapUser();
+    copy.setUsername(user.getUsername());
+    copy.setRealName(user.getRealName());
+    copy.setEmail(user.getEmail());
+    copy.setWebsite(user.getWebsite());
+    copy.setDn(user.getDn());
+    if (user.getMembership() != null) {
+      copy.setMembership(new HashSet<String>(user.getMembership()));
+    }
+    return copy;
+  }
+}
@@ -13,6 +13,7 @@
 package org.sonatype.security.ldap.realms.connector;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -266,6 +267,32 @@ public class DefaultLdapConnector
     }
   }
 
+  /**
+   * Returns the group membership of all users keyed by username, or {@code null} if not supported by configuration.
+   *
+   * @see LdapGroupDAO#getAllGroupMemberships(LdapContext, LdapAuthConfiguration, int)
+   * @since 3.0
+   */
+  public Map<String, Set<String>> getAllGroupMemberships(int pageSize)
+      throws LdapDAOException
+  {
+    LdapContext context = null;
+
+    try {
+      context = this.getLdapContextFactory().getSystemLdapContext();
+      LdapAuthConfiguration conf = this.getLdapAuthConfiguration();
+
+      return this.ldapGroupManager.getAllGroupMemberships(context, conf, pageSize);
+    }
+    catch (NamingException e) {
+      String message = "Failed to retrieve ldap group membership of users.";
+      throw new LdapDAOException(message, e);
+    }
+    finally {
+      this.closeContext(context);
+    }
+  }
+
   public LdapContextFactory getLdapContextFactory() {
     return ldapContextFactory;
   }
@@ -0,0 +1,236 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.security.ldap.realms.connector;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.security.ldap.dao.LdapDAOException;
+import org.sonatype.security.ldap.dao.LdapUser;
+import org.sonatype.security.ldap.dao.NoLdapUserRolesFoundException;
+import org.sonatype.security.ldap.dao.NoSuchLdapGroupException;
+import org.sonatype.security.ldap.dao.NoSuchLdapUserException;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link CachingLdapConnector}.
+ */
+public class CachingLdapConnectorTest
+    extends TestSupport
+{
+  private static final long TTL = TimeUnit.SECONDS.toNanos(60);
+
+  private static final long NEGATIVE_TTL = TimeUnit.SECONDS.toNanos(10);
+
+  @Mock
+  private DefaultLdapConnector ldapConnector;
+
+  private FakeTicker ticker;
+
+  @Before
+  public void prepare() {
+    ticker = new FakeTicker();
+  }
+
+  private CachingLdapConnector underTest(final int prefetchPageSize) {
+    return new CachingLdapConnector(ldapConnector, ticker, TTL, NEGATIVE_TTL, 100, prefetchPageSize);
+  }
+
+  @Test
+  public void userRolesCachedUntilExpired()
+      throws Exception
+  {
+    when(ldapConnector.getUserRoles("alice")).thenReturn(ImmutableSet.of("devs", "ops"));
+    final CachingLdapConnector underTest = underTest(0);
+
+    assertThat(underTest.getUserRoles("alice"), containsInAnyOrder("devs", "ops"));
+    assertThat(underTest.getUserRoles("alice"), containsInAnyOrder("devs", "ops"));
+    verify(ldapConnector, times(1)).getUserRoles("alice");
+
+    ticker.advance(TTL);
+    assertThat(underTest.getUserRoles("alice"), containsInAnyOrder("devs", "ops"));
+    verify(ldapConnector, times(2)).getUserRoles("alice");
+  }
+
+  @Test
+  public void negativeOutcomesCachedForShorterTime()
+      throws Exception
+  {
+    when(ldapConnector.getUserRoles("bob")).thenThrow(new NoLdapUserRolesFoundException("bob"));
+    when(ldapConnector.getUser("bob")).thenThrow(new NoSuchLdapUserException("bob"));
+    when(ldapConnector.getGroupName("none")).thenThrow(new NoSuchLdapGroupException("none", "none"));
+    final CachingLdapConnector underTest = underTest(0);
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        underTest.getUserRoles("bob");
+        fail("No roles expected");
+      }
+      catch (NoLdapUserRolesFoundException e) {
+        // good
+      }
+      try {
+        underTest.getUser("bob");
+        fail("No user expected");
+      }
+      catch (NoSuchLdapUserException e) {
+        // good
+      }
+      try {
+        underTest.getGroupName("none");
+        fail("No group expected");
+      }
+      catch (NoSuchLdapGroupException e) {
+        // good
+      }
+    }
+    verify(ldapConnector, times(1)).getUserRoles("bob");
+    verify(ldapConnector, times(1)).getUser("bob");
+    verify(ldapConnector, times(1)).getGroupName("none");
+
+    ticker.advance(NEGATIVE_TTL);
+    when(ldapConnector.getGroupName("none")).thenReturn("none");
+    assertThat(underTest.getGroupName("none"), equalTo("none"));
+    verify(ldapConnector, times(2)).getGroupName("none");
+  }
+
+  @Test
+  public void failuresNotCached()
+      throws Exception
+  {
+    when(ldapConnector.getUserRoles("carol")).thenThrow(new LdapDAOException("down"))
+        .thenReturn(ImmutableSet.of("devs"));
+    final CachingLdapConnector underTest = underTest(0);
+
+    try {
+      underTest.getUserRoles("carol");
+      fail("Failure expected");
+    }
+    catch (LdapDAOException e) {
+      // good
+    }
+    assertThat(underTest.getUserRoles("carol"), containsInAnyOrder("devs"));
+    verify(ldapConnector, times(2)).getUserRoles("carol");
+  }
+
+  @Test
+  public void usersAreCopied()
+      throws Exception
+  {
+    final LdapUser user = new LdapUser();
+    user.setUsername("alice");
+    user.setMembership(ImmutableSet.of("devs"));
+    when(ldapConnector.getUser("alice")).thenReturn(user);
+    final CachingLdapConnector underTest = underTest(0);
+
+    final LdapUser first = underTest.getUser("alice");
+    first.getMembership().add("admins");
+    final LdapUser second = underTest.getUser("alice");
+
+    assertThat(second, not(sameInstance(first)));
+    assertThat(second.getMembership(), containsInAnyOrder("devs"));
+    verify(ldapConnector, times(1)).getUser("alice");
+  }
+
+  @Test
+  public void passwordNotCached()
+      throws Exception
+  {
+    final LdapUser alice = new LdapUser();
+    alice.setUsername("alice");
+    alice.setPassword("secret");
+    when(ldapConnector.getUser("alice")).thenReturn(alice);
+    final CachingLdapConnector underTest = underTest(0);
+
+    assertThat(underTest.getUser("alice").getPassword(), nullValue());
+    assertThat(underTest.getUser("alice").getPassword(), nullValue());
+    assertThat(underTest.getUncachedConnector(), sameInstance(ldapConnector));
+    verify(ldapConnector, times(1)).getUser("alice");
+  }
+
+  @Test
+  public void prefetchedMemberships()
+      throws Exception
+  {
+    when(ldapConnector.getAllGroupMemberships(50)).thenReturn(ImmutableMap.<String, Set<String>>of(
+        "Alice", ImmutableSet.of("devs"), "bob", ImmutableSet.of("ops")));
+    final CachingLdapConnector underTest = underTest(50);
+
+    assertThat(underTest.getUserRoles("alice"), containsInAnyOrder("devs"));
+    assertThat(underTest.getUserRoles("bob"), containsInAnyOrder("ops"));
+    try {
+      underTest.getUserRoles("carol");
+      fail("No roles expected");
+    }
+    catch (NoLdapUserRolesFoundException e) {
+      // good
+    }
+    verify(ldapConnector, times(1)).getAllGroupMemberships(50);
+    verify(ldapConnector, never()).getUserRoles("alice");
+
+    ticker.advance(TTL);
+    assertThat(underTest.getUserRoles("bob"), containsInAnyOrder("ops"));
+    verify(ldapConnector, times(2)).getAllGroupMemberships(50);
+  }
+
+  @Test
+  public void prefetchNotSupported()
+      throws Exception
+  {
+    when(ldapConnector.getAllGroupMemberships(anyInt())).thenReturn(null);
+    when(ldapConnector.getUserRoles("alice")).thenReturn(Collections.singleton("devs"));
+    final CachingLdapConnector underTest = underTest(50);
+
+    assertThat(underTest.getUserRoles("alice"), containsInAnyOrder("devs"));
+    ticker.advance(TTL);
+    assertThat(underTest.getUserRoles("alice"), containsInAnyOrder("devs"));
+    verify(ldapConnector, times(1)).getAllGroupMemberships(50);
+    verify(ldapConnector, times(2)).getUserRoles("alice");
+  }
+
+  private static class FakeTicker
+      extends Ticker
+  {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    public void advance(final long delta) {
+      nanos += delta;
+    }
+  }
+}
@@ -40,4 +40,13 @@ public interface WebResourceService
    */
   @Nullable
   WebResource getResource(String path);
+
+  /**
+   * Returns the fingerprinted path of web-resource bound to given path, having the fingerprint of its content
+   * embedded, or the passed in path if resource has no fingerprint. Content served from fingerprinted path never
+   * changes, hence it may be cached by clients forever.
+   *
+   * @since 3.0
+   */
+  String getFingerprintedPath(String path);
 }
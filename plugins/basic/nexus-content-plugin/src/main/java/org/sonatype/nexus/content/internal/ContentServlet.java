@@ -13,13 +13,14 @@
 package org.sonatype.nexus.content.internal;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.UUID;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -48,6 +49,7 @@ import org.sonatype.nexus.proxy.item.StorageCollectionItem;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.item.StorageLinkItem;
+import org.sonatype.nexus.proxy.item.VersionedContentLocator;
 import org.sonatype.nexus.proxy.router.RepositoryRouter;
 import org.sonatype.nexus.proxy.storage.UnsupportedStorageOperationException;
 import org.sonatype.nexus.util.SystemPropertiesHelper;
@@ -68,7 +70,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.io.ByteStreams.limit;
 import static javax.servlet.http.HttpServletResponse.SC_CREATED;
 import static javax.servlet.http.HttpServletResponse.SC_NO_CONTENT;
 import static javax.servlet.http.HttpServletResponse.SC_PARTIAL_CONTENT;
@@ -79,7 +80,6 @@ import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
 import static javax.servlet.http.HttpServletResponse.SC_METHOD_NOT_ALLOWED;
 import static javax.servlet.http.HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
 import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
-import static javax.servlet.http.HttpServletResponse.SC_NOT_IMPLEMENTED;
 import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
 
 /**
@@ -131,6 +131,12 @@ public class ContentServlet
   private static final boolean DEREFERENCE_LINKS = SystemPropertiesHelper.getBoolean(
       ContentServlet.class.getName() + ".DEREFERENCE_LINKS", true);
 
+  /**
+   * The maximum count of byte ranges accepted in one request. Requests with more ranges get complete content.
+   */
+  private static final int MAX_RANGES = SystemPropertiesHelper.getInteger(
+      ContentServlet.class.getName() + ".MAX_RANGES", 32);
+
   /**
    * Stopwatch that is started when {@link ResourceStoreRequest} is created and stopped when request processing returns
    * from {@link RepositoryRouter}.
@@ -472,22 +478,38 @@ public class ContentServlet
                            final StorageFileItem file)
       throws ServletException, IOException
   {
+    // generated items are "static" only if their content locator tracks the version of generated content
+    final VersionedContentLocator versionedContentLocator =
+        file.isContentGenerated() && file.getContentLocator() instanceof VersionedContentLocator
+            ? (VersionedContentLocator) file.getContentLocator() : null;
+    final boolean conditional = !file.isContentGenerated() || versionedContentLocator != null;
+
     // ETag, in "shaved" form of {SHA1{e5c244520e897865709c730433f8b0c44ef271f1}} (without quotes)
     // or null if file does not have SHA1 (like Virtual) or generated items (as their SHA1 would correspond to template,
-    // not to actual generated content).
+    // not to actual generated content), unless generated content is versioned.
     final String etag;
-    if (!file.isContentGenerated() && !file.isVirtual()
+    if (versionedContentLocator != null) {
+      etag = versionedContentLocator.getVersion();
+    }
+    else if (!file.isContentGenerated() && !file.isVirtual()
         && file.getRepositoryItemAttributes().containsKey(StorageFileItem.DIGEST_SHA1_KEY)) {
       etag = "{SHA1{" + file.getRepositoryItemAttributes().get(StorageFileItem.DIGEST_SHA1_KEY) + "}}";
-      // tag header ETag: "{SHA1{e5c244520e897865709c730433f8b0c44ef271f1}}", quotes are must by RFC
-      response.setHeader("ETag", "\"" + etag + "\"");
     }
     else {
       etag = null;
     }
+    if (etag != null) {
+      // tag header ETag: "{SHA1{e5c244520e897865709c730433f8b0c44ef271f1}}", quotes are must by RFC
+      response.setHeader("ETag", "\"" + etag + "\"");
+    }
+    final long modified = versionedContentLocator != null ? versionedContentLocator.getModified() : file.getModified();
+    // versioned content might not have reliable modification time (ie. is generated per subject), use ETag only then
+    final boolean modifiedKnown = modified != VersionedContentLocator.UNKNOWN_MODIFIED;
 
     response.setHeader("Content-Type", file.getMimeType());
-    response.setDateHeader("Last-Modified", file.getModified());
+    if (modifiedKnown) {
+      response.setDateHeader("Last-Modified", modified);
+    }
 
     // content-length, if known
     if (file.getLength() != ContentLocator.UNKNOWN_LENGTH) {
@@ -498,13 +520,13 @@ public class ContentServlet
       response.setHeader("Content-Length", String.valueOf(file.getLength()));
     }
 
-    // handle conditional GETs only for "static" content, actual content stored, not generated
-    if (!file.isContentGenerated() && file.getResourceStoreRequest().getIfModifiedSince() != 0
-        && file.getModified() <= file.getResourceStoreRequest().getIfModifiedSince()) {
+    // handle conditional GETs only for "static" content, actual content stored or versioned generated content
+    if (conditional && modifiedKnown && file.getResourceStoreRequest().getIfModifiedSince() != 0
+        && modified <= file.getResourceStoreRequest().getIfModifiedSince()) {
       // this is a conditional GET using time-stamp
       response.setStatus(SC_NOT_MODIFIED);
     }
-    else if (!file.isContentGenerated() && file.getResourceStoreRequest().getIfNoneMatch() != null && etag != null
+    else if (conditional && file.getResourceStoreRequest().getIfNoneMatch() != null && etag != null
         && file.getResourceStoreRequest().getIfNoneMatch().equals(etag)) {
       // this is a conditional GET using ETag
       response.setStatus(SC_NOT_MODIFIED);
@@ -520,27 +542,39 @@ public class ContentServlet
           webUtils.sendContent(file.getInputStream(), response);
         }
       }
-      else if (ranges.size() > 1) {
-        throw new ErrorStatusException(SC_NOT_IMPLEMENTED, "Not Implemented",
-            "Multiple ranges not yet supported.");
-      }
       else {
-        final Range<Long> range = ranges.get(0);
-        if (!isRequestedRangeSatisfiable(file, range)) {
+        final List<Range<Long>> satisfiableRanges = Lists.newArrayList();
+        for (Range<Long> range : ranges) {
+          if (isRequestedRangeSatisfiable(file, range)) {
+            satisfiableRanges.add(range);
+          }
+        }
+        if (satisfiableRanges.isEmpty()) {
           response.setStatus(SC_REQUESTED_RANGE_NOT_SATISFIABLE);
           response.setHeader("Content-Length", "0");
           response.setHeader("Content-Range", "bytes */" + file.getLength());
           return;
         }
-        final long bodySize = range.upperEndpoint() - range.lowerEndpoint();
+        final List<Range<Long>> parts = coalesceRanges(satisfiableRanges);
         response.setStatus(SC_PARTIAL_CONTENT);
-        response.setHeader("Content-Length", String.valueOf(bodySize));
-        response.setHeader("Content-Range",
-            range.lowerEndpoint() + "-" + range.upperEndpoint() + "/" + file.getLength());
-        if (contentNeeded) {
-          try (final InputStream in = file.getInputStream()) {
-            in.skip(range.lowerEndpoint());
-            webUtils.sendContent(limit(in, bodySize), response);
+        if (parts.size() == 1) {
+          final Range<Long> range = parts.get(0);
+          final long bodySize = range.upperEndpoint() - range.lowerEndpoint() + 1;
+          response.setHeader("Content-Length", String.valueOf(bodySize));
+          response.setHeader("Content-Range",
+              "bytes " + range.lowerEndpoint() + "-" + range.upperEndpoint() + "/" + file.getLength());
+          if (contentNeeded) {
+            webUtils.sendContent(file.getInputStream(), range.lowerEndpoint(), bodySize, response);
+          }
+        }
+        else {
+          final String boundary = UUID.randomUUID().toString().replace("-", "");
+          response.setHeader("Content-Type", "multipart/byteranges; boundary=" + boundary);
+          response.setHeader("Content-Length", String.valueOf(
+              webUtils.getMultipartContentLength(parts, file.getMimeType(), file.getLength(), boundary)));
+          if (contentNeeded) {
+            webUtils.sendMultipartContent(file.getInputStream(), parts, file.getMimeType(), file.getLength(), boundary,
+                response);
           }
         }
       }
@@ -569,7 +603,8 @@ public class ContentServlet
     }
     // send no cache headers, as any of these responses should not be cached, ever
     webUtils.addNoCacheResponseHeaders(response);
-    // perform fairly expensive operation of fetching children from Nx
+    // perform fairly expensive operation of fetching children from Nx, rendering needs no attributes of them
+    coll.getItemContext().setRequestLightweightListing(true);
     final Collection<StorageItem> children = coll.list();
     // render the page
     contentRenderer.renderCollection(request, response, coll, children);
@@ -629,39 +664,62 @@ public class ContentServlet
   // ==
 
   /**
-   * Parses the "Range" header of the HTTP request and builds up a list of {@link Range}. If no range header found, or
-   * any problem occurred during parsing it (ie. is malformed), empty collection is returned.
+   * Parses the "Range" header of the HTTP request (see RFC 7233) and builds up a list of {@link Range} of byte
+   * positions, where both endpoints are inclusive, in the order as they were requested. Last byte positions beyond
+   * content are clamped to content end, while unsatisfiable ranges are kept as is (see {@link
+   * #isRequestedRangeSatisfiable(StorageFileItem, Range)}). If no range header found, content length is unknown, or
+   * any problem occurred during parsing it (ie. is malformed, has too many ranges), empty collection is returned, as
+   * RFC allows to ignore the header in these cases.
    *
    * @return list of {@link Range}, never {@code null}.
    */
   protected List<Range<Long>> getRequestedRanges(final HttpServletRequest request, final long contentLength) {
-    // TODO: Current limitation: only one Range of bytes supported in forms of "-X", "X-Y" (where X<Y) and "X-".
     final String rangeHeader = request.getHeader("Range");
-    if (!Strings.isNullOrEmpty(rangeHeader)) {
+    if (!Strings.isNullOrEmpty(rangeHeader) && contentLength != ContentLocator.UNKNOWN_LENGTH) {
       try {
-        if (rangeHeader.startsWith("bytes=") && rangeHeader.length() > 6 && !rangeHeader.contains(",")) {
+        if (rangeHeader.startsWith("bytes=") && rangeHeader.length() > 6) {
           // Range: bytes=500-999 (from 500th byte to 999th)
           // Range: bytes=500- (from 500th byte to the end)
-          // Range: bytes=-999 (from 0th byte to the 999th byte, not by RFC but widely supported)
-          final String rangeValue = rangeHeader.substring(6, rangeHeader.length());
-          if (rangeValue.startsWith("-")) {
-            return Collections.singletonList(Range.closed(0L, Long.parseLong(rangeValue.substring(1))));
-          }
-          else if (rangeValue.endsWith("-")) {
-            return Collections.singletonList(Range.closed(
-                Long.parseLong(rangeValue.substring(0, rangeValue.length() - 1)), contentLength));
-          }
-          else if (rangeValue.contains("-")) {
-            final String[] parts = rangeValue.split("-");
-            return Collections.singletonList(Range.closed(Long.parseLong(parts[0]), Long.parseLong(parts[1])));
+          // Range: bytes=-500 (last 500 bytes)
+          // Range: bytes=0-99,500-599 (multiple ranges)
+          final String[] rangeValues = rangeHeader.substring(6).split(",");
+          if (rangeValues.length > MAX_RANGES) {
+            logger.info("Too many HTTP Ranges, sending complete content: Range value {}", rangeHeader);
+            return Collections.emptyList();
           }
-          else {
-            logger.info("Malformed HTTP Range value: {}, ignoring it", rangeHeader);
+          final List<Range<Long>> result = Lists.newArrayListWithCapacity(rangeValues.length);
+          for (String value : rangeValues) {
+            final String rangeValue = value.trim();
+            final int dash = rangeValue.indexOf('-');
+            if (dash == -1) {
+              logger.info("Malformed HTTP Range value: {}, ignoring it", rangeHeader);
+              return Collections.emptyList();
+            }
+            else if (dash == 0) {
+              final long suffixLength = Long.parseLong(rangeValue.substring(1));
+              if (suffixLength < 0) {
+                logger.info("Malformed HTTP Range value: {}, ignoring it", rangeHeader);
+                return Collections.emptyList();
+              }
+              // zero length suffix is unsatisfiable
+              result.add(suffixLength == 0 ? Range.singleton(contentLength)
+                  : Range.closed(Math.max(0L, contentLength - suffixLength), contentLength - 1));
+            }
+            else {
+              final long first = Long.parseLong(rangeValue.substring(0, dash));
+              final long last = dash == rangeValue.length() - 1 ? contentLength - 1
+                  : Long.parseLong(rangeValue.substring(dash + 1));
+              if (first < 0 || (dash != rangeValue.length() - 1 && last < first)) {
+                logger.info("Malformed HTTP Range value: {}, ignoring it", rangeHeader);
+                return Collections.emptyList();
+              }
+              result.add(Range.closed(first, Math.max(first, Math.min(last, contentLength - 1))));
+            }
           }
+          return result;
         }
         else {
-          logger.info(
-              "Nexus does not support non-byte or multiple HTTP Ranges, sending complete content: Range value {}",
+          logger.info("Nexus does not support non-byte HTTP Ranges, sending complete content: Range value {}",
               rangeHeader);
         }
       }
@@ -678,9 +736,40 @@ public class ContentServlet
   }
 
   /**
-   * Returns {@code true} if the {@link Range} is applicable to file (file full closed range encloses passed in range).
+   * Returns {@code true} if the {@link Range} is applicable to file (its first byte position is within content).
    */
   protected boolean isRequestedRangeSatisfiable(final StorageFileItem file, final Range<Long> range) {
-    return Range.closed(0L, file.getLength()).encloses(range);
+    return Range.closedOpen(0L, file.getLength()).encloses(range);
+  }
+
+  /**
+   * Sorts the ranges and merges the overlapping or adjacent ones, as RFC allows, so the parts of the response do not
+   * repeat bytes, and content can be read in one forward pass.
+   */
+  protected List<Range<Long>> coalesceRanges(final List<Range<Long>> ranges) {
+    final List<Range<Long>> sorted = Lists.newArrayList(ranges);
+    Collections.sort(sorted, new Comparator<Range<Long>>()
+    {
+      @Override
+      public int compare(final Range<Long> o1, final Range<Long> o2) {
+        return o1.lowerEndpoint().compareTo(o2.lowerEndpoint());
+      }
+    });
+    final List<Range<Long>> result = Lists.newArrayListWithCapacity(sorted.size());
+    Range<Long> current = null;
+    for (Range<Long> range : sorted) {
+      if (current == null) {
+        current = range;
+      }
+      else if (range.lowerEndpoint() <= current.upperEndpoint() + 1) {
+        current = Range.closed(current.lowerEndpoint(), Math.max(current.upperEndpoint(), range.upperEndpoint()));
+      }
+      else {
+        result.add(current);
+        current = range;
+      }
+    }
+    result.add(current);
+    return result;
   }
 }
@@ -0,0 +1,157 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.content.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.sonatype.nexus.configuration.application.NexusConfiguration;
+import org.sonatype.nexus.proxy.item.ContentLocator;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.router.RepositoryRouter;
+import org.sonatype.nexus.web.WebUtils;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Range;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Mockito.when;
+
+/**
+ * UT for {@link ContentServlet} HTTP Range handling.
+ */
+public class ContentServletTest
+    extends TestSupport
+{
+  private static final long LENGTH = 1000L;
+
+  @Mock
+  private NexusConfiguration nexusConfiguration;
+
+  @Mock
+  private RepositoryRouter repositoryRouter;
+
+  @Mock
+  private ContentRenderer contentRenderer;
+
+  @Mock
+  private WebUtils webUtils;
+
+  @Mock
+  private HttpServletRequest request;
+
+  @Mock
+  private StorageFileItem file;
+
+  private ContentServlet underTest;
+
+  @Before
+  public void prepare() {
+    when(file.getLength()).thenReturn(LENGTH);
+    underTest = new ContentServlet(nexusConfiguration, repositoryRouter, contentRenderer, webUtils);
+  }
+
+  private List<Range<Long>> ranges(final String rangeHeader) {
+    when(request.getHeader("Range")).thenReturn(rangeHeader);
+    return underTest.getRequestedRanges(request, LENGTH);
+  }
+
+  @Test
+  public void noRange() {
+    assertThat(ranges(null), empty());
+    when(request.getHeader("Range")).thenReturn("bytes=0-99");
+    assertThat(underTest.getRequestedRanges(request, ContentLocator.UNKNOWN_LENGTH), empty());
+  }
+
+  @Test
+  public void singleRanges() {
+    assertThat(ranges("bytes=0-99"), contains(Range.closed(0L, 99L)));
+    assertThat(ranges("bytes=500-"), contains(Range.closed(500L, 999L)));
+    // last byte position beyond content is clamped
+    assertThat(ranges("bytes=900-5000"), contains(Range.closed(900L, 999L)));
+  }
+
+  @Test
+  public void suffixRanges() {
+    assertThat(ranges("bytes=-100"), contains(Range.closed(900L, 999L)));
+    assertThat(ranges("bytes=-5000"), contains(Range.closed(0L, 999L)));
+    final List<Range<Long>> zeroSuffix = ranges("bytes=-0");
+    assertThat(zeroSuffix, hasSize(1));
+    assertThat(underTest.isRequestedRangeSatisfiable(file, zeroSuffix.get(0)), equalTo(false));
+  }
+
+  @Test
+  public void malformedRanges() {
+    assertThat(ranges("bytes=100-50"), empty());
+    assertThat(ranges("bytes=100"), empty());
+    assertThat(ranges("bytes=a-b"), empty());
+    assertThat(ranges("bytes=0-99,foo"), empty());
+    assertThat(ranges("items=0-99"), empty());
+  }
+
+  @Test
+  public void satisfiableRanges() {
+    assertThat(underTest.isRequestedRangeSatisfiable(file, Range.closed(0L, 999L)), equalTo(true));
+    assertThat(underTest.isRequestedRangeSatisfiable(file, Range.closed(999L, 999L)), equalTo(true));
+    // first byte position beyond content
+    final List<Range<Long>> beyond = ranges("bytes=1000-1100");
+    assertThat(beyond, hasSize(1));
+    assertThat(underTest.isRequestedRangeSatisfiable(file, beyond.get(0)), equalTo(false));
+  }
+
+  @Test
+  public void multipleRangesKeepRequestOrder() {
+    assertThat(ranges("bytes=500-599, 0-99"), contains(Range.closed(500L, 599L), Range.closed(0L, 99L)));
+  }
+
+  @Test
+  public void rangeCountCap() {
+    final String[] values = new String[33];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (i * 10) + "-" + (i * 10 + 4);
+    }
+    assertThat(ranges("bytes=" + Joiner.on(',').join(Arrays.copyOf(values, 32))), hasSize(32));
+    assertThat(ranges("bytes=" + Joiner.on(',').join(values)), empty());
+  }
+
+  @Test
+  public void coalesceOverlappingAndAdjacent() {
+    final List<Range<Long>> coalesced = underTest.coalesceRanges(Arrays.asList(
+        Range.closed(300L, 399L), Range.closed(0L, 99L), Range.closed(50L, 149L), Range.closed(150L, 199L)));
+    assertThat(coalesced, contains(Range.closed(0L, 199L), Range.closed(300L, 399L)));
+  }
+
+  @Test
+  public void coalesceDisjoint() {
+    final List<Range<Long>> coalesced = underTest.coalesceRanges(Arrays.asList(
+        Range.closed(500L, 599L), Range.closed(0L, 99L)));
+    assertThat(coalesced, contains(Range.closed(0L, 99L), Range.closed(500L, 599L)));
+  }
+
+  @Test
+  public void coalesceContained() {
+    final List<Range<Long>> coalesced = underTest.coalesceRanges(Arrays.asList(
+        Range.closed(0L, 999L), Range.closed(100L, 199L)));
+    assertThat(coalesced, contains(Range.closed(0L, 999L)));
+  }
+}
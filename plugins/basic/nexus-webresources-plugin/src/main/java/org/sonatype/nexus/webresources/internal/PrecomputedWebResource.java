@@ -0,0 +1,151 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.webresources.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.webresources.DelegatingWebResource;
+import org.sonatype.nexus.webresources.WebResource;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * {@link WebResource} having the hash of its content and its gzip compressed variant (if worth it) precomputed, to be
+ * used as strong ETag and fingerprint, and to be served to clients accepting gzip encoding without compressing on
+ * every request.
+ *
+ * @since 3.0
+ */
+public class PrecomputedWebResource
+    extends DelegatingWebResource
+{
+  /**
+   * Resources smaller than this are not compressed, as gain would be negligible.
+   */
+  private static final int COMPRESS_MIN_SIZE = 1024;
+
+  /**
+   * Length of fingerprint embedded in fingerprinted paths.
+   */
+  static final int FINGERPRINT_LENGTH = 16;
+
+  private final String hash;
+
+  private final byte[] gzipped;
+
+  private final boolean immutable;
+
+  private PrecomputedWebResource(final WebResource delegate, final String hash, final @Nullable byte[] gzipped,
+                                 final boolean immutable)
+  {
+    super(delegate);
+    this.hash = checkNotNull(hash);
+    this.gzipped = gzipped;
+    this.immutable = immutable;
+  }
+
+  /**
+   * Returns the SHA1 hash of content, in hex encoded form.
+   */
+  public String getHash() {
+    return hash;
+  }
+
+  /**
+   * Returns the fingerprint of content, that is prefix of its hash.
+   */
+  public String getFingerprint() {
+    return hash.substring(0, FINGERPRINT_LENGTH);
+  }
+
+  /**
+   * Returns the gzip compressed content, or {@code null} if it was not worth to compress the content.
+   */
+  @Nullable
+  public byte[] getGzipped() {
+    return gzipped;
+  }
+
+  /**
+   * Returns {@code true} if this resource was resolved by fingerprinted path, hence may be cached forever.
+   */
+  public boolean isImmutable() {
+    return immutable;
+  }
+
+  /**
+   * Returns this resource as resolved by fingerprinted path.
+   */
+  public PrecomputedWebResource asImmutable() {
+    return new PrecomputedWebResource(this, hash, gzipped, true);
+  }
+
+  /**
+   * Reads the content of passed in resource, and precomputes it's hash and gzip compressed variant, if compression
+   * requested and content type of resource is compressible.
+   */
+  public static PrecomputedWebResource precompute(final WebResource resource, final boolean compress)
+      throws IOException
+  {
+    final byte[] content;
+    final String hash;
+    try (HashingInputStream in = new HashingInputStream(Hashing.sha1(), resource.getInputStream())) {
+      content = ByteStreams.toByteArray(in);
+      hash = in.hash().toString();
+    }
+
+    byte[] gzipped = null;
+    if (compress && content.length >= COMPRESS_MIN_SIZE && isCompressible(resource.getContentType())) {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2);
+      try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+        gz.write(content);
+      }
+      // keep it only if it gains at least 10%
+      if (out.size() < content.length - content.length / 10) {
+        gzipped = out.toByteArray();
+      }
+    }
+    return new PrecomputedWebResource(resource, hash, gzipped, false);
+  }
+
+  /**
+   * Textual content types compress well, while images and archives are already compressed.
+   */
+  private static boolean isCompressible(final @Nullable String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+    return contentType.startsWith("text/")
+        || contentType.contains("javascript")
+        || contentType.contains("json")
+        || contentType.contains("xml");
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" +
+        "path=" + getPath() +
+        ", hash=" + hash +
+        ", gzipped=" + (gzipped != null ? gzipped.length : null) +
+        ", immutable=" + immutable +
+        '}';
+  }
+}
@@ -13,12 +13,15 @@
 package org.sonatype.nexus.webresources.internal;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -30,10 +33,12 @@ import org.sonatype.nexus.mime.MimeSupport;
 import org.sonatype.nexus.webresources.FileWebResource;
 import org.sonatype.nexus.webresources.UrlWebResource;
 import org.sonatype.nexus.webresources.WebResource;
+import org.sonatype.nexus.webresources.WebResource.Prepareable;
 import org.sonatype.nexus.webresources.WebResourceBundle;
 import org.sonatype.nexus.webresources.WebResourceService;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 
+import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -51,6 +56,12 @@ public class WebResourceServiceImpl
   extends ComponentSupport
   implements WebResourceService
 {
+  /**
+   * Fingerprinted path, having fingerprint inserted before extension of the file name, if any.
+   */
+  private static final Pattern FINGERPRINTED_PATH = Pattern.compile(
+      "(.*/[^/]*?)\\.([0-9a-f]{" + PrecomputedWebResource.FINGERPRINT_LENGTH + "})(\\.[^./]+)?");
+
   private final List<WebResourceBundle> bundles;
 
   private final List<WebResource> resources;
@@ -61,19 +72,30 @@ public class WebResourceServiceImpl
 
   private final Map<String, WebResource> resourcePaths;
 
+  private final boolean precompress;
+
+  private final Map<String, PrecomputedWebResource> precomputedResources;
+
   @Inject
   public WebResourceServiceImpl(final List<WebResourceBundle> bundles,
                                 final List<WebResource> resources,
                                 final @Named("nexus") Provider<ServletContext> servletContextProvider,
-                                final MimeSupport mimeSupport)
+                                final MimeSupport mimeSupport,
+                                final @Named("${nexus.webresources.precompute:-true}") boolean precompute,
+                                final @Named("${nexus.webresources.precompress:-true}") boolean precompress)
   {
     this.bundles = checkNotNull(bundles);
     this.resources = checkNotNull(resources);
     this.servletContextProvider = checkNotNull(servletContextProvider);
     this.mimeSupport = checkNotNull(mimeSupport);
     this.resourcePaths = Maps.newHashMap();
+    this.precompress = precompress;
+    this.precomputedResources = Maps.newHashMap();
 
     discoverResources();
+    if (precompute) {
+      precomputeResources();
+    }
   }
 
   private void discoverResources() {
@@ -107,6 +129,35 @@ public class WebResourceServiceImpl
     }
   }
 
+  /**
+   * Precomputes hashes and gzip compressed variants of static resources. Generated and non-cacheable resources are
+   * left as is, as their content may change.
+   */
+  private void precomputeResources() {
+    int compressed = 0;
+    long contentSize = 0;
+    long gzippedSize = 0;
+    for (WebResource resource : resourcePaths.values()) {
+      if (!resource.isCacheable() || resource instanceof Prepareable) {
+        continue;
+      }
+      try {
+        final PrecomputedWebResource precomputed = PrecomputedWebResource.precompute(resource, precompress);
+        precomputedResources.put(resource.getPath(), precomputed);
+        if (precomputed.getGzipped() != null) {
+          compressed++;
+          contentSize += resource.getSize();
+          gzippedSize += precomputed.getGzipped().length;
+        }
+      }
+      catch (IOException e) {
+        log.warn("Could not precompute resource {}", resource, e);
+      }
+    }
+    log.info("Precomputed {} resources, compressed {} of them from {} to {} bytes", precomputedResources.size(),
+        compressed, contentSize, gzippedSize);
+  }
+
   private void addResource(final WebResource resource) {
     String path = resource.getPath();
     log.trace("Adding resource: {} -> {}", path, resource);
@@ -143,12 +194,29 @@ public class WebResourceServiceImpl
 
     // 2) second, look at "ordinary" resources, but only if devResource did not hit anything
     if (resource == null) {
-      resource = resourcePaths.get(path);
+      resource = precomputedResources.get(path);
+      if (resource == null) {
+        resource = resourcePaths.get(path);
+      }
       if (resource != null) {
         log.trace("Found bound resource: {}", resource);
       }
     }
 
+    // 2.5) if not found, try it as fingerprinted path of a precomputed resource
+    if (resource == null && !precomputedResources.isEmpty()) {
+      final Matcher matcher = FINGERPRINTED_PATH.matcher(path);
+      if (matcher.matches()) {
+        final String unfingerprintedPath = matcher.group(1) + Strings.nullToEmpty(matcher.group(3));
+        final PrecomputedWebResource precomputed = precomputedResources.get(unfingerprintedPath);
+        if (precomputed != null) {
+          // stale fingerprint (ie. page rendered before upgrade) still gets current content, but cached as usual
+          resource = precomputed.getFingerprint().equals(matcher.group(2)) ? precomputed.asImmutable() : precomputed;
+          log.trace("Found fingerprinted resource: {}", resource);
+        }
+      }
+    }
+
     // 3) third, look into WAR embedded resources
     if (resource == null) {
       URL url;
@@ -166,4 +234,22 @@ public class WebResourceServiceImpl
 
     return resource;
   }
+
+  @Override
+  public String getFingerprintedPath(final String path) {
+    if (DevModeResources.hasResourceLocations()) {
+      // dev-mode resources might change any time
+      return path;
+    }
+    final PrecomputedWebResource precomputed = precomputedResources.get(path);
+    if (precomputed == null) {
+      return path;
+    }
+    final int nameStart = path.lastIndexOf('/') + 1;
+    final int extensionStart = path.lastIndexOf('.');
+    if (extensionStart > nameStart) {
+      return path.substring(0, extensionStart) + "." + precomputed.getFingerprint() + path.substring(extensionStart);
+    }
+    return path + "." + precomputed.getFingerprint();
+  }
 }
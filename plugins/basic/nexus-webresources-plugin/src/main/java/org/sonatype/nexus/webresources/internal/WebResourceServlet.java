@@ -12,6 +12,7 @@
  */
 package org.sonatype.nexus.webresources.internal;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -31,6 +32,7 @@ import org.sonatype.nexus.webresources.WebResource.Prepareable;
 import org.sonatype.nexus.webresources.WebResourceService;
 import org.sonatype.sisu.goodies.common.Time;
 
+import com.google.common.base.Splitter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,6 +58,11 @@ public class WebResourceServlet
 
   private final WebUtils webUtils;
 
+  /**
+   * Fingerprinted resources never change, and are cached for a year, as allowed by RFC2616.
+   */
+  private static final String IMMUTABLE_CACHE_CONTROL = "max-age=31536000, immutable";
+
   private final long maxAgeSeconds;
 
   @Inject
@@ -121,15 +128,37 @@ public class WebResourceServlet
     response.setHeader("Content-Type", contentType);
     response.setDateHeader("Last-Modified", resource.getLastModified());
 
+    // precomputed resources have strong ETag and might have gzip compressed variant
+    final PrecomputedWebResource precomputed =
+        resource instanceof PrecomputedWebResource ? (PrecomputedWebResource) resource : null;
+    final byte[] gzipped =
+        precomputed != null && precomputed.getGzipped() != null && acceptsGzip(request) ? precomputed.getGzipped()
+            : null;
+    String etag = null;
+    if (precomputed != null) {
+      // variants must have different strong ETags
+      etag = "\"" + precomputed.getHash() + (gzipped != null ? "-gzip" : "") + "\"";
+      response.setHeader("ETag", etag);
+      if (precomputed.getGzipped() != null) {
+        response.setHeader("Vary", "Accept-Encoding");
+      }
+    }
+
     // set content-length, complain if invalid
-    long size = resource.getSize();
+    long size = gzipped != null ? gzipped.length : resource.getSize();
     if (size < 0) {
       log.warn("Resource {} has invalid size: {}", resource.getPath(), size);
     }
     response.setHeader("Content-Length", String.valueOf(size));
+    if (gzipped != null) {
+      response.setHeader("Content-Encoding", "gzip");
+    }
 
     // set max-age if cacheable
-    if (resource.isCacheable()) {
+    if (precomputed != null && precomputed.isImmutable()) {
+      response.setHeader("Cache-Control", IMMUTABLE_CACHE_CONTROL);
+    }
+    else if (resource.isCacheable()) {
       response.setHeader("Cache-Control", "max-age=" + maxAgeSeconds);
     }
     else {
@@ -138,18 +167,57 @@ public class WebResourceServlet
 
     // honor if-modified-since GETs
     long ifModifiedSince = request.getDateHeader("if-modified-since");
-    // handle conditional GETs
-    if (ifModifiedSince > -1 && resource.getLastModified() <= ifModifiedSince) {
+    String ifNoneMatch = request.getHeader("if-none-match");
+    // handle conditional GETs, if-none-match takes precedence as mandated by RFC
+    if (ifNoneMatch != null) {
+      if (etag != null && matches(ifNoneMatch, etag)) {
+        // this is a conditional GET using ETag, and resource is not modified
+        response.setStatus(SC_NOT_MODIFIED);
+        return;
+      }
+    }
+    else if (ifModifiedSince > -1 && resource.getLastModified() <= ifModifiedSince) {
       // this is a conditional GET using time-stamp, and resource is not modified
       response.setStatus(SC_NOT_MODIFIED);
+      return;
     }
-    else {
-      // send the content only if needed (this method will be called for HEAD requests too)
-      if ("GET".equalsIgnoreCase(request.getMethod())) {
-        try (InputStream in = resource.getInputStream()) {
-          webUtils.sendContent(in, response);
-        }
+
+    // send the content only if needed (this method will be called for HEAD requests too)
+    if ("GET".equalsIgnoreCase(request.getMethod())) {
+      try (InputStream in = gzipped != null ? new ByteArrayInputStream(gzipped) : resource.getInputStream()) {
+        webUtils.sendContent(in, response);
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if request accepts gzip content encoding, having it (or wildcard) listed with non-zero
+   * quality.
+   */
+  private boolean acceptsGzip(final HttpServletRequest request) {
+    final String acceptEncoding = request.getHeader("accept-encoding");
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : Splitter.on(',').trimResults().omitEmptyStrings().split(acceptEncoding)) {
+      final int paramsStart = coding.indexOf(';');
+      final String name = (paramsStart > -1 ? coding.substring(0, paramsStart) : coding).trim();
+      if ("gzip".equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name) || "*".equals(name)) {
+        return paramsStart == -1 || !coding.substring(paramsStart).replace(" ", "").matches(";q=0(\\.0*)?");
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if passed in if-none-match header value matches the passed in (quoted) ETag.
+   */
+  private boolean matches(final String ifNoneMatch, final String etag) {
+    for (String candidate : Splitter.on(',').trimResults().omitEmptyStrings().split(ifNoneMatch)) {
+      if ("*".equals(candidate) || etag.equals(candidate)) {
+        return true;
       }
     }
+    return false;
   }
 }
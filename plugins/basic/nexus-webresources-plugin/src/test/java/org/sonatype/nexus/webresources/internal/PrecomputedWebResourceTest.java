@@ -0,0 +1,114 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.webresources.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.webresources.WebResource;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for {@link PrecomputedWebResource}.
+ */
+public class PrecomputedWebResourceTest
+    extends TestSupport
+{
+  private WebResource resource(final String contentType, final String content) {
+    final byte[] bytes = content.getBytes(Charsets.UTF_8);
+    return new WebResource()
+    {
+      @Override
+      public String getPath() {
+        return "/test";
+      }
+
+      @Nullable
+      @Override
+      public String getContentType() {
+        return contentType;
+      }
+
+      @Override
+      public long getSize() {
+        return bytes.length;
+      }
+
+      @Override
+      public long getLastModified() {
+        return UNKNOWN_LAST_MODIFIED;
+      }
+
+      @Override
+      public boolean isCacheable() {
+        return true;
+      }
+
+      @Override
+      public InputStream getInputStream() throws IOException {
+        return new ByteArrayInputStream(bytes);
+      }
+    };
+  }
+
+  @Test
+  public void hashAndFingerprint() throws Exception {
+    final PrecomputedWebResource precomputed = PrecomputedWebResource.precompute(resource(WebResource.PLAIN, "test"),
+        true);
+    assertThat(precomputed.getHash(), is("a94a8fe5ccb19ba61c4c0873d391e987982fbbd3"));
+    assertThat(precomputed.getFingerprint(), is("a94a8fe5ccb19ba6"));
+    assertThat(precomputed.isImmutable(), is(false));
+    assertThat(precomputed.asImmutable().isImmutable(), is(true));
+    // too small to be compressed
+    assertThat(precomputed.getGzipped(), nullValue());
+  }
+
+  @Test
+  public void compressible() throws Exception {
+    final String content = Strings.repeat("Ext.define('NX.Foo', {});\n", 100);
+    final PrecomputedWebResource precomputed =
+        PrecomputedWebResource.precompute(resource(WebResource.JAVASCRIPT, content), true);
+    assertThat(precomputed.getGzipped(), notNullValue());
+    final byte[] decompressed =
+        ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(precomputed.getGzipped())));
+    assertThat(new String(decompressed, Charsets.UTF_8), equalTo(content));
+  }
+
+  @Test
+  public void compressionDisabled() throws Exception {
+    final String content = Strings.repeat("Ext.define('NX.Foo', {});\n", 100);
+    assertThat(PrecomputedWebResource.precompute(resource(WebResource.JAVASCRIPT, content), false).getGzipped(),
+        nullValue());
+  }
+
+  @Test
+  public void incompressibleType() throws Exception {
+    final String content = Strings.repeat("GIF89a", 1000);
+    assertThat(PrecomputedWebResource.precompute(resource("image/gif", content), true).getGzipped(), nullValue());
+  }
+}
@@ -15,6 +15,9 @@ package org.sonatype.nexus.rest.index;
 import org.sonatype.nexus.rest.indextreeview.IndexBrowserTreeNodeDTO;
 import org.sonatype.nexus.rest.indextreeview.IndexBrowserTreeViewResponseDTO;
 import org.sonatype.nexus.rest.model.AliasingListConverter;
+import org.sonatype.nexus.rest.model.IdentifiedHash;
+import org.sonatype.nexus.rest.model.IdentifyHashesRequest;
+import org.sonatype.nexus.rest.model.IdentifyHashesResponse;
 import org.sonatype.nexus.rest.model.NexusArtifact;
 import org.sonatype.nexus.rest.model.NexusNGArtifact;
 import org.sonatype.nexus.rest.model.NexusNGArtifactHit;
@@ -38,6 +41,16 @@ public class MIndexerXStreamConfiguratorLightweight
     xstream.registerLocalConverter(SearchResponse.class, "data", new AliasingListConverter(NexusArtifact.class,
         "artifact"));
 
+    // Identify
+    xstream.processAnnotations(IdentifyHashesRequest.class);
+    xstream.processAnnotations(IdentifyHashesResponse.class);
+    xstream.registerLocalConverter(IdentifyHashesRequest.class, "data", new AliasingListConverter(String.class,
+        "hash"));
+    xstream.registerLocalConverter(IdentifyHashesResponse.class, "data", new AliasingListConverter(
+        IdentifiedHash.class, "identifiedHash"));
+    xstream.registerLocalConverter(IdentifiedHash.class, "artifacts", new AliasingListConverter(NexusArtifact.class,
+        "artifact"));
+
     // NG
     xstream.processAnnotations(SearchNGResponse.class);
     xstream.processAnnotations(NexusNGArtifact.class);
@@ -27,9 +27,17 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -41,6 +49,9 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.sonatype.nexus.configuration.application.NexusConfiguration;
+import org.sonatype.nexus.index.events.IndexArtifactAddedEvent;
+import org.sonatype.nexus.index.events.IndexArtifactRemovedEvent;
+import org.sonatype.nexus.index.events.IndexUpdatedEvent;
 import org.sonatype.nexus.maven.tasks.SnapshotRemover;
 import org.sonatype.nexus.mime.MimeSupport;
 import org.sonatype.nexus.proxy.ItemNotFoundException;
@@ -69,20 +80,28 @@ import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.proxy.repository.ShadowRepository;
 import org.sonatype.nexus.proxy.storage.local.fs.DefaultFSLocalRepositoryStorage;
 import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
+import org.sonatype.nexus.threads.NexusExecutorService;
+import org.sonatype.nexus.threads.NexusThreadFactory;
 import org.sonatype.nexus.util.file.DirSupport;
 import org.sonatype.scheduling.TaskInterruptedException;
 import org.sonatype.scheduling.TaskUtil;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 import org.sonatype.sisu.goodies.common.Throwables2;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.MMapDirectory;
@@ -111,6 +130,7 @@ import org.apache.maven.index.artifact.VersionUtils;
 import org.apache.maven.index.context.DefaultIndexingContext;
 import org.apache.maven.index.context.DocumentFilter;
 import org.apache.maven.index.context.IndexCreator;
+import org.apache.maven.index.context.IndexUtils;
 import org.apache.maven.index.context.IndexingContext;
 import org.apache.maven.index.context.MergedIndexingContext;
 import org.apache.maven.index.context.StaticContextMemberProvider;
@@ -300,6 +320,9 @@ public class DefaultIndexerManager
   @Inject
   private Scanner scanner;
 
+  @Inject
+  private EventBus eventBus;
+
   /**
    * As of 3.6.1, Lucene provides three FSDirectory implementations, all with there pros and cons.
    * <ul>
@@ -323,6 +346,28 @@ public class DefaultIndexerManager
   @Named("${nexus.indexer.locktimeout:-60}")
   private int lockTimeoutSeconds;
 
+  /**
+   * Maximum count of threads searching indexing contexts concurrently, when a search targets more than one context.
+   * When all threads are busy, the searching thread searches the contexts itself. Values below 2 disable concurrent
+   * searches.
+   *
+   * @since 3.0
+   */
+  @Inject
+  @Named("${nexus.indexer.searchThreads:-4}")
+  private int searchThreads;
+
+  /**
+   * Count of hits searched at once in one indexing context, when searching contexts concurrently. The first batch of
+   * every context is searched on the search pool, further ones by the thread iterating the hits.
+   */
+  private static final int SEARCH_BATCH_SIZE = 100;
+
+  /**
+   * Pool of threads searching indexing contexts concurrently, created on first use.
+   */
+  private ExecutorService searchExecutor;
+
   /**
    * Locks that protect access to repository index. Item-level add/remove and search operations must acquire read
    * lock. Index-level add/remove/reindex must acquire exclusive lock.
@@ -347,6 +392,12 @@ public class DefaultIndexerManager
    */
   private final ConcurrentMap<String, Thread> deleteThreads = new ConcurrentHashMap<String, Thread>();
 
+  /**
+   * SHA1 indexes of repositories having indexing context, keyed by repository id. Entries are added and removed along
+   * with indexing contexts, while holding exclusive lock of the repository.
+   */
+  private final ConcurrentMap<String, Sha1Index> sha1Indexes = new ConcurrentHashMap<String, Sha1Index>();
+
   private File workingDirectory;
 
   private File tempDirectory;
@@ -442,6 +493,18 @@ public class DefaultIndexerManager
     synchronized (reindexLocks) {
       reindexLocks.clear();
     }
+
+    for (Sha1Index sha1Index : sha1Indexes.values()) {
+      sha1Index.close();
+    }
+    sha1Indexes.clear();
+
+    synchronized (this) {
+      if (searchExecutor != null) {
+        searchExecutor.shutdown();
+        searchExecutor = null;
+      }
+    }
   }
 
   public void resetConfiguration() {
@@ -524,6 +587,8 @@ public class DefaultIndexerManager
           true, // reclaimIndex
           ISPROXY(repository));
       mavenIndexer.addIndexingContext(ctx);
+      closeSha1Index(repository);
+      sha1Indexes.put(repository.getId(), new Sha1Index(getWorkingDirectory(), ctx.getId()));
     }
     ctx.setSearchable(repository.isSearchable());
 
@@ -590,6 +655,7 @@ public class DefaultIndexerManager
       log.debug("Removing indexing context for repository {} deleteFiles={}", repository.getId(), deleteFiles);
 
       mavenIndexer.removeIndexingContext(context, deleteFiles);
+      closeSha1Index(repository);
 
       log.debug("Removed indexing context {} for repository {}", context.getId(), repository.getId());
     }
@@ -783,8 +849,32 @@ public class DefaultIndexerManager
         }
       }
 
-      // and finally: index it
-      getNexusIndexer().addArtifactToIndex(ac, context);
+      final Sha1Index sha1Index = sha1Indexes.get(repository.getId());
+      final boolean sha1Tracked = sha1Index != null && sha1Index.beginChange();
+      try {
+        // a redeployed artifact replaces its document, with a possibly different checksum
+        final ArtifactInfo replaced =
+            sha1Tracked && ac != null ? findArtifact(context, ac.getArtifactInfo().getUinfo()) : null;
+
+        // and finally: index it
+        getNexusIndexer().addArtifactToIndex(ac, context);
+
+        if (sha1Tracked && ac != null) {
+          if (replaced != null) {
+            sha1Index.remove(replaced.sha1, replaced);
+          }
+          sha1Index.add(ac.getArtifactInfo().sha1, ac.getArtifactInfo());
+        }
+      }
+      finally {
+        if (sha1Index != null) {
+          sha1Index.endChange();
+        }
+      }
+
+      if (ac != null) {
+        eventBus.post(new IndexArtifactAddedEvent(repository, ac.getArtifactInfo()));
+      }
     }
     finally {
       uidLock.unlock();
@@ -864,12 +954,25 @@ public class DefaultIndexerManager
 
       uidLock.lock(Action.read);
 
+      final Sha1Index sha1Index = sha1Indexes.get(repository.getId());
+      final boolean sha1Tracked = sha1Index != null && sha1Index.beginChange();
       try {
+        final ArtifactInfo removed = sha1Tracked ? findArtifact(context, ai.getUinfo()) : null;
+
         getNexusIndexer().deleteArtifactFromIndex(ac, context);
+
+        if (removed != null) {
+          sha1Index.remove(removed.sha1, removed);
+        }
       }
       finally {
+        if (sha1Index != null) {
+          sha1Index.endChange();
+        }
         uidLock.unlock();
       }
+
+      eventBus.post(new IndexArtifactRemovedEvent(repository, ai));
     }
     else {
       // do NOT remove file from index
@@ -996,6 +1099,8 @@ public class DefaultIndexerManager
           try {
             Runnable runnable = new IndexUpdateRunnable(repository, fromPath, false);
             sharedSingle(repository, runnable);
+            invalidateSha1Index(repository);
+            eventBus.post(new IndexUpdatedEvent(repository));
             log.debug("Reindexed repository {}", repository.getId());
             return;
           }
@@ -1157,6 +1262,8 @@ public class DefaultIndexerManager
             };
 
             sharedSingle(repository, runnable);
+            invalidateSha1Index(repository);
+            eventBus.post(new IndexUpdatedEvent(repository));
             return;
           }
           catch (IncrementalIndexUpdateException e) {
@@ -1657,9 +1764,130 @@ public class DefaultIndexerManager
   public Collection<ArtifactInfo> identifyArtifact(Field field, String data)
       throws IOException
   {
+    if (MAVEN.SHA1.equals(field)) {
+      return identifyArtifactsBySha1(Collections.singletonList(data)).get(data);
+    }
     return mavenIndexer.identify(field, data);
   }
 
+  public Map<String, Collection<ArtifactInfo>> identifyArtifactsBySha1(Collection<String> sha1Checksums)
+      throws IOException
+  {
+    Map<String, Collection<ArtifactInfo>> result = new LinkedHashMap<String, Collection<ArtifactInfo>>();
+    for (String sha1 : sha1Checksums) {
+      result.put(sha1, new ArrayList<ArtifactInfo>());
+    }
+
+    List<Repository> repositories = new ArrayList<Repository>();
+    for (Repository repository : repositoryRegistry.getRepositories()) {
+      if (!ISGROUP(repository) && INDEXABLE(repository)) {
+        repositories.add(repository);
+      }
+    }
+
+    // SHA1 indexes are built holding the lock of their own repository only, not the locks of all repositories
+    for (Repository repository : repositories) {
+      Sha1Index sha1Index = sha1Indexes.get(repository.getId());
+      if (sha1Index != null && !sha1Index.isBuilt()) {
+        buildSha1Index(repository, sha1Index);
+      }
+    }
+
+    LockedIndexingContexts lockedContexts = lockIndexingContexts(repositories, null);
+    if (lockedContexts == null) {
+      return result;
+    }
+
+    try {
+      for (Map.Entry<String, IndexingContext> entry : lockedContexts.contexts.entrySet()) {
+        String repositoryId = entry.getKey();
+        IndexingContext context = entry.getValue();
+        if (!context.isSearchable()) {
+          continue;
+        }
+
+        // an index not built, or invalidated since, falls back to index queries
+        Sha1Index sha1Index = sha1Indexes.get(repositoryId);
+        for (Map.Entry<String, Collection<ArtifactInfo>> identified : result.entrySet()) {
+          String sha1 = identified.getKey();
+          List<String> refs = sha1Index != null ? sha1Index.lookup(sha1) : null;
+          if (refs == null) {
+            identified.getValue().addAll(mavenIndexer.identify(constructQuery(MAVEN.SHA1, sha1, SearchType.EXACT),
+                Collections.singletonList(context)));
+            continue;
+          }
+          for (String ref : refs) {
+            ArtifactInfo ai = Sha1Index.unpack(ref);
+            ai.sha1 = sha1;
+            ai.repository = repositoryId;
+            ai.context = context.getId();
+            identified.getValue().add(ai);
+          }
+        }
+      }
+    }
+    finally {
+      lockedContexts.lock.unlock();
+    }
+
+    return result;
+  }
+
+  private void buildSha1Index(final Repository repository, final Sha1Index sha1Index) {
+    try {
+      sharedSingle(repository, new Runnable()
+      {
+        @Override
+        public void run(IndexingContext context)
+            throws IOException
+        {
+          if (context.isSearchable()) {
+            sha1Index.build(context);
+          }
+        }
+      });
+    }
+    catch (IOException e) {
+      log.warn("Could not build SHA1 index of repository {}, falling back to index queries", repository.getId(), e);
+    }
+  }
+
+  private void invalidateSha1Index(Repository repository) {
+    Sha1Index sha1Index = sha1Indexes.get(repository.getId());
+    if (sha1Index != null) {
+      sha1Index.invalidate();
+    }
+  }
+
+  private void closeSha1Index(Repository repository)
+      throws IOException
+  {
+    Sha1Index sha1Index = sha1Indexes.remove(repository.getId());
+    if (sha1Index != null) {
+      sha1Index.close();
+    }
+  }
+
+  /**
+   * Returns the artifact of the document having passed in UINFO, if any.
+   */
+  @Nullable
+  private ArtifactInfo findArtifact(IndexingContext context, String uinfo)
+      throws IOException
+  {
+    IndexSearcher searcher = context.acquireIndexSearcher();
+    try {
+      TopDocs hits = searcher.search(new TermQuery(new Term(ArtifactInfo.UINFO, uinfo)), 1);
+      if (hits.totalHits == 0) {
+        return null;
+      }
+      return IndexUtils.constructArtifactInfo(searcher.doc(hits.scoreDocs[0].doc), context);
+    }
+    finally {
+      context.releaseIndexSearcher(searcher);
+    }
+  }
+
   // ----------------------------------------------------------------------------
   // Combined searching
   // ----------------------------------------------------------------------------
@@ -2095,9 +2323,15 @@ public class DefaultIndexerManager
     // RuntimeException and ThreadDeath will leave locks locked. Not sure if there is a nice way to avoid this
 
     try {
-      req.getContexts().addAll(lockedContexts.contexts.values());
+      IteratorSearchResponse result;
+      if (searchThreads > 1 && lockedContexts.contexts.size() > 1 && req.getCount() > 0) {
+        result = searchIteratorConcurrently(req, lockedContexts.contexts.values());
+      }
+      else {
+        req.getContexts().addAll(lockedContexts.contexts.values());
 
-      IteratorSearchResponse result = mavenIndexer.searchIterator(req);
+        result = mavenIndexer.searchIterator(req);
+      }
 
       Query query = result.getQuery();
       int totalHints = result.getTotalHitsCount();
@@ -2129,6 +2363,155 @@ public class DefaultIndexerManager
     }
   }
 
+  /**
+   * Searches the first batch of hits of each passed in context on the search pool, and merges their hits by score.
+   * Further batches are searched lazily by the iterating thread, once the merge consumed the previous batch of a
+   * context, so a caller iterating only part of the hits does not pay for the rest. As searchers acquired by a thread
+   * must be released by the same thread, each batch is collected by the thread searching it. The request filter and
+   * postprocessor are applied by the merge, as they may be stateful. The caller must hold the shared locks of the
+   * contexts until the returned result set is closed, as the searches use unlocked views of the contexts: read locks
+   * are owned by threads, and the pool threads must not queue behind a writer waiting for the caller.
+   */
+  private IteratorSearchResponse searchIteratorConcurrently(final IteratorSearchRequest req,
+                                                            final Collection<IndexingContext> contexts)
+      throws IOException
+  {
+    final int start = Math.max(0, req.getStart());
+    final int limit = start + req.getCount();
+
+    final ExecutorService executor = getSearchExecutor();
+    final List<ContextHits> hits = new ArrayList<ContextHits>(contexts.size());
+    final List<Future<?>> futures = new ArrayList<Future<?>>(contexts.size());
+    for (IndexingContext context : contexts) {
+      final ContextHits contextHits = new ContextHits(req, context, limit);
+      hits.add(contextHits);
+      futures.add(executor.submit(new Callable<Void>()
+      {
+        @Override
+        public Void call() throws IOException {
+          contextHits.fetch();
+          return null;
+        }
+      }));
+    }
+
+    // wait for all searches, even if some failed, as the caller unlocks the contexts once we return
+    Throwable failure = null;
+    for (Future<?> future : futures) {
+      try {
+        Uninterruptibles.getUninterruptibly(future);
+      }
+      catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      }
+    }
+    if (failure != null) {
+      Throwables.propagateIfPossible(failure, IOException.class);
+      throw new IOException(failure);
+    }
+
+    int totalHits = 0;
+    for (ContextHits contextHits : hits) {
+      totalHits += contextHits.totalHits;
+    }
+    return new IteratorSearchResponse(req.getQuery(), totalHits, new MergingIteratorResultSet(hits, start,
+        req.getCount(), req.getArtifactInfoFilter(), req.getArtifactInfoPostprocessor()));
+  }
+
+  private synchronized ExecutorService getSearchExecutor() {
+    if (searchExecutor == null) {
+      // direct hand-off: when all threads are busy, the caller searches the context itself
+      searchExecutor = NexusExecutorService.forCurrentSubject(
+          new ThreadPoolExecutor(0, searchThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+              new NexusThreadFactory("idxsearch", "Index search"), new CallerRunsPolicy()));
+    }
+    return searchExecutor;
+  }
+
+  /**
+   * Unfiltered hits of one indexing context, searched in batches of {@link #SEARCH_BATCH_SIZE} up to the limit of
+   * hits the request may need.
+   */
+  private class ContextHits
+      implements MergingIteratorResultSet.ContextHits
+  {
+    private final IteratorSearchRequest req;
+
+    private final IndexingContext context;
+
+    private final int limit;
+
+    private int offset;
+
+    private int totalHits;
+
+    private Iterator<ArtifactInfo> batch = Collections.<ArtifactInfo>emptyList().iterator();
+
+    private ContextHits(final IteratorSearchRequest req, final IndexingContext context, final int limit) {
+      this.req = req;
+      this.context = context;
+      this.limit = limit;
+    }
+
+    /**
+     * Searches the next batch of hits. The searcher is acquired and released by the calling thread.
+     */
+    private void fetch() throws IOException {
+      final int count = Math.min(SEARCH_BATCH_SIZE, limit - offset);
+      final IteratorSearchRequest batchReq = new IteratorSearchRequest(req.getQuery());
+      batchReq.getContexts().add(((LockingIndexingContext) context).unlocked());
+      batchReq.getMatchHighlightRequests().addAll(req.getMatchHighlightRequests());
+      batchReq.setStart(offset);
+      batchReq.setCount(count);
+      final IteratorSearchResponse response = mavenIndexer.searchIterator(batchReq);
+      try {
+        final List<ArtifactInfo> hits = new ArrayList<ArtifactInfo>(count);
+        for (ArtifactInfo ai : response.getResults()) {
+          hits.add(ai);
+        }
+        totalHits = response.getTotalHitsCount();
+        batch = hits.iterator();
+      }
+      finally {
+        response.close();
+      }
+      offset += count;
+    }
+
+    @Override
+    public IndexingContext getContext() {
+      return context;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!batch.hasNext() && offset < Math.min(limit, totalHits)) {
+        try {
+          fetch();
+        }
+        catch (IOException e) {
+          throw new IllegalStateException("Cannot fetch next ArtifactInfo!", e);
+        }
+      }
+      return batch.hasNext();
+    }
+
+    @Override
+    public ArtifactInfo next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return batch.next();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
   // ----------------------------------------------------------------------------
   // Query construction
   // ----------------------------------------------------------------------------
@@ -2414,6 +2797,8 @@ public class DefaultIndexerManager
       }
       finally {
         lock.unlock();
+        invalidateSha1Index(repository);
+        eventBus.post(new IndexUpdatedEvent(repository));
       }
     }
   }
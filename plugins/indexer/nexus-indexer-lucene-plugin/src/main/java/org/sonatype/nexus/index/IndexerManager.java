@@ -141,6 +141,15 @@ public interface IndexerManager
   Collection<ArtifactInfo> identifyArtifact(Field field, String data)
       throws IOException;
 
+  /**
+   * Identifies artifacts by their SHA1 checksums. Returns the artifacts found in repository indexes, keyed by passed
+   * in checksum, with empty collections for checksums not found.
+   *
+   * @since 3.0
+   */
+  Map<String, Collection<ArtifactInfo>> identifyArtifactsBySha1(Collection<String> sha1Checksums)
+      throws IOException;
+
   // ----------------------------------------------------------------------------
   // Combined searching
   // ----------------------------------------------------------------------------
@@ -55,6 +55,16 @@ class LockingIndexingContext
     this.lock = lock;
   }
 
+  /**
+   * Returns a view of this context that does not lock on IndexSearcher acquire/release, meant for threads working on
+   * behalf of a thread holding the lock for the whole duration of their work.
+   *
+   * @since 3.0
+   */
+  LockingIndexingContext unlocked() {
+    return new LockingIndexingContext(context, new MultiLock(Collections.<Lock>emptyList()));
+  }
+
   @Override
   public String getId() {
     return context.getId();
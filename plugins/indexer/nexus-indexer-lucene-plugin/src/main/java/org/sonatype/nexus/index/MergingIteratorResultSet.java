@@ -0,0 +1,169 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import javax.annotation.Nullable;
+
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.ArtifactInfoFilter;
+import org.apache.maven.index.ArtifactInfoPostprocessor;
+import org.apache.maven.index.IteratorResultSet;
+import org.apache.maven.index.context.IndexingContext;
+
+/**
+ * IteratorResultSet merging the hits of several searches, each ordered by descending score, into one sequence
+ * ordered by descending score. Hits of equal score are ordered as the searches were passed in. Hits are pulled from
+ * the searches lazily, and paging, filtering and postprocessing are applied to the merged sequence the same way
+ * as a single search over all the contexts does: start and count apply to the hits before filtering, and the filter
+ * and postprocessor are invoked by the iterating thread only, so stateful ones (like uniqueness filters) see every
+ * hit of every context.
+ *
+ * @since 3.0
+ */
+class MergingIteratorResultSet
+    implements IteratorResultSet
+{
+  /**
+   * Hits of one search, ordered by descending score, with the indexing context they come from.
+   */
+  interface ContextHits
+      extends Iterator<ArtifactInfo>
+  {
+    IndexingContext getContext();
+  }
+
+  private final PriorityQueue<Head> heads;
+
+  private final ArtifactInfoFilter filter;
+
+  private final ArtifactInfoPostprocessor postprocessor;
+
+  private int remaining;
+
+  private int processed;
+
+  private ArtifactInfo next;
+
+  public MergingIteratorResultSet(List<? extends ContextHits> hits, int start, int count,
+                                  @Nullable ArtifactInfoFilter filter,
+                                  @Nullable ArtifactInfoPostprocessor postprocessor)
+  {
+    this.heads = new PriorityQueue<Head>(Math.max(1, hits.size()));
+    for (int i = 0; i < hits.size(); i++) {
+      ContextHits contextHits = hits.get(i);
+      if (contextHits.hasNext()) {
+        heads.add(new Head(i, contextHits));
+      }
+    }
+    for (int i = 0; i < start && !heads.isEmpty(); i++) {
+      poll();
+    }
+    this.filter = filter;
+    this.postprocessor = postprocessor;
+    this.remaining = count;
+    this.next = advance();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return next != null;
+  }
+
+  @Override
+  public ArtifactInfo next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    ArtifactInfo result = next;
+    next = advance();
+    return result;
+  }
+
+  /**
+   * Returns the next accepted hit within the requested page, or {@code null} if there is none.
+   */
+  private ArtifactInfo advance() {
+    while (remaining > 0 && !heads.isEmpty()) {
+      remaining--;
+      processed++;
+      IndexingContext context = heads.peek().hits.getContext();
+      ArtifactInfo ai = poll();
+      if (filter != null && !filter.accepts(context, ai)) {
+        continue;
+      }
+      if (postprocessor != null) {
+        postprocessor.postprocess(context, ai);
+      }
+      return ai;
+    }
+    return null;
+  }
+
+  private ArtifactInfo poll() {
+    Head head = heads.poll();
+    ArtifactInfo result = head.current;
+    if (head.hits.hasNext()) {
+      head.current = head.hits.next();
+      heads.add(head);
+    }
+    return result;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Iterator<ArtifactInfo> iterator() {
+    return this;
+  }
+
+  @Override
+  public void close() {
+    heads.clear();
+    next = null;
+  }
+
+  @Override
+  public int getTotalProcessedArtifactInfoCount() {
+    return processed;
+  }
+
+  private static class Head
+      implements Comparable<Head>
+  {
+    private final int index;
+
+    private final ContextHits hits;
+
+    private ArtifactInfo current;
+
+    private Head(int index, ContextHits hits) {
+      this.index = index;
+      this.hits = hits;
+      this.current = hits.next();
+    }
+
+    @Override
+    public int compareTo(Head o) {
+      int result = Float.compare(o.current.getLuceneScore(), current.getLuceneScore());
+      return result != 0 ? result : (index < o.index ? -1 : (index == o.index ? 0 : 1));
+    }
+  }
+}
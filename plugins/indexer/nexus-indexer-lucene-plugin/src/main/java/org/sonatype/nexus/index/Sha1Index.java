@@ -0,0 +1,756 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.io.BaseEncoding;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.context.IndexUtils;
+import org.apache.maven.index.context.IndexingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hash index of an indexing context, mapping SHA1 checksums to references of the artifacts having them, so artifacts
+ * are identified without querying Lucene. The hash table is an open addressing table in a memory mapped file, each
+ * slot holding the 20 bytes of a SHA1 and the offset of its first GAV reference. GAV references of a SHA1 are a
+ * linked list of records in a data file, each record holding the packed coordinates of an artifact (see
+ * {@link #pack(ArtifactInfo)}).
+ * <p>
+ * The index is updated as single artifacts are added to or removed from the context, but bulk changes of the context
+ * (reindex, update from remote index) are not tracked: the index is built from the context on first use, and rebuilt
+ * after being invalidated by a bulk change. The index is not persisted, its files are recreated when opened. Removed
+ * references are left as garbage in the data file until the next rebuild.
+ * <p>
+ * A build scans a snapshot of the context into a fresh table without holding the lock of the index, and swaps it in
+ * once done. Single artifact changes of the context must be bracketed by {@link #beginChange()} and
+ * {@link #endChange()}: the snapshot is taken once the changes in flight are done, and changes begun later are queued
+ * while the build scans, to be replayed on the fresh table before it is swapped in. A build is discarded if the index
+ * was invalidated meanwhile.
+ *
+ * @since 3.0
+ */
+class Sha1Index
+    implements Closeable
+{
+  private static final Logger log = LoggerFactory.getLogger(Sha1Index.class);
+
+  private static final int SHA1_LENGTH = 20;
+
+  /**
+   * Slot: SHA1 bytes followed by offset of the first GAV reference record.
+   */
+  private static final int SLOT_SIZE = SHA1_LENGTH + 8;
+
+  /**
+   * Record: offset of next record, length of packed GAV reference, packed GAV reference bytes.
+   */
+  private static final int RECORD_HEADER_SIZE = 8 + 2;
+
+  private static final int MIN_CAPACITY = 1024;
+
+  /**
+   * Largest capacity whose table fits into a single mapped buffer.
+   */
+  private static final int MAX_CAPACITY = 1 << 26;
+
+  /**
+   * Offset stored in slots never used.
+   */
+  private static final long EMPTY = 0;
+
+  /**
+   * Offset stored in slots whose GAV references were all removed, and terminating record lists. The data file starts
+   * with a header, hence no record is stored at this offset.
+   */
+  private static final long NONE = -1;
+
+  private static final long DATA_HEADER = 0x5348413149445831L; // "SHA1IDX1"
+
+  private static final String FS = "|";
+
+  /**
+   * Fields needed to reconstruct the coordinates of an artifact and its checksum, loading all stored fields (like the
+   * classnames) would make the build much slower.
+   */
+  private static final FieldSelector BUILD_FIELDS = new MapFieldSelector(ArtifactInfo.UINFO, ArtifactInfo.INFO,
+      ArtifactInfo.SHA1);
+
+  private final File directory;
+
+  private final String name;
+
+  /**
+   * Guards the table, the queue of pending changes and the invalidation count.
+   */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Shared by single artifact changes of the context in flight, exclusively held by a build taking its snapshot.
+   */
+  private final ReadWriteLock changeLock = new ReentrantReadWriteLock();
+
+  /**
+   * Serializes builds.
+   */
+  private final Object buildLock = new Object();
+
+  private volatile boolean built;
+
+  private volatile boolean building;
+
+  /**
+   * The table in sync with the context, or {@code null} if the index is not built.
+   */
+  private Table table;
+
+  /**
+   * Changes begun while a build scans, or {@code null} if no build is scanning.
+   */
+  private List<Change> pending;
+
+  private long invalidations;
+
+  /**
+   * Distinguishes the files of successive tables, guarded by {@link #buildLock}.
+   */
+  private int generation;
+
+  public Sha1Index(final File directory, final String name) {
+    this.directory = directory;
+    this.name = name;
+    deleteFiles();
+  }
+
+  /**
+   * Returns {@code true} if the index is built, and is in sync with the context.
+   */
+  public boolean isBuilt() {
+    return built;
+  }
+
+  /**
+   * Begins a single artifact change of the context. Returns {@code true} if the index is built or being built, hence
+   * the change is to be applied to it using {@link #add(String, ArtifactInfo)} and
+   * {@link #remove(String, ArtifactInfo)}. Must be followed by {@link #endChange()} once the change is done, in all
+   * cases.
+   */
+  public boolean beginChange() {
+    changeLock.readLock().lock();
+    return built || building;
+  }
+
+  /**
+   * Ends a change begun with {@link #beginChange()}.
+   */
+  public void endChange() {
+    changeLock.readLock().unlock();
+  }
+
+  /**
+   * Marks the index as out of sync with the context, to be rebuilt on next use. A build in progress is discarded.
+   */
+  public void invalidate() {
+    lock.writeLock().lock();
+    try {
+      invalidations++;
+      discardTable();
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Builds the index from the artifacts of the passed in context, unless it is built already. Neither changes of the
+   * index nor lookups wait for the scan of the context. The caller must keep the context open while the index is
+   * built.
+   */
+  public void build(final IndexingContext context) throws IOException {
+    synchronized (buildLock) {
+      final long started = System.currentTimeMillis();
+      final long snapshotInvalidations;
+      final IndexSearcher searcher;
+      // changes in flight are waited for, so the snapshot of the context includes them
+      changeLock.writeLock().lock();
+      try {
+        lock.writeLock().lock();
+        try {
+          if (built) {
+            return;
+          }
+          building = true;
+          pending = new ArrayList<>();
+          snapshotInvalidations = invalidations;
+        }
+        finally {
+          lock.writeLock().unlock();
+        }
+        try {
+          searcher = context.acquireIndexSearcher();
+        }
+        catch (IOException | RuntimeException e) {
+          swap(null, snapshotInvalidations);
+          throw e;
+        }
+      }
+      finally {
+        changeLock.writeLock().unlock();
+      }
+
+      // changes begun from now on are queued, to be replayed on the fresh table
+      Table fresh = null;
+      try {
+        try {
+          fresh = scan(context, searcher);
+        }
+        finally {
+          context.releaseIndexSearcher(searcher);
+        }
+      }
+      catch (IOException | RuntimeException e) {
+        if (fresh != null) {
+          fresh.close();
+        }
+        swap(null, snapshotInvalidations);
+        throw e;
+      }
+      if (swap(fresh, snapshotInvalidations)) {
+        log.debug("Built SHA1 index {} with {} checksums in {} ms", name, fresh.size,
+            System.currentTimeMillis() - started);
+      }
+      else {
+        log.debug("Discarded SHA1 index {} invalidated while built", name);
+      }
+    }
+  }
+
+  /**
+   * Adds a GAV reference for the passed in SHA1, if index is built or being built.
+   */
+  public void add(final String sha1, final ArtifactInfo ai) throws IOException {
+    change(sha1, ai, true);
+  }
+
+  /**
+   * Removes a GAV reference of the passed in SHA1, if index is built or being built.
+   */
+  public void remove(final String sha1, final ArtifactInfo ai) throws IOException {
+    change(sha1, ai, false);
+  }
+
+  /**
+   * Returns the GAV references of the passed in SHA1, or {@code null} if the index is not built.
+   */
+  @Nullable
+  public List<String> lookup(final String sha1) throws IOException {
+    lock.readLock().lock();
+    try {
+      if (table == null) {
+        return null;
+      }
+      final byte[] bytes = decode(sha1);
+      if (bytes == null) {
+        return Collections.emptyList();
+      }
+      return table.lookup(bytes);
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    lock.writeLock().lock();
+    try {
+      invalidations++;
+      discardTable();
+      deleteFiles();
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // ==
+
+  /**
+   * Packs the coordinates of an artifact into a GAV reference.
+   */
+  static String pack(final ArtifactInfo ai) {
+    return Joiner.on(FS).join(Strings.nullToEmpty(ai.groupId), Strings.nullToEmpty(ai.artifactId),
+        Strings.nullToEmpty(ai.version), Strings.nullToEmpty(ai.classifier), Strings.nullToEmpty(ai.packaging),
+        Strings.nullToEmpty(ai.fextension));
+  }
+
+  /**
+   * Unpacks a GAV reference into an artifact info carrying the coordinates of the artifact.
+   */
+  static ArtifactInfo unpack(final String ref) {
+    final List<String> fields = Splitter.on(FS).splitToList(ref);
+    final ArtifactInfo ai = new ArtifactInfo();
+    ai.groupId = Strings.emptyToNull(fields.get(0));
+    ai.artifactId = Strings.emptyToNull(fields.get(1));
+    ai.version = Strings.emptyToNull(fields.get(2));
+    ai.classifier = Strings.emptyToNull(fields.get(3));
+    ai.packaging = Strings.emptyToNull(fields.get(4));
+    ai.fextension = Strings.emptyToNull(fields.get(5));
+    return ai;
+  }
+
+  /**
+   * Returns {@code true} if both GAV references have same groupId, artifactId, version and classifier. Packaging and
+   * extension are not compared, as they are not reliably reconstructed from index documents.
+   */
+  private static boolean sameArtifact(final String ref1, final String ref2) {
+    final int end = gavcEnd(ref1);
+    return end == gavcEnd(ref2) && ref1.regionMatches(0, ref2, 0, end);
+  }
+
+  private static int gavcEnd(final String ref) {
+    int end = -1;
+    for (int i = 0; i < 4; i++) {
+      end = ref.indexOf(FS, end + 1);
+    }
+    return end;
+  }
+
+  @Nullable
+  private static byte[] decode(@Nullable final String sha1) {
+    if (sha1 == null || sha1.length() != SHA1_LENGTH * 2) {
+      return null;
+    }
+    try {
+      return BaseEncoding.base16().lowerCase().decode(sha1.toLowerCase());
+    }
+    catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private void change(final String sha1, final ArtifactInfo ai, final boolean add) throws IOException {
+    final byte[] bytes = decode(sha1);
+    if (bytes == null) {
+      return;
+    }
+    final Change change = new Change(bytes, pack(ai), add);
+    lock.writeLock().lock();
+    try {
+      if (pending != null) {
+        pending.add(change);
+      }
+      else if (table != null) {
+        change.applyTo(table);
+      }
+    }
+    catch (IOException e) {
+      discardTable();
+      throw e;
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Scans the artifacts of the snapshot of the context into a fresh table.
+   */
+  private Table scan(final IndexingContext context, final IndexSearcher searcher) throws IOException {
+    final IndexReader reader = searcher.getIndexReader();
+    final Table fresh = new Table(++generation, reader.numDocs());
+    boolean scanned = false;
+    try {
+      for (int i = 0; i < reader.maxDoc(); i++) {
+        if (reader.isDeleted(i)) {
+          continue;
+        }
+        final Document doc = reader.document(i, BUILD_FIELDS);
+        if (doc.get(ArtifactInfo.UINFO) == null) {
+          // descriptor and groups documents
+          continue;
+        }
+        final byte[] sha1 = decode(doc.get(ArtifactInfo.SHA1));
+        if (sha1 != null) {
+          final ArtifactInfo ai = IndexUtils.constructArtifactInfo(doc, context);
+          if (ai != null) {
+            fresh.add(sha1, pack(ai));
+          }
+        }
+      }
+      scanned = true;
+      return fresh;
+    }
+    finally {
+      if (!scanned) {
+        fresh.close();
+      }
+    }
+  }
+
+  /**
+   * Ends a build: replays the queued changes on the fresh table and swaps it in, unless the build failed (fresh table
+   * is {@code null}) or the index was invalidated since the snapshot. Returns {@code true} if the table was swapped in.
+   */
+  private boolean swap(@Nullable Table fresh, final long snapshotInvalidations) throws IOException {
+    lock.writeLock().lock();
+    try {
+      if (fresh != null && invalidations == snapshotInvalidations) {
+        for (Change change : pending) {
+          change.applyTo(fresh);
+        }
+        discardTable();
+        table = fresh;
+        fresh = null;
+        built = true;
+        return true;
+      }
+      return false;
+    }
+    finally {
+      pending = null;
+      building = false;
+      lock.writeLock().unlock();
+      if (fresh != null) {
+        fresh.close();
+      }
+    }
+  }
+
+  private void discardTable() {
+    built = false;
+    if (table != null) {
+      table.close();
+      table = null;
+    }
+  }
+
+  private void deleteFiles() {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory.toPath(), name + "-sha1*")) {
+      for (Path file : files) {
+        delete(file.toFile());
+      }
+    }
+    catch (IOException e) {
+      log.debug("Could not list SHA1 index files of {}", name, e);
+    }
+  }
+
+  private void delete(final File file) {
+    try {
+      Files.deleteIfExists(file.toPath());
+    }
+    catch (IOException e) {
+      // a file still mapped cannot be deleted on some platforms, it is deleted when index is reopened
+      log.debug("Could not delete SHA1 index file {}", file, e);
+    }
+  }
+
+  /**
+   * Hash table and data file of one build of the index.
+   */
+  private class Table
+  {
+    private final String prefix;
+
+    private final File dataFileName;
+
+    private final RandomAccessFile dataFile;
+
+    private File tableFile;
+
+    private MappedByteBuffer table;
+
+    private int capacity;
+
+    private int size;
+
+    private long dataEnd;
+
+    /**
+     * Creates empty files for the passed in expected count of checksums.
+     */
+    Table(final int generation, final int expectedSize) throws IOException {
+      this.prefix = name + "-sha1-" + generation;
+      int initialCapacity = MIN_CAPACITY;
+      while (initialCapacity < MAX_CAPACITY && initialCapacity / 2 < expectedSize) {
+        initialCapacity *= 2;
+      }
+      this.dataFileName = new File(directory, prefix + ".dat");
+      this.dataFile = new RandomAccessFile(dataFileName, "rw");
+      try {
+        dataFile.setLength(0);
+        final ByteBuffer header = ByteBuffer.allocate(8);
+        header.putLong(DATA_HEADER).flip();
+        writeFully(header, 0);
+        dataEnd = 8;
+        createTable(initialCapacity);
+      }
+      catch (IOException e) {
+        close();
+        throw e;
+      }
+    }
+
+    List<String> lookup(final byte[] sha1) throws IOException {
+      final int slot = slotOf(sha1);
+      final List<String> result = new ArrayList<>(1);
+      long offset = head(slot);
+      while (offset != EMPTY && offset != NONE) {
+        final Record record = readRecord(offset);
+        result.add(record.ref);
+        offset = record.next;
+      }
+      return result;
+    }
+
+    void add(final byte[] sha1, final String ref) throws IOException {
+      int slot = slotOf(sha1);
+      long head = head(slot);
+      if (head == EMPTY) {
+        if (size + 1 > (capacity < MAX_CAPACITY ? capacity / 2 : capacity / 4 * 3)) {
+          grow();
+          slot = slotOf(sha1);
+        }
+        for (int i = 0; i < SHA1_LENGTH; i++) {
+          table.put(slot * SLOT_SIZE + i, sha1[i]);
+        }
+        size++;
+        head = NONE;
+      }
+      else {
+        for (long offset = head; offset != NONE; ) {
+          final Record record = readRecord(offset);
+          if (sameArtifact(record.ref, ref)) {
+            return;
+          }
+          offset = record.next;
+        }
+      }
+      setHead(slot, appendRecord(head, ref));
+    }
+
+    void remove(final byte[] sha1, final String ref) throws IOException {
+      final int slot = slotOf(sha1);
+      long previous = NONE;
+      long offset = head(slot);
+      while (offset != EMPTY && offset != NONE) {
+        final Record record = readRecord(offset);
+        if (sameArtifact(record.ref, ref)) {
+          if (previous == NONE) {
+            setHead(slot, record.next);
+          }
+          else {
+            writeNext(previous, record.next);
+          }
+          return;
+        }
+        previous = offset;
+        offset = record.next;
+      }
+    }
+
+    void close() {
+      table = null;
+      try {
+        dataFile.close();
+      }
+      catch (IOException e) {
+        log.debug("Could not close SHA1 index file {}", dataFileName, e);
+      }
+      delete(dataFileName);
+      if (tableFile != null) {
+        delete(tableFile);
+      }
+    }
+
+    /**
+     * Returns the slot of the passed in SHA1: either the slot holding it, or the empty slot where it belongs.
+     */
+    private int slotOf(final byte[] sha1) {
+      // SHA1 bytes are uniformly distributed, no need to hash them further
+      int slot = ByteBuffer.wrap(sha1).getInt() & (capacity - 1);
+      while (head(slot) != EMPTY && !matches(slot, sha1)) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      return slot;
+    }
+
+    private boolean matches(final int slot, final byte[] sha1) {
+      final int position = slot * SLOT_SIZE;
+      for (int i = 0; i < SHA1_LENGTH; i++) {
+        if (table.get(position + i) != sha1[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private long head(final int slot) {
+      return table.getLong(slot * SLOT_SIZE + SHA1_LENGTH);
+    }
+
+    private void setHead(final int slot, final long offset) {
+      table.putLong(slot * SLOT_SIZE + SHA1_LENGTH, offset);
+    }
+
+    /**
+     * Doubles the capacity of the hash table, moving all the slots into a new table.
+     */
+    private void grow() throws IOException {
+      if (capacity >= MAX_CAPACITY) {
+        throw new IOException("SHA1 index " + name + " is full");
+      }
+      final File oldTableFile = tableFile;
+      final MappedByteBuffer oldTable = table;
+      final int oldCapacity = capacity;
+      createTable(capacity * 2);
+      final byte[] sha1 = new byte[SHA1_LENGTH];
+      for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+        final long head = oldTable.getLong(oldSlot * SLOT_SIZE + SHA1_LENGTH);
+        if (head != EMPTY) {
+          for (int i = 0; i < SHA1_LENGTH; i++) {
+            sha1[i] = oldTable.get(oldSlot * SLOT_SIZE + i);
+          }
+          final int slot = slotOf(sha1);
+          for (int i = 0; i < SHA1_LENGTH; i++) {
+            table.put(slot * SLOT_SIZE + i, sha1[i]);
+          }
+          setHead(slot, head);
+        }
+      }
+      delete(oldTableFile);
+    }
+
+    private void createTable(final int newCapacity) throws IOException {
+      final File file = new File(directory, prefix + "-" + newCapacity + ".tbl");
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        raf.setLength(0);
+        raf.setLength((long) newCapacity * SLOT_SIZE);
+        // mapping stays valid once the file is closed
+        table = raf.getChannel().map(MapMode.READ_WRITE, 0, (long) newCapacity * SLOT_SIZE);
+      }
+      tableFile = file;
+      capacity = newCapacity;
+    }
+
+    private long appendRecord(final long next, final String ref) throws IOException {
+      final byte[] bytes = ref.getBytes(Charsets.UTF_8);
+      final ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + bytes.length);
+      buffer.putLong(next).putShort((short) bytes.length).put(bytes).flip();
+      final long offset = dataEnd;
+      writeFully(buffer, offset);
+      dataEnd += RECORD_HEADER_SIZE + bytes.length;
+      return offset;
+    }
+
+    private void writeNext(final long offset, final long next) throws IOException {
+      final ByteBuffer buffer = ByteBuffer.allocate(8);
+      buffer.putLong(next).flip();
+      writeFully(buffer, offset);
+    }
+
+    private Record readRecord(final long offset) throws IOException {
+      final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+      readFully(header, offset);
+      header.flip();
+      final long next = header.getLong();
+      final ByteBuffer bytes = ByteBuffer.allocate(header.getShort() & 0xffff);
+      readFully(bytes, offset + RECORD_HEADER_SIZE);
+      return new Record(next, new String(bytes.array(), Charsets.UTF_8));
+    }
+
+    private void readFully(final ByteBuffer buffer, final long offset) throws IOException {
+      final FileChannel channel = dataFile.getChannel();
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, offset + buffer.position()) < 0) {
+          throw new EOFException("Truncated SHA1 index " + name);
+        }
+      }
+    }
+
+    private void writeFully(final ByteBuffer buffer, final long offset) throws IOException {
+      final FileChannel channel = dataFile.getChannel();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, offset + buffer.position());
+      }
+    }
+  }
+
+  /**
+   * Single artifact change of the context.
+   */
+  private static class Change
+  {
+    final byte[] sha1;
+
+    final String ref;
+
+    final boolean add;
+
+    Change(final byte[] sha1, final String ref, final boolean add) {
+      this.sha1 = sha1;
+      this.ref = ref;
+      this.add = add;
+    }
+
+    void applyTo(final Table table) throws IOException {
+      if (add) {
+        table.add(sha1, ref);
+      }
+      else {
+        table.remove(sha1, ref);
+      }
+    }
+  }
+
+  private static class Record
+  {
+    final long next;
+
+    final String ref;
+
+    Record(final long next, final String ref) {
+      this.next = next;
+      this.ref = ref;
+    }
+  }
+}
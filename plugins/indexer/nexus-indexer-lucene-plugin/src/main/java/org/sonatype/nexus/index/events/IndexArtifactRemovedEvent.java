@@ -0,0 +1,41 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index.events;
+
+import org.sonatype.nexus.proxy.events.RepositoryEvent;
+import org.sonatype.nexus.proxy.repository.Repository;
+
+import org.apache.maven.index.ArtifactInfo;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Event fired when an artifact was removed from the index of a repository, as a result of an item being deleted from
+ * the repository.
+ *
+ * @since 3.0
+ */
+public class IndexArtifactRemovedEvent
+    extends RepositoryEvent
+{
+  private final ArtifactInfo artifactInfo;
+
+  public IndexArtifactRemovedEvent(final Repository repository, final ArtifactInfo artifactInfo) {
+    super(repository);
+    this.artifactInfo = checkNotNull(artifactInfo);
+  }
+
+  public ArtifactInfo getArtifactInfo() {
+    return artifactInfo;
+  }
+}
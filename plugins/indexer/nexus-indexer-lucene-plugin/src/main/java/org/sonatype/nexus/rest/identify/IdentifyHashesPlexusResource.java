@@ -0,0 +1,150 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.rest.identify;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import org.sonatype.nexus.index.IndexerManager;
+import org.sonatype.nexus.rest.index.AbstractIndexerNexusPlexusResource;
+import org.sonatype.nexus.rest.model.IdentifiedHash;
+import org.sonatype.nexus.rest.model.IdentifyHashesRequest;
+import org.sonatype.nexus.rest.model.IdentifyHashesResponse;
+import org.sonatype.nexus.rest.model.NexusArtifact;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
+
+import org.apache.maven.index.ArtifactInfo;
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.ResourceException;
+
+/**
+ * Resource that is able to identify Nexus Artifacts for many hashes at once. The used hash algorithm is coming from
+ * request attributes, and is mapped from URL, while the hashes are sent in request body. Recognized algorithm:
+ * "sha1".
+ *
+ * @since 3.0
+ */
+@Path(IdentifyHashesPlexusResource.RESOURCE_URI)
+@Produces({"application/xml", "application/json"})
+@Consumes({"application/xml", "application/json"})
+@Named("IdentifyHashesPlexusResource")
+@Singleton
+public class IdentifyHashesPlexusResource
+    extends AbstractIndexerNexusPlexusResource
+{
+  public static final String ALGORITHM_KEY = "algorithm";
+
+  public static final String RESOURCE_URI = "/identify/{" + ALGORITHM_KEY + "}";
+
+  /**
+   * Maximum count of hashes accepted in one request.
+   */
+  private static final int MAX_HASHES = SystemPropertiesHelper.getInteger(
+      IdentifyHashesPlexusResource.class.getName() + ".maxHashes", 10000);
+
+  private final IndexerManager indexerManager;
+
+  @Inject
+  public IdentifyHashesPlexusResource(final IndexerManager indexerManager) {
+    this.indexerManager = indexerManager;
+    this.setModifiable(true);
+  }
+
+  @Override
+  public Object getPayloadInstance() {
+    return new IdentifyHashesRequest();
+  }
+
+  @Override
+  public String getResourceUri() {
+    return RESOURCE_URI;
+  }
+
+  @Override
+  public PathProtectionDescriptor getResourceProtection() {
+    return new PathProtectionDescriptor("/identify/*", "authcBasic,perms[nexus:identify]");
+  }
+
+  /**
+   * Retrieve artifact details for a list of hash values. Every hash of the request is present in the response, with
+   * an empty artifact list when not found.
+   *
+   * @param algorithm The hash algorithm (only sha1 is supported).
+   */
+  @Override
+  @POST
+  public IdentifyHashesResponse post(Context context, Request request, Response response, Object payload)
+      throws ResourceException
+  {
+    String alg = request.getAttributes().get(ALGORITHM_KEY).toString();
+
+    if (!"sha1".equalsIgnoreCase(alg)) {
+      throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, "Unsupported hash algorithm: " + alg);
+    }
+
+    IdentifyHashesRequest identifyRequest = (IdentifyHashesRequest) payload;
+
+    Set<String> hashes = new LinkedHashSet<String>();
+    if (identifyRequest != null && identifyRequest.getData() != null) {
+      for (String hash : identifyRequest.getData()) {
+        if (hash != null && hash.trim().length() > 0) {
+          hashes.add(hash.trim());
+        }
+      }
+    }
+
+    if (hashes.size() > MAX_HASHES) {
+      throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST,
+          "Too many hashes in request: " + hashes.size() + " (maximum is " + MAX_HASHES + ")");
+    }
+
+    try {
+      Map<String, Collection<ArtifactInfo>> identified = indexerManager.identifyArtifactsBySha1(hashes);
+
+      IdentifyHashesResponse result = new IdentifyHashesResponse();
+
+      for (String hash : hashes) {
+        Collection<ArtifactInfo> ais = identified.get(hash);
+
+        IdentifiedHash identifiedHash = new IdentifiedHash();
+        identifiedHash.setHash(hash);
+        identifiedHash.setArtifacts(new ArrayList<NexusArtifact>(
+            ai2NaColl(request, ais != null ? ais : Collections.<ArtifactInfo>emptyList())));
+
+        result.addData(identifiedHash);
+      }
+
+      return result;
+    }
+    catch (IOException e) {
+      throw new ResourceException(Status.SERVER_ERROR_INTERNAL, "IOException during hashes identification!", e);
+    }
+  }
+}
@@ -140,9 +140,12 @@ public class SearchNGIndexPlexusResource
 
   private final List<Searcher> searchers;
 
+  private final SearchNGResponseCache responseCache;
+
   @Inject
-  public SearchNGIndexPlexusResource(final List<Searcher> searchers) {
+  public SearchNGIndexPlexusResource(final List<Searcher> searchers, final SearchNGResponseCache responseCache) {
     this.searchers = searchers;
+    this.responseCache = responseCache;
   }
 
   @Override
@@ -240,6 +243,13 @@ public class SearchNGIndexPlexusResource
 
     boolean forceExpand = expandVersion || !collapseResults;
 
+    final SearchNGResponseCache.Key cacheKey = responseCache.key(terms, repositoryId, from, count, exact,
+        forceExpand, String.valueOf(request.getRootRef()));
+    final SearchNGResponse cachedResponse = responseCache.get(cacheKey);
+    if (cachedResponse != null) {
+      return cachedResponse;
+    }
+
     try {
       try {
         IteratorSearchResponse searchResult =
@@ -250,6 +260,7 @@ public class SearchNGIndexPlexusResource
           searchResponse.setTotalCount(searchResult.getTotalHitsCount());
           searchResponse.setFrom(from == null ? -1 : from.intValue());
           searchResponse.setCount(count == LUCENE_HIT_LIMIT ? -1 : count);
+          responseCache.put(cacheKey, searchResponse);
           return searchResponse;
         }
         finally {
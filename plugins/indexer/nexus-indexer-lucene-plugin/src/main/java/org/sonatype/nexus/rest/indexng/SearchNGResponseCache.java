@@ -0,0 +1,266 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.rest.indexng;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.events.EventSubscriber;
+import org.sonatype.nexus.index.events.IndexUpdatedEvent;
+import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryConfigurationUpdatedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryGroupMembersChangedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventAdd;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.rest.model.SearchNGResponse;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.security.SecuritySystem;
+import org.sonatype.security.events.AuthorizationConfigurationChanged;
+import org.sonatype.security.events.SecurityConfigurationChanged;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.Subject;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Short-lived cache of SearchNG responses, as the type-ahead of UI fires many near-identical queries. Responses are
+ * keyed by the subject principals (results are filtered by permissions of the subject), the normalized query, the
+ * searched repository, the paging and expansion parameters, and the index generation. The generation is bumped, and
+ * the cache flushed, whenever an index is updated or reindexed, and whenever the set of searched repositories or the
+ * security configuration may have changed. Single artifacts added to or removed from index do not flush the cache,
+ * their staleness is bounded by the time-to-live of entries.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class SearchNGResponseCache
+    extends ComponentSupport
+    implements EventSubscriber
+{
+  /**
+   * Maximum count of cached responses, 0 disables the cache.
+   */
+  private static final int CACHE_SIZE = SystemPropertiesHelper.getInteger("plexus.search.ga.cache.size", 200);
+
+  /**
+   * Time-to-live of cached responses in seconds.
+   */
+  private static final int CACHE_TTL = SystemPropertiesHelper.getInteger("plexus.search.ga.cache.ttl", 30);
+
+  /**
+   * Query parameter added by UI to defeat HTTP caching, not affecting the search.
+   */
+  private static final String CACHE_BUSTER_PARAMETER = "_dc";
+
+  private final SecuritySystem securitySystem;
+
+  private final Cache<Key, SearchNGResponse> cache;
+
+  private final AtomicLong generation;
+
+  @Inject
+  public SearchNGResponseCache(final SecuritySystem securitySystem) {
+    this(securitySystem, CACHE_SIZE, CACHE_TTL);
+  }
+
+  @VisibleForTesting
+  SearchNGResponseCache(final SecuritySystem securitySystem, final int cacheSize, final int cacheTtl) {
+    this.securitySystem = checkNotNull(securitySystem);
+    if (cacheSize > 0) {
+      this.cache = CacheBuilder.newBuilder()
+          .maximumSize(cacheSize)
+          .expireAfterWrite(cacheTtl, TimeUnit.SECONDS)
+          .build();
+    }
+    else {
+      this.cache = null;
+    }
+    this.generation = new AtomicLong();
+  }
+
+  /**
+   * Returns the key of a search of current subject with given parameters, or {@code null} if the search is not
+   * cacheable.
+   */
+  @Nullable
+  public Key key(final Map<String, String> terms, final String repositoryId, final Integer from, final int count,
+                 final Boolean exact, final boolean forceExpand, final String rootRef)
+  {
+    if (cache == null) {
+      return null;
+    }
+    final Subject subject = securitySystem.getSubject();
+    final PrincipalCollection principals = subject != null ? subject.getPrincipals() : null;
+    if (principals == null || principals.isEmpty()) {
+      return null;
+    }
+    final SortedMap<String, String> query = new TreeMap<>(terms);
+    query.remove(CACHE_BUSTER_PARAMETER);
+    return new Key(principals, query, repositoryId, from, count, exact, forceExpand, rootRef, generation.get());
+  }
+
+  @Nullable
+  public SearchNGResponse get(final @Nullable Key key) {
+    return key != null ? cache.getIfPresent(key) : null;
+  }
+
+  public void put(final @Nullable Key key, final SearchNGResponse response) {
+    if (key != null) {
+      cache.put(key, response);
+    }
+  }
+
+  // == Invalidation
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final IndexUpdatedEvent evt) {
+    invalidate();
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryConfigurationUpdatedEvent evt) {
+    invalidate();
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryGroupMembersChangedEvent evt) {
+    invalidate();
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryRegistryEventAdd evt) {
+    invalidate();
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryRegistryEventRemove evt) {
+    invalidate();
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final AuthorizationConfigurationChanged evt) {
+    invalidate();
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final SecurityConfigurationChanged evt) {
+    invalidate();
+  }
+
+  @Subscribe
+  public void on(final NexusStoppedEvent evt) {
+    invalidate();
+  }
+
+  /**
+   * Bumps the index generation, so responses of searches running meanwhile are cached under keys never looked up
+   * again, and flushes the cache.
+   */
+  @VisibleForTesting
+  void invalidate() {
+    generation.incrementAndGet();
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+
+  // ==
+
+  /**
+   * Key of a cached response.
+   */
+  public static class Key
+  {
+    private final PrincipalCollection principals;
+
+    private final SortedMap<String, String> query;
+
+    private final String repositoryId;
+
+    private final Integer from;
+
+    private final int count;
+
+    private final Boolean exact;
+
+    private final boolean forceExpand;
+
+    private final String rootRef;
+
+    private final long generation;
+
+    private Key(final PrincipalCollection principals, final SortedMap<String, String> query,
+                final String repositoryId, final Integer from, final int count, final Boolean exact,
+                final boolean forceExpand, final String rootRef, final long generation)
+    {
+      this.principals = principals;
+      this.query = query;
+      this.repositoryId = repositoryId;
+      this.from = from;
+      this.count = count;
+      this.exact = exact;
+      this.forceExpand = forceExpand;
+      this.rootRef = rootRef;
+      this.generation = generation;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final Key that = (Key) o;
+      return count == that.count
+          && forceExpand == that.forceExpand
+          && generation == that.generation
+          && principals.equals(that.principals)
+          && query.equals(that.query)
+          && Objects.equals(repositoryId, that.repositoryId)
+          && Objects.equals(from, that.from)
+          && Objects.equals(exact, that.exact)
+          && Objects.equals(rootRef, that.rootRef);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(principals, query, repositoryId, from, count, exact, forceExpand, rootRef, generation);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.maven.MavenRepository;
+
+import org.apache.lucene.search.Query;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.ArtifactInfoFilter;
+import org.apache.maven.index.IteratorSearchResponse;
+import org.apache.maven.index.MAVEN;
+import org.apache.maven.index.SearchType;
+import org.apache.maven.index.UniqueArtifactFilterPostprocessor;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+/**
+ * Searches spanning several indexing contexts, searched concurrently.
+ */
+public class ConcurrentSearchIndexerManagerTest
+    extends AbstractIndexerManagerTest
+{
+  private void deployPom(final MavenRepository repository, final String version) throws Exception {
+    final String pom = "<project><modelVersion>4.0.0</modelVersion><groupId>org.sonatype.concurrent</groupId>"
+        + "<artifactId>merged</artifactId><version>" + version + "</version><packaging>pom</packaging></project>";
+    repository.storeItem(
+        new ResourceStoreRequest("/org/sonatype/concurrent/merged/" + version + "/merged-" + version + ".pom"),
+        new ByteArrayInputStream(pom.getBytes("UTF-8")), null);
+  }
+
+  private List<ArtifactInfo> search(final List<ArtifactInfoFilter> filters, final int count) throws Exception {
+    final Query query = indexerManager.constructQuery(MAVEN.GROUP_ID, "org.sonatype.concurrent", SearchType.EXACT);
+    final IteratorSearchResponse response =
+        indexerManager.searchQueryIterator(query, null, 0, count, null, false, filters);
+    try {
+      assertThat(response.getTotalHitsCount(), equalTo(2));
+      final List<ArtifactInfo> result = new ArrayList<ArtifactInfo>();
+      for (ArtifactInfo ai : response) {
+        result.add(ai);
+      }
+      return result;
+    }
+    finally {
+      response.close();
+    }
+  }
+
+  @Test
+  public void mergesHitsOfAllContexts() throws Exception {
+    deployPom(releases, "1.0");
+    deployPom(snapshots, "1.1-SNAPSHOT");
+    wairForAsyncEventsToCalmDown();
+
+    final List<String> versions = new ArrayList<String>();
+    for (ArtifactInfo ai : search(null, 10)) {
+      versions.add(ai.version);
+    }
+    assertThat(versions, containsInAnyOrder("1.0", "1.1-SNAPSHOT"));
+
+    // page applies to merged hits
+    assertThat(search(null, 1), hasSize(1));
+  }
+
+  /**
+   * Stateful filters see the hits of all contexts, as with single search over all the contexts.
+   */
+  @Test
+  public void uniquenessSpansContexts() throws Exception {
+    deployPom(releases, "1.0");
+    deployPom(snapshots, "1.1-SNAPSHOT");
+    wairForAsyncEventsToCalmDown();
+
+    final UniqueArtifactFilterPostprocessor unique = new UniqueArtifactFilterPostprocessor();
+    unique.addField(MAVEN.GROUP_ID);
+    unique.addField(MAVEN.ARTIFACT_ID);
+
+    assertThat(search(Collections.<ArtifactInfoFilter>singletonList(unique), 10), hasSize(1));
+  }
+}
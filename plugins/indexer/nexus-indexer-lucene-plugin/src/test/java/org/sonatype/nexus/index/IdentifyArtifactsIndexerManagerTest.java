@@ -0,0 +1,94 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import org.apache.maven.index.ArtifactInfo;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+/**
+ * Identification of artifacts by their SHA1 checksums.
+ */
+public class IdentifyArtifactsIndexerManagerTest
+    extends AbstractIndexerManagerTest
+{
+  private static final String UNKNOWN_SHA1 = "0123456789012345678901234567890123456789";
+
+  /**
+   * Deploys a pom to releases, and returns its SHA1.
+   */
+  private String deployPom(final String version) throws Exception {
+    final byte[] pom = ("<project><modelVersion>4.0.0</modelVersion><groupId>org.sonatype.identify</groupId>"
+        + "<artifactId>identified</artifactId><version>" + version + "</version><packaging>pom</packaging>"
+        + "</project>").getBytes(Charsets.UTF_8);
+    releases.storeItem(
+        new ResourceStoreRequest("/org/sonatype/identify/identified/" + version + "/identified-" + version + ".pom"),
+        new ByteArrayInputStream(pom), null);
+    wairForAsyncEventsToCalmDown();
+    return Hashing.sha1().hashBytes(pom).toString();
+  }
+
+  @Test
+  public void identifiesKnownHashes() throws Exception {
+    final String sha1 = deployPom("1.0");
+
+    final Map<String, Collection<ArtifactInfo>> identified =
+        indexerManager.identifyArtifactsBySha1(Arrays.asList(sha1, UNKNOWN_SHA1));
+
+    // every requested hash is present, in order of request
+    assertThat(identified.keySet(), contains(sha1, UNKNOWN_SHA1));
+    assertThat(identified.get(sha1), hasSize(1));
+    final ArtifactInfo ai = identified.get(sha1).iterator().next();
+    assertThat(ai.groupId, equalTo("org.sonatype.identify"));
+    assertThat(ai.version, equalTo("1.0"));
+    assertThat(ai.repository, equalTo(releases.getId()));
+    assertThat(identified.get(UNKNOWN_SHA1), empty());
+  }
+
+  /**
+   * Items deployed after the SHA1 index was built are identified too.
+   */
+  @Test
+  public void identifiesHashesDeployedAfterBuild() throws Exception {
+    final String first = deployPom("1.0");
+    assertThat(indexerManager.identifyArtifactsBySha1(Arrays.asList(first)).get(first), hasSize(1));
+
+    final String second = deployPom("2.0");
+    assertThat(indexerManager.identifyArtifactsBySha1(Arrays.asList(second)).get(second), hasSize(1));
+  }
+
+  @Test
+  public void skipsNonSearchableRepositories() throws Exception {
+    final String sha1 = deployPom("1.0");
+
+    releases.setSearchable(false);
+    nexusConfiguration().saveConfiguration();
+    wairForAsyncEventsToCalmDown();
+
+    assertThat(indexerManager.identifyArtifactsBySha1(Arrays.asList(sha1)).get(sha1), empty());
+  }
+}
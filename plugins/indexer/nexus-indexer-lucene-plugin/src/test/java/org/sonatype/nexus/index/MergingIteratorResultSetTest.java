@@ -0,0 +1,174 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.ArtifactInfoFilter;
+import org.apache.maven.index.ArtifactInfoPostprocessor;
+import org.apache.maven.index.MAVEN;
+import org.apache.maven.index.UniqueArtifactFilterPostprocessor;
+import org.apache.maven.index.context.IndexingContext;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+
+/**
+ * UT for {@link MergingIteratorResultSet}.
+ */
+public class MergingIteratorResultSetTest
+    extends TestSupport
+{
+  private ArtifactInfo hit(final String artifactId, final float score) {
+    final ArtifactInfo ai = new ArtifactInfo();
+    ai.groupId = "g";
+    ai.artifactId = artifactId;
+    ai.setLuceneScore(score);
+    return ai;
+  }
+
+  private List<String> artifactIds(final MergingIteratorResultSet resultSet) {
+    final List<String> result = new ArrayList<String>();
+    for (ArtifactInfo ai : resultSet) {
+      result.add(ai.artifactId);
+    }
+    return result;
+  }
+
+  private List<TestContextHits> hits() {
+    return Arrays.asList(
+        new TestContextHits(hit("a1", 3.0f), hit("a2", 1.0f)),
+        new TestContextHits(),
+        new TestContextHits(hit("c1", 4.0f), hit("c2", 1.0f), hit("c3", 0.5f)));
+  }
+
+  private MergingIteratorResultSet merge(final List<TestContextHits> hits, final int start, final int count) {
+    return new MergingIteratorResultSet(hits, start, count, null, null);
+  }
+
+  @Test
+  public void mergesByScore() {
+    final MergingIteratorResultSet resultSet = merge(hits(), 0, 10);
+    // equal scores are ordered as the searches
+    assertThat(artifactIds(resultSet), contains("c1", "a1", "a2", "c2", "c3"));
+    assertThat(resultSet.getTotalProcessedArtifactInfoCount(), equalTo(5));
+  }
+
+  @Test
+  public void pages() {
+    assertThat(artifactIds(merge(hits(), 1, 2)), contains("a1", "a2"));
+    assertThat(artifactIds(merge(hits(), 4, 2)), contains("c3"));
+    assertThat(artifactIds(merge(hits(), 6, 2)).isEmpty(), equalTo(true));
+  }
+
+  @Test
+  public void pullsHitsLazily() {
+    final List<TestContextHits> hits = hits();
+    final MergingIteratorResultSet resultSet = merge(hits, 0, 10);
+    assertThat(resultSet.next().artifactId, equalTo("c1"));
+    // returned hit, the one looked ahead, and the heads behind them
+    assertThat(hits.get(0).pulled, equalTo(2));
+    assertThat(hits.get(2).pulled, equalTo(2));
+  }
+
+  /**
+   * Filter is applied once over merged hits, so uniqueness spans all the searches, and page applies to the hits
+   * before filtering, as with a single search over all contexts.
+   */
+  @Test
+  public void filtersMergedHits() {
+    final List<TestContextHits> hits = Arrays.asList(
+        new TestContextHits(hit("x", 3.0f), hit("y", 1.0f)),
+        new TestContextHits(hit("x", 2.0f), hit("y", 0.5f), hit("z", 0.1f)));
+    final UniqueArtifactFilterPostprocessor unique = new UniqueArtifactFilterPostprocessor();
+    unique.addField(MAVEN.GROUP_ID);
+    unique.addField(MAVEN.ARTIFACT_ID);
+
+    assertThat(artifactIds(new MergingIteratorResultSet(hits, 0, 4, unique, null)), contains("x", "y"));
+  }
+
+  @Test
+  public void filterAndPostprocessorGetContextOfHit() {
+    final List<TestContextHits> hits = hits();
+    final List<IndexingContext> filtered = new ArrayList<IndexingContext>();
+    final List<IndexingContext> postprocessed = new ArrayList<IndexingContext>();
+    final ArtifactInfoFilter filter = new ArtifactInfoFilter()
+    {
+      @Override
+      public boolean accepts(final IndexingContext ctx, final ArtifactInfo ai) {
+        filtered.add(ctx);
+        return !"a2".equals(ai.artifactId);
+      }
+    };
+    final ArtifactInfoPostprocessor postprocessor = new ArtifactInfoPostprocessor()
+    {
+      @Override
+      public void postprocess(final IndexingContext ctx, final ArtifactInfo ai) {
+        postprocessed.add(ctx);
+      }
+    };
+
+    final MergingIteratorResultSet resultSet = new MergingIteratorResultSet(hits, 0, 3, filter, postprocessor);
+    assertThat(artifactIds(resultSet), contains("c1", "a1"));
+    assertThat(resultSet.getTotalProcessedArtifactInfoCount(), equalTo(3));
+    assertThat(filtered.size(), equalTo(3));
+    assertThat(filtered.get(0), sameInstance(hits.get(2).getContext()));
+    assertThat(filtered.get(1), sameInstance(hits.get(0).getContext()));
+    assertThat(postprocessed, contains(hits.get(2).getContext(), hits.get(0).getContext()));
+  }
+
+  private static class TestContextHits
+      implements MergingIteratorResultSet.ContextHits
+  {
+    private final IndexingContext context = mock(IndexingContext.class);
+
+    private final Iterator<ArtifactInfo> hits;
+
+    private int pulled;
+
+    private TestContextHits(final ArtifactInfo... hits) {
+      this.hits = Arrays.asList(hits).iterator();
+    }
+
+    @Override
+    public IndexingContext getContext() {
+      return context;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return hits.hasNext();
+    }
+
+    @Override
+    public ArtifactInfo next() {
+      pulled++;
+      return hits.next();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
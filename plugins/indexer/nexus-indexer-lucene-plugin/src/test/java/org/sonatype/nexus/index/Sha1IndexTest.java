@@ -0,0 +1,257 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.context.IndexingContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * UT for {@link Sha1Index}.
+ */
+public class Sha1IndexTest
+    extends TestSupport
+{
+  private static final String SHA1 = "0123456789abcdef0123456789abcdef01234567";
+
+  @Mock
+  private IndexingContext context;
+
+  private File directory;
+
+  private Sha1Index underTest;
+
+  private ExecutorService executor;
+
+  @Before
+  public void prepare() throws Exception {
+    final RAMDirectory indexDirectory = new RAMDirectory();
+    new IndexWriter(indexDirectory, new IndexWriterConfig(Version.LUCENE_36, new StandardAnalyzer(Version.LUCENE_36)))
+        .close();
+    when(context.acquireIndexSearcher()).thenReturn(new IndexSearcher(IndexReader.open(indexDirectory)));
+
+    directory = util.createTempDir();
+    underTest = new Sha1Index(directory, "test-ctx");
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void cleanup() throws Exception {
+    executor.shutdownNow();
+    underTest.close();
+  }
+
+  private Future<Void> buildAsync() {
+    return executor.submit(new Callable<Void>()
+    {
+      @Override
+      public Void call() throws Exception {
+        underTest.build(context);
+        return null;
+      }
+    });
+  }
+
+  private ArtifactInfo artifact(final String groupId, final String artifactId, final String version) {
+    final ArtifactInfo ai = new ArtifactInfo();
+    ai.groupId = groupId;
+    ai.artifactId = artifactId;
+    ai.version = version;
+    ai.packaging = "jar";
+    ai.fextension = "jar";
+    return ai;
+  }
+
+  private String sha1(final int i) {
+    return String.format("%08x", i) + SHA1.substring(8);
+  }
+
+  @Test
+  public void notBuiltIndexIsNotUsed() throws Exception {
+    underTest.add(SHA1, artifact("g", "a", "1.0"));
+    assertThat(underTest.isBuilt(), equalTo(false));
+    assertThat(underTest.lookup(SHA1), nullValue());
+  }
+
+  @Test
+  public void addLookupRemove() throws Exception {
+    underTest.build(context);
+    assertThat(underTest.isBuilt(), equalTo(true));
+    assertThat(underTest.lookup(SHA1), empty());
+
+    underTest.add(SHA1, artifact("g", "a", "1.0"));
+    underTest.add(SHA1, artifact("g", "b", "1.0"));
+    // same artifact again is not duplicated
+    underTest.add(SHA1, artifact("g", "a", "1.0"));
+    assertThat(underTest.lookup(SHA1), contains("g|b|1.0||jar|jar", "g|a|1.0||jar|jar"));
+    assertThat(underTest.lookup(SHA1.toUpperCase()), contains("g|b|1.0||jar|jar", "g|a|1.0||jar|jar"));
+
+    underTest.remove(SHA1, artifact("g", "b", "1.0"));
+    assertThat(underTest.lookup(SHA1), contains("g|a|1.0||jar|jar"));
+    underTest.remove(SHA1, artifact("g", "a", "1.0"));
+    assertThat(underTest.lookup(SHA1), empty());
+
+    // invalid checksums are ignored
+    underTest.add("not-a-sha1", artifact("g", "a", "1.0"));
+    assertThat(underTest.lookup("not-a-sha1"), empty());
+  }
+
+  @Test
+  public void growsAndKeepsEntries() throws Exception {
+    underTest.build(context);
+    for (int i = 0; i < 5000; i++) {
+      underTest.add(sha1(i), artifact("g", "a" + i, "1.0"));
+    }
+    for (int i = 0; i < 5000; i++) {
+      assertThat(underTest.lookup(sha1(i)), contains("g|a" + i + "|1.0||jar|jar"));
+    }
+  }
+
+  @Test
+  public void invalidatedIndexIsRebuilt() throws Exception {
+    underTest.build(context);
+    underTest.add(SHA1, artifact("g", "a", "1.0"));
+    underTest.invalidate();
+    assertThat(underTest.lookup(SHA1), nullValue());
+
+    underTest.build(context);
+    assertThat(underTest.lookup(SHA1), empty());
+  }
+
+  /**
+   * Build takes its snapshot of the context only once the changes in flight are done, so they are in the snapshot.
+   */
+  @Test
+  public void buildWaitsForChangesInFlight() throws Exception {
+    assertThat(underTest.beginChange(), equalTo(false));
+    final Future<Void> build = buildAsync();
+    Thread.sleep(200);
+    assertThat(build.isDone(), equalTo(false));
+    verify(context, never()).acquireIndexSearcher();
+
+    underTest.endChange();
+    build.get(5, TimeUnit.SECONDS);
+    assertThat(underTest.isBuilt(), equalTo(true));
+  }
+
+  /**
+   * Blocks the build in progress once it scanned the context, until the returned latch is released.
+   */
+  private CountDownLatch blockBuildAfterScan(final CountDownLatch scanned) throws Exception {
+    final CountDownLatch proceed = new CountDownLatch(1);
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(final InvocationOnMock invocation) throws Throwable {
+        scanned.countDown();
+        proceed.await();
+        return null;
+      }
+    }).when(context).releaseIndexSearcher(any(IndexSearcher.class));
+    return proceed;
+  }
+
+  /**
+   * Changes begun after the snapshot was taken do not wait for the build, and are applied once it is done.
+   */
+  @Test
+  public void changesDuringBuildAreApplied() throws Exception {
+    final CountDownLatch scanned = new CountDownLatch(1);
+    final CountDownLatch proceed = blockBuildAfterScan(scanned);
+
+    final Future<Void> build = buildAsync();
+    assertThat(scanned.await(5, TimeUnit.SECONDS), equalTo(true));
+
+    assertThat(underTest.beginChange(), equalTo(true));
+    try {
+      underTest.add(SHA1, artifact("g", "a", "1.0"));
+      underTest.add(sha1(1), artifact("g", "b", "1.0"));
+      underTest.remove(sha1(1), artifact("g", "b", "1.0"));
+    }
+    finally {
+      underTest.endChange();
+    }
+    assertThat(underTest.lookup(SHA1), nullValue());
+
+    proceed.countDown();
+    build.get(5, TimeUnit.SECONDS);
+    assertThat(underTest.isBuilt(), equalTo(true));
+    assertThat(underTest.lookup(SHA1), contains("g|a|1.0||jar|jar"));
+    assertThat(underTest.lookup(sha1(1)), empty());
+  }
+
+  /**
+   * A build is discarded if the index is invalidated while it scans the context.
+   */
+  @Test
+  public void invalidatedBuildIsDiscarded() throws Exception {
+    final CountDownLatch scanned = new CountDownLatch(1);
+    final CountDownLatch proceed = blockBuildAfterScan(scanned);
+
+    final Future<Void> build = buildAsync();
+    assertThat(scanned.await(5, TimeUnit.SECONDS), equalTo(true));
+    underTest.invalidate();
+
+    proceed.countDown();
+    build.get(5, TimeUnit.SECONDS);
+    assertThat(underTest.isBuilt(), equalTo(false));
+    assertThat(underTest.lookup(SHA1), nullValue());
+  }
+
+  @Test
+  public void packUnpack() {
+    final ArtifactInfo ai = artifact("g", "a", "1.0");
+    ai.classifier = "sources";
+    final ArtifactInfo unpacked = Sha1Index.unpack(Sha1Index.pack(ai));
+    assertThat(unpacked.groupId, equalTo("g"));
+    assertThat(unpacked.artifactId, equalTo("a"));
+    assertThat(unpacked.version, equalTo("1.0"));
+    assertThat(unpacked.classifier, equalTo("sources"));
+    assertThat(unpacked.packaging, equalTo("jar"));
+    assertThat(unpacked.fextension, equalTo("jar"));
+    assertThat(Sha1Index.unpack("g|a|1.0||jar|jar").classifier, nullValue());
+  }
+}
@@ -166,6 +166,13 @@ public class MockedIndexerManager
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public Map<String, Collection<ArtifactInfo>> identifyArtifactsBySha1(Collection<String> sha1Checksums)
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public FlatSearchResponse searchArtifactFlat(String term, String repositoryId, Integer from, Integer count,
                                                Integer hitLimit)
@@ -0,0 +1,138 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.rest.identify;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonatype.nexus.index.IndexerManager;
+import org.sonatype.nexus.rest.model.IdentifiedHash;
+import org.sonatype.nexus.rest.model.IdentifyHashesRequest;
+import org.sonatype.nexus.rest.model.IdentifyHashesResponse;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.apache.maven.index.ArtifactInfo;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.ResourceException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link IdentifyHashesPlexusResource}.
+ */
+public class IdentifyHashesPlexusResourceTest
+    extends TestSupport
+{
+  private static final String KNOWN = "da39a3ee5e6b4b0d3255bfef95601890afd80709";
+
+  private static final String UNKNOWN = "0123456789012345678901234567890123456789";
+
+  @Mock
+  private IndexerManager indexerManager;
+
+  private IdentifyHashesPlexusResource underTest;
+
+  @Before
+  public void prepare() {
+    underTest = new IdentifyHashesPlexusResource(indexerManager);
+  }
+
+  private IdentifyHashesResponse post(final String algorithm, final List<String> hashes) throws Exception {
+    final Request request = new Request();
+    request.getAttributes().put(IdentifyHashesPlexusResource.ALGORITHM_KEY, algorithm);
+    final IdentifyHashesRequest payload = new IdentifyHashesRequest();
+    payload.setData(hashes);
+    return underTest.post(new Context(), request, new Response(request), payload);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void everyHashIsPresentInResponse() throws Exception {
+    final ArtifactInfo ai = new ArtifactInfo();
+    ai.groupId = "org.sonatype.identify";
+    ai.artifactId = "identified";
+    ai.version = "1.0";
+    final Map<String, Collection<ArtifactInfo>> identified = new LinkedHashMap<String, Collection<ArtifactInfo>>();
+    identified.put(KNOWN, Collections.singletonList(ai));
+    identified.put(UNKNOWN, Collections.<ArtifactInfo>emptyList());
+    when(indexerManager.identifyArtifactsBySha1(any(Collection.class))).thenReturn(identified);
+
+    final List<String> hashes = new ArrayList<String>();
+    hashes.add(" " + KNOWN + " ");
+    hashes.add(UNKNOWN);
+    hashes.add(KNOWN);
+    hashes.add(" ");
+    final IdentifyHashesResponse response = post("sha1", hashes);
+
+    // trimmed, blank and duplicate hashes dropped, order kept
+    final ArgumentCaptor<Collection> requested = ArgumentCaptor.forClass(Collection.class);
+    verify(indexerManager).identifyArtifactsBySha1(requested.capture());
+    assertThat((Collection<String>) requested.getValue(), contains(KNOWN, UNKNOWN));
+    assertThat(response.getData(), hasSize(2));
+    final IdentifiedHash known = response.getData().get(0);
+    assertThat(known.getHash(), equalTo(KNOWN));
+    assertThat(known.getArtifacts(), hasSize(1));
+    assertThat(known.getArtifacts().get(0).getArtifactId(), equalTo("identified"));
+    final IdentifiedHash unknown = response.getData().get(1);
+    assertThat(unknown.getHash(), equalTo(UNKNOWN));
+    assertThat(unknown.getArtifacts(), empty());
+  }
+
+  @Test
+  public void unsupportedAlgorithmIsBadRequest() throws Exception {
+    try {
+      post("md5", Collections.singletonList(KNOWN));
+      fail("Expected ResourceException");
+    }
+    catch (ResourceException e) {
+      assertThat(e.getStatus(), equalTo(Status.CLIENT_ERROR_BAD_REQUEST));
+    }
+    verifyZeroInteractions(indexerManager);
+  }
+
+  @Test
+  public void tooManyHashesIsBadRequest() throws Exception {
+    final List<String> hashes = new ArrayList<String>();
+    for (int i = 0; i <= 10000; i++) {
+      hashes.add(String.format("%040x", i));
+    }
+    try {
+      post("sha1", hashes);
+      fail("Expected ResourceException");
+    }
+    catch (ResourceException e) {
+      assertThat(e.getStatus(), equalTo(Status.CLIENT_ERROR_BAD_REQUEST));
+    }
+    verifyZeroInteractions(indexerManager);
+  }
+}
@@ -77,7 +77,8 @@ public class SearchNGIndexPlexusResourceIT
   public void testPlexusResourceException()
       throws Exception
   {
-    SearchNGIndexPlexusResource resource = new SearchNGIndexPlexusResource(Lists.<Searcher>newArrayList());
+    SearchNGIndexPlexusResource resource = new SearchNGIndexPlexusResource(Lists.<Searcher>newArrayList(),
+        mock(SearchNGResponseCache.class));
     Map<String, String> terms = new HashMap<String, String>(4);
     terms.put("q", "!");
     Searcher searcher = mock(Searcher.class);
@@ -0,0 +1,87 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.rest.indexng;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sonatype.nexus.index.events.IndexUpdatedEvent;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.rest.model.SearchNGResponse;
+import org.sonatype.security.SecuritySystem;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * UT for {@link SearchNGResponseCache}.
+ */
+public class SearchNGResponseCacheTest
+    extends TestSupport
+{
+  @Mock
+  private SecuritySystem securitySystem;
+
+  @Mock
+  private Subject subject;
+
+  private SearchNGResponseCache underTest;
+
+  @Before
+  public void prepare() {
+    when(securitySystem.getSubject()).thenReturn(subject);
+    when(subject.getPrincipals()).thenReturn(new SimplePrincipalCollection("ci", "default"));
+    underTest = new SearchNGResponseCache(securitySystem, 10, 60);
+  }
+
+  private SearchNGResponseCache.Key key(final String q, final String dc) {
+    final Map<String, String> terms = new HashMap<String, String>();
+    terms.put("q", q);
+    terms.put("collapseresults", "true");
+    terms.put("_dc", dc);
+    return underTest.key(terms, null, null, 5000, null, false, "http://localhost:8081/nexus/");
+  }
+
+  @Test
+  public void cachedPerQueryAndSubject() {
+    final SearchNGResponse response = new SearchNGResponse();
+    underTest.put(key("junit", "1"), response);
+
+    // cache buster does not matter
+    assertThat(underTest.get(key("junit", "2")), sameInstance(response));
+    assertThat(underTest.get(key("testng", "2")), nullValue());
+
+    when(subject.getPrincipals()).thenReturn(new SimplePrincipalCollection("other", "default"));
+    assertThat(underTest.get(key("junit", "2")), nullValue());
+  }
+
+  @Test
+  public void invalidatedOnIndexUpdate() {
+    final SearchNGResponseCache.Key staleKey = key("junit", "1");
+    underTest.on(new IndexUpdatedEvent(mock(Repository.class)));
+
+    // response of a search running while the index was updated is never served
+    underTest.put(staleKey, new SearchNGResponse());
+    assertThat(underTest.get(key("junit", "2")), nullValue());
+  }
+}
@@ -0,0 +1,402 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.plugins.mac;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.events.EventSubscriber;
+import org.sonatype.nexus.index.DefaultIndexerManager;
+import org.sonatype.nexus.index.events.IndexArtifactAddedEvent;
+import org.sonatype.nexus.index.events.IndexArtifactRemovedEvent;
+import org.sonatype.nexus.index.events.IndexUpdatedEvent;
+import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryConfigurationUpdatedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryGroupMembersChangedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.proxy.item.VersionedContentLocator;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.GroupRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
+import org.sonatype.nexus.util.DigesterUtils;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import org.apache.commons.lang.StringUtils;
+import org.apache.maven.archetype.catalog.Archetype;
+import org.apache.maven.archetype.catalog.ArchetypeCatalog;
+import org.apache.maven.archetype.catalog.io.xpp3.ArchetypeCatalogXpp3Writer;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.ArtifactInfoFilter;
+import org.apache.maven.index.context.IndexingContext;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Keeps the archetypes of repositories resident, and materializes their archetype catalogs, so the index is not
+ * searched on every catalog request. The archetypes are loaded from index on first request, and are kept up to date
+ * incrementally from indexer events: added archetypes are applied in place, while removals of known archetypes and
+ * whole index updates drop the affected entries, to be reloaded on next request. Entries of groups are dropped
+ * whenever a (transitive) member changes in a way that affects them.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class ArchetypeCatalogCache
+    extends ComponentSupport
+    implements EventSubscriber
+{
+  private static final String MAVEN_ARCHETYPE_PACKAGING = "maven-archetype";
+
+  private final DefaultIndexerManager indexerManager;
+
+  private final MacPlugin macPlugin;
+
+  private final RepositoryRegistry repositoryRegistry;
+
+  private final ConcurrentMap<String, Archetypes> archetypes;
+
+  /**
+   * Count of changes seen, used to detect changes happening while archetypes are being loaded from index.
+   */
+  private final AtomicLong changes;
+
+  @Inject
+  public ArchetypeCatalogCache(final DefaultIndexerManager indexerManager, final MacPlugin macPlugin,
+                               final RepositoryRegistry repositoryRegistry)
+  {
+    this.indexerManager = checkNotNull(indexerManager);
+    this.macPlugin = checkNotNull(macPlugin);
+    this.repositoryRegistry = checkNotNull(repositoryRegistry);
+    this.archetypes = new ConcurrentHashMap<>();
+    this.changes = new AtomicLong();
+  }
+
+  /**
+   * Returns the archetype catalog of given repository containing archetypes accepted by passed in filter, or
+   * {@code null} if catalog is not buildable as indexer did not let us access the indexing context of the
+   * repository. When all the archetypes are accepted, the materialized catalog is returned, otherwise the catalog has
+   * unknown modification time, as its content depends on the subject.
+   */
+  @Nullable
+  public Catalog getCatalog(final Repository repository, final String repositoryContentUrl,
+                            final ArtifactInfoFilter artifactInfoFilter)
+      throws IOException
+  {
+    Archetypes entry = archetypes.get(repository.getId());
+    if (entry == null) {
+      entry = load(repository);
+      if (entry == null) {
+        return null;
+      }
+    }
+    return entry.getCatalog(repositoryContentUrl, artifactInfoFilter);
+  }
+
+  /**
+   * Loads the archetypes of given repository from index, and caches them unless a change happened meanwhile.
+   */
+  @Nullable
+  private Archetypes load(final Repository repository) throws IOException {
+    final long changesBefore = changes.get();
+    final AtomicReference<List<ArtifactInfo>> infos = new AtomicReference<>();
+    indexerManager.shared(repository, new DefaultIndexerManager.Runnable()
+    {
+      @Override
+      public void run(final IndexingContext context) throws IOException {
+        // NEXUS-5216: Warn if indexing context is null (indexable=false) for given repository but continue
+        // to return the correct empty catalog
+        if (context == null) {
+          log.info(
+              "Archetype Catalog for repository {} is not buildable as it lacks IndexingContext (indexable=false?).",
+              RepositoryStringUtils.getHumanizedNameString(repository));
+        }
+        infos.set(macPlugin.listArchetypeArtifactInfos(context));
+      }
+    });
+    if (infos.get() == null) {
+      return null;
+    }
+
+    final Archetypes entry = new Archetypes(infos.get());
+    if (changes.get() == changesBefore) {
+      final Archetypes existing = archetypes.putIfAbsent(repository.getId(), entry);
+      if (existing != null) {
+        return existing;
+      }
+      if (changes.get() != changesBefore) {
+        // a change slipped in while we were publishing the entry, it might have missed it
+        archetypes.remove(repository.getId(), entry);
+      }
+    }
+    log.debug("Loaded {} archetypes of repository {}", entry.size(), repository.getId());
+    return entry;
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final IndexArtifactAddedEvent evt) {
+    final ArtifactInfo ai = evt.getArtifactInfo();
+    if (!MAVEN_ARCHETYPE_PACKAGING.equals(ai.packaging) || StringUtils.isNotBlank(ai.classifier)) {
+      return;
+    }
+    changes.incrementAndGet();
+    // union of members is kept in groups, so addition is applicable to them as is
+    for (Repository repository : withGroupsOf(evt.getRepository())) {
+      final Archetypes entry = archetypes.get(repository.getId());
+      if (entry != null) {
+        entry.put(ai);
+      }
+    }
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final IndexArtifactRemovedEvent evt) {
+    final ArtifactInfo ai = evt.getArtifactInfo();
+    if (StringUtils.isNotBlank(ai.classifier)) {
+      return;
+    }
+    changes.incrementAndGet();
+    // removal of a file does not necessarily remove the archetype (ie. the POM removed only), and in groups other
+    // members might still have the archetype, so known archetypes are simply reloaded
+    final String key = Archetypes.key(ai);
+    for (Repository repository : withGroupsOf(evt.getRepository())) {
+      final Archetypes entry = archetypes.get(repository.getId());
+      if (entry != null && entry.contains(key)) {
+        archetypes.remove(repository.getId(), entry);
+      }
+    }
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final IndexUpdatedEvent evt) {
+    invalidate(evt.getRepository());
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryConfigurationUpdatedEvent evt) {
+    invalidate(evt.getRepository());
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryGroupMembersChangedEvent evt) {
+    invalidate(evt.getRepository());
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryRegistryEventRemove evt) {
+    invalidate(evt.getRepository());
+  }
+
+  @Subscribe
+  public void on(final NexusStoppedEvent evt) {
+    changes.incrementAndGet();
+    archetypes.clear();
+  }
+
+  /**
+   * Drops the entries of given repository and of all groups it is (transitive) member of.
+   */
+  @VisibleForTesting
+  void invalidate(final Repository repository) {
+    changes.incrementAndGet();
+    for (Repository r : withGroupsOf(repository)) {
+      archetypes.remove(r.getId());
+    }
+  }
+
+  /**
+   * Returns the passed in repository and all the groups it is (transitive) member of.
+   */
+  private Collection<Repository> withGroupsOf(final Repository repository) {
+    final Map<String, Repository> result = new LinkedHashMap<>();
+    final List<Repository> pending = new ArrayList<>();
+    pending.add(repository);
+    while (!pending.isEmpty()) {
+      final Repository current = pending.remove(pending.size() - 1);
+      if (result.put(current.getId(), current) == null) {
+        pending.addAll(repositoryRegistry.getGroupsOfRepository(current));
+      }
+    }
+    return result.values();
+  }
+
+  // ==
+
+  /**
+   * Resident archetypes of a repository, keyed and ordered by their GAV.
+   */
+  private static class Archetypes
+  {
+    private final ConcurrentSkipListMap<String, ArtifactInfo> infos;
+
+    private final AtomicLong version;
+
+    private volatile long modified;
+
+    private volatile Catalog catalog;
+
+    private Archetypes(final List<ArtifactInfo> infos) {
+      this.infos = new ConcurrentSkipListMap<>();
+      for (ArtifactInfo info : infos) {
+        this.infos.put(key(info), info);
+      }
+      this.version = new AtomicLong();
+      this.modified = now();
+    }
+
+    private static String key(final ArtifactInfo info) {
+      return info.groupId + ":" + info.artifactId + ":" + info.version;
+    }
+
+    /**
+     * HTTP dates have seconds resolution, and a change must result in a later date to make conditional GETs work.
+     */
+    private static long now() {
+      return (System.currentTimeMillis() / 1000L) * 1000L;
+    }
+
+    private int size() {
+      return infos.size();
+    }
+
+    private boolean contains(final String key) {
+      return infos.containsKey(key);
+    }
+
+    private synchronized void put(final ArtifactInfo info) {
+      infos.put(key(info), info);
+      version.incrementAndGet();
+      modified = Math.max(now(), modified + 1000L);
+    }
+
+    private Catalog getCatalog(final String repositoryContentUrl, final ArtifactInfoFilter filter)
+        throws IOException
+    {
+      final long currentVersion = version.get();
+      final Catalog current = catalog;
+      final long currentModified = modified;
+      final List<ArtifactInfo> accepted = new ArrayList<>(infos.size());
+      for (ArtifactInfo info : infos.values()) {
+        if (filter.accepts(null, info)) {
+          accepted.add(info);
+        }
+      }
+      if (accepted.size() < infos.size()) {
+        // subject does not see all archetypes, this catalog is not materialized, and as permission changes are not
+        // tracked, it has no usable modification time: only its ETag (digest of the filtered content) validates it
+        return new Catalog(accepted, repositoryContentUrl, VersionedContentLocator.UNKNOWN_MODIFIED, currentVersion);
+      }
+      if (current != null && current.version == currentVersion
+          && Objects.equals(current.repositoryContentUrl, repositoryContentUrl)) {
+        return current;
+      }
+      final Catalog materialized = new Catalog(accepted, repositoryContentUrl, currentModified, currentVersion);
+      catalog = materialized;
+      return materialized;
+    }
+  }
+
+  /**
+   * Serialized archetype catalog.
+   */
+  public static class Catalog
+  {
+    private final String repositoryContentUrl;
+
+    private final long version;
+
+    private final byte[] bytes;
+
+    private final String etag;
+
+    private final long modified;
+
+    private Catalog(final List<ArtifactInfo> infos, final String repositoryContentUrl, final long modified,
+                    final long version)
+        throws IOException
+    {
+      this.repositoryContentUrl = repositoryContentUrl;
+      this.version = version;
+      this.bytes = serialize(infos, repositoryContentUrl);
+      this.etag = "{SHA1{" + DigesterUtils.getSha1Digest(bytes) + "}}";
+      this.modified = modified;
+    }
+
+    private static byte[] serialize(final List<ArtifactInfo> infos, final String repositoryContentUrl)
+        throws IOException
+    {
+      final ArchetypeCatalog catalog = new ArchetypeCatalog();
+      for (ArtifactInfo info : infos) {
+        final Archetype archetype = new Archetype();
+        archetype.setGroupId(info.groupId);
+        archetype.setArtifactId(info.artifactId);
+        archetype.setVersion(info.version);
+        archetype.setDescription(info.description);
+        if (StringUtils.isNotEmpty(repositoryContentUrl)) {
+          archetype.setRepository(repositoryContentUrl);
+        }
+        catalog.addArchetype(archetype);
+      }
+      final StringWriter sw = new StringWriter();
+      final ArchetypeCatalogXpp3Writer writer = new ArchetypeCatalogXpp3Writer();
+      writer.write(sw, catalog);
+      return sw.toString().getBytes(Charsets.UTF_8);
+    }
+
+    public byte[] getBytes() {
+      return bytes;
+    }
+
+    /**
+     * Returns the ETag of catalog, in "shaved" form of {SHA1{...}} of the serialized catalog.
+     */
+    public String getEtag() {
+      return etag;
+    }
+
+    /**
+     * Returns the modification time of catalog, or {@link VersionedContentLocator#UNKNOWN_MODIFIED} if the catalog is
+     * filtered.
+     */
+    public long getModified() {
+      return modified;
+    }
+  }
+}
@@ -16,7 +16,6 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
-import org.sonatype.nexus.index.DefaultIndexerManager;
 import org.sonatype.nexus.index.IndexArtifactFilter;
 import org.sonatype.nexus.proxy.IllegalOperationException;
 import org.sonatype.nexus.proxy.ItemNotFoundException;
@@ -45,21 +44,18 @@ public class ArchetypeContentGenerator
 {
   public static final String ID = "ArchetypeContentGenerator";
 
-  private final MacPlugin macPlugin;
-
-  private final DefaultIndexerManager indexerManager;
+  private final ArchetypeCatalogCache archetypeCatalogCache;
 
   private final IndexArtifactFilter indexArtifactFilter;
 
   private final RepositoryURLBuilder repositoryURLBuilder;
 
   @Inject
-  public ArchetypeContentGenerator(final MacPlugin macPlugin, final DefaultIndexerManager indexerManager,
+  public ArchetypeContentGenerator(final ArchetypeCatalogCache archetypeCatalogCache,
                                    final IndexArtifactFilter indexArtifactFilter,
                                    final RepositoryURLBuilder repositoryURLBuilder)
   {
-    this.macPlugin = checkNotNull(macPlugin);
-    this.indexerManager = checkNotNull(indexerManager);
+    this.archetypeCatalogCache = checkNotNull(archetypeCatalogCache);
     this.indexArtifactFilter = checkNotNull(indexArtifactFilter);
     this.repositoryURLBuilder = checkNotNull(repositoryURLBuilder);
   }
@@ -80,7 +76,7 @@ public class ArchetypeContentGenerator
       }
     };
     final String exposedRepositoryContentUrl = repositoryURLBuilder.getExposedRepositoryContentUrl(repository);
-    return new ArchetypeContentLocator(repository, exposedRepositoryContentUrl, indexerManager, macPlugin,
+    return new ArchetypeContentLocator(repository, exposedRepositoryContentUrl, archetypeCatalogCache,
         artifactInfoFilter);
   }
 }
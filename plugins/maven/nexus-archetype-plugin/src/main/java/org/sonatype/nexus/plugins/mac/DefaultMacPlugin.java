@@ -13,7 +13,9 @@
 package org.sonatype.nexus.plugins.mac;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -114,6 +116,27 @@ public class DefaultMacPlugin
     }
   }
 
+  @Override
+  public List<ArtifactInfo> listArchetypeArtifactInfos(final IndexingContext ctx)
+      throws IOException
+  {
+    final IteratorSearchResponse infos =
+        listArchetypes(new MacRequest(ctx != null ? ctx.getRepositoryId() : null), ctx);
+
+    try {
+      final List<ArtifactInfo> result = new ArrayList<>();
+      for (ArtifactInfo info : infos) {
+        result.add(info);
+      }
+      return result;
+    }
+    finally {
+      if (infos != null) {
+        infos.close();
+      }
+    }
+  }
+
   // ==
 
   /**
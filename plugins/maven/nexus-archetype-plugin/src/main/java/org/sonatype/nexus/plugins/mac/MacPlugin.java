@@ -13,8 +13,10 @@
 package org.sonatype.nexus.plugins.mac;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.maven.archetype.catalog.ArchetypeCatalog;
+import org.apache.maven.index.ArtifactInfo;
 import org.apache.maven.index.context.IndexingContext;
 
 /**
@@ -29,4 +31,13 @@ public interface MacPlugin
    */
   ArchetypeCatalog listArcherypesAsCatalog(MacRequest request, IndexingContext ctx)
       throws IOException;
+
+  /**
+   * Returns the artifact infos of all archetypes sourced from given indexing context, without any filtering applied
+   * except the one stripping out classified artifacts.
+   *
+   * @since 3.0
+   */
+  List<ArtifactInfo> listArchetypeArtifactInfos(IndexingContext ctx)
+      throws IOException;
 }
@@ -0,0 +1,219 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.plugins.mac;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.sonatype.nexus.index.DefaultIndexerManager;
+import org.sonatype.nexus.index.events.IndexArtifactAddedEvent;
+import org.sonatype.nexus.index.events.IndexArtifactRemovedEvent;
+import org.sonatype.nexus.index.events.IndexUpdatedEvent;
+import org.sonatype.nexus.plugins.mac.ArchetypeCatalogCache.Catalog;
+import org.sonatype.nexus.proxy.item.VersionedContentLocator;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.GroupRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.base.Charsets;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.ArtifactInfoFilter;
+import org.apache.maven.index.context.IndexingContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * UT for {@link ArchetypeCatalogCache}.
+ */
+public class ArchetypeCatalogCacheTest
+    extends TestSupport
+{
+  private static final String URL = "http://localhost:8081/nexus/content/repositories/hosted/";
+
+  private static final ArtifactInfoFilter ALL = new ArtifactInfoFilter()
+  {
+    @Override
+    public boolean accepts(final IndexingContext ctx, final ArtifactInfo ai) {
+      return true;
+    }
+  };
+
+  @Mock
+  private DefaultIndexerManager indexerManager;
+
+  @Mock
+  private MacPlugin macPlugin;
+
+  @Mock
+  private RepositoryRegistry repositoryRegistry;
+
+  @Mock
+  private Repository hosted;
+
+  @Mock
+  private GroupRepository group;
+
+  @Mock
+  private IndexingContext context;
+
+  private List<ArtifactInfo> indexed;
+
+  private ArchetypeCatalogCache underTest;
+
+  @Before
+  public void prepare() throws Exception {
+    when(hosted.getId()).thenReturn("hosted");
+    when(group.getId()).thenReturn("group");
+    when(repositoryRegistry.getGroupsOfRepository(hosted)).thenReturn(Collections.singletonList(group));
+    when(repositoryRegistry.getGroupsOfRepository(group)).thenReturn(Collections.<GroupRepository>emptyList());
+
+    indexed = new ArrayList<>();
+    indexed.add(archetype("org.foo", "foo-archetype", "1.0"));
+    when(macPlugin.listArchetypeArtifactInfos(context)).thenAnswer(new Answer<List<ArtifactInfo>>()
+    {
+      @Override
+      public List<ArtifactInfo> answer(final InvocationOnMock invocation) {
+        return new ArrayList<>(indexed);
+      }
+    });
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(final InvocationOnMock invocation) throws Throwable {
+        ((DefaultIndexerManager.Runnable) invocation.getArguments()[1]).run(context);
+        return null;
+      }
+    }).when(indexerManager).shared(any(Repository.class), any(DefaultIndexerManager.Runnable.class));
+
+    underTest = new ArchetypeCatalogCache(indexerManager, macPlugin, repositoryRegistry);
+  }
+
+  private ArtifactInfo archetype(final String groupId, final String artifactId, final String version) {
+    final ArtifactInfo ai = new ArtifactInfo();
+    ai.groupId = groupId;
+    ai.artifactId = artifactId;
+    ai.version = version;
+    ai.packaging = "maven-archetype";
+    return ai;
+  }
+
+  private String content(final Catalog catalog) {
+    return new String(catalog.getBytes(), Charsets.UTF_8);
+  }
+
+  @Test
+  public void catalogIsMaterialized() throws Exception {
+    final Catalog catalog = underTest.getCatalog(hosted, URL, ALL);
+    assertThat(catalog, notNullValue());
+    assertThat(content(catalog), containsString("<artifactId>foo-archetype</artifactId>"));
+    assertThat(content(catalog), containsString("<repository>" + URL + "</repository>"));
+    assertThat(catalog.getEtag(), notNullValue());
+
+    assertThat(underTest.getCatalog(hosted, URL, ALL), sameInstance(catalog));
+    verify(indexerManager, times(1)).shared(any(Repository.class), any(DefaultIndexerManager.Runnable.class));
+  }
+
+  @Test
+  public void notBuildableWithoutContext() throws Exception {
+    doNothing().when(indexerManager).shared(any(Repository.class), any(DefaultIndexerManager.Runnable.class));
+    assertThat(underTest.getCatalog(hosted, URL, ALL), nullValue());
+  }
+
+  @Test
+  public void additionIsAppliedIncrementally() throws Exception {
+    final Catalog before = underTest.getCatalog(hosted, URL, ALL);
+    final Catalog groupBefore = underTest.getCatalog(group, URL, ALL);
+
+    final ArtifactInfo added = archetype("org.bar", "bar-archetype", "2.0");
+    indexed.add(added);
+    underTest.on(new IndexArtifactAddedEvent(hosted, added));
+
+    final Catalog after = underTest.getCatalog(hosted, URL, ALL);
+    assertThat(content(after), containsString("<artifactId>bar-archetype</artifactId>"));
+    assertThat(after.getEtag(), not(before.getEtag()));
+    assertThat(after.getModified(), greaterThan(before.getModified()));
+    assertThat(content(underTest.getCatalog(group, URL, ALL)), containsString("<artifactId>bar-archetype</artifactId>"));
+    assertThat(underTest.getCatalog(group, URL, ALL).getModified(), greaterThan(groupBefore.getModified()));
+    // no reload happened
+    verify(indexerManager, times(2)).shared(any(Repository.class), any(DefaultIndexerManager.Runnable.class));
+  }
+
+  @Test
+  public void nonArchetypeAdditionIsIgnored() throws Exception {
+    final Catalog before = underTest.getCatalog(hosted, URL, ALL);
+    final ArtifactInfo jar = archetype("org.bar", "bar", "2.0");
+    jar.packaging = "jar";
+    underTest.on(new IndexArtifactAddedEvent(hosted, jar));
+    assertThat(underTest.getCatalog(hosted, URL, ALL), sameInstance(before));
+  }
+
+  @Test
+  public void removalOfKnownArchetypeReloads() throws Exception {
+    underTest.getCatalog(hosted, URL, ALL);
+    underTest.getCatalog(group, URL, ALL);
+
+    final ArtifactInfo removed = indexed.remove(0);
+    underTest.on(new IndexArtifactRemovedEvent(hosted, removed));
+
+    assertThat(content(underTest.getCatalog(hosted, URL, ALL)), not(containsString("foo-archetype")));
+    assertThat(content(underTest.getCatalog(group, URL, ALL)), not(containsString("foo-archetype")));
+    verify(indexerManager, times(4)).shared(any(Repository.class), any(DefaultIndexerManager.Runnable.class));
+  }
+
+  @Test
+  public void indexUpdateReloads() throws Exception {
+    underTest.getCatalog(hosted, URL, ALL);
+    indexed.add(archetype("org.bar", "bar-archetype", "2.0"));
+    underTest.on(new IndexUpdatedEvent(hosted));
+    assertThat(content(underTest.getCatalog(hosted, URL, ALL)), containsString("bar-archetype"));
+  }
+
+  @Test
+  public void filteredCatalogIsNotMaterialized() throws Exception {
+    indexed.add(archetype("org.bar", "bar-archetype", "2.0"));
+    final Catalog all = underTest.getCatalog(hosted, URL, ALL);
+    final ArtifactInfoFilter filter = new ArtifactInfoFilter()
+    {
+      @Override
+      public boolean accepts(final IndexingContext ctx, final ArtifactInfo ai) {
+        return !"bar-archetype".equals(ai.artifactId);
+      }
+    };
+    final Catalog filtered = underTest.getCatalog(hosted, URL, filter);
+    assertThat(content(filtered), not(containsString("bar-archetype")));
+    assertThat(filtered.getEtag(), not(all.getEtag()));
+    // per subject content, only the content fingerprint is usable as validator
+    assertThat(filtered.getModified(), equalTo(VersionedContentLocator.UNKNOWN_MODIFIED));
+    assertThat(underTest.getCatalog(hosted, URL, ALL), sameInstance(all));
+  }
+}
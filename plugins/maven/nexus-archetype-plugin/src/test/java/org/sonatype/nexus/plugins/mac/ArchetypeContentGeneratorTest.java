@@ -19,7 +19,6 @@ import java.io.InputStream;
 import org.sonatype.nexus.configuration.model.CLocalStorage;
 import org.sonatype.nexus.configuration.model.CRepository;
 import org.sonatype.nexus.configuration.model.DefaultCRepository;
-import org.sonatype.nexus.index.DefaultIndexerManager;
 import org.sonatype.nexus.index.IndexArtifactFilter;
 import org.sonatype.nexus.index.IndexerManager;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
@@ -112,8 +111,8 @@ public class ArchetypeContentGeneratorTest
     prepareNexusIndexer(nexusIndexer, repository); // indexerManager creates context for it
     try {
       final ArchetypeContentGenerator archetypeContentGenerator =
-          new ArchetypeContentGenerator(lookup(MacPlugin.class), (DefaultIndexerManager) indexerManager,
-              mock(IndexArtifactFilter.class), mock(RepositoryURLBuilder.class));
+          new ArchetypeContentGenerator(lookup(ArchetypeCatalogCache.class), mock(IndexArtifactFilter.class),
+              mock(RepositoryURLBuilder.class));
       final StorageFileItem item = mock(StorageFileItem.class);
       final ArchetypeContentLocator archetypeContentLocator =
           (ArchetypeContentLocator) archetypeContentGenerator.generateContent(repository,
@@ -14,12 +14,17 @@ package org.sonatype.nexus.rapture.internal;
 
 import java.io.IOException;
 
+import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.sonatype.nexus.web.BaseUrlHolder;
+import org.sonatype.nexus.webresources.WebResourceService;
 import org.sonatype.sisu.goodies.template.TemplateParameters;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
  * Provides {@code /index.html}.
  *
@@ -30,6 +35,13 @@ import org.sonatype.sisu.goodies.template.TemplateParameters;
 public class IndexHtmlWebResource
     extends TemplateWebResource
 {
+  private final Provider<WebResourceService> webResourceServiceProvider; // avoid circular dep
+
+  @Inject
+  public IndexHtmlWebResource(final Provider<WebResourceService> webResourceServiceProvider) {
+    this.webResourceServiceProvider = checkNotNull(webResourceServiceProvider);
+  }
+
   @Override
   public String getPath() {
     return "/index.html";
@@ -44,6 +56,7 @@ public class IndexHtmlWebResource
   protected byte[] generate() throws IOException {
     return render("index.vm", new TemplateParameters()
         .set("baseUrl", BaseUrlHolder.get())
+        .set("webResources", webResourceServiceProvider.get())
     );
   }
 }
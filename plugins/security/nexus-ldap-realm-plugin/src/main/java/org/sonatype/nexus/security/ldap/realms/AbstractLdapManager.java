@@ -30,6 +30,7 @@ import org.sonatype.security.ldap.dao.NoSuchLdapGroupException;
 import org.sonatype.security.ldap.dao.NoSuchLdapUserException;
 import org.sonatype.security.ldap.realms.DefaultLdapContextFactory;
 import org.sonatype.security.ldap.realms.LdapManager;
+import org.sonatype.security.ldap.realms.connector.CachingLdapConnector;
 import org.sonatype.security.ldap.realms.connector.DefaultLdapConnector;
 import org.sonatype.security.ldap.realms.connector.LdapConnector;
 import org.sonatype.security.ldap.realms.persist.LdapConfiguration;
@@ -124,16 +125,33 @@ public abstract class AbstractLdapManager
       throws LdapDAOException
   {
     if (this.ldapConnector == null) {
-      this.ldapConnector = new DefaultLdapConnector(
+      DefaultLdapConnector defaultLdapConnector = new DefaultLdapConnector(
           "default",
           this.ldapUserManager,
           this.ldapGroupManager,
           this.getLdapContextFactory(),
           this.getLdapAuthConfiguration());
+      // connector (with its caches) is dropped on reset
+      this.ldapConnector = CachingLdapConnector.ENABLED
+          ? new CachingLdapConnector(defaultLdapConnector)
+          : defaultLdapConnector;
     }
     return this.ldapConnector;
   }
 
+  /**
+   * Returns connector looking up directly in LDAP, as authentication must not use cached user records.
+   */
+  private LdapConnector getUncachedLdapConnector()
+      throws LdapDAOException
+  {
+    LdapConnector connector = this.getLdapConnector();
+    if (connector instanceof CachingLdapConnector) {
+      return ((CachingLdapConnector) connector).getUncachedConnector();
+    }
+    return connector;
+  }
+
   protected void resetLdapConnector() {
     this.ldapConnector = null;
   }
@@ -188,7 +206,7 @@ public abstract class AbstractLdapManager
   @Override
   public LdapUser authenticateUser(String userId, String password) throws AuthenticationException {
     try {
-      LdapUser ldapUser = this.getUser(userId);
+      LdapUser ldapUser = this.getUncachedLdapConnector().getUser(userId);
 
       String authScheme = this.getLdapConfiguration().readConnectionInfo().getAuthScheme();
 
@@ -57,4 +57,13 @@ public class RepoMD
     return locations.values();
   }
 
+  /**
+   * Returns location of metadata file of given type (like "primary"), or {@code null} if there is no such.
+   *
+   * @since 3.0
+   */
+  public String getLocation(final String type) {
+    return locations.get(type);
+  }
+
 }
@@ -0,0 +1,135 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.createrepo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of package metadata of one Yum repository, keyed by package location and validated by package
+ * file modification time and size, so only new or changed packages need to be read when metadata is regenerated.
+ *
+ * @since 3.0
+ */
+public class PackageCache
+{
+
+  private static final Logger log = LoggerFactory.getLogger(PackageCache.class);
+
+  private final File file;
+
+  private final Map<String, Entry> entries;
+
+  private boolean modified;
+
+  public PackageCache(final File file) {
+    this.file = file;
+    this.entries = load(file);
+  }
+
+  /**
+   * Returns cached metadata of package at given location, if package file did not change since it was cached.
+   */
+  public synchronized RpmPackage get(final String location, final File rpm) {
+    final Entry entry = entries.get(location);
+    if (entry != null && entry.lastModified == rpm.lastModified() && entry.size == rpm.length()) {
+      return entry.pkg;
+    }
+    return null;
+  }
+
+  public synchronized void put(final String location, final File rpm, final RpmPackage pkg) {
+    entries.put(location, new Entry(rpm.lastModified(), rpm.length(), pkg));
+    modified = true;
+  }
+
+  /**
+   * Drops cached metadata of packages not at given locations anymore.
+   */
+  public synchronized void retain(final Set<String> locations) {
+    modified |= entries.keySet().retainAll(locations);
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Saves the cache, if it was modified since loaded or saved.
+   */
+  public synchronized void save()
+      throws IOException
+  {
+    if (!modified) {
+      return;
+    }
+    Files.createDirectories(file.getParentFile().toPath());
+    final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+    try (final ObjectOutputStream out = new ObjectOutputStream(
+        new BufferedOutputStream(new FileOutputStream(tmp)))) {
+      out.writeObject(entries);
+    }
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    modified = false;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Entry> load(final File file) {
+    if (file.isFile()) {
+      try (final ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+        return (Map<String, Entry>) in.readObject();
+      }
+      catch (Exception e) {
+        // cache is only an optimization, start over
+        log.warn("Could not load Yum package cache {}, packages will be re-read", file, e);
+      }
+    }
+    return new HashMap<String, Entry>();
+  }
+
+  // ==
+
+  private static class Entry
+      implements Serializable
+  {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long lastModified;
+
+    private final long size;
+
+    private final RpmPackage pkg;
+
+    private Entry(final long lastModified, final long size, final RpmPackage pkg) {
+      this.lastModified = lastModified;
+      this.size = size;
+      this.pkg = pkg;
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.createrepo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-process replacement of "createrepo" and "mergerepo" command line tools. Package metadata is read directly from
+ * RPM headers and cached per repository (see {@link PackageCache}), so regenerating metadata after a package was
+ * added or removed only reads the headers of new or changed packages. Generated metadata does not contain sqlite
+ * databases, Yum clients build those locally when missing.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class RepodataGenerator
+{
+
+  private static final Logger log = LoggerFactory.getLogger(RepodataGenerator.class);
+
+  private static final String PACKAGE_CACHE_FILE_NAME = "packages.cache";
+
+  private final RpmReader rpmReader = new RpmReader();
+
+  /**
+   * Package caches keyed by cache directory. Soft values, as the caches are persisted anyway.
+   */
+  private final Cache<File, PackageCache> packageCaches = CacheBuilder.newBuilder().softValues().build();
+
+  /**
+   * Generates Yum metadata of given packages.
+   *
+   * @param rpmDir    directory packages locations are relative to
+   * @param locations locations of packages to include, not existing ones are ignored
+   * @param repoDir   directory to generate metadata into (repodata directory will be created in it)
+   * @param baseUrl   base URL of packages locations (optional)
+   * @param cacheDir  directory to keep package metadata cache in
+   * @param groupFile Yum groups definition file (optional)
+   */
+  public void generate(final File rpmDir, final Collection<String> locations, final File repoDir,
+                       final String baseUrl, final File cacheDir, final File groupFile)
+      throws IOException
+  {
+    final PackageCache packageCache = getPackageCache(cacheDir);
+    final Map<String, RpmPackage> packages = new TreeMap<String, RpmPackage>();
+    int read = 0;
+    for (String location : locations) {
+      final File rpm = new File(rpmDir, location);
+      if (!rpm.isFile()) {
+        log.debug("Skipping not existing package {}", rpm);
+        continue;
+      }
+      RpmPackage pkg = packageCache.get(location, rpm);
+      if (pkg == null) {
+        try {
+          pkg = rpmReader.read(rpm, location);
+          packageCache.put(location, rpm, pkg);
+          read++;
+        }
+        catch (IOException | RuntimeException e) {
+          log.warn("Could not read package {}, skipping it", rpm, e);
+          continue;
+        }
+      }
+      packages.put(location, pkg);
+    }
+    packageCache.retain(new HashSet<String>(packages.keySet()));
+
+    new RepodataWriter(repoDir).write(packages.values(), baseUrl, groupFile);
+    log.debug("Generated Yum metadata of {} packages ({} read, {} cached) into {}",
+        packages.size(), read, packages.size() - read, repoDir);
+
+    try {
+      packageCache.save();
+    }
+    catch (IOException e) {
+      log.warn("Could not save Yum package cache of {}", repoDir, e);
+    }
+  }
+
+  /**
+   * Merges Yum metadata of given repositories.
+   *
+   * @param repoDir        directory to generate merged metadata into
+   * @param memberRepoDirs directories of repositories to merge metadata of
+   */
+  public void merge(final File repoDir, final List<File> memberRepoDirs)
+      throws IOException
+  {
+    new RepodataMerger(repoDir).merge(memberRepoDirs);
+  }
+
+  private PackageCache getPackageCache(final File cacheDir) {
+    try {
+      return packageCaches.get(cacheDir, new Callable<PackageCache>()
+      {
+        @Override
+        public PackageCache call() {
+          return new PackageCache(new File(cacheDir, PACKAGE_CACHE_FILE_NAME));
+        }
+      });
+    }
+    catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+}
@@ -0,0 +1,355 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.createrepo;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.sonatype.nexus.yum.Yum;
+import org.sonatype.nexus.yum.internal.RepoMD;
+import org.sonatype.nexus.yum.internal.createrepo.RepodataWriter.DataFile;
+
+import org.codehaus.plexus.util.xml.XmlStreamReader;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import org.codehaus.plexus.util.xml.Xpp3DomWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.sonatype.nexus.yum.internal.createrepo.RepodataWriter.NS_COMMON;
+import static org.sonatype.nexus.yum.internal.createrepo.RepodataWriter.NS_FILELISTS;
+import static org.sonatype.nexus.yum.internal.createrepo.RepodataWriter.NS_OTHER;
+
+/**
+ * Merges Yum metadata of several repositories into one, the same way "mergerepo" does: packages are taken in order of
+ * repositories, and a package already taken (same name, epoch, version, release and arch, or same package id) is not
+ * taken again. Package entries are copied as is (streamed), so their locations stay the same. Groups definitions are
+ * merged by group/category id.
+ *
+ * @since 3.0
+ */
+public class RepodataMerger
+{
+
+  private static final Logger log = LoggerFactory.getLogger(RepodataMerger.class);
+
+  private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+  static {
+    xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+
+  private final File repoDir;
+
+  public RepodataMerger(final File repoDir) {
+    this.repoDir = repoDir;
+  }
+
+  /**
+   * Merges metadata of repositories having given base directories (each containing repodata/repomd.xml).
+   */
+  public void merge(final List<File> memberRepoDirs)
+      throws IOException
+  {
+    final List<Member> members = new ArrayList<Member>();
+    for (File memberRepoDir : memberRepoDirs) {
+      members.add(new Member(memberRepoDir));
+    }
+    try {
+      int packages = 0;
+      final Set<String> seenPackages = new HashSet<String>();
+      final Set<String> seenIds = new HashSet<String>();
+      for (Member member : members) {
+        packages += member.select(seenPackages, seenIds);
+      }
+
+      final RepodataWriter writer = new RepodataWriter(repoDir);
+      Files.createDirectories(new File(repoDir, Yum.PATH_OF_REPODATA).toPath());
+      final List<DataFile> dataFiles = new ArrayList<DataFile>();
+      dataFiles.add(copyPackages(writer, members, "primary", "metadata", NS_COMMON, packages));
+      dataFiles.add(copyPackages(writer, members, "filelists", "filelists", NS_FILELISTS, packages));
+      dataFiles.add(copyPackages(writer, members, "other", "otherdata", NS_OTHER, packages));
+      final File groupFile = mergeGroups(members);
+      if (groupFile != null) {
+        try {
+          dataFiles.add(writer.copyGroupFile(groupFile));
+        }
+        finally {
+          Files.deleteIfExists(groupFile.toPath());
+        }
+      }
+      writer.writeRepoMD(dataFiles);
+      log.debug("Merged {} packages of {} into {}", packages, memberRepoDirs, repoDir);
+    }
+    catch (XMLStreamException e) {
+      throw new IOException("Could not merge Yum metadata of " + memberRepoDirs, e);
+    }
+  }
+
+  private DataFile copyPackages(final RepodataWriter writer, final List<Member> members, final String type,
+                                final String root, final String namespace, final int packages)
+      throws IOException, XMLStreamException
+  {
+    final DataFile dataFile = writer.createDataFile(type);
+    final XMLStreamWriter out = dataFile.startDocument(root, namespace, packages);
+    final Set<String> copiedIds = new HashSet<String>();
+    for (Member member : members) {
+      final String location = member.repoMD.getLocation(type);
+      if (location == null) {
+        continue;
+      }
+      try (final InputStream in = open(new File(member.repoDir, location))) {
+        final XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+        try {
+          int ordinal = 0;
+          while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && "package".equals(reader.getLocalName())) {
+              final boolean selected;
+              if ("primary".equals(type)) {
+                // package id is not an attribute in primary, but order is
+                selected = ordinal < member.selected.size() && member.selected.get(ordinal);
+                ordinal++;
+              }
+              else {
+                final String pkgId = reader.getAttributeValue(null, "pkgid");
+                selected = member.selectedIds.contains(pkgId) && copiedIds.add(pkgId);
+              }
+              if (selected) {
+                copyElement(reader, out);
+                out.writeCharacters("\n");
+              }
+              else {
+                skipElement(reader);
+              }
+            }
+          }
+        }
+        finally {
+          reader.close();
+        }
+      }
+    }
+    return dataFile.finish();
+  }
+
+  private File mergeGroups(final List<Member> members)
+      throws IOException
+  {
+    Xpp3Dom merged = null;
+    final Set<String> ids = new HashSet<String>();
+    for (Member member : members) {
+      final String location = member.repoMD.getLocation("group");
+      if (location == null) {
+        continue;
+      }
+      try (final InputStream in = new BufferedInputStream(new FileInputStream(new File(member.repoDir, location)))) {
+        final Xpp3Dom comps = Xpp3DomBuilder.build(new XmlStreamReader(in));
+        if (merged == null) {
+          merged = new Xpp3Dom(comps.getName());
+        }
+        for (Xpp3Dom child : comps.getChildren()) {
+          final Xpp3Dom id = child.getChild("id");
+          if (id == null || ids.add(child.getName() + ":" + id.getValue())) {
+            merged.addChild(child);
+          }
+        }
+      }
+      catch (Exception e) {
+        log.warn("Could not read Yum groups definition of {}, ignoring", member.repoDir, e);
+      }
+    }
+    if (merged == null) {
+      return null;
+    }
+    final File groupFile = File.createTempFile(".comps-merged-", ".tmp", new File(repoDir, Yum.PATH_OF_REPODATA));
+    try (final Writer out = new OutputStreamWriter(Files.newOutputStream(groupFile.toPath()), "UTF-8")) {
+      out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+      Xpp3DomWriter.write(out, merged);
+    }
+    return groupFile;
+  }
+
+  private static InputStream open(final File file)
+      throws IOException
+  {
+    final InputStream in = new BufferedInputStream(new FileInputStream(file), 65536);
+    return file.getName().endsWith(".gz") ? new GZIPInputStream(in, 65536) : in;
+  }
+
+  /**
+   * Copies the element reader is positioned at (start element) including its content.
+   */
+  private static void copyElement(final XMLStreamReader reader, final XMLStreamWriter out)
+      throws XMLStreamException
+  {
+    int depth = 0;
+    while (true) {
+      switch (reader.getEventType()) {
+        case XMLStreamConstants.START_ELEMENT:
+          depth++;
+          out.writeStartElement(nullToEmpty(reader.getPrefix()), reader.getLocalName(),
+              nullToEmpty(reader.getNamespaceURI()));
+          for (int i = 0; i < reader.getAttributeCount(); i++) {
+            final String prefix = reader.getAttributePrefix(i);
+            if (prefix == null || prefix.isEmpty()) {
+              out.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            }
+            else {
+              out.writeAttribute(prefix, reader.getAttributeNamespace(i), reader.getAttributeLocalName(i),
+                  reader.getAttributeValue(i));
+            }
+          }
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          depth--;
+          out.writeEndElement();
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          out.writeCharacters(reader.getText());
+          break;
+        default:
+          break;
+      }
+      if (depth == 0 || !reader.hasNext()) {
+        return;
+      }
+      reader.next();
+    }
+  }
+
+  private static void skipElement(final XMLStreamReader reader)
+      throws XMLStreamException
+  {
+    int depth = 1;
+    while (depth > 0 && reader.hasNext()) {
+      final int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      }
+      else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  private static String nullToEmpty(final String value) {
+    return value == null ? "" : value;
+  }
+
+  // ==
+
+  /**
+   * A repository being merged, with packages selected to be taken into merged metadata.
+   */
+  private static class Member
+  {
+
+    private final File repoDir;
+
+    private final RepoMD repoMD;
+
+    private final List<Boolean> selected = new ArrayList<Boolean>();
+
+    private final Set<String> selectedIds = new HashSet<String>();
+
+    private Member(final File repoDir)
+        throws IOException
+    {
+      this.repoDir = repoDir;
+      try (final InputStream in = new FileInputStream(new File(repoDir, Yum.PATH_OF_REPOMD_XML))) {
+        this.repoMD = new RepoMD(in);
+      }
+    }
+
+    /**
+     * Reads primary metadata and selects the packages not seen yet. Returns count of selected packages.
+     */
+    private int select(final Set<String> seenPackages, final Set<String> seenIds)
+        throws IOException, XMLStreamException
+    {
+      final String location = repoMD.getLocation("primary");
+      if (location == null) {
+        return 0;
+      }
+      int count = 0;
+      try (final InputStream in = open(new File(repoDir, location))) {
+        final XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+        try {
+          String name = null, arch = null, version = null, pkgId = null;
+          int depth = 0;
+          while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+              depth++;
+              final String element = reader.getLocalName();
+              if (depth == 2 && "package".equals(element)) {
+                name = arch = version = pkgId = null;
+              }
+              else if (depth == 3 && "name".equals(element)) {
+                name = reader.getElementText();
+                depth--;
+              }
+              else if (depth == 3 && "arch".equals(element)) {
+                arch = reader.getElementText();
+                depth--;
+              }
+              else if (depth == 3 && "version".equals(element)) {
+                version = reader.getAttributeValue(null, "epoch") + ":" + reader.getAttributeValue(null, "ver")
+                    + "-" + reader.getAttributeValue(null, "rel");
+              }
+              else if (depth == 3 && "checksum".equals(element)) {
+                pkgId = reader.getElementText();
+                depth--;
+              }
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+              if (depth == 2 && "package".equals(reader.getLocalName())) {
+                final boolean select = seenPackages.add(name + "-" + version + "." + arch) & seenIds.add(pkgId);
+                selected.add(select);
+                if (select) {
+                  selectedIds.add(pkgId);
+                  count++;
+                }
+              }
+              depth--;
+            }
+          }
+        }
+        finally {
+          reader.close();
+        }
+      }
+      return count;
+    }
+  }
+}
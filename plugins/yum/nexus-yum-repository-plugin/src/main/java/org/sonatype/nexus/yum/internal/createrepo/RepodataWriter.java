@@ -0,0 +1,486 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.createrepo;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.sonatype.nexus.yum.Yum;
+import org.sonatype.nexus.yum.internal.createrepo.RpmPackage.ChangeLog;
+import org.sonatype.nexus.yum.internal.createrepo.RpmPackage.Dependency;
+import org.sonatype.nexus.yum.internal.createrepo.RpmPackage.PackageFile;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes Yum repository metadata (repodata/repomd.xml and gzipped primary, filelists and other XML files, plus
+ * optional groups file) the same way "createrepo" does, with unique (checksum prefixed) metadata file names. The
+ * repomd.xml is replaced atomically as last step, and metadata files not referenced anymore are removed afterwards.
+ *
+ * @since 3.0
+ */
+public class RepodataWriter
+{
+
+  private static final Logger log = LoggerFactory.getLogger(RepodataWriter.class);
+
+  static final String NS_COMMON = "http://linux.duke.edu/metadata/common";
+
+  static final String NS_RPM = "http://linux.duke.edu/metadata/rpm";
+
+  static final String NS_FILELISTS = "http://linux.duke.edu/metadata/filelists";
+
+  static final String NS_OTHER = "http://linux.duke.edu/metadata/other";
+
+  static final String NS_REPO = "http://linux.duke.edu/metadata/repo";
+
+  static final String XML_NS = "http://www.w3.org/XML/1998/namespace";
+
+  /**
+   * Files listed in primary.xml (all files are listed in filelists.xml), same as createrepo does.
+   */
+  private static final Pattern PRIMARY_FILES = Pattern.compile(".*bin/.*|^/etc/.*|^/usr/lib/sendmail$");
+
+  private static final Pattern INVALID_XML_CHARS = Pattern.compile("[^\\u0009\\u000A\\u000D\\u0020-\\uD7FF\\uE000-\\uFFFD]");
+
+  private static final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+
+  private final File repodataDir;
+
+  public RepodataWriter(final File repoDir) {
+    this.repodataDir = new File(repoDir, Yum.PATH_OF_REPODATA);
+  }
+
+  /**
+   * Writes the metadata of given packages.
+   *
+   * @param packages  the packages to write metadata of
+   * @param baseUrl   base URL of package locations (optional)
+   * @param groupFile Yum groups definition file to include (optional)
+   */
+  public void write(final Collection<RpmPackage> packages, final String baseUrl, final File groupFile)
+      throws IOException
+  {
+    try {
+      Files.createDirectories(repodataDir.toPath());
+      final List<DataFile> dataFiles = new ArrayList<DataFile>();
+      dataFiles.add(writePrimary(packages, baseUrl));
+      dataFiles.add(writeFilelists(packages));
+      dataFiles.add(writeOther(packages));
+      if (groupFile != null) {
+        dataFiles.add(copyGroupFile(groupFile));
+      }
+      writeRepoMD(dataFiles);
+    }
+    catch (XMLStreamException e) {
+      throw new IOException("Could not write Yum metadata to " + repodataDir, e);
+    }
+  }
+
+  private DataFile writePrimary(final Collection<RpmPackage> packages, final String baseUrl)
+      throws IOException, XMLStreamException
+  {
+    final DataFile dataFile = createDataFile("primary");
+    final XMLStreamWriter xml = dataFile.startDocument("metadata", NS_COMMON, packages.size());
+    for (RpmPackage pkg : packages) {
+      xml.writeStartElement("package");
+      xml.writeAttribute("type", "rpm");
+      writeElement(xml, "name", pkg.name);
+      writeElement(xml, "arch", pkg.arch);
+      writeVersion(xml, pkg);
+      xml.writeStartElement("checksum");
+      xml.writeAttribute("type", "sha256");
+      xml.writeAttribute("pkgid", "YES");
+      xml.writeCharacters(pkg.checksum);
+      xml.writeEndElement();
+      writeElement(xml, "summary", pkg.summary);
+      writeElement(xml, "description", pkg.description);
+      writeElement(xml, "packager", pkg.packager);
+      writeElement(xml, "url", pkg.url);
+      xml.writeEmptyElement("time");
+      xml.writeAttribute("file", String.valueOf(pkg.fileTime));
+      xml.writeAttribute("build", String.valueOf(pkg.buildTime));
+      xml.writeEmptyElement("size");
+      xml.writeAttribute("package", String.valueOf(pkg.packageSize));
+      xml.writeAttribute("installed", String.valueOf(pkg.installedSize));
+      xml.writeAttribute("archive", String.valueOf(pkg.archiveSize));
+      xml.writeEmptyElement("location");
+      if (baseUrl != null) {
+        xml.writeAttribute("xml", XML_NS, "base", baseUrl);
+      }
+      xml.writeAttribute("href", pkg.location);
+
+      xml.writeStartElement("format");
+      writeElement(xml, NS_RPM, "license", pkg.license);
+      writeElement(xml, NS_RPM, "vendor", pkg.vendor);
+      writeElement(xml, NS_RPM, "group", pkg.group);
+      writeElement(xml, NS_RPM, "buildhost", pkg.buildHost);
+      writeElement(xml, NS_RPM, "sourcerpm", pkg.sourceRpm);
+      xml.writeEmptyElement(NS_RPM, "header-range");
+      xml.writeAttribute("start", String.valueOf(pkg.headerStart));
+      xml.writeAttribute("end", String.valueOf(pkg.headerEnd));
+      writeDependencies(xml, "provides", pkg.provides);
+      writeDependencies(xml, "requires", pkg.requires);
+      writeDependencies(xml, "conflicts", pkg.conflicts);
+      writeDependencies(xml, "obsoletes", pkg.obsoletes);
+      for (PackageFile file : pkg.files) {
+        if (PRIMARY_FILES.matcher(file.path).matches()) {
+          writeFile(xml, file);
+        }
+      }
+      xml.writeEndElement();
+      xml.writeEndElement();
+      xml.writeCharacters("\n");
+    }
+    return dataFile.finish();
+  }
+
+  private DataFile writeFilelists(final Collection<RpmPackage> packages)
+      throws IOException, XMLStreamException
+  {
+    final DataFile dataFile = createDataFile("filelists");
+    final XMLStreamWriter xml = dataFile.startDocument("filelists", NS_FILELISTS, packages.size());
+    for (RpmPackage pkg : packages) {
+      writePackageStart(xml, pkg);
+      for (PackageFile file : pkg.files) {
+        writeFile(xml, file);
+      }
+      xml.writeEndElement();
+      xml.writeCharacters("\n");
+    }
+    return dataFile.finish();
+  }
+
+  private DataFile writeOther(final Collection<RpmPackage> packages)
+      throws IOException, XMLStreamException
+  {
+    final DataFile dataFile = createDataFile("other");
+    final XMLStreamWriter xml = dataFile.startDocument("otherdata", NS_OTHER, packages.size());
+    for (RpmPackage pkg : packages) {
+      writePackageStart(xml, pkg);
+      for (ChangeLog changeLog : pkg.changeLogs) {
+        xml.writeStartElement("changelog");
+        xml.writeAttribute("author", clean(changeLog.author));
+        xml.writeAttribute("date", String.valueOf(changeLog.date));
+        xml.writeCharacters(clean(changeLog.text));
+        xml.writeEndElement();
+      }
+      xml.writeEndElement();
+      xml.writeCharacters("\n");
+    }
+    return dataFile.finish();
+  }
+
+  DataFile copyGroupFile(final File groupFile)
+      throws IOException
+  {
+    final File tmp = File.createTempFile(".comps-", ".tmp", repodataDir);
+    final MessageDigest digest = RpmReader.sha256();
+    try (final InputStream in = new FileInputStream(groupFile);
+         final OutputStream out = new DigestOutputStream(new FileOutputStream(tmp), digest)) {
+      ByteStreams.copy(in, out);
+    }
+    final String checksum = RpmReader.toHex(digest.digest());
+    return new DataFile("group", tmp, checksum, null, tmp.length(), -1).publish("comps.xml");
+  }
+
+  /**
+   * Writes repomd.xml referencing given metadata files, and removes metadata files not referenced anymore (including
+   * leftovers of failed runs).
+   */
+  void writeRepoMD(final List<DataFile> dataFiles)
+      throws IOException, XMLStreamException
+  {
+    final File tmp = File.createTempFile(".repomd-", ".tmp", repodataDir);
+    try {
+      try (final OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+        final XMLStreamWriter xml = xmlOutputFactory.createXMLStreamWriter(out, "UTF-8");
+        xml.writeStartDocument("UTF-8", "1.0");
+        xml.writeCharacters("\n");
+        xml.setDefaultNamespace(NS_REPO);
+        xml.setPrefix("rpm", NS_RPM);
+        xml.writeStartElement(NS_REPO, "repomd");
+        xml.writeDefaultNamespace(NS_REPO);
+        xml.writeNamespace("rpm", NS_RPM);
+        xml.writeCharacters("\n");
+        writeElement(xml, "revision", String.valueOf(System.currentTimeMillis() / 1000));
+        xml.writeCharacters("\n");
+        for (DataFile dataFile : dataFiles) {
+          xml.writeStartElement("data");
+          xml.writeAttribute("type", dataFile.type);
+          xml.writeStartElement("checksum");
+          xml.writeAttribute("type", "sha256");
+          xml.writeCharacters(dataFile.checksum);
+          xml.writeEndElement();
+          if (dataFile.openChecksum != null) {
+            xml.writeStartElement("open-checksum");
+            xml.writeAttribute("type", "sha256");
+            xml.writeCharacters(dataFile.openChecksum);
+            xml.writeEndElement();
+          }
+          xml.writeEmptyElement("location");
+          xml.writeAttribute("href", Yum.PATH_OF_REPODATA + "/" + dataFile.file.getName());
+          writeElement(xml, "timestamp", String.valueOf(dataFile.file.lastModified() / 1000));
+          writeElement(xml, "size", String.valueOf(dataFile.size));
+          if (dataFile.openSize >= 0) {
+            writeElement(xml, "open-size", String.valueOf(dataFile.openSize));
+          }
+          xml.writeEndElement();
+          xml.writeCharacters("\n");
+        }
+        xml.writeEndElement();
+        xml.writeEndDocument();
+        xml.close();
+      }
+      Files.move(
+          tmp.toPath(), new File(repodataDir, Yum.NAME_OF_REPOMD_XML).toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE
+      );
+    }
+    finally {
+      Files.deleteIfExists(tmp.toPath());
+    }
+    removeUnreferenced(dataFiles);
+  }
+
+  private void removeUnreferenced(final List<DataFile> dataFiles) {
+    final Set<String> referenced = new HashSet<String>();
+    referenced.add(Yum.NAME_OF_REPOMD_XML);
+    for (DataFile dataFile : dataFiles) {
+      referenced.add(dataFile.file.getName());
+    }
+    final File[] files = repodataDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isFile() && !referenced.contains(file.getName())) {
+          log.trace("Removing unreferenced Yum metadata file {}", file);
+          if (!file.delete()) {
+            log.debug("Could not remove unreferenced Yum metadata file {}", file);
+          }
+        }
+      }
+    }
+  }
+
+  DataFile createDataFile(final String type)
+      throws IOException
+  {
+    return new DataFile(type, File.createTempFile("." + type + "-", ".tmp", repodataDir));
+  }
+
+  private static void writePackageStart(final XMLStreamWriter xml, final RpmPackage pkg)
+      throws XMLStreamException
+  {
+    xml.writeStartElement("package");
+    xml.writeAttribute("pkgid", pkg.checksum);
+    xml.writeAttribute("name", clean(pkg.name));
+    xml.writeAttribute("arch", clean(pkg.arch));
+    writeVersion(xml, pkg);
+  }
+
+  private static void writeVersion(final XMLStreamWriter xml, final RpmPackage pkg)
+      throws XMLStreamException
+  {
+    xml.writeEmptyElement("version");
+    xml.writeAttribute("epoch", pkg.epoch);
+    xml.writeAttribute("ver", clean(pkg.version));
+    xml.writeAttribute("rel", clean(pkg.release));
+  }
+
+  private static void writeDependencies(final XMLStreamWriter xml, final String name,
+                                        final List<Dependency> dependencies)
+      throws XMLStreamException
+  {
+    if (dependencies.isEmpty()) {
+      return;
+    }
+    xml.writeStartElement(NS_RPM, name);
+    for (Dependency dependency : dependencies) {
+      xml.writeEmptyElement(NS_RPM, "entry");
+      xml.writeAttribute("name", clean(dependency.name));
+      if (dependency.flags != null) {
+        xml.writeAttribute("flags", dependency.flags);
+        xml.writeAttribute("epoch", clean(dependency.epoch));
+        xml.writeAttribute("ver", clean(dependency.version));
+        if (dependency.release != null) {
+          xml.writeAttribute("rel", clean(dependency.release));
+        }
+      }
+      if (dependency.pre) {
+        xml.writeAttribute("pre", "1");
+      }
+    }
+    xml.writeEndElement();
+  }
+
+  private static void writeFile(final XMLStreamWriter xml, final PackageFile file)
+      throws XMLStreamException
+  {
+    xml.writeStartElement("file");
+    if (file.type != null) {
+      xml.writeAttribute("type", file.type);
+    }
+    xml.writeCharacters(clean(file.path));
+    xml.writeEndElement();
+  }
+
+  private static void writeElement(final XMLStreamWriter xml, final String name, final String value)
+      throws XMLStreamException
+  {
+    xml.writeStartElement(name);
+    xml.writeCharacters(clean(value));
+    xml.writeEndElement();
+  }
+
+  private static void writeElement(final XMLStreamWriter xml, final String namespace, final String name,
+                                   final String value)
+      throws XMLStreamException
+  {
+    xml.writeStartElement(namespace, name);
+    xml.writeCharacters(clean(value));
+    xml.writeEndElement();
+  }
+
+  private static String clean(final String value) {
+    return value == null ? "" : INVALID_XML_CHARS.matcher(value).replaceAll("");
+  }
+
+  // ==
+
+  /**
+   * A gzipped metadata file being written, that keeps track of checksums and sizes of both compressed and open
+   * content, and is published under its unique name when finished.
+   */
+  static class DataFile
+  {
+
+    private final String type;
+
+    private File file;
+
+    private String checksum;
+
+    private String openChecksum;
+
+    private long size;
+
+    private long openSize;
+
+    private DigestOutputStream compressedDigest;
+
+    private CountingOutputStream compressedCount;
+
+    private DigestOutputStream openDigest;
+
+    private CountingOutputStream openCount;
+
+    private OutputStream out;
+
+    private XMLStreamWriter xml;
+
+    private DataFile(final String type, final File tmp) {
+      this.type = type;
+      this.file = tmp;
+    }
+
+    private DataFile(final String type, final File tmp, final String checksum, final String openChecksum,
+                     final long size, final long openSize)
+    {
+      this(type, tmp);
+      this.checksum = checksum;
+      this.openChecksum = openChecksum;
+      this.size = size;
+      this.openSize = openSize;
+    }
+
+    /**
+     * Starts the XML document with given root element in given default namespace (rpm namespace is declared too for
+     * primary metadata).
+     */
+    XMLStreamWriter startDocument(final String root, final String namespace, final int packages)
+        throws IOException, XMLStreamException
+    {
+      compressedDigest = new DigestOutputStream(new FileOutputStream(file), RpmReader.sha256());
+      compressedCount = new CountingOutputStream(compressedDigest);
+      openDigest = new DigestOutputStream(new GZIPOutputStream(compressedCount, 65536), RpmReader.sha256());
+      openCount = new CountingOutputStream(openDigest);
+      out = new BufferedOutputStream(openCount, 65536);
+      xml = xmlOutputFactory.createXMLStreamWriter(out, "UTF-8");
+      xml.writeStartDocument("UTF-8", "1.0");
+      xml.writeCharacters("\n");
+      xml.setDefaultNamespace(namespace);
+      xml.setPrefix("rpm", NS_RPM);
+      xml.writeStartElement(namespace, root);
+      xml.writeDefaultNamespace(namespace);
+      if (NS_COMMON.equals(namespace)) {
+        xml.writeNamespace("rpm", NS_RPM);
+      }
+      xml.writeAttribute("packages", String.valueOf(packages));
+      xml.writeCharacters("\n");
+      return xml;
+    }
+
+    /**
+     * Finishes the XML document and publishes the file under its unique name.
+     */
+    DataFile finish()
+        throws IOException, XMLStreamException
+    {
+      try {
+        xml.writeEndElement();
+        xml.writeEndDocument();
+        xml.close();
+      }
+      finally {
+        out.close();
+      }
+      checksum = RpmReader.toHex(compressedDigest.getMessageDigest().digest());
+      openChecksum = RpmReader.toHex(openDigest.getMessageDigest().digest());
+      size = compressedCount.getCount();
+      openSize = openCount.getCount();
+      return publish(type + ".xml.gz");
+    }
+
+    private DataFile publish(final String name)
+        throws IOException
+    {
+      final File target = new File(file.getParentFile(), checksum + "-" + name);
+      Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      file = target;
+      return this;
+    }
+  }
+}
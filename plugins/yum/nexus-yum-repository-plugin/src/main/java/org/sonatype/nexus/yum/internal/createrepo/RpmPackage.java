@@ -0,0 +1,244 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.createrepo;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Metadata of a single RPM package, as much as needed to write primary, filelists and other Yum metadata.
+ *
+ * @since 3.0
+ */
+public class RpmPackage
+    implements Serializable
+{
+
+  private static final long serialVersionUID = 1L;
+
+  String name;
+
+  String arch;
+
+  String epoch;
+
+  String version;
+
+  String release;
+
+  String checksum;
+
+  String summary;
+
+  String description;
+
+  String packager;
+
+  String url;
+
+  long fileTime;
+
+  long buildTime;
+
+  long packageSize;
+
+  long installedSize;
+
+  long archiveSize;
+
+  String location;
+
+  String license;
+
+  String vendor;
+
+  String group;
+
+  String buildHost;
+
+  String sourceRpm;
+
+  long headerStart;
+
+  long headerEnd;
+
+  final List<Dependency> provides = new ArrayList<Dependency>();
+
+  final List<Dependency> requires = new ArrayList<Dependency>();
+
+  final List<Dependency> conflicts = new ArrayList<Dependency>();
+
+  final List<Dependency> obsoletes = new ArrayList<Dependency>();
+
+  final List<PackageFile> files = new ArrayList<PackageFile>();
+
+  final List<ChangeLog> changeLogs = new ArrayList<ChangeLog>();
+
+  public String getName() {
+    return name;
+  }
+
+  public String getArch() {
+    return arch;
+  }
+
+  public String getEpoch() {
+    return epoch;
+  }
+
+  public String getVersion() {
+    return version;
+  }
+
+  public String getRelease() {
+    return release;
+  }
+
+  /**
+   * SHA-256 of whole package file, used as package id in metadata.
+   */
+  public String getChecksum() {
+    return checksum;
+  }
+
+  public String getLocation() {
+    return location;
+  }
+
+  public List<Dependency> getProvides() {
+    return provides;
+  }
+
+  public List<Dependency> getRequires() {
+    return requires;
+  }
+
+  public List<PackageFile> getFiles() {
+    return files;
+  }
+
+  public List<ChangeLog> getChangeLogs() {
+    return changeLogs;
+  }
+
+  @Override
+  public String toString() {
+    return name + "-" + epoch + ":" + version + "-" + release + "." + arch;
+  }
+
+  /**
+   * A provides/requires/conflicts/obsoletes entry.
+   */
+  public static class Dependency
+      implements Serializable
+  {
+
+    private static final long serialVersionUID = 1L;
+
+    final String name;
+
+    final String flags;
+
+    final String epoch;
+
+    final String version;
+
+    final String release;
+
+    final boolean pre;
+
+    Dependency(final String name, final String flags, final String epoch, final String version,
+               final String release, final boolean pre)
+    {
+      this.name = name;
+      this.flags = flags;
+      this.epoch = epoch;
+      this.version = version;
+      this.release = release;
+      this.pre = pre;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getFlags() {
+      return flags;
+    }
+
+    public String getVersion() {
+      return version;
+    }
+  }
+
+  /**
+   * A file, directory or ghost file contained in package.
+   */
+  public static class PackageFile
+      implements Serializable
+  {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Type of file, {@code null} for regular files, "dir" or "ghost" otherwise.
+     */
+    final String type;
+
+    final String path;
+
+    PackageFile(final String type, final String path) {
+      this.type = type;
+      this.path = path;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    public String getPath() {
+      return path;
+    }
+  }
+
+  /**
+   * A changelog entry.
+   */
+  public static class ChangeLog
+      implements Serializable
+  {
+
+    private static final long serialVersionUID = 1L;
+
+    final String author;
+
+    final long date;
+
+    final String text;
+
+    ChangeLog(final String author, final long date, final String text) {
+      this.author = author;
+      this.date = date;
+      this.text = text;
+    }
+
+    public String getAuthor() {
+      return author;
+    }
+
+    public String getText() {
+      return text;
+    }
+  }
+}
@@ -0,0 +1,528 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.createrepo;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sonatype.nexus.yum.internal.createrepo.RpmPackage.ChangeLog;
+import org.sonatype.nexus.yum.internal.createrepo.RpmPackage.Dependency;
+import org.sonatype.nexus.yum.internal.createrepo.RpmPackage.PackageFile;
+
+import com.google.common.io.CountingInputStream;
+
+/**
+ * Reads RPM package metadata directly from package lead, signature and header, and computes package checksum in the
+ * same pass, so no external tools (rpm, createrepo) are needed.
+ *
+ * @since 3.0
+ */
+public class RpmReader
+{
+
+  private static final int LEAD_SIZE = 96;
+
+  private static final int[] LEAD_MAGIC = {0xed, 0xab, 0xee, 0xdb};
+
+  private static final int[] HEADER_MAGIC = {0x8e, 0xad, 0xe8};
+
+  /**
+   * Maximum count of header index entries, as limited by rpm itself.
+   */
+  private static final int HEADER_MAX_INDEX_COUNT = 0x10000;
+
+  /**
+   * Maximum size of header data store, as limited by rpm itself.
+   */
+  private static final int HEADER_MAX_STORE_SIZE = 256 * 1024 * 1024;
+
+  private static final int INDEX_ENTRY_SIZE = 16;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  // header entry types
+
+  private static final int TYPE_INT16 = 3;
+
+  private static final int TYPE_INT32 = 4;
+
+  private static final int TYPE_INT64 = 5;
+
+  private static final int TYPE_STRING = 6;
+
+  private static final int TYPE_STRING_ARRAY = 8;
+
+  private static final int TYPE_I18NSTRING = 9;
+
+  // signature tags
+
+  private static final int SIGTAG_PAYLOADSIZE = 1007;
+
+  // header tags
+
+  private static final int TAG_NAME = 1000;
+
+  private static final int TAG_VERSION = 1001;
+
+  private static final int TAG_RELEASE = 1002;
+
+  private static final int TAG_EPOCH = 1003;
+
+  private static final int TAG_SUMMARY = 1004;
+
+  private static final int TAG_DESCRIPTION = 1005;
+
+  private static final int TAG_BUILDTIME = 1006;
+
+  private static final int TAG_BUILDHOST = 1007;
+
+  private static final int TAG_SIZE = 1009;
+
+  private static final int TAG_VENDOR = 1011;
+
+  private static final int TAG_LICENSE = 1014;
+
+  private static final int TAG_PACKAGER = 1015;
+
+  private static final int TAG_GROUP = 1016;
+
+  private static final int TAG_URL = 1020;
+
+  private static final int TAG_ARCH = 1022;
+
+  private static final int TAG_OLDFILENAMES = 1027;
+
+  private static final int TAG_FILEMODES = 1030;
+
+  private static final int TAG_FILEFLAGS = 1037;
+
+  private static final int TAG_SOURCERPM = 1044;
+
+  private static final int TAG_ARCHIVESIZE = 1046;
+
+  private static final int TAG_PROVIDENAME = 1047;
+
+  private static final int TAG_REQUIREFLAGS = 1048;
+
+  private static final int TAG_REQUIRENAME = 1049;
+
+  private static final int TAG_REQUIREVERSION = 1050;
+
+  private static final int TAG_CONFLICTFLAGS = 1053;
+
+  private static final int TAG_CONFLICTNAME = 1054;
+
+  private static final int TAG_CONFLICTVERSION = 1055;
+
+  private static final int TAG_CHANGELOGTIME = 1080;
+
+  private static final int TAG_CHANGELOGNAME = 1081;
+
+  private static final int TAG_CHANGELOGTEXT = 1082;
+
+  private static final int TAG_OBSOLETENAME = 1090;
+
+  private static final int TAG_PROVIDEFLAGS = 1112;
+
+  private static final int TAG_PROVIDEVERSION = 1113;
+
+  private static final int TAG_OBSOLETEFLAGS = 1114;
+
+  private static final int TAG_OBSOLETEVERSION = 1115;
+
+  private static final int TAG_DIRINDEXES = 1116;
+
+  private static final int TAG_BASENAMES = 1117;
+
+  private static final int TAG_DIRNAMES = 1118;
+
+  private static final int TAG_LONGSIZE = 5009;
+
+  // dependency and file flags
+
+  private static final int SENSE_LESS = 1 << 1;
+
+  private static final int SENSE_GREATER = 1 << 2;
+
+  private static final int SENSE_EQUAL = 1 << 3;
+
+  private static final int SENSE_PREREQ = 1 << 6;
+
+  private static final int SENSE_SCRIPT_PRE = 1 << 9;
+
+  private static final int SENSE_SCRIPT_POST = 1 << 10;
+
+  private static final int FILE_GHOST = 1 << 6;
+
+  private static final int MODE_TYPE_MASK = 0170000;
+
+  private static final int MODE_DIR = 0040000;
+
+  /**
+   * Reads the package metadata of given RPM file.
+   *
+   * @param file     the RPM file
+   * @param location the location (path relative to repository root) of the RPM file
+   */
+  public RpmPackage read(final File file, final String location)
+      throws IOException
+  {
+    final MessageDigest digest = sha256();
+    try (final CountingDataInputStream in = new CountingDataInputStream(
+        new DigestInputStream(new BufferedInputStream(new FileInputStream(file)), digest))) {
+      readLead(in, file);
+      final Header signature = readHeader(in, file);
+      in.skipFully(pad(in.getCount()));
+      final long headerStart = in.getCount();
+      final Header header = readHeader(in, file);
+      final long headerEnd = in.getCount();
+      // digest the payload too
+      in.skipFully(Long.MAX_VALUE);
+
+      final RpmPackage pkg = new RpmPackage();
+      pkg.location = location;
+      pkg.checksum = toHex(digest.digest());
+      pkg.packageSize = in.getCount();
+      pkg.fileTime = file.lastModified() / 1000;
+      pkg.headerStart = headerStart;
+      pkg.headerEnd = headerEnd;
+      populate(pkg, header, signature);
+      return pkg;
+    }
+  }
+
+  private void populate(final RpmPackage pkg, final Header header, final Header signature) {
+    pkg.name = header.getString(TAG_NAME);
+    pkg.arch = header.getString(TAG_ARCH);
+    pkg.epoch = String.valueOf(header.getLong(TAG_EPOCH, 0));
+    pkg.version = header.getString(TAG_VERSION);
+    pkg.release = header.getString(TAG_RELEASE);
+    pkg.summary = header.getString(TAG_SUMMARY);
+    pkg.description = header.getString(TAG_DESCRIPTION);
+    pkg.packager = header.getString(TAG_PACKAGER);
+    pkg.url = header.getString(TAG_URL);
+    pkg.buildTime = header.getLong(TAG_BUILDTIME, 0);
+    pkg.installedSize = header.getLong(TAG_LONGSIZE, header.getLong(TAG_SIZE, 0));
+    pkg.archiveSize = header.getLong(TAG_ARCHIVESIZE, signature.getLong(SIGTAG_PAYLOADSIZE, 0));
+    pkg.license = header.getString(TAG_LICENSE);
+    pkg.vendor = header.getString(TAG_VENDOR);
+    pkg.group = header.getString(TAG_GROUP);
+    pkg.buildHost = header.getString(TAG_BUILDHOST);
+    pkg.sourceRpm = header.getString(TAG_SOURCERPM);
+
+    readFiles(pkg, header);
+    readDependencies(pkg.provides, header, TAG_PROVIDENAME, TAG_PROVIDEFLAGS, TAG_PROVIDEVERSION, null);
+    readDependencies(pkg.conflicts, header, TAG_CONFLICTNAME, TAG_CONFLICTFLAGS, TAG_CONFLICTVERSION, null);
+    readDependencies(pkg.obsoletes, header, TAG_OBSOLETENAME, TAG_OBSOLETEFLAGS, TAG_OBSOLETEVERSION, null);
+    // requirements satisfied by package itself are not listed, same as createrepo does
+    final Set<String> ownCapabilities = new HashSet<String>();
+    for (Dependency provide : pkg.provides) {
+      ownCapabilities.add(provide.name);
+    }
+    for (PackageFile file : pkg.files) {
+      ownCapabilities.add(file.path);
+    }
+    readDependencies(pkg.requires, header, TAG_REQUIRENAME, TAG_REQUIREFLAGS, TAG_REQUIREVERSION, ownCapabilities);
+
+    final List<String> changeLogTimes = header.getStrings(TAG_CHANGELOGTIME);
+    final List<String> changeLogNames = header.getStrings(TAG_CHANGELOGNAME);
+    final List<String> changeLogTexts = header.getStrings(TAG_CHANGELOGTEXT);
+    for (int i = 0; i < changeLogTimes.size() && i < changeLogNames.size() && i < changeLogTexts.size(); i++) {
+      pkg.changeLogs.add(
+          new ChangeLog(changeLogNames.get(i), Long.parseLong(changeLogTimes.get(i)), changeLogTexts.get(i))
+      );
+    }
+  }
+
+  private void readFiles(final RpmPackage pkg, final Header header) {
+    final List<String> paths = new ArrayList<String>();
+    final List<String> baseNames = header.getStrings(TAG_BASENAMES);
+    if (!baseNames.isEmpty()) {
+      final List<String> dirNames = header.getStrings(TAG_DIRNAMES);
+      final List<String> dirIndexes = header.getStrings(TAG_DIRINDEXES);
+      for (int i = 0; i < baseNames.size(); i++) {
+        paths.add(dirNames.get(Integer.parseInt(dirIndexes.get(i))) + baseNames.get(i));
+      }
+    }
+    else {
+      paths.addAll(header.getStrings(TAG_OLDFILENAMES));
+    }
+    final List<String> modes = header.getStrings(TAG_FILEMODES);
+    final List<String> flags = header.getStrings(TAG_FILEFLAGS);
+    for (int i = 0; i < paths.size(); i++) {
+      String type = null;
+      if (i < flags.size() && (Long.parseLong(flags.get(i)) & FILE_GHOST) != 0) {
+        type = "ghost";
+      }
+      else if (i < modes.size() && (Integer.parseInt(modes.get(i)) & MODE_TYPE_MASK) == MODE_DIR) {
+        type = "dir";
+      }
+      pkg.files.add(new PackageFile(type, paths.get(i)));
+    }
+  }
+
+  private void readDependencies(final List<Dependency> dependencies, final Header header, final int nameTag,
+                                final int flagsTag, final int versionTag, final Set<String> excluded)
+  {
+    final List<String> names = header.getStrings(nameTag);
+    final List<String> flags = header.getStrings(flagsTag);
+    final List<String> versions = header.getStrings(versionTag);
+    final Set<String> seen = new HashSet<String>();
+    for (int i = 0; i < names.size(); i++) {
+      final String name = names.get(i);
+      if (excluded != null && (name.startsWith("rpmlib(") || excluded.contains(name))) {
+        continue;
+      }
+      final int flag = i < flags.size() ? (int) Long.parseLong(flags.get(i)) : 0;
+      final String evr = i < versions.size() ? versions.get(i) : "";
+      if (!seen.add(name + ' ' + (flag & 0xf) + ' ' + evr)) {
+        continue;
+      }
+      final boolean pre = excluded != null && (flag & (SENSE_PREREQ | SENSE_SCRIPT_PRE | SENSE_SCRIPT_POST)) != 0;
+      if (evr.isEmpty()) {
+        dependencies.add(new Dependency(name, null, null, null, null, pre));
+      }
+      else {
+        String epoch = "0";
+        String version = evr;
+        String release = null;
+        final int colon = version.indexOf(':');
+        if (colon > 0) {
+          epoch = version.substring(0, colon);
+          version = version.substring(colon + 1);
+        }
+        final int dash = version.lastIndexOf('-');
+        if (dash > 0) {
+          release = version.substring(dash + 1);
+          version = version.substring(0, dash);
+        }
+        dependencies.add(new Dependency(name, toFlags(flag), epoch, version, release, pre));
+      }
+    }
+  }
+
+  private static String toFlags(final int flags) {
+    switch (flags & (SENSE_LESS | SENSE_GREATER | SENSE_EQUAL)) {
+      case SENSE_LESS:
+        return "LT";
+      case SENSE_GREATER:
+        return "GT";
+      case SENSE_EQUAL:
+        return "EQ";
+      case SENSE_LESS | SENSE_EQUAL:
+        return "LE";
+      case SENSE_GREATER | SENSE_EQUAL:
+        return "GE";
+      default:
+        return null;
+    }
+  }
+
+  private static void readLead(final CountingDataInputStream in, final File file)
+      throws IOException
+  {
+    final byte[] lead = new byte[LEAD_SIZE];
+    in.readFully(lead);
+    for (int i = 0; i < LEAD_MAGIC.length; i++) {
+      if ((lead[i] & 0xff) != LEAD_MAGIC[i]) {
+        throw new IOException("Not an RPM file: " + file);
+      }
+    }
+  }
+
+  private static Header readHeader(final CountingDataInputStream in, final File file)
+      throws IOException
+  {
+    for (int magic : HEADER_MAGIC) {
+      if (in.readUnsignedByte() != magic) {
+        throw new IOException("Invalid RPM header in " + file);
+      }
+    }
+    // header version and 4 reserved bytes
+    in.skipFully(5);
+    final int indexCount = in.readInt();
+    final int storeSize = in.readInt();
+    // do not allocate more than a sane header, nor more than the file has left
+    if (indexCount < 0 || indexCount > HEADER_MAX_INDEX_COUNT || storeSize < 0 || storeSize > HEADER_MAX_STORE_SIZE
+        || (long) indexCount * INDEX_ENTRY_SIZE + storeSize > file.length() - in.getCount()) {
+      throw new IOException("Invalid RPM header in " + file);
+    }
+    final int[][] index = new int[indexCount][];
+    for (int i = 0; i < indexCount; i++) {
+      index[i] = new int[]{in.readInt(), in.readInt(), in.readInt(), in.readInt()};
+    }
+    final byte[] store = new byte[storeSize];
+    in.readFully(store);
+    return new Header(index, store);
+  }
+
+  private static long pad(final long position) {
+    return (8 - (position % 8)) % 8;
+  }
+
+  static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static String toHex(final byte[] bytes) {
+    final StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+
+  // ==
+
+  /**
+   * Parsed RPM header structure (tag index and data store). All values are exposed as strings, numeric arrays
+   * included, to keep the accessors simple.
+   */
+  private static class Header
+  {
+
+    private final Map<Integer, int[]> entries;
+
+    private final byte[] store;
+
+    private Header(final int[][] index, final byte[] store) {
+      this.entries = new HashMap<Integer, int[]>(index.length);
+      for (int[] entry : index) {
+        entries.put(entry[0], entry);
+      }
+      this.store = store;
+    }
+
+    private String getString(final int tag) {
+      final List<String> values = getStrings(tag);
+      return values.isEmpty() ? null : values.get(0);
+    }
+
+    private long getLong(final int tag, final long defaultValue) {
+      final List<String> values = getStrings(tag);
+      return values.isEmpty() ? defaultValue : Long.parseLong(values.get(0));
+    }
+
+    private List<String> getStrings(final int tag) {
+      final int[] entry = entries.get(tag);
+      if (entry == null) {
+        return Collections.emptyList();
+      }
+      final int type = entry[1];
+      int offset = entry[2];
+      final int count = entry[3];
+      if (offset < 0 || offset > store.length || count < 0) {
+        return Collections.emptyList();
+      }
+      final List<String> values = new ArrayList<String>(count);
+      switch (type) {
+        case TYPE_INT16:
+          for (int i = 0; i < count && offset + 2 <= store.length; i++, offset += 2) {
+            values.add(String.valueOf(((store[offset] & 0xff) << 8) | (store[offset + 1] & 0xff)));
+          }
+          break;
+        case TYPE_INT32:
+          for (int i = 0; i < count && offset + 4 <= store.length; i++, offset += 4) {
+            values.add(String.valueOf(readInt(offset) & 0xffffffffL));
+          }
+          break;
+        case TYPE_INT64:
+          for (int i = 0; i < count && offset + 8 <= store.length; i++, offset += 8) {
+            values.add(String.valueOf(((long) readInt(offset) << 32) | (readInt(offset + 4) & 0xffffffffL)));
+          }
+          break;
+        case TYPE_STRING:
+        case TYPE_STRING_ARRAY:
+        case TYPE_I18NSTRING:
+          // STRING has count 1, I18NSTRING has one value per locale, first one is the default
+          final int strings = type == TYPE_STRING_ARRAY ? count : 1;
+          for (int i = 0; i < strings && offset < store.length; i++) {
+            int end = offset;
+            while (end < store.length && store[end] != 0) {
+              end++;
+            }
+            values.add(new String(store, offset, end - offset, UTF_8));
+            offset = end + 1;
+          }
+          break;
+        default:
+          // binary and char types are not needed
+          break;
+      }
+      return values;
+    }
+
+    private int readInt(final int offset) {
+      return ((store[offset] & 0xff) << 24) | ((store[offset + 1] & 0xff) << 16) | ((store[offset + 2] & 0xff) << 8)
+          | (store[offset + 3] & 0xff);
+    }
+  }
+
+  /**
+   * Data input stream that keeps track of bytes read.
+   */
+  private static class CountingDataInputStream
+      extends DataInputStream
+  {
+
+    private CountingDataInputStream(final InputStream in) {
+      super(new CountingInputStream(in));
+    }
+
+    private long getCount() {
+      return ((CountingInputStream) in).getCount();
+    }
+
+    /**
+     * Skips given count of bytes, or up to end of stream if count is {@link Long#MAX_VALUE}. Bytes are read (not
+     * skipped) so the underlying digest sees them.
+     */
+    private void skipFully(final long count)
+        throws IOException
+    {
+      final byte[] buffer = new byte[8192];
+      long remaining = count;
+      while (remaining > 0) {
+        final int read = read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (read < 0) {
+          if (count == Long.MAX_VALUE) {
+            return;
+          }
+          throw new EOFException();
+        }
+        remaining -= read;
+      }
+    }
+  }
+}
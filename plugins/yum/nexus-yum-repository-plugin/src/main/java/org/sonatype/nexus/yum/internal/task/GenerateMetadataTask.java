@@ -16,6 +16,8 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.List;
 import java.util.Map;
 
@@ -33,6 +35,7 @@ import org.sonatype.nexus.proxy.repository.HostedRepository;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.rest.RepositoryURLBuilder;
 import org.sonatype.nexus.scheduling.AbstractNexusTask;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.nexus.util.file.DirSupport;
 import org.sonatype.nexus.yum.Yum;
 import org.sonatype.nexus.yum.YumGroup;
@@ -43,6 +46,7 @@ import org.sonatype.nexus.yum.internal.RepositoryUtils;
 import org.sonatype.nexus.yum.internal.RpmListWriter;
 import org.sonatype.nexus.yum.internal.RpmScanner;
 import org.sonatype.nexus.yum.internal.YumRepositoryImpl;
+import org.sonatype.nexus.yum.internal.createrepo.RepodataGenerator;
 import org.sonatype.scheduling.ScheduledTask;
 import org.sonatype.scheduling.schedules.RunNowSchedule;
 import org.sonatype.sisu.goodies.common.SimpleFormat;
@@ -66,7 +70,8 @@ import static org.sonatype.scheduling.TaskState.SLEEPING;
 import static org.sonatype.scheduling.TaskState.SUBMITTED;
 
 /**
- * Create a yum-repository directory via 'createrepo' command line tool.
+ * Create a yum-repository directory. Metadata is generated in-process by {@link RepodataGenerator}, or, if enabled
+ * by system property, via 'createrepo' command line tool.
  *
  * @since yum 3.0
  */
@@ -84,6 +89,13 @@ public class GenerateMetadataTask
 
   private static final Logger LOG = LoggerFactory.getLogger(GenerateMetadataTask.class);
 
+  /**
+   * Use 'createrepo' command line tool instead of in-process generator (for example to have sqlite databases
+   * generated too).
+   */
+  private static final boolean USE_CREATEREPO = SystemPropertiesHelper.getBoolean(
+      GenerateMetadataTask.class.getName() + ".useCreaterepo", false);
+
   public static final String PARAM_REPO_ID = "repoId";
 
   public static final String PARAM_RPM_DIR = "rpmDir";
@@ -116,6 +128,8 @@ public class GenerateMetadataTask
 
   private final CommandLineExecutor commandLineExecutor;
 
+  private final RepodataGenerator repodataGenerator;
+
   @Inject
   public GenerateMetadataTask(final EventBus eventBus,
                               final RepositoryRegistry repositoryRegistry,
@@ -123,7 +137,8 @@ public class GenerateMetadataTask
                               final RepositoryURLBuilder repositoryURLBuilder,
                               final RpmScanner scanner,
                               final Manager routingManager,
-                              final CommandLineExecutor commandLineExecutor)
+                              final CommandLineExecutor commandLineExecutor,
+                              final RepodataGenerator repodataGenerator)
   {
     super(eventBus, null);
 
@@ -133,6 +148,7 @@ public class GenerateMetadataTask
     this.repositoryURLBuilder = checkNotNull(repositoryURLBuilder);
     this.routingManager = checkNotNull(routingManager);
     this.commandLineExecutor = checkNotNull(commandLineExecutor);
+    this.repodataGenerator = checkNotNull(repodataGenerator);
 
     getParameters().put(PARAM_SINGLE_RPM_PER_DIR, Boolean.toString(true));
   }
@@ -167,7 +183,19 @@ public class GenerateMetadataTask
         DirSupport.mkdir(getRepoDir().toPath());
 
         File rpmListFile = createRpmListFile();
-        commandLineExecutor.exec(buildCreateRepositoryCommand(rpmListFile));
+        if (USE_CREATEREPO) {
+          commandLineExecutor.exec(buildCreateRepositoryCommand(rpmListFile));
+        }
+        else {
+          repodataGenerator.generate(
+              new File(getRpmDir()),
+              Files.readAllLines(rpmListFile.toPath(), StandardCharsets.UTF_8),
+              getRepoDir(),
+              StringUtils.isNotBlank(getRpmUrl()) ? getRpmUrl() : null,
+              createCacheDir(),
+              getYumGroupsFile()
+          );
+        }
 
         if (isUseAbsoluteUrls() && StringUtils.isNotBlank(getRpmUrl())) {
           replaceUrlInRepomdXml();
@@ -348,13 +376,23 @@ public class GenerateMetadataTask
     if (StringUtils.isNotBlank(getRpmUrl())) {
       commandLine.append(" --baseurl ").append(getRpmUrl());
     }
+    final File yumGroupsFile = getYumGroupsFile();
+    if (yumGroupsFile != null) {
+      commandLine.append(" --groupfile ").append(yumGroupsFile.getAbsolutePath());
+    }
+    commandLine.append(" ").append(getRpmDir());
+
+    return commandLine.toString();
+  }
+
+  private File getYumGroupsFile() {
     final String yumGroupsDefinitionFile = getYumGroupsDefinitionFile();
     if (yumGroupsDefinitionFile != null) {
       final File file = new File(getRepoDir().getAbsolutePath(), yumGroupsDefinitionFile);
       final String path = file.getAbsolutePath();
       if (file.exists()) {
         if (file.getName().toLowerCase().endsWith(".xml")) {
-          commandLine.append(" --groupfile ").append(path);
+          return file;
         }
         else {
           LOG.warn("Yum groups definition file '{}' must have an '.xml' extension, ignoring", path);
@@ -364,9 +402,7 @@ public class GenerateMetadataTask
         LOG.warn("Yum groups definition file '{}' doesn't exist, ignoring", path);
       }
     }
-    commandLine.append(" ").append(getRpmDir());
-
-    return commandLine.toString();
+    return null;
   }
 
   @Override
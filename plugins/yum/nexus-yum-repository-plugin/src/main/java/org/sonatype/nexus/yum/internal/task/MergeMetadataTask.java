@@ -35,10 +35,12 @@ import org.sonatype.nexus.proxy.repository.GroupRepository;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.scheduling.AbstractNexusTask;
 import org.sonatype.nexus.scheduling.NexusScheduler;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.nexus.yum.YumRepository;
 import org.sonatype.nexus.yum.internal.RepoMD;
 import org.sonatype.nexus.yum.internal.RepositoryUtils;
 import org.sonatype.nexus.yum.internal.YumRepositoryImpl;
+import org.sonatype.nexus.yum.internal.createrepo.RepodataGenerator;
 import org.sonatype.scheduling.ScheduledTask;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 
@@ -52,6 +54,9 @@ import static org.sonatype.nexus.yum.Yum.PATH_OF_REPOMD_XML;
 import static org.sonatype.scheduling.TaskState.RUNNING;
 
 /**
+ * Merges Yum metadata of group members. Metadata is merged in-process by {@link RepodataGenerator}, or, if enabled by
+ * system property, via 'mergerepo' command line tool.
+ *
  * @since yum 3.0
  */
 @Named(MergeMetadataTask.ID)
@@ -65,16 +70,26 @@ public class MergeMetadataTask
 
   private static final int MAXIMAL_PARALLEL_RUNS = 1;
 
+  /**
+   * Use 'mergerepo' command line tool instead of in-process merging.
+   */
+  private static final boolean USE_MERGEREPO = SystemPropertiesHelper.getBoolean(
+      MergeMetadataTask.class.getName() + ".useMergerepo", false);
+
   private GroupRepository groupRepository;
 
   private final CommandLineExecutor commandLineExecutor;
 
+  private final RepodataGenerator repodataGenerator;
+
   @Inject
   public MergeMetadataTask(final EventBus eventBus,
-                           final CommandLineExecutor commandLineExecutor)
+                           final CommandLineExecutor commandLineExecutor,
+                           final RepodataGenerator repodataGenerator)
   {
     super(eventBus, null);
     this.commandLineExecutor = checkNotNull(commandLineExecutor);
+    this.repodataGenerator = checkNotNull(repodataGenerator);
   }
 
   public void setGroupRepository(final GroupRepository groupRepository) {
@@ -86,7 +101,9 @@ public class MergeMetadataTask
       throws Exception
   {
     if (isValidRepository()) {
-      deleteYumTempDirs();
+      if (USE_MERGEREPO) {
+        deleteYumTempDirs();
+      }
 
       final File repoBaseDir = RepositoryUtils.getBaseDir(groupRepository);
       RepositoryItemUid groupRepoMdUid = groupRepository.createUid("/" + PATH_OF_REPOMD_XML);
@@ -96,7 +113,12 @@ public class MergeMetadataTask
         final List<File> memberReposBaseDirs = getBaseDirsOfMemberRepositories();
         if (memberReposBaseDirs.size() > 1) {
           log.debug("Merging repository group '{}' out of {}", groupRepository.getId(), memberReposBaseDirs);
-          commandLineExecutor.exec(buildCommand(repoBaseDir, memberReposBaseDirs));
+          if (USE_MERGEREPO) {
+            commandLineExecutor.exec(buildCommand(repoBaseDir, memberReposBaseDirs));
+          }
+          else {
+            repodataGenerator.merge(repoBaseDir, memberReposBaseDirs);
+          }
           log.debug("Group repository '{}' merged", groupRepository.getId());
         }
         else {
@@ -112,7 +134,9 @@ public class MergeMetadataTask
         groupRepoMdUid.getLock().unlock();
       }
 
-      deleteYumTempDirs();
+      if (USE_MERGEREPO) {
+        deleteYumTempDirs();
+      }
 
       return new YumRepositoryImpl(repoBaseDir, groupRepository.getId(), null);
     }
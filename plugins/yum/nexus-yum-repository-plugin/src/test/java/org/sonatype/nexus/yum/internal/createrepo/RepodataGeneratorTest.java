@@ -0,0 +1,150 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal.createrepo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.sonatype.nexus.yum.Yum;
+import org.sonatype.nexus.yum.internal.RepoMD;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.fail;
+
+/**
+ * UT for {@link RepodataGenerator}.
+ */
+public class RepodataGeneratorTest
+    extends TestSupport
+{
+
+  private static final String TEST_ARTIFACT_12 = "test-artifact/1.2/test-artifact-1.2-1.noarch.rpm";
+
+  private static final String TEST_ARTIFACT_13 = "test-artifact/1.3/test-artifact-1.3-1.noarch.rpm";
+
+  private static final String ANOTHER_ARTIFACT = "another-artifact/0.0.1/another-artifact-0.0.1-1.noarch.rpm";
+
+  private File rpmDir;
+
+  private RepodataGenerator underTest;
+
+  @Before
+  public void prepare() {
+    rpmDir = util.resolveFile("src/test/ut-resources/rpms");
+    underTest = new RepodataGenerator();
+  }
+
+  @Test
+  public void readsRpmHeader() throws Exception {
+    final RpmPackage pkg = new RpmReader().read(new File(rpmDir, TEST_ARTIFACT_12), TEST_ARTIFACT_12);
+
+    assertThat(pkg.getName(), equalTo("test-artifact"));
+    assertThat(pkg.getVersion(), equalTo("1.2"));
+    assertThat(pkg.getRelease(), equalTo("1"));
+    assertThat(pkg.getArch(), equalTo("noarch"));
+    assertThat(pkg.getEpoch(), equalTo("0"));
+    assertThat(pkg.getChecksum().length(), equalTo(64));
+  }
+
+  @Test
+  public void rejectsOversizedRpmHeader() throws Exception {
+    // lead and signature header magic of a real RPM, followed by index count and store size of signature header
+    final byte[] start = Arrays.copyOf(Files.toByteArray(new File(rpmDir, TEST_ARTIFACT_12)), 96 + 8);
+    final int[][] sizes = {{0x10001, 0}, {0, 512 * 1024 * 1024}, {1, 16}};
+    for (int[] size : sizes) {
+      final File rpm = new File(util.createTempDir(), "invalid.rpm");
+      Files.write(Bytes.concat(start, Ints.toByteArray(size[0]), Ints.toByteArray(size[1])), rpm);
+      try {
+        new RpmReader().read(rpm, rpm.getName());
+        fail("Expected IOException");
+      }
+      catch (IOException e) {
+        assertThat(e.getMessage(), containsString("Invalid RPM header"));
+      }
+    }
+  }
+
+  @Test
+  public void generatesMetadata() throws Exception {
+    final File repoDir = util.createTempDir();
+    final File cacheDir = util.createTempDir();
+
+    underTest.generate(
+        rpmDir, Arrays.asList(TEST_ARTIFACT_12, "not/existing.rpm"), repoDir, "http://localhost/repo", cacheDir, null
+    );
+
+    final String primary = read(repoDir, "primary");
+    assertThat(primary, containsString("packages=\"1\""));
+    assertThat(primary, containsString("<name>test-artifact</name>"));
+    assertThat(primary, containsString("xml:base=\"http://localhost/repo\" href=\"" + TEST_ARTIFACT_12 + "\""));
+    assertThat(read(repoDir, "filelists"), containsString("name=\"test-artifact\""));
+    assertThat(read(repoDir, "other"), containsString("name=\"test-artifact\""));
+    assertThat(new File(cacheDir, "packages.cache").isFile(), equalTo(true));
+
+    // removed packages are gone, old metadata files are removed
+    underTest.generate(rpmDir, Arrays.asList(ANOTHER_ARTIFACT), repoDir, null, cacheDir, null);
+
+    assertThat(read(repoDir, "primary"), not(containsString("<name>test-artifact</name>")));
+    assertThat(read(repoDir, "primary"), containsString("<name>another-artifact</name>"));
+    assertThat(new File(repoDir, Yum.PATH_OF_REPODATA).list().length, equalTo(4));
+  }
+
+  @Test
+  public void mergesMetadata() throws Exception {
+    final File repo1 = util.createTempDir();
+    final File repo2 = util.createTempDir();
+    final File merged = util.createTempDir();
+    underTest.generate(rpmDir, Arrays.asList(TEST_ARTIFACT_12), repo1, null, util.createTempDir(), null);
+    underTest.generate(
+        rpmDir, Arrays.asList(TEST_ARTIFACT_12, TEST_ARTIFACT_13), repo2, null, util.createTempDir(), null
+    );
+
+    underTest.merge(merged, Arrays.asList(repo1, repo2));
+
+    final String primary = read(merged, "primary");
+    assertThat(primary, containsString("packages=\"2\""));
+    assertThat(primary, containsString("ver=\"1.2\""));
+    assertThat(primary, containsString("ver=\"1.3\""));
+    assertThat(read(merged, "filelists"), containsString("packages=\"2\""));
+    assertThat(read(merged, "other"), containsString("packages=\"2\""));
+  }
+
+  private static String read(final File repoDir, final String type) throws Exception {
+    final RepoMD repoMD;
+    try (InputStream in = new FileInputStream(new File(repoDir, Yum.PATH_OF_REPOMD_XML))) {
+      repoMD = new RepoMD(in);
+    }
+    final String location = repoMD.getLocation(type);
+    assertThat(location, notNullValue());
+    try (InputStream in = new GZIPInputStream(new FileInputStream(new File(repoDir, location)))) {
+      return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+    }
+  }
+}
@@ -38,6 +38,7 @@ import org.sonatype.nexus.yum.YumHosted;
 import org.sonatype.nexus.yum.YumRegistry;
 import org.sonatype.nexus.yum.YumRepository;
 import org.sonatype.nexus.yum.internal.RpmScanner;
+import org.sonatype.nexus.yum.internal.createrepo.RepodataGenerator;
 import org.sonatype.nexus.yum.internal.support.YumNexusTestSupport;
 import org.sonatype.scheduling.ScheduledTask;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
@@ -179,7 +180,8 @@ public class GenerateMetadataTaskConcurrencyIT
         mock(RepositoryURLBuilder.class),
         mock(RpmScanner.class),
         mock(Manager.class),
-        mock(CommandLineExecutor.class)
+        mock(CommandLineExecutor.class),
+        mock(RepodataGenerator.class)
     )
     {
       @Override
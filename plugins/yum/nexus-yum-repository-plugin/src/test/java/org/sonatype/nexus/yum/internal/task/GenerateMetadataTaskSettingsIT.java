@@ -29,6 +29,7 @@ import org.sonatype.nexus.yum.Yum;
 import org.sonatype.nexus.yum.YumRegistry;
 import org.sonatype.nexus.yum.YumRepository;
 import org.sonatype.nexus.yum.internal.RpmScanner;
+import org.sonatype.nexus.yum.internal.createrepo.RepodataGenerator;
 import org.sonatype.nexus.yum.internal.support.YumNexusTestSupport;
 import org.sonatype.scheduling.DefaultScheduledTask;
 import org.sonatype.scheduling.ScheduledTask;
@@ -122,7 +123,8 @@ public class GenerateMetadataTaskSettingsIT
         mock(RepositoryURLBuilder.class),
         mock(RpmScanner.class),
         mock(Manager.class),
-        mock(CommandLineExecutor.class)
+        mock(CommandLineExecutor.class),
+        mock(RepodataGenerator.class)
     );
     task.setRpmDir(rpmsDir().getAbsolutePath());
     task.setRpmUrl(RPM_URL);
@@ -145,7 +147,8 @@ public class GenerateMetadataTaskSettingsIT
         repositoryURLBuilder(),
         mock(RpmScanner.class),
         mock(Manager.class),
-        mock(CommandLineExecutor.class)
+        mock(CommandLineExecutor.class),
+        mock(RepodataGenerator.class)
     );
     task.setRepositoryId(REPO);
     // when
@@ -168,7 +171,8 @@ public class GenerateMetadataTaskSettingsIT
         mock(RepositoryURLBuilder.class),
         mock(RpmScanner.class),
         mock(Manager.class),
-        mock(CommandLineExecutor.class)
+        mock(CommandLineExecutor.class),
+        mock(RepodataGenerator.class)
     );
     task.setRepositoryId(REPO);
 
@@ -198,7 +202,8 @@ public class GenerateMetadataTaskSettingsIT
         mock(RepositoryURLBuilder.class),
         mock(RpmScanner.class),
         mock(Manager.class),
-        mock(CommandLineExecutor.class)
+        mock(CommandLineExecutor.class),
+        mock(RepodataGenerator.class)
     );
     task.setRepositoryId(REPO);
 
@@ -250,7 +255,8 @@ public class GenerateMetadataTaskSettingsIT
         mock(RepositoryURLBuilder.class),
         mock(RpmScanner.class),
         mock(Manager.class),
-        mock(CommandLineExecutor.class)
+        mock(CommandLineExecutor.class),
+        mock(RepodataGenerator.class)
     )
     {
 